@@ -0,0 +1,337 @@
+package org.goplanit.geoio.converter;
+
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+/**
+ * Off-heap staging area for the coordinates of a chunk of extracted geometries. Each geometry is staged as soon as it is
+ * extracted: its coordinates are copied (x and y interleaved), optionally quantised while copying, into direct buffers
+ * shared by the chunk, and it is replaced by an equivalent geometry whose coordinate sequences are views on these buffers.
+ * So, the extracted geometry, including its coordinate objects, becomes garbage right away rather than being retained for the
+ * whole chunk, and the staged coordinates of the chunk are released at once when its (staged) values are no longer referenced,
+ * which may be after the chunk has been handed to the asynchronous file writers.
+ * <p>
+ *   Only x and y are staged, which is all shape files persist for the geometries of PLANit entities.
+ * </p>
+ *
+ * @author markr
+ */
+class CoordinateArena {
+
+  /** ordinates per staged coordinate */
+  private static final int DIMENSION = 2;
+
+  /** heap and off-heap size of a staged coordinate */
+  static final long STAGED_COORDINATE_BYTES = DIMENSION * Double.BYTES;
+
+  /** number of coordinates of a buffer, larger geometries get a buffer of their own */
+  private static final int BUFFER_COORDINATES = 1 << 16;
+
+  /** maximum number of coordinates of a single geometry */
+  private static final int MAX_COORDINATES = Integer.MAX_VALUE / (DIMENSION * Double.BYTES);
+
+  /** grid coordinates are snapped to, not quantised when zero */
+  private final double quantisationGrid;
+
+  /** buffer currently staged into, null until the first geometry is staged */
+  private DoubleBuffer ordinates;
+
+  /** index of the first free ordinate of the current buffer */
+  private int nextOrdinate;
+
+  /**
+   * View on a range of coordinates of the arena, ordinates can be updated in place, e.g., by coordinate filters. Copies are
+   * made on the heap
+   */
+  private static final class ArenaCoordinateSequence implements CoordinateSequence {
+
+    /** the arena's ordinates */
+    private final DoubleBuffer ordinates;
+
+    /** index of the first ordinate of the sequence */
+    private final int offset;
+
+    /** number of coordinates */
+    private final int size;
+
+    /**
+     * Constructor
+     *
+     * @param ordinates of the arena
+     * @param offset of the first ordinate
+     * @param size number of coordinates
+     */
+    private ArenaCoordinateSequence(DoubleBuffer ordinates, int offset, int size){
+      this.ordinates = ordinates;
+      this.offset = offset;
+      this.size = size;
+    }
+
+    @Override
+    public int getDimension() {
+      return DIMENSION;
+    }
+
+    @Override
+    public Coordinate getCoordinate(int index) {
+      return new Coordinate(getX(index), getY(index));
+    }
+
+    @Override
+    public Coordinate getCoordinateCopy(int index) {
+      return getCoordinate(index);
+    }
+
+    @Override
+    public void getCoordinate(int index, Coordinate coordinate) {
+      coordinate.setX(getX(index));
+      coordinate.setY(getY(index));
+    }
+
+    @Override
+    public double getX(int index) {
+      return ordinates.get(offset + index * DIMENSION);
+    }
+
+    @Override
+    public double getY(int index) {
+      return ordinates.get(offset + index * DIMENSION + 1);
+    }
+
+    @Override
+    public double getOrdinate(int index, int ordinateIndex) {
+      switch (ordinateIndex){
+        case CoordinateSequence.X:
+          return getX(index);
+        case CoordinateSequence.Y:
+          return getY(index);
+        default:
+          return Double.NaN;
+      }
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public void setOrdinate(int index, int ordinateIndex, double value) {
+      if(ordinateIndex == CoordinateSequence.X || ordinateIndex == CoordinateSequence.Y) {
+        ordinates.put(offset + index * DIMENSION + ordinateIndex, value);
+      }
+    }
+
+    @Override
+    public Coordinate[] toCoordinateArray() {
+      var coordinates = new Coordinate[size];
+      for(int index = 0; index < size; ++index){
+        coordinates[index] = getCoordinate(index);
+      }
+      return coordinates;
+    }
+
+    @Override
+    public Envelope expandEnvelope(Envelope envelope) {
+      for(int index = 0; index < size; ++index){
+        envelope.expandToInclude(getX(index), getY(index));
+      }
+      return envelope;
+    }
+
+    @Override
+    @Deprecated
+    public Object clone() {
+      return copy();
+    }
+
+    @Override
+    public CoordinateSequence copy() {
+      var copy = new double[size * DIMENSION];
+      ordinates.duplicate().position(offset).get(copy);
+      return new PackedCoordinateSequence.Double(copy, DIMENSION, 0);
+    }
+  }
+
+  /**
+   * Copy a coordinate sequence into the arena
+   *
+   * @param ordinates buffer to copy into
+   * @param source to copy
+   * @param position offset of the first ordinate to write to, updated to the next free position
+   * @return view on the staged coordinates
+   */
+  private CoordinateSequence stage(DoubleBuffer ordinates, CoordinateSequence source, int[] position){
+    final int offset = position[0];
+    final int size = source.size();
+    for(int index = 0; index < size; ++index){
+      ordinates.put(position[0]++, quantise(source.getX(index)));
+      ordinates.put(position[0]++, quantise(source.getY(index)));
+    }
+    return new ArenaCoordinateSequence(ordinates, offset, size);
+  }
+
+  /**
+   * Stage a polygon
+   *
+   * @param ordinates buffer to copy into
+   * @param polygon to stage
+   * @param position offset of the first ordinate to write to, updated to the next free position
+   * @return staged polygon
+   */
+  private Polygon stage(DoubleBuffer ordinates, Polygon polygon, int[] position){
+    var factory = polygon.getFactory();
+    var shell = factory.createLinearRing(stage(ordinates, polygon.getExteriorRing().getCoordinateSequence(), position));
+    var holes = new LinearRing[polygon.getNumInteriorRing()];
+    for(int index = 0; index < holes.length; ++index){
+      holes[index] = factory.createLinearRing(stage(ordinates, polygon.getInteriorRingN(index).getCoordinateSequence(), position));
+    }
+    return factory.createPolygon(shell, holes);
+  }
+
+  /**
+   * Stage a geometry, collections are staged part by part
+   *
+   * @param ordinates buffer to copy into
+   * @param geometry to stage
+   * @param position offset of the first ordinate to write to, updated to the next free position
+   * @return staged geometry
+   */
+  private Geometry stage(DoubleBuffer ordinates, Geometry geometry, int[] position){
+    var factory = geometry.getFactory();
+    if(geometry instanceof Point){
+      return factory.createPoint(stage(ordinates, ((Point) geometry).getCoordinateSequence(), position));
+    }
+    if(geometry instanceof LinearRing){
+      return factory.createLinearRing(stage(ordinates, ((LinearRing) geometry).getCoordinateSequence(), position));
+    }
+    if(geometry instanceof LineString){
+      return factory.createLineString(stage(ordinates, ((LineString) geometry).getCoordinateSequence(), position));
+    }
+    if(geometry instanceof Polygon){
+      return stage(ordinates, (Polygon) geometry, position);
+    }
+
+    if(geometry instanceof MultiPoint){
+      var points = new Point[geometry.getNumGeometries()];
+      for(int index = 0; index < points.length; ++index){
+        points[index] = (Point) stage(ordinates, geometry.getGeometryN(index), position);
+      }
+      return factory.createMultiPoint(points);
+    }
+    if(geometry instanceof MultiLineString){
+      var lineStrings = new LineString[geometry.getNumGeometries()];
+      for(int index = 0; index < lineStrings.length; ++index){
+        lineStrings[index] = (LineString) stage(ordinates, geometry.getGeometryN(index), position);
+      }
+      return factory.createMultiLineString(lineStrings);
+    }
+    if(geometry instanceof MultiPolygon){
+      var polygons = new Polygon[geometry.getNumGeometries()];
+      for(int index = 0; index < polygons.length; ++index){
+        polygons[index] = stage(ordinates, (Polygon) geometry.getGeometryN(index), position);
+      }
+      return factory.createMultiPolygon(polygons);
+    }
+    if(geometry instanceof GeometryCollection){
+      var parts = new Geometry[geometry.getNumGeometries()];
+      for(int index = 0; index < parts.length; ++index){
+        parts[index] = stage(ordinates, geometry.getGeometryN(index), position);
+      }
+      return factory.createGeometryCollection(parts);
+    }
+    throw new PlanItRunTimeException("Unsupported geometry type %s for off-heap staging", geometry.getGeometryType());
+  }
+
+  /**
+   * Snap an ordinate to the quantisation grid, if any
+   *
+   * @param ordinate to snap
+   * @return snapped ordinate
+   */
+  private double quantise(double ordinate){
+    return quantisationGrid > 0 ? Math.rint(ordinate / quantisationGrid) * quantisationGrid : ordinate;
+  }
+
+  /**
+   * Reserve room for the coordinates of a geometry, moving on to a new buffer when the current one is full
+   *
+   * @param numberOfCoordinates to reserve room for
+   * @param position set to the offset of the first reserved ordinate
+   * @return buffer holding the reserved room
+   */
+  private synchronized DoubleBuffer reserve(int numberOfCoordinates, int[] position){
+    final int numberOfOrdinates = numberOfCoordinates * DIMENSION;
+    if(ordinates == null || ordinates.capacity() - nextOrdinate < numberOfOrdinates){
+      ordinates = ByteBuffer.allocateDirect(Math.max(BUFFER_COORDINATES, numberOfCoordinates) * DIMENSION * Double.BYTES)
+          .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+      nextOrdinate = 0;
+    }
+    position[0] = nextOrdinate;
+    nextOrdinate += numberOfOrdinates;
+    return ordinates;
+  }
+
+  /**
+   * Constructor
+   *
+   * @param quantisationGrid grid coordinates are snapped to, not quantised when zero
+   */
+  CoordinateArena(double quantisationGrid){
+    this.quantisationGrid = quantisationGrid;
+  }
+
+  /**
+   * Stage a geometry in the arena, may be called concurrently for different geometries
+   *
+   * @param geometry to stage, may be null
+   * @return staged equivalent of the geometry, null when geometry is null
+   */
+  Geometry stage(Geometry geometry){
+    if(geometry == null){
+      return null;
+    }
+    final int numberOfCoordinates = geometry.getNumPoints();
+    if(numberOfCoordinates > MAX_COORDINATES){
+      throw new PlanItRunTimeException("Too many coordinates (>%d) in geometry for off-heap staging", MAX_COORDINATES);
+    }
+    var position = new int[1];
+    var buffer = reserve(numberOfCoordinates, position);
+    return stage(buffer, geometry, position);
+  }
+
+  /**
+   * Check if a geometry's coordinates are staged in an arena
+   *
+   * @param geometry to check
+   * @return true when staged, false otherwise
+   */
+  static boolean isStaged(Geometry geometry){
+    if(geometry instanceof Point){
+      return ((Point) geometry).getCoordinateSequence() instanceof ArenaCoordinateSequence;
+    }
+    if(geometry instanceof LineString){
+      return ((LineString) geometry).getCoordinateSequence() instanceof ArenaCoordinateSequence;
+    }
+    if(geometry instanceof Polygon){
+      return isStaged(((Polygon) geometry).getExteriorRing());
+    }
+    return geometry instanceof GeometryCollection && geometry.getNumGeometries() > 0 && isStaged(geometry.getGeometryN(0));
+  }
+}
@@ -0,0 +1,258 @@
+package org.goplanit.geoio.converter;
+
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+import org.locationtech.jts.geom.Geometry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Budget of (estimated) heap for the buffers of an export, i.e., chunks of rows being extracted or handed to asynchronous
+ * file writers but not yet written. One budget is shared by all layers of an export, and by all component writers of an
+ * intermodal export. A producer reserves the size of a chunk before extracting it and waits while the budget is used up.
+ * The reservation is held by a {@link Lease}, retained by each file write of the chunk's rows and released once all of them
+ * are written, so extraction is throttled to the pace of the file writers. Only producers wait, file writes never do. Sizes
+ * are estimated from the extracted values, see {@link #estimateRowBytes(Object[])}. An unbounded budget never waits.
+ *
+ * @author markr
+ */
+public class ExportMemoryBudget {
+
+  /** estimated size of an object header */
+  private static final long OBJECT_HEADER_BYTES = 16;
+
+  /** estimated size of a reference */
+  private static final long REFERENCE_BYTES = 8;
+
+  /** estimated size of a string excluding its characters */
+  private static final long STRING_BYTES = 40;
+
+  /** estimated size of a geometry excluding its coordinates */
+  private static final long GEOMETRY_BYTES = 64;
+
+  /** estimated size per coordinate, i.e., coordinate object and its reference */
+  private static final long COORDINATE_BYTES = 48;
+
+  /** capacity in bytes, not bounded when zero */
+  private final long capacity;
+
+  /** bytes reserved */
+  private long reserved;
+
+  /**
+   * Reservation of a chunk of rows, released to the budget once released by all its holders. The producer holds it while
+   * extracting and handing over the chunk, each asynchronous write of (part of) the chunk retains it until written
+   */
+  public static final class Lease {
+
+    /** budget reserved from */
+    private final ExportMemoryBudget budget;
+
+    /** bytes reserved */
+    private long bytes;
+
+    /** number of holders, the reservation is released when none remain */
+    private final AtomicInteger holders = new AtomicInteger(1);
+
+    /**
+     * Constructor
+     *
+     * @param budget reserved from
+     * @param bytes reserved
+     */
+    private Lease(ExportMemoryBudget budget, long bytes){
+      this.budget = budget;
+      this.bytes = bytes;
+    }
+
+    /**
+     * Adjust the reservation to the actual size of the chunk once extracted, without waiting. Only to be used by the producer
+     * before the lease is retained by any other holder
+     *
+     * @param actualBytes estimated size of the chunk
+     */
+    void resize(long actualBytes){
+      bytes = budget.adjust(bytes, actualBytes);
+    }
+
+    /**
+     * Check if the lease is reserved from a bounded budget
+     *
+     * @return true when bounded
+     */
+    boolean isBounded(){
+      return budget.isBounded();
+    }
+
+    /**
+     * Add a holder, to be released with {@link #release()}
+     */
+    void retain(){
+      holders.incrementAndGet();
+    }
+
+    /**
+     * Remove a holder, releasing the reservation to the budget when it was the last one
+     */
+    void release(){
+      if(holders.decrementAndGet() == 0){
+        budget.release(bytes);
+      }
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param capacity in bytes, not bounded when zero
+   */
+  private ExportMemoryBudget(long capacity){
+    this.capacity = capacity;
+    this.reserved = 0;
+  }
+
+  /**
+   * Create a budget
+   *
+   * @param capacity in bytes, not bounded when zero (or negative)
+   * @return created budget
+   */
+  public static ExportMemoryBudget create(long capacity){
+    return new ExportMemoryBudget(Math.max(0, capacity));
+  }
+
+  /**
+   * Estimated heap size of a single extracted value
+   *
+   * @param value to estimate
+   * @return size in bytes
+   */
+  static long estimateValueBytes(Object value){
+    if(value == null){
+      return 0;
+    }
+    if(value instanceof Geometry){
+      var geometry = (Geometry) value;
+      /* staged coordinates are packed ordinates rather than coordinate objects */
+      long coordinateBytes = CoordinateArena.isStaged(geometry) ? CoordinateArena.STAGED_COORDINATE_BYTES : COORDINATE_BYTES;
+      return GEOMETRY_BYTES * geometry.getNumGeometries() + coordinateBytes * geometry.getNumPoints();
+    }
+    if(value instanceof String){
+      return STRING_BYTES + ((String) value).length();
+    }
+    return OBJECT_HEADER_BYTES;
+  }
+
+  /**
+   * Estimated heap size of a row of extracted values
+   *
+   * @param row to estimate
+   * @return size in bytes
+   */
+  static long estimateRowBytes(Object[] row){
+    long bytes = OBJECT_HEADER_BYTES + REFERENCE_BYTES * row.length;
+    for(var value : row){
+      bytes += estimateValueBytes(value);
+    }
+    return bytes;
+  }
+
+  /**
+   * Estimated heap size of rows
+   *
+   * @param rows to estimate
+   * @return size in bytes
+   */
+  static long estimateRowsBytes(Iterable<Object[]> rows){
+    long bytes = 0;
+    for(var row : rows){
+      bytes += estimateRowBytes(row);
+    }
+    return bytes;
+  }
+
+  /**
+   * Check if the budget is bounded
+   *
+   * @return true when bounded
+   */
+  boolean isBounded(){
+    return capacity > 0;
+  }
+
+  /**
+   * Capacity of the budget
+   *
+   * @return capacity in bytes, zero when not bounded
+   */
+  long getCapacity(){
+    return capacity;
+  }
+
+  /**
+   * Reserve bytes, waiting while the budget is used up. Requests exceeding the capacity reserve the full capacity, so they
+   * proceed once everything else is released
+   *
+   * @param bytes to reserve
+   * @return bytes reserved, to be released with {@link #release(long)}
+   */
+  synchronized long reserve(long bytes){
+    if(!isBounded()){
+      return 0;
+    }
+    final long request = Math.min(bytes, capacity);
+    try {
+      while (reserved > 0 && reserved + request > capacity) {
+        wait();
+      }
+    }catch (InterruptedException e){
+      Thread.currentThread().interrupt();
+      var exception = new PlanItRunTimeException("Interrupted while waiting for export memory budget");
+      exception.initCause(e);
+      throw exception;
+    }
+    reserved += request;
+    return request;
+  }
+
+  /**
+   * Reserve bytes, waiting while the budget is used up, see {@link #reserve(long)}, held by a lease
+   *
+   * @param bytes to reserve
+   * @return lease holding the reservation, held by the caller
+   */
+  Lease acquire(long bytes){
+    return new Lease(this, reserve(bytes));
+  }
+
+  /**
+   * Adjust a reservation to the given size without waiting, so the budget may be exceeded temporarily, e.g., by a chunk
+   * larger than estimated
+   *
+   * @param reservedBytes currently reserved
+   * @param bytes to reserve instead
+   * @return bytes reserved, to be released with {@link #release(long)}
+   */
+  synchronized long adjust(long reservedBytes, long bytes){
+    if(!isBounded()){
+      return 0;
+    }
+    reserved += bytes - reservedBytes;
+    if(bytes < reservedBytes){
+      notifyAll();
+    }
+    return bytes;
+  }
+
+  /**
+   * Release bytes reserved earlier
+   *
+   * @param bytes as returned by {@link #reserve(long)}
+   */
+  synchronized void release(long bytes){
+    if(bytes <= 0){
+      return;
+    }
+    reserved -= bytes;
+    notifyAll();
+  }
+}
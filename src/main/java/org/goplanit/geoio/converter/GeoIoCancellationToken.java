@@ -0,0 +1,58 @@
+package org.goplanit.geoio.converter;
+
+/**
+ * Token to cooperatively cancel GeoIO writers. Writers check the token between layers and between chunks of extracted
+ * entities, i.e., at most every {@link org.goplanit.geoio.util.GeoIoWriterSettings#getAttributeExtractionChunkSize()}
+ * features, upon which they discard the layers written so far and throw a {@link GeoIoExportCancelledException}. The same
+ * token can be shared by writers running concurrently, cancelling all of them.
+ *
+ * @author markr
+ */
+public class GeoIoCancellationToken {
+
+  /** flag indicating cancellation is requested */
+  private volatile boolean cancelled;
+
+  /**
+   * Constructor
+   */
+  protected GeoIoCancellationToken(){
+    this.cancelled = false;
+  }
+
+  /**
+   * Create a token that is not cancelled
+   *
+   * @return created token
+   */
+  public static GeoIoCancellationToken create(){
+    return new GeoIoCancellationToken();
+  }
+
+  /**
+   * Request cancellation, writers stop at their next check
+   */
+  public void cancel(){
+    this.cancelled = true;
+  }
+
+  /**
+   * Check if cancellation is requested
+   *
+   * @return true when cancelled
+   */
+  public boolean isCancelled(){
+    return cancelled;
+  }
+
+  /**
+   * Throw when cancellation is requested
+   *
+   * @param context description of the work being cancelled, used in the message
+   */
+  public void throwIfCancelled(String context){
+    if(cancelled){
+      throw new GeoIoExportCancelledException("GeoIO export cancelled while writing %s", context);
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package org.goplanit.geoio.converter;
+
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Manifest of the layers completed by a writer, recorded as each layer completes, so an export that failed halfway can be
+ * resumed by skipping the layers that were completed and are still intact. Each layer is listed with its number of features
+ * and the size and modification time of each of its files (relative to the manifest's directory), one row per file. When a
+ * layer is listed more than once, the last entry applies.
+ *
+ * @author markr
+ */
+class GeoIoCheckpointManifest {
+
+  /** the logger to use */
+  private static final Logger LOGGER = Logger.getLogger(GeoIoCheckpointManifest.class.getCanonicalName());
+
+  /** header of the manifest */
+  private static final String HEADER = "layer,entity_class,features,file,bytes,modified";
+
+  /** number of columns of the manifest */
+  private static final int COLUMNS = 6;
+
+  /**
+   * Completed layer as recorded
+   */
+  private static final class CompletedLayer {
+
+    /** number of features written */
+    private final long features;
+
+    /** files with their size and modification time (millis) */
+    private final Map<Path, long[]> files = new HashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param features number of features written
+     */
+    private CompletedLayer(long features){
+      this.features = features;
+    }
+  }
+
+  /** path of the manifest */
+  private final Path manifestPath;
+
+  /** completed layers by schema name */
+  private final Map<String, CompletedLayer> completedLayers = new HashMap<>();
+
+  /**
+   * Load the entries of an existing manifest, malformed rows are ignored
+   */
+  private void load(){
+    try {
+      var lines = Files.readAllLines(manifestPath, StandardCharsets.UTF_8);
+      for (var line : lines.subList(Math.min(1, lines.size()), lines.size())) {
+        var columns = line.split(",", -1);
+        if (columns.length != COLUMNS) {
+          continue;
+        }
+        try {
+          long features = Long.parseLong(columns[2]);
+          var layer = completedLayers.get(columns[0]);
+          if (layer == null || layer.features != features) {
+            layer = new CompletedLayer(features);
+            completedLayers.put(columns[0], layer);
+          }
+          layer.files.put(Path.of(columns[3]), new long[]{Long.parseLong(columns[4]), Long.parseLong(columns[5])});
+        }catch (NumberFormatException e){
+          LOGGER.warning(String.format("Ignoring malformed checkpoint entry in %s: %s", manifestPath, line));
+        }
+      }
+    }catch (IOException e){
+      var exception = new PlanItRunTimeException("Unable to read checkpoint manifest %s", manifestPath.toString());
+      exception.initCause(e);
+      throw exception;
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param manifestPath path of the manifest
+   */
+  private GeoIoCheckpointManifest(Path manifestPath){
+    this.manifestPath = manifestPath;
+  }
+
+  /**
+   * Open the manifest, either continuing an existing one or starting a new one
+   *
+   * @param manifestPath path of the manifest
+   * @param resume when true entries of an existing manifest are retained, otherwise it is replaced
+   * @return opened manifest
+   */
+  static GeoIoCheckpointManifest open(Path manifestPath, boolean resume){
+    var manifest = new GeoIoCheckpointManifest(manifestPath);
+    try {
+      if (resume && Files.exists(manifestPath)) {
+        manifest.load();
+        LOGGER.info(String.format("Resuming from checkpoint %s, %d completed layers", manifestPath.toAbsolutePath(),
+            manifest.completedLayers.size()));
+        return manifest;
+      }
+      Files.createDirectories(manifestPath.toAbsolutePath().getParent());
+      Files.writeString(manifestPath, HEADER + System.lineSeparator(), StandardCharsets.UTF_8);
+    }catch (IOException e){
+      var exception = new PlanItRunTimeException("Unable to create checkpoint manifest %s", manifestPath.toString());
+      exception.initCause(e);
+      throw exception;
+    }
+    return manifest;
+  }
+
+  /**
+   * Check if a layer is recorded as completed with the given number of features and all its files are unchanged since
+   *
+   * @param layerName schema name of the layer
+   * @param features number of features the layer is expected to hold
+   * @return true when completed and intact, false otherwise
+   */
+  synchronized boolean isCompleted(String layerName, long features){
+    var layer = completedLayers.get(layerName);
+    if(layer == null || layer.features != features){
+      return false;
+    }
+    var directory = manifestPath.toAbsolutePath().getParent();
+    for(var entry : layer.files.entrySet()){
+      var file = directory.resolve(entry.getKey()).toFile();
+      if(!file.isFile() || file.length() != entry.getValue()[0] || file.lastModified() != entry.getValue()[1]){
+        LOGGER.info(String.format("Checkpoint of layer %s invalid, %s missing or modified", layerName, entry.getKey()));
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Files of a completed layer
+   *
+   * @param layerName schema name of the layer
+   * @return files, empty when not completed
+   */
+  synchronized List<Path> getFiles(String layerName){
+    var layer = completedLayers.get(layerName);
+    if(layer == null){
+      return List.of();
+    }
+    var directory = manifestPath.toAbsolutePath().getParent();
+    var files = new ArrayList<Path>();
+    layer.files.keySet().stream().sorted().forEach(file -> files.add(directory.resolve(file)));
+    return files;
+  }
+
+  /**
+   * Record a layer as completed, appending it to the manifest on disk
+   *
+   * @param layerName schema name of the layer
+   * @param entityClass PLANit entity class persisted on the layer
+   * @param features number of features written
+   * @param files of the layer
+   */
+  synchronized void recordCompleted(String layerName, Class<?> entityClass, long features, List<Path> files){
+    var directory = manifestPath.toAbsolutePath().getParent();
+    var layer = new CompletedLayer(features);
+    try(BufferedWriter writer = Files.newBufferedWriter(manifestPath, StandardCharsets.UTF_8, StandardOpenOption.APPEND)){
+      for(var file : files){
+        var relativeFile = directory.relativize(file.toAbsolutePath());
+        var fileSize = file.toFile().length();
+        var modified = file.toFile().lastModified();
+        layer.files.put(relativeFile, new long[]{fileSize, modified});
+        writer.write(String.join(",", layerName, entityClass.getName(), String.valueOf(features),
+            relativeFile.toString(), String.valueOf(fileSize), String.valueOf(modified)));
+        writer.newLine();
+      }
+    }catch (IOException e){
+      var exception = new PlanItRunTimeException("Unable to record checkpoint of layer %s in %s", layerName, manifestPath.toString());
+      exception.initCause(e);
+      throw exception;
+    }
+    completedLayers.put(layerName, layer);
+  }
+}
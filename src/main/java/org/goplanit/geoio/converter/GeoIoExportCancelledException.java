@@ -0,0 +1,26 @@
+package org.goplanit.geoio.converter;
+
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+
+/**
+ * Thrown by GeoIO writers when their export is cancelled via a {@link GeoIoCancellationToken}. By the time it is thrown the
+ * data stores of the writer are disposed and the layers it wrote are removed, see
+ * {@link GeometryIoWriter#setCancellationToken(GeoIoCancellationToken)}
+ *
+ * @author markr
+ */
+public class GeoIoExportCancelledException extends PlanItRunTimeException {
+
+  /** generated UID */
+  private static final long serialVersionUID = -2813561238114829531L;
+
+  /**
+   * Constructor
+   *
+   * @param message to use, may contain format specifiers
+   * @param arguments for the message
+   */
+  public GeoIoExportCancelledException(String message, Object... arguments){
+    super(message, arguments);
+  }
+}
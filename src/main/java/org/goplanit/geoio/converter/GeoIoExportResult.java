@@ -0,0 +1,212 @@
+package org.goplanit.geoio.converter;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Result of a completed GeoIO export, i.e., the layers written with their files, feature counts and timings. Created by the
+ * writers upon completion of a write, see {@link GeometryIoWriter#getLastExportResult()}.
+ *
+ * @author markr
+ */
+public final class GeoIoExportResult {
+
+  /**
+   * Result of a single layer of the export
+   */
+  public static final class Layer {
+
+    /** schema name of the layer */
+    private final String name;
+
+    /** PLANit entity class persisted on the layer */
+    private final Class<?> entityClass;
+
+    /** number of features written */
+    private final long featureCount;
+
+    /** time taken to write the layer */
+    private final Duration duration;
+
+    /** files of the layer, excluding vector tiles */
+    private final List<Path> files;
+
+    /**
+     * Constructor
+     *
+     * @param name schema name of the layer
+     * @param entityClass PLANit entity class persisted on the layer
+     * @param featureCount number of features written
+     * @param duration time taken to write the layer
+     * @param files of the layer
+     */
+    Layer(String name, Class<?> entityClass, long featureCount, Duration duration, List<Path> files){
+      this.name = name;
+      this.entityClass = entityClass;
+      this.featureCount = featureCount;
+      this.duration = duration;
+      this.files = Collections.unmodifiableList(files);
+    }
+
+    /**
+     * Schema name of the layer
+     *
+     * @return name
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * PLANit entity class persisted on the layer
+     *
+     * @return entity class
+     */
+    public Class<?> getEntityClass() {
+      return entityClass;
+    }
+
+    /**
+     * Number of features written to the layer
+     *
+     * @return feature count
+     */
+    public long getFeatureCount() {
+      return featureCount;
+    }
+
+    /**
+     * Time taken to write the layer
+     *
+     * @return duration
+     */
+    public Duration getDuration() {
+      return duration;
+    }
+
+    /**
+     * Files of the layer, i.e., its shape file components, row and column parts, tiles and side tables. Vector tiles are
+     * not included
+     *
+     * @return files
+     */
+    public List<Path> getFiles() {
+      return files;
+    }
+
+    /**
+     * Size of the files of the layer
+     *
+     * @return size in bytes
+     */
+    public long getByteCount(){
+      return files.stream().mapToLong(file -> file.toFile().length()).sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+      return String.format("%s: %d features, %d files in %d ms", name, featureCount, files.size(), duration.toMillis());
+    }
+  }
+
+  /** layers of the export, in order of completion */
+  private final List<Layer> layers;
+
+  /** time taken by the export as a whole */
+  private final Duration duration;
+
+  /**
+   * Constructor
+   *
+   * @param layers of the export
+   * @param duration of the export
+   */
+  GeoIoExportResult(List<Layer> layers, Duration duration){
+    this.layers = Collections.unmodifiableList(layers);
+    this.duration = duration;
+  }
+
+  /**
+   * Combine the results of exports run concurrently, e.g., by the components of an intermodal writer, into a single result
+   *
+   * @param results to combine
+   * @param duration of the combined export
+   * @return combined result
+   */
+  public static GeoIoExportResult combine(Collection<GeoIoExportResult> results, Duration duration){
+    var layers = new ArrayList<Layer>();
+    results.forEach(result -> layers.addAll(result.getLayers()));
+    return new GeoIoExportResult(layers, duration);
+  }
+
+  /**
+   * Layers of the export
+   *
+   * @return layers
+   */
+  public List<Layer> getLayers() {
+    return layers;
+  }
+
+  /**
+   * Find a layer by its schema name
+   *
+   * @param name of the layer
+   * @return layer, null when not part of the export
+   */
+  public Layer getLayer(String name){
+    return layers.stream().filter(layer -> layer.getName().equals(name)).findFirst().orElse(null);
+  }
+
+  /**
+   * All files of the export
+   *
+   * @return files
+   */
+  public List<Path> getFiles(){
+    return layers.stream().flatMap(layer -> layer.getFiles().stream()).collect(Collectors.toList());
+  }
+
+  /**
+   * Number of features written over all layers
+   *
+   * @return feature count
+   */
+  public long getFeatureCount(){
+    return layers.stream().mapToLong(Layer::getFeatureCount).sum();
+  }
+
+  /**
+   * Size of all files of the export
+   *
+   * @return size in bytes
+   */
+  public long getByteCount(){
+    return layers.stream().mapToLong(Layer::getByteCount).sum();
+  }
+
+  /**
+   * Time taken by the export
+   *
+   * @return duration
+   */
+  public Duration getDuration() {
+    return duration;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return String.format("%d layers, %d features in %d ms", layers.size(), getFeatureCount(), duration.toMillis());
+  }
+}
@@ -0,0 +1,163 @@
+package org.goplanit.geoio.converter;
+
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Snapshot of the layers of an export, captured from the model by a writer, see for example
+ * {@link org.goplanit.geoio.converter.network.GeometryNetworkWriter#captureSnapshot(org.goplanit.network.LayeredNetwork)},
+ * and written afterwards. Capturing only extracts the attribute values into compact columns, so it is fast, after which the
+ * model can be changed again while the snapshot is written, e.g., to export intermediate states of an assignment or
+ * simulation without halting it. A snapshot can be written only once, a snapshot that is not to be written should be discarded
+ * instead, see {@link #discard()}.
+ *
+ * @author markr
+ */
+public final class GeoIoExportSnapshot {
+
+  /** writes of the captured layers, one per component writer */
+  private final List<Supplier<GeoIoExportResult>> componentWrites;
+
+  /** release of the resources held for the writes, one per component writer */
+  private final List<Runnable> componentDiscards;
+
+  /** number of features captured */
+  private final long featureCount;
+
+  /** approximate memory held by the captured values */
+  private final long byteCount;
+
+  /** flag indicating the snapshot is (being) written */
+  private final AtomicBoolean written = new AtomicBoolean(false);
+
+  /**
+   * Mark the snapshot as written
+   */
+  private void markWritten(){
+    if(written.getAndSet(true)){
+      throw new PlanItRunTimeException("GeoIO export snapshot is already written");
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param componentWrites writes of the captured layers
+   * @param componentDiscards release of the resources held for the writes
+   * @param featureCount number of features captured
+   * @param byteCount memory held by the captured values
+   */
+  GeoIoExportSnapshot(
+      List<Supplier<GeoIoExportResult>> componentWrites, List<Runnable> componentDiscards, long featureCount, long byteCount){
+    this.componentWrites = componentWrites;
+    this.componentDiscards = componentDiscards;
+    this.featureCount = featureCount;
+    this.byteCount = byteCount;
+  }
+
+  /**
+   * Combine the snapshots captured by several writers, e.g., the components of an intermodal writer, into a single snapshot
+   * whose components are written concurrently
+   *
+   * @param snapshots to combine, these should no longer be written individually
+   * @return combined snapshot
+   */
+  public static GeoIoExportSnapshot combine(Collection<GeoIoExportSnapshot> snapshots){
+    var componentWrites = new ArrayList<Supplier<GeoIoExportResult>>();
+    var componentDiscards = new ArrayList<Runnable>();
+    snapshots.forEach(snapshot -> {
+      snapshot.markWritten();
+      componentWrites.addAll(snapshot.componentWrites);
+      componentDiscards.addAll(snapshot.componentDiscards);
+    });
+    return new GeoIoExportSnapshot(componentWrites, componentDiscards,
+        snapshots.stream().mapToLong(GeoIoExportSnapshot::getFeatureCount).sum(),
+        snapshots.stream().mapToLong(GeoIoExportSnapshot::getByteCount).sum());
+  }
+
+  /**
+   * Write the snapshot on the calling thread
+   *
+   * @return export result
+   */
+  public GeoIoExportResult write(){
+    markWritten();
+    final long startNanos = System.nanoTime();
+    var results = componentWrites.stream().map(Supplier::get).collect(Collectors.toList());
+    return results.size() == 1 ? results.get(0) : GeoIoExportResult.combine(results, Duration.ofNanos(System.nanoTime() - startNanos));
+  }
+
+  /**
+   * Write the snapshot asynchronously on the default executor, see {@link GeometryIoWriter#getDefaultAsyncExecutor()}
+   *
+   * @return future of the export result
+   */
+  public CompletableFuture<GeoIoExportResult> writeAsync(){
+    return writeAsync(GeometryIoWriter.getDefaultAsyncExecutor());
+  }
+
+  /**
+   * Write the snapshot asynchronously, components of a combined snapshot are written concurrently. The writer(s) that
+   * captured the snapshot should not be used for another write until the returned future completes
+   *
+   * @param executor to write on
+   * @return future of the export result, completed exceptionally when the write fails or is cancelled
+   */
+  public CompletableFuture<GeoIoExportResult> writeAsync(Executor executor){
+    PlanItRunTimeException.throwIfNull(executor, "Executor for asynchronous write is null");
+    markWritten();
+    final long startNanos = System.nanoTime();
+    var futures = componentWrites.stream().map(
+        componentWrite -> CompletableFuture.supplyAsync(componentWrite, executor)).collect(Collectors.toList());
+    if(futures.size() == 1){
+      return futures.get(0);
+    }
+    return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).thenApply(done -> GeoIoExportResult.combine(
+        futures.stream().map(CompletableFuture::join).collect(Collectors.toList()), Duration.ofNanos(System.nanoTime() - startNanos)));
+  }
+
+  /**
+   * Discard the snapshot without writing it, releasing the resources held for writing it. Has no effect when the snapshot is
+   * already written
+   */
+  public void discard(){
+    if(!written.getAndSet(true)){
+      componentDiscards.forEach(Runnable::run);
+    }
+  }
+
+  /**
+   * Number of features captured
+   *
+   * @return feature count
+   */
+  public long getFeatureCount() {
+    return featureCount;
+  }
+
+  /**
+   * Approximate memory held by the captured values, excluding values held by reference such as strings and geometries
+   *
+   * @return size in bytes
+   */
+  public long getByteCount() {
+    return byteCount;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return String.format("%d features captured (%d bytes)", featureCount, byteCount);
+  }
+}
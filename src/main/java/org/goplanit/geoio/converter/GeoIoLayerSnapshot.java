@@ -0,0 +1,435 @@
+package org.goplanit.geoio.converter;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Immutable columnar copy of the attribute values of the entities of a layer, captured so the layer can be written while the
+ * entities themselves keep changing. Integer, long, float, double and boolean attributes are held in primitive arrays with a
+ * mask of null values, all other attributes, e.g., strings and geometries, by reference. So, geometries are not copied, which
+ * requires geometries of the model to be replaced rather than modified in place.
+ * <p>
+ *   A primitive column holding a value of another type than declared falls back to holding its values by reference, so
+ *   values are always written as extracted.
+ * </p>
+ *
+ * @author markr
+ */
+final class GeoIoLayerSnapshot {
+
+  /** initial capacity of the columns while capturing */
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /** approximate size of a reference */
+  private static final int REFERENCE_BYTES = 8;
+
+  /**
+   * Column of a single attribute
+   */
+  private abstract static class Column {
+
+    /** rows holding null */
+    protected final BitSet nulls = new BitSet();
+
+    /**
+     * Resize the column
+     *
+     * @param capacity new capacity
+     */
+    protected abstract void resize(int capacity);
+
+    /**
+     * Store a non-null value
+     *
+     * @param row to store at
+     * @param value to store
+     * @return false when the value cannot be held by this column, true otherwise
+     */
+    protected abstract boolean set(int row, Object value);
+
+    /**
+     * Value of a row not holding null
+     *
+     * @param row to collect value of
+     * @return value
+     */
+    protected abstract Object getValue(int row);
+
+    /**
+     * Size of a value in bytes
+     *
+     * @return size
+     */
+    protected abstract int getValueBytes();
+
+    /**
+     * Value of a row
+     *
+     * @param row to collect value of
+     * @return value, may be null
+     */
+    Object get(int row){
+      return nulls.get(row) ? null : getValue(row);
+    }
+  }
+
+  /** int valued column */
+  private static final class IntColumn extends Column {
+    private int[] values = new int[INITIAL_CAPACITY];
+
+    @Override
+    protected void resize(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override
+    protected boolean set(int row, Object value) {
+      if(!(value instanceof Integer)){
+        return false;
+      }
+      values[row] = (Integer) value;
+      return true;
+    }
+
+    @Override
+    protected Object getValue(int row) {
+      return values[row];
+    }
+
+    @Override
+    protected int getValueBytes() {
+      return Integer.BYTES;
+    }
+  }
+
+  /** long valued column */
+  private static final class LongColumn extends Column {
+    private long[] values = new long[INITIAL_CAPACITY];
+
+    @Override
+    protected void resize(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override
+    protected boolean set(int row, Object value) {
+      if(!(value instanceof Long)){
+        return false;
+      }
+      values[row] = (Long) value;
+      return true;
+    }
+
+    @Override
+    protected Object getValue(int row) {
+      return values[row];
+    }
+
+    @Override
+    protected int getValueBytes() {
+      return Long.BYTES;
+    }
+  }
+
+  /** float valued column */
+  private static final class FloatColumn extends Column {
+    private float[] values = new float[INITIAL_CAPACITY];
+
+    @Override
+    protected void resize(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override
+    protected boolean set(int row, Object value) {
+      if(!(value instanceof Float)){
+        return false;
+      }
+      values[row] = (Float) value;
+      return true;
+    }
+
+    @Override
+    protected Object getValue(int row) {
+      return values[row];
+    }
+
+    @Override
+    protected int getValueBytes() {
+      return Float.BYTES;
+    }
+  }
+
+  /** double valued column */
+  private static final class DoubleColumn extends Column {
+    private double[] values = new double[INITIAL_CAPACITY];
+
+    @Override
+    protected void resize(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override
+    protected boolean set(int row, Object value) {
+      if(!(value instanceof Double)){
+        return false;
+      }
+      values[row] = (Double) value;
+      return true;
+    }
+
+    @Override
+    protected Object getValue(int row) {
+      return values[row];
+    }
+
+    @Override
+    protected int getValueBytes() {
+      return Double.BYTES;
+    }
+  }
+
+  /** boolean valued column */
+  private static final class BooleanColumn extends Column {
+    private final BitSet values = new BitSet();
+
+    @Override
+    protected void resize(int capacity) {
+      /* bit sets grow on demand */
+    }
+
+    @Override
+    protected boolean set(int row, Object value) {
+      if(!(value instanceof Boolean)){
+        return false;
+      }
+      values.set(row, (Boolean) value);
+      return true;
+    }
+
+    @Override
+    protected Object getValue(int row) {
+      return values.get(row);
+    }
+
+    @Override
+    protected int getValueBytes() {
+      return 1;
+    }
+  }
+
+  /** column holding values by reference */
+  private static final class ReferenceColumn extends Column {
+    private Object[] values;
+
+    /**
+     * Constructor
+     *
+     * @param capacity initial capacity
+     */
+    private ReferenceColumn(int capacity){
+      this.values = new Object[capacity];
+    }
+
+    /**
+     * Copy the values of another column
+     *
+     * @param column to copy
+     * @param capacity of the copy
+     * @param numberOfRows to copy
+     * @return copy
+     */
+    private static ReferenceColumn copyOf(Column column, int capacity, int numberOfRows){
+      var copy = new ReferenceColumn(capacity);
+      for(int row = 0; row < numberOfRows; ++row){
+        copy.values[row] = column.get(row);
+      }
+      return copy;
+    }
+
+    @Override
+    protected void resize(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override
+    protected boolean set(int row, Object value) {
+      values[row] = value;
+      return true;
+    }
+
+    @Override
+    Object get(int row) {
+      return values[row];
+    }
+
+    @Override
+    protected Object getValue(int row) {
+      return values[row];
+    }
+
+    @Override
+    protected int getValueBytes() {
+      return REFERENCE_BYTES;
+    }
+  }
+
+  /**
+   * Create the column for an attribute type as used in feature descriptions
+   *
+   * @param attributeType to create column for
+   * @return created column
+   */
+  private static Column createColumn(String attributeType){
+    switch (attributeType){
+      case "Integer":
+      case "Int":
+      case "java.lang.Integer":
+        return new IntColumn();
+      case "Long":
+      case "java.lang.Long":
+        return new LongColumn();
+      case "Float":
+      case "java.lang.Float":
+        return new FloatColumn();
+      case "Double":
+      case "java.lang.Double":
+        return new DoubleColumn();
+      case "Boolean":
+      case "java.lang.Boolean":
+        return new BooleanColumn();
+      default:
+        return new ReferenceColumn(INITIAL_CAPACITY);
+    }
+  }
+
+  /**
+   * Builder capturing the values of a layer chunk by chunk
+   */
+  static final class Builder {
+
+    /** columns by attribute index */
+    private final Column[] columns;
+
+    /** capacity of the columns */
+    private int capacity = INITIAL_CAPACITY;
+
+    /** number of rows captured */
+    private int numberOfRows = 0;
+
+    /**
+     * Constructor
+     *
+     * @param attributeTypes of the layer in order of the attribute description
+     */
+    private Builder(String[] attributeTypes){
+      this.columns = Arrays.stream(attributeTypes).map(GeoIoLayerSnapshot::createColumn).toArray(Column[]::new);
+    }
+
+    /**
+     * Append the values of a chunk
+     *
+     * @param chunkValues attribute values per entity of the chunk, in order of the attribute description
+     */
+    void append(Object[][] chunkValues){
+      if(numberOfRows + chunkValues.length > capacity){
+        capacity = Math.max(numberOfRows + chunkValues.length, (int) Math.min(Integer.MAX_VALUE - 8, 2L * capacity));
+        for(var column : columns){
+          column.resize(capacity);
+        }
+      }
+      for(var entityValues : chunkValues){
+        for(int attributeIndex = 0; attributeIndex < columns.length; ++attributeIndex){
+          var value = entityValues[attributeIndex];
+          if(value == null){
+            columns[attributeIndex].nulls.set(numberOfRows);
+          }else if(!columns[attributeIndex].set(numberOfRows, value)){
+            columns[attributeIndex] = ReferenceColumn.copyOf(columns[attributeIndex], capacity, numberOfRows);
+            columns[attributeIndex].set(numberOfRows, value);
+          }
+        }
+        ++numberOfRows;
+      }
+    }
+
+    /**
+     * Complete the capture, trimming the columns to the number of rows captured
+     *
+     * @return snapshot
+     */
+    GeoIoLayerSnapshot build(){
+      for(var column : columns){
+        column.resize(numberOfRows);
+      }
+      return new GeoIoLayerSnapshot(columns.clone(), numberOfRows);
+    }
+  }
+
+  /** columns by attribute index */
+  private final Column[] columns;
+
+  /** number of rows */
+  private final int numberOfRows;
+
+  /**
+   * Constructor
+   *
+   * @param columns by attribute index
+   * @param numberOfRows captured
+   */
+  private GeoIoLayerSnapshot(Column[] columns, int numberOfRows){
+    this.columns = columns;
+    this.numberOfRows = numberOfRows;
+  }
+
+  /**
+   * Create a builder for a layer
+   *
+   * @param attributeTypes of the layer in order of the attribute description
+   * @return created builder
+   */
+  static Builder builder(String[] attributeTypes){
+    return new Builder(attributeTypes);
+  }
+
+  /**
+   * Number of rows, i.e., entities captured
+   *
+   * @return number of rows
+   */
+  int size(){
+    return numberOfRows;
+  }
+
+  /**
+   * Approximate memory held by the snapshot, excluding the objects held by reference
+   *
+   * @return size in bytes
+   */
+  long getByteCount(){
+    long bytes = 0;
+    for(var column : columns){
+      bytes += (long) numberOfRows * column.getValueBytes() + column.nulls.size() / Byte.SIZE;
+    }
+    return bytes;
+  }
+
+  /**
+   * Materialise the attribute values of a range of rows
+   *
+   * @param firstRow of the range
+   * @param count number of rows
+   * @return attribute values per row, in order of the attribute description
+   */
+  Object[][] getRows(int firstRow, int count){
+    var rows = new Object[count][];
+    for(int index = 0; index < count; ++index){
+      var row = new Object[columns.length];
+      for(int attributeIndex = 0; attributeIndex < columns.length; ++attributeIndex){
+        row[attributeIndex] = columns[attributeIndex].get(firstRow + index);
+      }
+      rows[index] = row;
+    }
+    return rows;
+  }
+}
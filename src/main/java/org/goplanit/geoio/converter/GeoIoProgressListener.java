@@ -0,0 +1,44 @@
+package org.goplanit.geoio.converter;
+
+/**
+ * Listener to progress of a GeoIO writer. Progress is reported per chunk of extracted entities, so at most every
+ * {@link org.goplanit.geoio.util.GeoIoWriterSettings#getAttributeExtractionChunkSize()} features. Callbacks are made on the
+ * writing thread, which may differ per layer when writers run concurrently (e.g., as part of an intermodal writer), so
+ * implementations should be thread safe and return quickly.
+ *
+ * @author markr
+ */
+public interface GeoIoProgressListener {
+
+  /** listener ignoring all progress */
+  GeoIoProgressListener NONE = new GeoIoProgressListener() {};
+
+  /**
+   * A layer is about to be written
+   *
+   * @param layerName schema name of the layer
+   * @param entityClass PLANit entity class persisted on the layer
+   */
+  default void onLayerStarted(String layerName, Class<?> entityClass){
+  }
+
+  /**
+   * A chunk of features has been written (or handed to the file writers of) the layer
+   *
+   * @param layerName schema name of the layer
+   * @param layerFeaturesDone features of the layer done so far
+   * @param totalFeaturesDone features of all layers of the current write done so far
+   */
+  default void onProgress(String layerName, long layerFeaturesDone, long totalFeaturesDone){
+  }
+
+  /**
+   * A layer is completed
+   *
+   * @param layerName schema name of the layer
+   * @param layerFeatures number of features written to the layer
+   * @param totalFeaturesDone features of all layers of the current write done so far
+   */
+  default void onLayerCompleted(String layerName, long layerFeatures, long totalFeaturesDone){
+  }
+}
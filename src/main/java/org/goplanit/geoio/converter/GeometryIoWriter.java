@@ -1,26 +1,54 @@
 package org.goplanit.geoio.converter;
 
+import org.apache.commons.io.FileUtils;
 import org.geotools.data.DataStore;
 import org.geotools.data.Transaction;
 import org.goplanit.converter.CrsWriterImpl;
 import org.goplanit.converter.idmapping.IdMapperType;
 import org.goplanit.geoio.converter.network.GeometryNetworkWriterSettings;
+import org.goplanit.geoio.converter.vectortile.VectorTileLayerPyramidWriter;
+import org.goplanit.geoio.jfr.GeoIoBatchCommitEvent;
+import org.goplanit.geoio.jfr.GeoIoLayerWriteEvent;
+import org.goplanit.geoio.jfr.GeoIoWriterEvent;
 import org.goplanit.geoio.util.GeoIODataStoreManager;
+import org.goplanit.geoio.util.GeoIoAttributeExtension;
 import org.goplanit.geoio.util.GeoIoFeatureTypeBuilder;
+import org.goplanit.geoio.util.GeoIoMappedIdCache;
 import org.goplanit.geoio.util.GeoIoWriterSettings;
+import org.goplanit.geoio.util.ListAttributeEncoder;
 import org.goplanit.geoio.util.PlanitEntityFeatureTypeContext;
 import org.goplanit.utils.exceptions.PlanItRunTimeException;
 import org.goplanit.utils.id.ExternalIdAble;
 import org.goplanit.utils.id.ManagedId;
 import org.goplanit.utils.locale.CountryNames;
 import org.goplanit.utils.misc.Pair;
+import org.goplanit.utils.misc.Triple;
+import org.locationtech.jts.geom.Geometry;
 import org.opengis.feature.simple.SimpleFeatureType;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Writer to persist a PLANit network to disk in a geometry centric format such as Shape files. Id mapping default is
@@ -34,9 +62,169 @@ public abstract class GeometryIoWriter<T> extends CrsWriterImpl<T> {
   /** the logger to use */
   private static final Logger LOGGER = Logger.getLogger(GeometryIoWriter.class.getCanonicalName());
 
+  /** suffix of the side table with list valued attributes exceeding the attribute length of a layer */
+  public static final String OVERFLOW_TABLE_SUFFIX = "_overflow.csv";
+
+  /** suffix of the checkpoint manifest of a writer, prefixed with the writer's class name */
+  public static final String CHECKPOINT_MANIFEST_SUFFIX = "_checkpoint.csv";
+
+  /** minimum number of entities per call of a column attribute extension when extracting in parallel */
+  private static final int MIN_COLUMN_SLICE_SIZE = 256;
+
   /** writer settings to use */
   private final GeoIoWriterSettings settings;
 
+  /** cache of mapped ids, possibly shared with other writers of the same export */
+  private GeoIoMappedIdCache mappedIdCache;
+
+  /** flag indicating the mapped id cache is provided by the writer of the parent entities */
+  private boolean parentMappedIdCache;
+
+  /** memory budget of the export's buffers, shared by all layers and possibly by other writers of the same export */
+  private ExportMemoryBudget exportMemoryBudget;
+
+  /** flag indicating the export memory budget is provided by the writer of the export as a whole */
+  private boolean parentExportMemoryBudget;
+
+  /** PLANit entity classes for which this writer persisted a layer, used to only dispose of this writer's data stores */
+  private final Set<Class<?>> persistedEntityClasses;
+
+  /** number of features written since the start of the current write */
+  private final AtomicLong writtenFeatures = new AtomicLong();
+
+  /** layers written since the start of the current write, in order of completion */
+  private final Queue<GeoIoExportResult.Layer> writtenLayers = new ConcurrentLinkedQueue<>();
+
+  /** schema names of the layers started since the start of the current write, removed when the write is cancelled */
+  private final Set<String> startedSchemaNames = ConcurrentHashMap.newKeySet();
+
+  /** listener to report progress to */
+  private GeoIoProgressListener progressListener = GeoIoProgressListener.NONE;
+
+  /** token to check for cancellation */
+  private GeoIoCancellationToken cancellationToken = GeoIoCancellationToken.create();
+
+  /** start of the current write */
+  private long writeStartNanos;
+
+  /** result of the last completed write, null when none */
+  private volatile GeoIoExportResult lastExportResult;
+
+  /** manifest of the current write's completed layers, null when not checkpointing */
+  private GeoIoCheckpointManifest checkpointManifest;
+
+  /** snapshot being captured, null when not capturing, see {@link #captureWriteSnapshot(Runnable)} */
+  private volatile SnapshotCapture snapshotCapture;
+
+  /**
+   * Holder of the default executor of asynchronous writes, only created when used
+   */
+  private static final class DefaultAsyncExecutor {
+
+    /** cached pool of daemon threads, so pending exports do not prevent the JVM from exiting */
+    private static final ExecutorService INSTANCE = Executors.newCachedThreadPool(runnable -> {
+      var thread = new Thread(runnable, "geoio-async-writer");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Holder of the executor writing the part files and tiles of layers, shared by all layers and writers, only created when
+   * used
+   */
+  private static final class LayerWriterExecutor {
+
+    /** fixed pool of daemon threads, one per processor, file writes of concurrent layers queue rather than add threads */
+    private static final ExecutorService INSTANCE = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(), runnable -> {
+          var thread = new Thread(runnable, "geoio-layer-writer");
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /**
+   * Size of the files of a layer in the output directory, i.e., its shape file components, row and column parts and side tables
+   *
+   * @param featureSchemaName of the layer
+   * @return size in bytes
+   */
+  private long computeLayerBytes(String featureSchemaName){
+    try {
+      return findLayerFiles(featureSchemaName).stream().mapToLong(file -> file.toFile().length()).sum();
+    }catch (PlanItRunTimeException e){
+      return 0;
+    }
+  }
+
+  /**
+   * Directories that may hold files of layers, i.e., the output directory, the tiles directory and each tile's directory
+   *
+   * @return directories
+   */
+  private List<Path> findLayerDirectories(){
+    var outputDirectory = Path.of(getSettings().getOutputDirectory());
+    var tilesDirectory = outputDirectory.resolve(GeometryLayerTileWriter.TILES_DIRECTORY);
+    var directories = new ArrayList<>(List.of(outputDirectory, tilesDirectory));
+    if(Files.isDirectory(tilesDirectory)) {
+      try (var tileDirectories = Files.list(tilesDirectory)) {
+        tileDirectories.filter(Files::isDirectory).sorted().forEach(directories::add);
+      } catch (IOException e) {
+        LOGGER.warning(String.format("Unable to list tiles in %s: %s", tilesDirectory, e.getMessage()));
+      }
+    }
+    return directories;
+  }
+
+  /**
+   * Files of a layer, i.e., its shape file components, row and column parts, tiles, tile manifest and side tables. Vector
+   * tiles are not included
+   *
+   * @param featureSchemaName of the layer
+   * @return files
+   */
+  private List<Path> findLayerFiles(String featureSchemaName){
+    return findLayerDirectories().stream().flatMap(
+        directory -> GeoIODataStoreManager.findLayerFiles(directory, featureSchemaName).stream()).collect(Collectors.toList());
+  }
+
+  /**
+   * Remove all files of a layer, i.e., its files, see {@link #findLayerFiles(String)}, and its vector tile pyramid
+   *
+   * @param featureSchemaName of the layer
+   */
+  private void deleteLayer(String featureSchemaName){
+    int deleted = 0;
+    for(var directory : findLayerDirectories()){
+      deleted += GeoIODataStoreManager.deleteLayerFiles(directory, featureSchemaName);
+    }
+
+    var pyramidDirectory = Path.of(
+        getSettings().getOutputDirectory(), VectorTileLayerPyramidWriter.VECTOR_TILES_DIRECTORY, featureSchemaName).toFile();
+    try {
+      FileUtils.deleteDirectory(pyramidDirectory);
+    } catch (IOException e) {
+      LOGGER.warning(String.format("Unable to remove vector tiles of layer %s: %s", featureSchemaName, e.getMessage()));
+    }
+    LOGGER.fine(String.format("Removed %d files of cancelled layer %s", deleted, featureSchemaName));
+  }
+
+  /**
+   * Discard the output of a cancelled write, i.e., dispose of this writer's data stores and remove the layers started by the
+   * write. When appending to existing layers, layers are not removed since they hold features of earlier writes, so they may
+   * be partially extended
+   */
+  private void discardCancelledWrite(){
+    disposeDataStores();
+    if(getSettings().isAppendToExistingLayers()){
+      LOGGER.warning(String.format("Write cancelled, appended layers %s may be partially extended", startedSchemaNames));
+      return;
+    }
+    startedSchemaNames.forEach(this::deleteLayer);
+    LOGGER.warning(String.format("Write cancelled, removed layers %s", startedSchemaNames));
+  }
+
   /**
    * Given the feature contexts for the available GIS features, find the one where the context matches a given PLANit entity class
    *
@@ -67,50 +255,764 @@ public abstract class GeometryIoWriter<T> extends CrsWriterImpl<T> {
   }
 
   /**
-   * Writer the geometry layer with the PLANit entities available in the container
+   * Extract the attribute values of a chunk of PLANit entities, in parallel if so desired. Values are ordered as the attribute
+   * description of the feature context. Attribute extensions computed per chunk are not extracted per entity, instead each
+   * fills its column in one call, or one call per slice of the chunk when extracting in parallel. When an arena is provided,
+   * each entity's geometry is staged in it as soon as it is extracted
+   *
+   * @param <TT> type of PLANit entity
+   * @param chunk of entities to extract values for
+   * @param planitEntityFeatureContext with the attributes to extract
+   * @param parallel when true extract values in parallel, otherwise sequentially
+   * @param geometryIndex index of the geometry attribute, -1 when absent
+   * @param arena to stage geometries in, null when not staged
+   * @return extracted values per entity of the chunk
+   */
+  private static <TT> Object[][] extractAttributeValues(
+      List<TT> chunk, PlanitEntityFeatureTypeContext<TT> planitEntityFeatureContext, boolean parallel, int geometryIndex, CoordinateArena arena){
+    var attributeConversions = planitEntityFeatureContext.getAttributeDescription();
+    var attributeExtensions = planitEntityFeatureContext.getAttributeExtensions();
+    final int firstExtensionIndex = attributeConversions.size() - attributeExtensions.size();
+    final var perEntity = new boolean[attributeConversions.size()];
+    for(int attributeIndex = 0; attributeIndex < perEntity.length; ++attributeIndex){
+      perEntity[attributeIndex] =
+          attributeIndex < firstExtensionIndex || !attributeExtensions.get(attributeIndex - firstExtensionIndex).isColumn();
+    }
+
+    final var values = new Object[chunk.size()][];
+    var indices = IntStream.range(0, chunk.size());
+    if(parallel){
+      indices = indices.parallel();
+    }
+    indices.forEach( index -> {
+      var entity = chunk.get(index);
+      var entityValues = new Object[attributeConversions.size()];
+      for(int attributeIndex = 0; attributeIndex < entityValues.length; ++attributeIndex){
+        if(perEntity[attributeIndex]) {
+          entityValues[attributeIndex] = attributeConversions.get(attributeIndex).third().apply(entity);
+        }
+      }
+      if(arena != null && geometryIndex >= 0){
+        entityValues[geometryIndex] = arena.stage((Geometry) entityValues[geometryIndex]);
+      }
+      values[index] = entityValues;
+    });
+
+    /* column extensions, each (slice) writes its own attribute index of its own rows */
+    final int parallelism = ForkJoinPool.getCommonPoolParallelism();
+    final int sliceSize = parallel ?
+        Math.max(MIN_COLUMN_SLICE_SIZE, (chunk.size() + parallelism - 1) / parallelism) : Math.max(1, chunk.size());
+    final int numberOfSlices = (chunk.size() + sliceSize - 1) / sliceSize;
+    var columnTasks = IntStream.range(0, attributeExtensions.size() * numberOfSlices)
+        .filter(task -> attributeExtensions.get(task / numberOfSlices).isColumn());
+    if(parallel){
+      columnTasks = columnTasks.parallel();
+    }
+    columnTasks.forEach(task -> {
+      int extensionIndex = task / numberOfSlices;
+      int firstRow = (task % numberOfSlices) * sliceSize;
+      attributeExtensions.get(extensionIndex).extractColumn(
+          chunk.subList(firstRow, Math.min(chunk.size(), firstRow + sliceSize)), values, firstRow, firstExtensionIndex + extensionIndex);
+    });
+    return values;
+  }
+
+  /**
+   * Append the attribute extensions of the settings applicable to the context's entity class to the context, replacing the
+   * feature type by one including their attributes. The context is modified in place, so it keeps the extensions after the
+   * layer is written
+   *
+   * @param <TT> type of PLANit entity
+   * @param featureType without extensions
+   * @param planitEntityFeatureContext to append extensions to
+   * @return feature type to use
+   */
+  private <TT> SimpleFeatureType applyAttributeExtensions(
+      SimpleFeatureType featureType, PlanitEntityFeatureTypeContext<TT> planitEntityFeatureContext){
+    var attributeExtensions = getSettings().getAttributeExtensions(planitEntityFeatureContext.getPlanitEntityClass());
+    if(attributeExtensions.equals(planitEntityFeatureContext.getAttributeExtensions())){
+      return featureType;
+    }
+    planitEntityFeatureContext.setAttributeExtensions(attributeExtensions);
+    return GeoIoFeatureTypeBuilder.createSimpleFeatureType(
+        planitEntityFeatureContext, featureType.getCoordinateReferenceSystem(), featureType.getTypeName());
+  }
+
+  /**
+   * Consumer of the attribute values of a chunk of PLANit entities
+   */
+  @FunctionalInterface
+  private interface ChunkValuesConsumer {
+
+    /**
+     * Consume the attribute values of a chunk
+     *
+     * @param chunkValues attribute values per entity
+     * @param lease of the chunk's reservation of the export memory budget, to be retained while values are written
+     *              asynchronously
+     * @throws IOException when writing fails
+     */
+    void accept(Object[][] chunkValues, ExportMemoryBudget.Lease lease) throws IOException;
+  }
+
+  /**
+   * Source of the attribute values of a layer, chunk by chunk
+   */
+  private interface ChunkValuesSource {
+
+    /**
+     * Check if more values are available
+     *
+     * @return true when available, false otherwise
+     */
+    boolean hasNext();
+
+    /**
+     * Provide the attribute values of the next chunk
+     *
+     * @param maxChunkSize maximum number of entities of the chunk
+     * @return attribute values per entity of the chunk
+     */
+    Object[][] next(int maxChunkSize);
+  }
+
+  /**
+   * Source extracting the attribute values of PLANit entities
+   *
+   * @param <TT> type of PLANit entity
+   * @param planitEntityFeatureContext the context to convert instances to features
+   * @param planitEntities to extract
+   * @param parallel when true attribute values of each chunk are extracted in parallel, otherwise sequentially
+   * @param settings determining whether, and how, geometries are staged off-heap, see {@link CoordinateArena}
+   * @return created source
+   */
+  private static <TT> ChunkValuesSource createEntityChunkSource(
+      PlanitEntityFeatureTypeContext<TT> planitEntityFeatureContext, Iterable<TT> planitEntities, boolean parallel, GeoIoWriterSettings settings){
+    final var entityIter = planitEntities.iterator();
+    final int geometryIndex = settings.isOffHeapCoordinateStaging() ? findGeometryAttributeIndex(planitEntityFeatureContext) : -1;
+    final double quantisationGrid = settings.getCoordinateQuantisationGrid();
+    return new ChunkValuesSource() {
+      @Override
+      public boolean hasNext() {
+        return entityIter.hasNext();
+      }
+
+      @Override
+      public Object[][] next(int maxChunkSize) {
+        var chunk = new ArrayList<TT>(maxChunkSize);
+        while(chunk.size() < maxChunkSize && entityIter.hasNext()){
+          chunk.add(entityIter.next());
+        }
+        /* a new arena per chunk, so its buffers are released together with the chunk */
+        var arena = geometryIndex >= 0 ? new CoordinateArena(quantisationGrid) : null;
+        return extractAttributeValues(chunk, planitEntityFeatureContext, parallel, geometryIndex, arena);
+      }
+    };
+  }
+
+  /**
+   * Source providing the attribute values captured in a snapshot
+   *
+   * @param layerSnapshot to provide values of
+   * @return created source
+   */
+  private static ChunkValuesSource createSnapshotChunkSource(GeoIoLayerSnapshot layerSnapshot){
+    return new ChunkValuesSource() {
+      private int nextRow = 0;
+
+      @Override
+      public boolean hasNext() {
+        return nextRow < layerSnapshot.size();
+      }
+
+      @Override
+      public Object[][] next(int maxChunkSize) {
+        var rows = layerSnapshot.getRows(nextRow, Math.min(maxChunkSize, layerSnapshot.size() - nextRow));
+        nextRow += rows.length;
+        return rows;
+      }
+    };
+  }
+
+  /**
+   * Layer captured in a snapshot, with all information required to write it afterwards
+   *
+   * @param <TT> type of PLANit entity
+   */
+  private static final class CapturedLayer<TT> {
+
+    /** feature type, including attribute extensions */
+    private final SimpleFeatureType featureType;
+
+    /** the context the values were extracted with */
+    private final PlanitEntityFeatureTypeContext<TT> planitEntityFeatureContext;
+
+    /** logging prefix to use */
+    private final String loggingPrefix;
+
+    /** data store to write to */
+    private final DataStore entityDataStore;
+
+    /** schema name of the layer */
+    private final String featureSchemaName;
+
+    /** the captured values */
+    private final GeoIoLayerSnapshot layerSnapshot;
+
+    /** flag indicating chunks are processed in parallel */
+    private final boolean parallel;
+
+    /** list attribute values spilled while capturing */
+    private final ListAttributeEncoder listAttributeOverflow;
+
+    /**
+     * Constructor
+     *
+     * @param featureType to use
+     * @param planitEntityFeatureContext the values were extracted with
+     * @param loggingPrefix to use
+     * @param entityDataStore to write to
+     * @param featureSchemaName of the layer
+     * @param layerSnapshot captured values
+     * @param parallel flag indicating chunks are processed in parallel
+     * @param listAttributeOverflow spilled list attribute values
+     */
+    private CapturedLayer(SimpleFeatureType featureType, PlanitEntityFeatureTypeContext<TT> planitEntityFeatureContext,
+                          String loggingPrefix, DataStore entityDataStore, String featureSchemaName,
+                          GeoIoLayerSnapshot layerSnapshot, boolean parallel, ListAttributeEncoder listAttributeOverflow){
+      this.featureType = featureType;
+      this.planitEntityFeatureContext = planitEntityFeatureContext;
+      this.loggingPrefix = loggingPrefix;
+      this.entityDataStore = entityDataStore;
+      this.featureSchemaName = featureSchemaName;
+      this.layerSnapshot = layerSnapshot;
+      this.parallel = parallel;
+      this.listAttributeOverflow = listAttributeOverflow;
+    }
+  }
+
+  /**
+   * State of a snapshot capture: the captured layers and the data stores detached for them
+   */
+  private static final class SnapshotCapture {
+
+    /** captured layers, in order of capture */
+    private final Queue<CapturedLayer<?>> layers = new ConcurrentLinkedQueue<>();
+
+    /** data stores detached from the data store manager, owned by the capture */
+    private final Queue<DataStore> dataStores = new ConcurrentLinkedQueue<>();
+
+    /** writes of files not part of a layer, deferred until the snapshot is written, in order of capture */
+    private final Queue<Runnable> deferredWrites = new ConcurrentLinkedQueue<>();
+
+    /** class of the PLANit container captured */
+    private Class<?> persistedClass;
+
+    /**
+     * Dispose of the data stores of the capture
+     */
+    private void disposeDataStores(){
+      DataStore dataStore;
+      while((dataStore = dataStores.poll()) != null){
+        GeoIODataStoreManager.dispose(dataStore);
+      }
+    }
+  }
+
+  /**
+   * Attribute names as used on the feature, with geometry attribute replaced by its GeoTools name
+   *
+   * @param planitEntityFeatureContext to extract attribute names from
+   * @return attribute names in order of the attribute description
+   */
+  private static String[] createFeatureAttributeNames(PlanitEntityFeatureTypeContext<?> planitEntityFeatureContext){
+    var attributeConversions = planitEntityFeatureContext.getAttributeDescription();
+    var attributeNames = new String[attributeConversions.size()];
+    for(int attributeIndex = 0; attributeIndex < attributeNames.length; ++attributeIndex){
+      var attributeName = attributeConversions.get(attributeIndex).first();
+      attributeNames[attributeIndex] = attributeName.equals(planitEntityFeatureContext.getDefaultGeometryAttributeKey()) ?
+          GeoIoFeatureTypeBuilder.GEOTOOLS_GEOMETRY_ATTRIBUTE : attributeName;
+    }
+    return attributeNames;
+  }
+
+  /**
+   * Index of the geometry attribute
+   *
+   * @param planitEntityFeatureContext to find geometry attribute for
+   * @return index in the attribute description, -1 when absent
+   */
+  private static int findGeometryAttributeIndex(PlanitEntityFeatureTypeContext<?> planitEntityFeatureContext){
+    var attributeConversions = planitEntityFeatureContext.getAttributeDescription();
+    for(int attributeIndex = 0; attributeIndex < attributeConversions.size(); ++attributeIndex){
+      if(attributeConversions.get(attributeIndex).first().equals(planitEntityFeatureContext.getDefaultGeometryAttributeKey())){
+        return attributeIndex;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Extract the attribute values of the PLANit entities in chunks and pass each chunk on to the consumer. Values are not
+   * retained beyond their chunk. When configured, the coordinates of each chunk's geometries are staged off-heap while
+   * extracting, see {@link CoordinateArena}.
+   *
+   * <p>
+   *   Cancellation is checked before, and progress is reported after, each chunk. For memory bounded exports, each chunk is
+   *   reserved on the export memory budget before it is extracted, estimated from the rows of the previous chunk, waiting
+   *   while the budget is used up by other chunks of the export. Its reservation is adjusted to its actual size once
+   *   extracted and released once its rows are written. The chunk size is reduced when the rows of a chunk would exceed a
+   *   quarter of the budget.
+   * </p>
+   *
+   * @param <TT> type of PLANit entity to write
+   * @param planitEntityFeatureContext the context to convert instances to features
+   * @param featureSchemaName of the layer written
+   * @param chunkSource providing the values of the entities to persist
+   * @param parallel when true attribute values of each chunk are extracted in parallel, otherwise sequentially
+   * @param chunkConsumer to pass the values of each chunk to
+   * @return number of entities extracted
+   * @throws IOException when writing fails
+   */
+  private <TT> long extractInChunks(PlanitEntityFeatureTypeContext<TT> planitEntityFeatureContext,
+                                    String featureSchemaName,
+                                    ChunkValuesSource chunkSource,
+                                    boolean parallel,
+                                    ChunkValuesConsumer chunkConsumer) throws IOException {
+    final int maxChunkSize = getSettings().getAttributeExtractionChunkSize();
+    final var budget = exportMemoryBudget;
+    final long chunkBudget = budget.getCapacity() / 4;
+    int chunkSize = maxChunkSize;
+    long averageRowBytes = 0;
+    long numberOfEntities = 0;
+    while(chunkSource.hasNext()){
+      checkCancelled(featureSchemaName);
+      var lease = budget.acquire(averageRowBytes * chunkSize);
+      Object[][] chunkValues;
+      try {
+        chunkValues = chunkSource.next(chunkSize);
+        if(budget.isBounded()){
+          long chunkBytes = ExportMemoryBudget.estimateRowsBytes(Arrays.asList(chunkValues));
+          lease.resize(chunkBytes);
+          averageRowBytes = Math.max(1, chunkBytes / Math.max(1, chunkValues.length));
+          chunkSize = limitChunkSize(averageRowBytes, maxChunkSize, chunkBudget);
+        }
+        chunkConsumer.accept(chunkValues, lease);
+      }finally {
+        lease.release();
+      }
+      numberOfEntities += chunkValues.length;
+      progressListener.onProgress(featureSchemaName, numberOfEntities, writtenFeatures.addAndGet(chunkValues.length));
+    }
+    return numberOfEntities;
+  }
+
+  /**
+   * Check if the current write resumes from a checkpoint
+   *
+   * @return true when resuming, false otherwise
+   */
+  private boolean isResumingFromCheckpoint(){
+    return checkpointManifest != null && getSettings().isResumeFromCheckpoint();
+  }
+
+  /**
+   * Count the entities of a container
+   *
+   * @param planitEntities to count
+   * @return number of entities
+   */
+  private static long countEntities(Iterable<?> planitEntities){
+    long numberOfEntities = 0;
+    for(var iter = planitEntities.iterator(); iter.hasNext(); iter.next()){
+      ++numberOfEntities;
+    }
+    return numberOfEntities;
+  }
+
+  /**
+   * When resuming from a checkpoint, check if the layer was completed by an earlier export and is still intact, i.e., all its
+   * files are unchanged and it holds as many features as there are entities to persist. If so, the layer is reported as
+   * written without writing it
+   *
+   * @param <TT> type of PLANit entity to write
+   * @param planitEntityFeatureContext the context of the layer
+   * @param featureSchemaName of the layer
+   * @param numberOfEntities to persist
+   * @return true when completed and to be skipped, false otherwise
+   */
+  private <TT> boolean isCompletedByCheckpoint(PlanitEntityFeatureTypeContext<TT> planitEntityFeatureContext,
+                                               String featureSchemaName,
+                                               long numberOfEntities){
+    if(!isResumingFromCheckpoint() || !checkpointManifest.isCompleted(featureSchemaName, numberOfEntities)){
+      return false;
+    }
+
+    LOGGER.info(String.format("Layer %s completed according to checkpoint, skipped", featureSchemaName));
+    writtenLayers.add(new GeoIoExportResult.Layer(featureSchemaName, planitEntityFeatureContext.getPlanitEntityClass(),
+        numberOfEntities, Duration.ZERO, checkpointManifest.getFiles(featureSchemaName)));
+    progressListener.onLayerCompleted(featureSchemaName, numberOfEntities, writtenFeatures.addAndGet(numberOfEntities));
+    return true;
+  }
+
+  /**
+   * Size of the next chunk, such that its rows are estimated to fit the chunk budget given the size of the rows of the last
+   * chunk
+   *
+   * @param averageRowBytes estimated size of the rows of the last chunk, at least one
+   * @param maxChunkSize configured chunk size
+   * @param chunkBudget in bytes
+   * @return chunk size, at least one
+   */
+  private static int limitChunkSize(long averageRowBytes, int maxChunkSize, long chunkBudget){
+    return (int) Math.max(1, Math.min(maxChunkSize, chunkBudget / averageRowBytes));
+  }
+
+  /**
+   * Register the feature type and write the PLANit entities to its layer, either appending to an existing layer or replacing
+   * it. When replacing, the layer is either written as tiles when configured, see {@link GeometryLayerTileWriter}, or split
+   * into shards when exceeding the limits of the settings, see {@link GeometryLayerShardWriter}. When configured, a vector tile
+   * pyramid is generated from the same extracted values, see {@link VectorTileLayerPyramidWriter}
    *
    * @param <TT> type of PLANit entity to write
    * @param featureType to use
    * @param planitEntityFeatureContext the context to convert instances to features
-   * @param loggingPrefix to use
    * @param entityDataStore to use for persistence
    * @param featureSchemaName the feature lives under on the datastore
-   * @param planitEntities container to persist
+   * @param chunkSource providing the values of the entities to persist
+   * @param parallel when true attribute values of each chunk are extracted in parallel, otherwise sequentially
+   * @param append when true, features are appended to an existing compatible layer, otherwise the layer is replaced
+   * @return number of features written
+   * @throws IOException when writing fails
+   */
+  private <TT> long writeLayer(SimpleFeatureType featureType,
+                               PlanitEntityFeatureTypeContext<TT> planitEntityFeatureContext,
+                               DataStore entityDataStore,
+                               String featureSchemaName,
+                               ChunkValuesSource chunkSource,
+                               boolean parallel,
+                               boolean append) throws IOException {
+    final var attributeNames = createFeatureAttributeNames(planitEntityFeatureContext);
+
+    if(getSettings().isVectorTileOutput()){
+      try(var vectorTileWriter = new VectorTileLayerPyramidWriter(
+          Path.of(getSettings().getOutputDirectory(), VectorTileLayerPyramidWriter.VECTOR_TILES_DIRECTORY, featureSchemaName),
+          featureSchemaName,
+          featureType,
+          attributeNames,
+          featureType.getCoordinateReferenceSystem(),
+          getSettings().getVectorTileMinZoom(),
+          getSettings().getVectorTileMaxZoom())){
+        return writeLayerFeatures(featureType, planitEntityFeatureContext, entityDataStore, featureSchemaName, chunkSource, parallel,
+            append, attributeNames, vectorTileWriter);
+      }
+    }
+    return writeLayerFeatures(featureType, planitEntityFeatureContext, entityDataStore, featureSchemaName, chunkSource, parallel,
+        append, attributeNames, null);
+  }
+
+  /**
+   * Extract the attribute values in chunks, passing each chunk to the vector tile writer (if any) as well as the consumer
+   *
+   * @param <TT> type of PLANit entity to write
+   * @param planitEntityFeatureContext the context to convert instances to features
+   * @param featureSchemaName of the layer written
+   * @param chunkSource providing the values of the entities to persist
+   * @param parallel when true attribute values of each chunk are extracted in parallel, otherwise sequentially
+   * @param vectorTileWriter to pass chunks to as well, may be null
+   * @param chunkConsumer to pass chunks to
+   * @return number of entities extracted
+   * @throws IOException when writing fails
+   */
+  private <TT> long extractInChunks(PlanitEntityFeatureTypeContext<TT> planitEntityFeatureContext,
+                                    String featureSchemaName,
+                                    ChunkValuesSource chunkSource,
+                                    boolean parallel,
+                                    VectorTileLayerPyramidWriter vectorTileWriter,
+                                    ChunkValuesConsumer chunkConsumer) throws IOException {
+    if(vectorTileWriter == null){
+      return extractInChunks(planitEntityFeatureContext, featureSchemaName, chunkSource, parallel, chunkConsumer);
+    }
+    return extractInChunks(planitEntityFeatureContext, featureSchemaName, chunkSource, parallel, (chunkValues, lease) -> {
+      vectorTileWriter.add(chunkValues);
+      chunkConsumer.accept(chunkValues, lease);
+    });
+  }
+
+  /**
+   * Write the features of the layer, see {@link #writeLayer(SimpleFeatureType, PlanitEntityFeatureTypeContext, DataStore, String, ChunkValuesSource, boolean, boolean)}
+   *
+   * @param <TT> type of PLANit entity to write
+   * @param featureType to use
+   * @param planitEntityFeatureContext the context to convert instances to features
+   * @param entityDataStore to use for persistence
+   * @param featureSchemaName the feature lives under on the datastore
+   * @param chunkSource providing the values of the entities to persist
+   * @param parallel when true attribute values of each chunk are extracted in parallel, otherwise sequentially
+   * @param append when true, features are appended to an existing compatible layer, otherwise the layer is replaced
+   * @param attributeNames of the features
+   * @param vectorTileWriter to pass the extracted values to as well, may be null
+   * @return number of features written
+   * @throws IOException when writing fails
    */
-  protected <TT extends ManagedId> void writeGeometryLayerForEntity(SimpleFeatureType featureType,
-                                                                    PlanitEntityFeatureTypeContext<TT> planitEntityFeatureContext,
-                                                                    String loggingPrefix,
-                                                                    DataStore entityDataStore,
-                                                                    String featureSchemaName,
-                                                                    Iterable<TT> planitEntities) {
+  private <TT> long writeLayerFeatures(SimpleFeatureType featureType,
+                                       PlanitEntityFeatureTypeContext<TT> planitEntityFeatureContext,
+                                       DataStore entityDataStore,
+                                       String featureSchemaName,
+                                       ChunkValuesSource chunkSource,
+                                       boolean parallel,
+                                       boolean append,
+                                       String[] attributeNames,
+                                       VectorTileLayerPyramidWriter vectorTileWriter) throws IOException {
+    if(!append && getSettings().isTiledOutput()){
+      try(var tileWriter = new GeometryLayerTileWriter(
+          featureType, attributeNames, featureSchemaName, getSettings(), getLayerWriterExecutor())){
+        return extractInChunks(planitEntityFeatureContext, featureSchemaName, chunkSource, parallel, vectorTileWriter, tileWriter::write);
+      }
+    }
 
-    /* place feature on data store */
-    GeoIODataStoreManager.registerFeatureOnDataStore(entityDataStore, featureType);
+    if(!append){
+      try(var shardWriter = new GeometryLayerShardWriter(
+          featureType, attributeNames, entityDataStore, featureSchemaName, getSettings(), getLayerWriterExecutor())){
+        return extractInChunks(planitEntityFeatureContext, featureSchemaName, chunkSource, parallel, vectorTileWriter, shardWriter::write);
+      }
+    }
 
-    try ( var featureWriter =
+    /* appending is not sharded, the layer is extended as is */
+    boolean appending = GeoIODataStoreManager.registerFeatureOnDataStore(entityDataStore, featureType, true);
+    /* an existing layer may hold the attributes under truncated names or with the geometry elsewhere */
+    var featureAttributeNames = appending ?
+        GeoIODataStoreManager.getAppendAttributeNames(entityDataStore, featureType) : attributeNames;
+    try ( var featureWriter = appending ?
+              entityDataStore.getFeatureWriterAppend(featureSchemaName, Transaction.AUTO_COMMIT) :
               entityDataStore.getFeatureWriter(featureSchemaName, Transaction.AUTO_COMMIT)) {
-      for(var planitEntity : planitEntities){
-        var entityFeature = featureWriter.next();
-        var attributeConversions = planitEntityFeatureContext.getAttributeDescription();
-        for(var attributeConversion : attributeConversions) {
-
-          if(attributeConversion.first().equals(planitEntityFeatureContext.getDefaultGeometryAttributeKey())) {
-            /* geometry attribute */
-            entityFeature.setAttribute(GeoIoFeatureTypeBuilder.GEOTOOLS_GEOMETRY_ATTRIBUTE, attributeConversion.third().apply(planitEntity));
-          }else{
-            /* regular attribute */
-            entityFeature.setAttribute(attributeConversion.first(), attributeConversion.third().apply(planitEntity));
+      return extractInChunks(planitEntityFeatureContext, featureSchemaName, chunkSource, parallel, vectorTileWriter, (chunkValues, lease) -> {
+        var event = new GeoIoBatchCommitEvent();
+        event.begin();
+        for(var entityValues : chunkValues){
+          var entityFeature = featureWriter.next();
+          for(int attributeIndex = 0; attributeIndex < featureAttributeNames.length; ++attributeIndex) {
+            entityFeature.setAttribute(featureAttributeNames[attributeIndex], entityValues[attributeIndex]);
           }
+          featureWriter.write();
         }
-        featureWriter.write();
+        if(event.shouldCommit()){
+          event.setEntityClass(planitEntityFeatureContext.getPlanitEntityClass()).setLayerId(featureSchemaName).setFeatureCount(chunkValues.length);
+          event.commit();
+        }
+      });
+    }
+  }
+
+  /**
+   * Writer the geometry layer with the PLANit entities available in the container. Entities are processed in chunks, the
+   * attribute values (including geometries) of each chunk are extracted first, after which they are written to the feature
+   * writer sequentially. Values are not retained beyond their chunk, so derived geometries that are not part of the model
+   * can be generated on the fly without increasing memory use.
+   * <p>
+   *   When configured to append to existing layers, features are added to an existing layer with a compatible schema rather
+   *   than replacing it, so a layer can be written in several calls. Appends to the same data store are serialised.
+   *   Otherwise, a layer is written as spatial tiles when configured, or split into part files when exceeding the feature,
+   *   size or field limits of the settings. Either way, files are written in parallel.
+   * </p>
+   * <p>
+   *   Progress is reported to the progress listener and cancellation is checked before the layer is started and after each
+   *   chunk, see {@link #setProgressListener(GeoIoProgressListener)} and {@link #setCancellationToken(GeoIoCancellationToken)}.
+   * </p>
+   * <p>
+   *   When checkpointing, the completed layer is recorded in the checkpoint manifest. When resuming, a layer recorded as
+   *   completed and still intact is skipped altogether, see {@link GeoIoWriterSettings#setResumeFromCheckpoint(boolean)}.
+   * </p>
+   * <p>
+   *   When capturing a snapshot, the attribute values are only captured and the layer is written when the snapshot is, see
+   *   {@link #captureWriteSnapshot(Runnable)}.
+   * </p>
+   * <p>
+   *   The attribute extensions of the settings applicable to the entity class are set on the given context, replacing any
+   *   set before, see {@link GeoIoWriterSettings#addAttributeExtension(GeoIoAttributeExtension)}. So the context is modified
+   *   by the call and callers sharing a context across writers should not rely on its extensions remaining unchanged. The
+   *   given feature type is replaced by one including the extensions' attributes when the context's extensions change.
+   * </p>
+   *
+   * @param <TT> type of PLANit entity to write
+   * @param featureType to use
+   * @param planitEntityFeatureContext the context to convert instances to features, its attribute extensions are replaced
+   * @param loggingPrefix to use
+   * @param entityDataStore to use for persistence
+   * @param featureSchemaName the feature lives under on the datastore
+   * @param planitEntities container to persist
+   * @param parallel when true attribute values of each chunk are extracted in parallel, otherwise sequentially
+   */
+  protected <TT> void writeGeometryLayerForEntity(SimpleFeatureType featureType,
+                                                  PlanitEntityFeatureTypeContext<TT> planitEntityFeatureContext,
+                                                  String loggingPrefix,
+                                                  DataStore entityDataStore,
+                                                  String featureSchemaName,
+                                                  Iterable<TT> planitEntities,
+                                                  boolean parallel) {
+
+    checkCancelled(featureSchemaName);
+    final long layerStartNanos = System.nanoTime();
+    featureType = applyAttributeExtensions(featureType, planitEntityFeatureContext);
+    persistedEntityClasses.add(planitEntityFeatureContext.getPlanitEntityClass());
+    var listAttributeEncoder = planitEntityFeatureContext.getListAttributeEncoder();
+    listAttributeEncoder.reset(getSettings().getListAttributeOverflowPolicy());
+
+    var capture = snapshotCapture;
+    if(capture != null){
+      capture.layers.add(new CapturedLayer<>(featureType, planitEntityFeatureContext, loggingPrefix, entityDataStore,
+          featureSchemaName, captureLayer(planitEntityFeatureContext, featureSchemaName, planitEntities, parallel), parallel,
+          listAttributeEncoder.detachOverflow()));
+      return;
+    }
+
+    if(isResumingFromCheckpoint() &&
+        isCompletedByCheckpoint(planitEntityFeatureContext, featureSchemaName, countEntities(planitEntities))){
+      return;
+    }
+    writeLayerValues(featureType, planitEntityFeatureContext, loggingPrefix, entityDataStore, featureSchemaName,
+        createEntityChunkSource(planitEntityFeatureContext, planitEntities, parallel, getSettings()), parallel, listAttributeEncoder, layerStartNanos);
+  }
+
+  /**
+   * Capture the attribute values of the PLANit entities of a layer
+   *
+   * @param <TT> type of PLANit entity to capture
+   * @param planitEntityFeatureContext the context to convert instances to features
+   * @param featureSchemaName of the layer
+   * @param planitEntities to capture
+   * @param parallel when true attribute values of each chunk are extracted in parallel, otherwise sequentially
+   * @return captured values
+   */
+  private <TT> GeoIoLayerSnapshot captureLayer(PlanitEntityFeatureTypeContext<TT> planitEntityFeatureContext,
+                                               String featureSchemaName,
+                                               Iterable<TT> planitEntities,
+                                               boolean parallel){
+    var snapshotBuilder = GeoIoLayerSnapshot.builder(
+        planitEntityFeatureContext.getAttributeDescription().stream().map(Triple::second).toArray(String[]::new));
+    var chunkSource = createEntityChunkSource(planitEntityFeatureContext, planitEntities, parallel, getSettings());
+    final int chunkSize = getSettings().getAttributeExtractionChunkSize();
+    while(chunkSource.hasNext()){
+      checkCancelled(featureSchemaName);
+      snapshotBuilder.append(chunkSource.next(chunkSize));
+    }
+    return snapshotBuilder.build();
+  }
+
+  /**
+   * Write a layer captured in a snapshot
+   *
+   * @param <TT> type of PLANit entity to write
+   * @param capturedLayer to write
+   */
+  private <TT> void writeCapturedLayer(CapturedLayer<TT> capturedLayer){
+    checkCancelled(capturedLayer.featureSchemaName);
+    final long layerStartNanos = System.nanoTime();
+    if(isCompletedByCheckpoint(
+        capturedLayer.planitEntityFeatureContext, capturedLayer.featureSchemaName, capturedLayer.layerSnapshot.size())){
+      return;
+    }
+    writeLayerValues(capturedLayer.featureType, capturedLayer.planitEntityFeatureContext, capturedLayer.loggingPrefix,
+        capturedLayer.entityDataStore, capturedLayer.featureSchemaName, createSnapshotChunkSource(capturedLayer.layerSnapshot),
+        capturedLayer.parallel, capturedLayer.listAttributeOverflow, layerStartNanos);
+  }
+
+  /**
+   * Write the values of a layer, see {@link #writeGeometryLayerForEntity(SimpleFeatureType, PlanitEntityFeatureTypeContext, String, DataStore, String, Iterable, boolean)}
+   *
+   * @param <TT> type of PLANit entity to write
+   * @param featureType to use
+   * @param planitEntityFeatureContext the context to convert instances to features
+   * @param loggingPrefix to use
+   * @param entityDataStore to use for persistence
+   * @param featureSchemaName the feature lives under on the datastore
+   * @param chunkSource providing the values of the entities to persist
+   * @param parallel when true chunks are processed in parallel, otherwise sequentially
+   * @param listAttributeEncoder holding the list attribute values spilled for the layer
+   * @param layerStartNanos start of the layer
+   */
+  private <TT> void writeLayerValues(SimpleFeatureType featureType,
+                                     PlanitEntityFeatureTypeContext<TT> planitEntityFeatureContext,
+                                     String loggingPrefix,
+                                     DataStore entityDataStore,
+                                     String featureSchemaName,
+                                     ChunkValuesSource chunkSource,
+                                     boolean parallel,
+                                     ListAttributeEncoder listAttributeEncoder,
+                                     long layerStartNanos){
+    startedSchemaNames.add(featureSchemaName);
+    progressListener.onLayerStarted(featureSchemaName, planitEntityFeatureContext.getPlanitEntityClass());
+
+    final boolean append = getSettings().isAppendToExistingLayers();
+    var event = new GeoIoLayerWriteEvent();
+    event.begin();
+    long numberOfFeatures;
+    try {
+      if(append) {
+        synchronized (entityDataStore) {
+          numberOfFeatures = writeLayer(featureType, planitEntityFeatureContext, entityDataStore, featureSchemaName, chunkSource, parallel, true);
+        }
+      }else{
+        numberOfFeatures = writeLayer(featureType, planitEntityFeatureContext, entityDataStore, featureSchemaName, chunkSource, parallel, false);
       }
+    }catch (PlanItRunTimeException e){
+      throw e;
     }catch (Exception e){
       LOGGER.severe((e.getMessage()));
-      throw new PlanItRunTimeException("%s Unable to persist PLANit entities for %s",
-          loggingPrefix, planitEntityFeatureContext.getPlanitEntityClass().getName(), e.getCause());
+      var exception = new PlanItRunTimeException("%s Unable to persist PLANit entities for %s",
+          loggingPrefix, planitEntityFeatureContext.getPlanitEntityClass().getName());
+      exception.initCause(e);
+      throw exception;
+    }
+
+    /* list valued attributes that did not fit the attribute length are persisted alongside the layer */
+    if(listAttributeEncoder.hasOverflow()){
+      listAttributeEncoder.writeOverflowTable(
+          Path.of(getSettings().getOutputDirectory(), featureSchemaName + OVERFLOW_TABLE_SUFFIX), append);
+    }
+
+    var layerResult = new GeoIoExportResult.Layer(featureSchemaName, planitEntityFeatureContext.getPlanitEntityClass(),
+        numberOfFeatures, Duration.ofNanos(System.nanoTime() - layerStartNanos), findLayerFiles(featureSchemaName));
+    writtenLayers.add(layerResult);
+    if(checkpointManifest != null){
+      checkpointManifest.recordCompleted(
+          featureSchemaName, planitEntityFeatureContext.getPlanitEntityClass(), numberOfFeatures, layerResult.getFiles());
+    }
+    progressListener.onLayerCompleted(featureSchemaName, numberOfFeatures, writtenFeatures.get());
+    if(event.shouldCommit()){
+      event.setEntityClass(planitEntityFeatureContext.getPlanitEntityClass()).setLayerId(featureSchemaName)
+          .setFeatureCount(numberOfFeatures).setByteCount(computeLayerBytes(featureSchemaName));
+      event.commit();
     }
   }
 
+  /** {@link #writeGeometryLayerForEntity(SimpleFeatureType, PlanitEntityFeatureTypeContext, String, DataStore, String, Iterable, boolean)}
+   * where attribute values are extracted in parallel when configured as such on the settings
+   *
+   * @param featureType to write
+   * @param planitEntityFeatureContext contextual information on feature type
+   * @param loggingPrefix to use
+   * @param entityDataStore datastore to use
+   * @param featureSchemaName to use
+   * @param planitEntities to persist
+   * @param <TT> type of planit entity
+   */
+  protected <TT> void writeGeometryLayerForEntity(SimpleFeatureType featureType,
+                                                  PlanitEntityFeatureTypeContext<TT> planitEntityFeatureContext,
+                                                  String loggingPrefix,
+                                                  DataStore entityDataStore,
+                                                  String featureSchemaName,
+                                                  Iterable<TT> planitEntities) {
+    writeGeometryLayerForEntity(
+        featureType,
+        planitEntityFeatureContext,
+        loggingPrefix,
+        entityDataStore,
+        featureSchemaName,
+        planitEntities,
+        getSettings().isParallelAttributeExtraction());
+  }
+
   /** {@link #writeGeometryLayerForEntity(SimpleFeatureType, PlanitEntityFeatureTypeContext, String, DataStore, String, Iterable)}
    *
    * @param featureType to write
@@ -120,15 +1022,56 @@ public abstract class GeometryIoWriter<T> extends CrsWriterImpl<T> {
    * @param planitEntities to persist
    * @param <TT> type of planit entity
    */
-  protected <TT extends ManagedId> void writeGeometryLayerForEntity(SimpleFeatureType featureType,
-                                                                    PlanitEntityFeatureTypeContext<TT> planitEntityFeatureContext,
-                                                                    DataStore entityDataStore,
-                                                                    String featureSchemaName,
-                                                                    Iterable<TT> planitEntities) {
+  protected <TT> void writeGeometryLayerForEntity(SimpleFeatureType featureType,
+                                                  PlanitEntityFeatureTypeContext<TT> planitEntityFeatureContext,
+                                                  DataStore entityDataStore,
+                                                  String featureSchemaName,
+                                                  Iterable<TT> planitEntities) {
 
     writeGeometryLayerForEntity(featureType, planitEntityFeatureContext,"", entityDataStore, featureSchemaName, planitEntities);
   }
 
+  /**
+   * Dispose of the data stores used by this writer, data stores used by other writers (possibly running concurrently) are
+   * left untouched. When capturing a snapshot, the data stores are detached instead and disposed once the snapshot is written
+   */
+  protected void disposeDataStores(){
+    var capture = snapshotCapture;
+    if(capture != null){
+      capture.dataStores.addAll(GeoIODataStoreManager.detach(persistedEntityClasses));
+      persistedEntityClasses.clear();
+      return;
+    }
+    GeoIODataStoreManager.reset(persistedEntityClasses);
+    persistedEntityClasses.clear();
+  }
+
+  /**
+   * Prepare the mapped id cache for a new export. A cache owned by this writer is renewed, so no stale mapped ids from a
+   * previous export are used, whereas a cache provided by a parent writer is left as is.
+   */
+  protected void prepareMappedIdCache(){
+    if(!parentMappedIdCache){
+      mappedIdCache = new GeoIoMappedIdCache();
+    }
+  }
+
+  /**
+   * Prepare the export memory budget for a new export, see {@link GeoIoWriterSettings#setExportMemoryBudget(long)}. A budget
+   * owned by this writer is renewed from the settings, whereas a budget provided by the writer of the export as a whole is
+   * left as is. Vector tile pyramids retain all features of a layer until built, so they cannot be bounded by the budget and
+   * the combination is rejected
+   */
+  private void prepareExportMemoryBudget(){
+    if(!parentExportMemoryBudget){
+      exportMemoryBudget = ExportMemoryBudget.create(getSettings().getExportMemoryBudget());
+    }
+    if(exportMemoryBudget.isBounded() && getSettings().isVectorTileOutput()){
+      throw new PlanItRunTimeException("Vector tile output of %s is not bounded by the export memory budget (%d bytes), disable either",
+          getClass().getSimpleName(), exportMemoryBudget.getCapacity());
+    }
+  }
+
   /**
    * Find data store to use, if not present, create it if possible
    *
@@ -138,7 +1081,7 @@ public abstract class GeometryIoWriter<T> extends CrsWriterImpl<T> {
    *
    * @param <TT> type of PLANit entity the data store is to be used for
    */
-  protected <TT extends ManagedId> DataStore findDataStore(
+  protected <TT> DataStore findDataStore(
       PlanitEntityFeatureTypeContext<TT> featureContext, Path fullOutputPath){
     /* data store, e.g., underlying shape file(s) */
     DataStore dataStore = GeoIODataStoreManager.getDataStore(featureContext.getPlanitEntityClass());
@@ -148,6 +1091,165 @@ public abstract class GeometryIoWriter<T> extends CrsWriterImpl<T> {
     return dataStore;
   }
 
+  /**
+   * Start a write of this writer, resetting the statistics of the previous write and starting a flight recorder event
+   * spanning it, see {@link #completeWrite(GeoIoWriterEvent, Class)}. When capturing a snapshot, the write is only started
+   * once the snapshot is written and the returned event is not started. Either way, a write combining vector tile output
+   * with a bounded export memory budget is rejected before anything is written
+   *
+   * @return started event
+   */
+  protected GeoIoWriterEvent beginWrite(){
+    prepareExportMemoryBudget();
+    if(snapshotCapture != null){
+      return new GeoIoWriterEvent();
+    }
+    writtenFeatures.set(0);
+    writtenLayers.clear();
+    startedSchemaNames.clear();
+    writeStartNanos = System.nanoTime();
+    checkpointManifest = getSettings().isCheckpointing() ?
+        GeoIoCheckpointManifest.open(getCheckpointManifestPath(), getSettings().isResumeFromCheckpoint()) : null;
+    var event = new GeoIoWriterEvent();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Complete a write, capturing its export result, see {@link #getLastExportResult()}, and committing the flight recorder
+   * event, populated with the features and bytes of all layers written, when recorded
+   *
+   * @param event to commit
+   * @param persistedClass class of the PLANit container persisted
+   * @return export result of the write, null when capturing a snapshot rather than writing
+   */
+  protected GeoIoExportResult completeWrite(GeoIoWriterEvent event, Class<?> persistedClass){
+    var capture = snapshotCapture;
+    if(capture != null){
+      capture.persistedClass = persistedClass;
+      return null;
+    }
+    var exportResult = new GeoIoExportResult(new ArrayList<>(writtenLayers), Duration.ofNanos(System.nanoTime() - writeStartNanos));
+    lastExportResult = exportResult;
+    if(event.shouldCommit()){
+      event.setWriter(getClass(), getSettings().getOutputDirectory()).setEntityClass(persistedClass)
+          .setFeatureCount(writtenFeatures.get())
+          .setByteCount(exportResult.getByteCount());
+      event.commit();
+    }
+    return exportResult;
+  }
+
+  /**
+   * Run a write asynchronously, providing its export result upon completion. The result is the one returned by the write
+   * itself, see {@link #completeWrite(GeoIoWriterEvent, Class)}, so it is not affected by any other write of this writer
+   *
+   * @param write to run, providing its export result
+   * @param executor to run on
+   * @return future of the export result, completed exceptionally when the write fails or is cancelled
+   */
+  protected CompletableFuture<GeoIoExportResult> supplyExportAsync(Supplier<GeoIoExportResult> write, Executor executor){
+    PlanItRunTimeException.throwIfNull(executor, "Executor for asynchronous write is null");
+    return CompletableFuture.supplyAsync(write, executor);
+  }
+
+  /**
+   * Capture a snapshot of the layers of a write rather than writing them. The write runs as usual on the calling thread,
+   * except that the attribute values of each layer are captured into compact columns, see {@link GeoIoLayerSnapshot}, and
+   * the layers are only written when the returned snapshot is. So, once captured, the persisted model may change while the
+   * snapshot is written. Files not part of a layer, e.g., the departure tables of routed services, are captured as well and
+   * written after the layers, see {@link #deferUntilSnapshotWritten(Runnable)}. Nothing is written when the snapshot is
+   * discarded. The writer should not be used for another write or capture until the snapshot is written, use a writer per
+   * snapshot when their writes overlap.
+   *
+   * @param write to capture
+   * @return captured snapshot
+   */
+  protected GeoIoExportSnapshot captureWriteSnapshot(Runnable write){
+    PlanItRunTimeException.throwIf(snapshotCapture != null, "%s is already capturing a snapshot", getClass().getSimpleName());
+    var capture = new SnapshotCapture();
+    snapshotCapture = capture;
+    try {
+      write.run();
+    }catch (RuntimeException e){
+      capture.disposeDataStores();
+      throw e;
+    }finally {
+      snapshotCapture = null;
+    }
+
+    long featureCount = capture.layers.stream().mapToLong(layer -> layer.layerSnapshot.size()).sum();
+    long byteCount = capture.layers.stream().mapToLong(layer -> layer.layerSnapshot.getByteCount()).sum();
+    LOGGER.info(String.format("Captured snapshot of %d layers, %d features (%d KB)", capture.layers.size(), featureCount, byteCount / 1024));
+    return new GeoIoExportSnapshot(
+        List.of(() -> writeCaptured(capture)), List.of(capture::disposeDataStores), featureCount, byteCount);
+  }
+
+  /**
+   * Write the layers of a snapshot, see {@link #captureWriteSnapshot(Runnable)}
+   *
+   * @param capture to write
+   * @return export result
+   */
+  private GeoIoExportResult writeCaptured(SnapshotCapture capture){
+    var writerEvent = beginWrite();
+    try {
+      runCancellable(() -> {
+        capture.layers.forEach(this::writeCapturedLayer);
+        capture.deferredWrites.forEach(Runnable::run);
+      });
+    }finally {
+      capture.disposeDataStores();
+    }
+    return completeWrite(writerEvent, capture.persistedClass);
+  }
+
+  /**
+   * Check if the current write captures a snapshot rather than writing, see {@link #captureWriteSnapshot(Runnable)}
+   *
+   * @return true when capturing, false otherwise
+   */
+  protected boolean isCapturingSnapshot(){
+    return snapshotCapture != null;
+  }
+
+  /**
+   * Defer a write of files not part of a layer until the snapshot being captured is written, after its layers. The write
+   * must only use values captured when deferred, not the persisted model, since the model may change in the meantime
+   *
+   * @param write to defer
+   */
+  protected void deferUntilSnapshotWritten(Runnable write){
+    var capture = snapshotCapture;
+    PlanItRunTimeException.throwIf(capture == null, "%s is not capturing a snapshot", getClass().getSimpleName());
+    capture.deferredWrites.add(write);
+  }
+
+  /**
+   * Check if the write is cancelled, if so throw a {@link GeoIoExportCancelledException}. Invoked before each layer and each
+   * chunk of entities, and by derived writers in between their layers
+   *
+   * @param context description of what is being written, used in the message
+   */
+  protected void checkCancelled(String context){
+    cancellationToken.throwIfCancelled(context);
+  }
+
+  /**
+   * Run the persistence of a write, when cancelled the data stores of this writer are disposed and the layers started by
+   * the write are removed before the {@link GeoIoExportCancelledException} is rethrown
+   *
+   * @param writeLayers task persisting all layers of the write
+   */
+  protected void runCancellable(Runnable writeLayers){
+    try {
+      writeLayers.run();
+    }catch (GeoIoExportCancelledException e){
+      discardCancelledWrite();
+      throw e;
+    }
+  }
+
   /** Constructor
    *
    */
@@ -179,6 +1281,20 @@ public abstract class GeometryIoWriter<T> extends CrsWriterImpl<T> {
   protected GeometryIoWriter(GeoIoWriterSettings settings){
     super(IdMapperType.XML);
     this.settings = settings;
+    this.mappedIdCache = new GeoIoMappedIdCache();
+    this.parentMappedIdCache = false;
+    this.exportMemoryBudget = ExportMemoryBudget.create(settings.getExportMemoryBudget());
+    this.parentExportMemoryBudget = false;
+    this.persistedEntityClasses = ConcurrentHashMap.newKeySet();
+  }
+
+  /**
+   * Populate any id mappers that have not been set explicitly (as parent id mappers) based on the chosen id mapper type. This
+   * is done at the start of each write, but can be triggered upfront, so the primary id mappers of this writer can be handed to
+   * other writers before writing starts, e.g., to run writers concurrently
+   */
+  public void resolveIdMappers(){
+    getComponentIdMappers().populateMissingIdMappers(getIdMapperType());
   }
 
   /**
@@ -186,7 +1302,7 @@ public abstract class GeometryIoWriter<T> extends CrsWriterImpl<T> {
    */
   @Override
   public void reset() {
-    GeoIODataStoreManager.reset();
+    disposeDataStores();
   }
   
   // GETTERS/SETTERS
@@ -199,4 +1315,118 @@ public abstract class GeometryIoWriter<T> extends CrsWriterImpl<T> {
     return settings;
   }
 
+  /**
+   * Cache of mapped ids used by this writer
+   *
+   * @return mapped id cache
+   */
+  public GeoIoMappedIdCache getMappedIdCache(){
+    return mappedIdCache;
+  }
+
+  /**
+   * Use the mapped id cache of the writer that persisted the parent entities (e.g. the network writer), so mapped ids of parent
+   * entities that are referenced are not reconstructed. Only share caches between writers that use the same parent id mappers,
+   * i.e., combine with setting the parent id mappers of this writer to the primary id mappers of the other writer
+   *
+   * @param parentMappedIdCache to use
+   */
+  public void setParentMappedIdCache(GeoIoMappedIdCache parentMappedIdCache){
+    PlanItRunTimeException.throwIfNull(parentMappedIdCache, "Parent mapped id cache is null");
+    this.mappedIdCache = parentMappedIdCache;
+    this.parentMappedIdCache = true;
+  }
+
+  /**
+   * Use the export memory budget of the writer of the export as a whole rather than one of this writer's own, so the
+   * buffers of all writers of the export are bounded together, e.g., the components of an intermodal export. The budget of
+   * this writer's settings is then ignored
+   *
+   * @param parentExportMemoryBudget to share
+   */
+  public void setParentExportMemoryBudget(ExportMemoryBudget parentExportMemoryBudget){
+    PlanItRunTimeException.throwIfNull(parentExportMemoryBudget, "Parent export memory budget is null");
+    this.exportMemoryBudget = parentExportMemoryBudget;
+    this.parentExportMemoryBudget = true;
+  }
+
+  /**
+   * Listener to report progress of each layer and of the write as a whole to
+   *
+   * @return progress listener
+   */
+  public GeoIoProgressListener getProgressListener(){
+    return progressListener;
+  }
+
+  /**
+   * Report progress to the given listener, features done are reported per layer and in total at most every
+   * {@link GeoIoWriterSettings#getAttributeExtractionChunkSize()} features
+   *
+   * @param progressListener to use, null to not report progress
+   */
+  public void setProgressListener(GeoIoProgressListener progressListener){
+    this.progressListener = progressListener == null ? GeoIoProgressListener.NONE : progressListener;
+  }
+
+  /**
+   * Token checked for cancellation by this writer
+   *
+   * @return cancellation token
+   */
+  public GeoIoCancellationToken getCancellationToken(){
+    return cancellationToken;
+  }
+
+  /**
+   * Check the given token for cancellation between layers and every
+   * {@link GeoIoWriterSettings#getAttributeExtractionChunkSize()} features. When cancelled, the data stores of the writer are
+   * disposed, the layers started by the write are removed (unless appending to existing layers) and a
+   * {@link GeoIoExportCancelledException} is thrown
+   *
+   * @param cancellationToken to use, null to never cancel
+   */
+  public void setCancellationToken(GeoIoCancellationToken cancellationToken){
+    this.cancellationToken = cancellationToken == null ? GeoIoCancellationToken.create() : cancellationToken;
+  }
+
+  /**
+   * Result of the last completed write of this writer
+   *
+   * @return export result, null when no write completed yet
+   */
+  public GeoIoExportResult getLastExportResult(){
+    return lastExportResult;
+  }
+
+  /**
+   * Path of the checkpoint manifest of this writer in the output directory, named after the writer's class, so writers of
+   * different components sharing an output directory each have their own
+   *
+   * @return path of the checkpoint manifest
+   */
+  public Path getCheckpointManifestPath(){
+    return Path.of(getSettings().getOutputDirectory(), getClass().getSimpleName() + CHECKPOINT_MANIFEST_SUFFIX);
+  }
+
+  /**
+   * Executor used by asynchronous writes when none is provided, a shared cached pool of daemon threads, so disk I/O does not
+   * occupy the common fork join pool
+   *
+   * @return default executor
+   */
+  public static Executor getDefaultAsyncExecutor(){
+    return DefaultAsyncExecutor.INSTANCE;
+  }
+
+  /**
+   * Executor writing the part files and tiles of layers, see {@link GeometryLayerShardWriter} and
+   * {@link GeometryLayerTileWriter}, shared so the number of writing threads is bounded regardless of the number of layers
+   *
+   * @return layer writer executor
+   */
+  static Executor getLayerWriterExecutor(){
+    return LayerWriterExecutor.INSTANCE;
+  }
+
 }
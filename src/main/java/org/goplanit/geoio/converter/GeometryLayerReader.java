@@ -0,0 +1,272 @@
+package org.goplanit.geoio.converter;
+
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+import org.goplanit.utils.misc.UrlUtils;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.Point;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Reads the features of a single layer written by a {@link GeometryIoWriter}, decoding each feature into a record as it is
+ * read. Shape files are accessed memory-mapped. Layers that were split into row parts, see {@link GeometryLayerShardWriter},
+ * are read part by part in parallel and concatenated in part order.
+ *
+ * @author markr
+ */
+public class GeometryLayerReader {
+
+  /** the logger to use */
+  private static final Logger LOGGER = Logger.getLogger(GeometryLayerReader.class.getCanonicalName());
+
+  /**
+   * Open a shape file data store, the caller is responsible for disposing of it
+   *
+   * @param shapeFile to open
+   * @param memoryMapped when true the shape and DBF files are memory-mapped rather than read through buffers
+   * @return data store
+   */
+  public static ShapefileDataStore openDataStore(Path shapeFile, boolean memoryMapped){
+    if(!Files.exists(shapeFile)){
+      throw new PlanItRunTimeException("Unable to find %s", shapeFile.toAbsolutePath().toString());
+    }
+    var dataStore = new ShapefileDataStore(UrlUtils.createFromLocalPath(shapeFile));
+    dataStore.setMemoryMapped(memoryMapped);
+    return dataStore;
+  }
+
+  /**
+   * Collect the schema of a layer without reading any features
+   *
+   * @param inputDirectory the layer resides in
+   * @param schemaName of the layer
+   * @param fileExtension of the layer
+   * @return feature type of the layer
+   */
+  public static SimpleFeatureType readSchema(Path inputDirectory, String schemaName, String fileExtension){
+    var dataStore = openDataStore(inputDirectory.resolve(schemaName + fileExtension), false);
+    try{
+      return dataStore.getSchema();
+    }catch (IOException e){
+      LOGGER.severe(e.getMessage());
+      throw new PlanItRunTimeException("Unable to read schema of layer %s", schemaName);
+    }finally {
+      dataStore.dispose();
+    }
+  }
+
+  /**
+   * Collect the files the layer was written to, in part order, based on its shard index if present
+   *
+   * @param inputDirectory the layer resides in
+   * @param schemaName of the layer
+   * @param fileExtension of the layer
+   * @return files of the layer
+   */
+  public static List<Path> findLayerFiles(Path inputDirectory, String schemaName, String fileExtension){
+    var shardIndex = inputDirectory.resolve(schemaName + GeometryLayerShardWriter.SHARD_INDEX_SUFFIX);
+    if(!Files.exists(shardIndex)){
+      return List.of(inputDirectory.resolve(schemaName + fileExtension));
+    }
+
+    try {
+      var shardFiles = new ArrayList<Path>();
+      for (var line : Files.readAllLines(shardIndex, StandardCharsets.UTF_8).stream().skip(1).collect(Collectors.toList())) {
+        if(line.isBlank()){
+          continue;
+        }
+        var columns = line.split(",", -1);
+        if(!"0".equals(columns[2])){
+          throw new PlanItRunTimeException("Layer %s has its attributes split across files, this is not supported when reading", schemaName);
+        }
+        shardFiles.add(inputDirectory.resolve(columns[0] + fileExtension));
+      }
+      return shardFiles;
+    }catch (IOException e){
+      LOGGER.severe(e.getMessage());
+      throw new PlanItRunTimeException("Unable to read shard index %s", shardIndex.toString());
+    }
+  }
+
+  /**
+   * Read and decode all features of a single file
+   *
+   * @param <R> type of the decoded records
+   * @param shapeFile to read
+   * @param memoryMapped when true the file is memory-mapped
+   * @param decoder to convert each feature into a record
+   * @return decoded records in file order
+   */
+  private static <R> List<R> readFile(Path shapeFile, boolean memoryMapped, Function<SimpleFeature, R> decoder){
+    var dataStore = openDataStore(shapeFile, memoryMapped);
+    try (var featureIter = dataStore.getFeatureSource().getFeatures().features()) {
+      var records = new ArrayList<R>();
+      while (featureIter.hasNext()) {
+        records.add(decoder.apply(featureIter.next()));
+      }
+      return records;
+    }catch (IOException e){
+      LOGGER.severe(e.getMessage());
+      throw new PlanItRunTimeException("Unable to read features from %s", shapeFile.toString());
+    }finally {
+      dataStore.dispose();
+    }
+  }
+
+  /**
+   * Read and decode all features of a layer asynchronously, each part of the layer is read in parallel
+   *
+   * @param <R> type of the decoded records
+   * @param inputDirectory the layer resides in
+   * @param schemaName of the layer
+   * @param fileExtension of the layer
+   * @param memoryMapped when true files are memory-mapped
+   * @param decoder to convert each feature into a record
+   * @param executor to read on
+   * @return future providing the decoded records in layer order
+   */
+  public static <R> CompletableFuture<List<R>> readLayerAsync(
+      Path inputDirectory, String schemaName, String fileExtension, boolean memoryMapped, Function<SimpleFeature, R> decoder, Executor executor){
+    var partFutures = new ArrayList<CompletableFuture<List<R>>>();
+    for(var layerFile : findLayerFiles(inputDirectory, schemaName, fileExtension)){
+      partFutures.add(CompletableFuture.supplyAsync(() -> readFile(layerFile, memoryMapped, decoder), executor));
+    }
+    return CompletableFuture.allOf(partFutures.toArray(new CompletableFuture[0])).thenApply(done -> {
+      var records = new ArrayList<R>();
+      partFutures.forEach(partFuture -> records.addAll(partFuture.join()));
+      return records;
+    });
+  }
+
+  /**
+   * Wait for a future created by {@link #readLayerAsync(Path, String, String, boolean, Function, Executor)}, unwrapping any failure
+   *
+   * @param <R> type of the decoded records
+   * @param future to wait for
+   * @return decoded records
+   */
+  public static <R> List<R> join(CompletableFuture<List<R>> future){
+    try {
+      return future.join();
+    }catch (CompletionException e){
+      if(e.getCause() instanceof PlanItRunTimeException){
+        throw (PlanItRunTimeException) e.getCause();
+      }
+      var exception = new PlanItRunTimeException("Unable to read layer");
+      exception.initCause(e.getCause());
+      throw exception;
+    }
+  }
+
+  /**
+   * Shape files store lines as multi line strings, convert back to a line string. Multiple parts are concatenated
+   *
+   * @param geometry to convert
+   * @return line string, null when geometry is null or empty
+   */
+  public static LineString asLineString(Geometry geometry){
+    if(geometry == null || geometry.isEmpty()){
+      return null;
+    }
+    if(geometry instanceof LineString){
+      return (LineString) geometry;
+    }
+    if(geometry instanceof MultiLineString && geometry.getNumGeometries() == 1){
+      return (LineString) geometry.getGeometryN(0);
+    }
+    return geometry.getFactory().createLineString(geometry.getCoordinates());
+  }
+
+  /**
+   * Shape files may store points as multi points, convert back to a point
+   *
+   * @param geometry to convert
+   * @return point, null when geometry is null or empty
+   */
+  public static Point asPoint(Geometry geometry){
+    if(geometry == null || geometry.isEmpty()){
+      return null;
+    }
+    if(geometry instanceof Point){
+      return (Point) geometry;
+    }
+    if(geometry instanceof MultiPoint){
+      return (Point) geometry.getGeometryN(0);
+    }
+    return geometry.getCentroid();
+  }
+
+  /**
+   * Collect a string attribute value
+   *
+   * @param feature to collect from
+   * @param attributeName to collect
+   * @return value, null when absent or blank
+   */
+  public static String getString(SimpleFeature feature, String attributeName){
+    var value = feature.getAttribute(attributeName);
+    if(value == null){
+      return null;
+    }
+    var stringValue = value.toString().trim();
+    return stringValue.isEmpty() ? null : stringValue;
+  }
+
+  /**
+   * Collect a numeric attribute value, numbers persisted as strings are parsed
+   *
+   * @param feature to collect from
+   * @param attributeName to collect
+   * @return value, null when absent or not numeric
+   */
+  public static Double getDouble(SimpleFeature feature, String attributeName){
+    var value = feature.getAttribute(attributeName);
+    if(value instanceof Number){
+      return ((Number) value).doubleValue();
+    }
+    var stringValue = getString(feature, attributeName);
+    if(stringValue == null){
+      return null;
+    }
+    try{
+      return Double.parseDouble(stringValue);
+    }catch (NumberFormatException e){
+      return null;
+    }
+  }
+
+  /**
+   * Collect a boolean attribute value
+   *
+   * @param feature to collect from
+   * @param attributeName to collect
+   * @param defaultValue when absent
+   * @return value
+   */
+  public static boolean getBoolean(SimpleFeature feature, String attributeName, boolean defaultValue){
+    var value = feature.getAttribute(attributeName);
+    if(value instanceof Boolean){
+      return (Boolean) value;
+    }
+    var stringValue = getString(feature, attributeName);
+    return stringValue == null ? defaultValue : Boolean.parseBoolean(stringValue) || "T".equalsIgnoreCase(stringValue) || "Y".equalsIgnoreCase(stringValue);
+  }
+
+}
@@ -0,0 +1,614 @@
+package org.goplanit.geoio.converter;
+
+import org.geotools.data.DataStore;
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Transaction;
+import org.geotools.feature.FeatureTypes;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.goplanit.geoio.jfr.GeoIoBatchCommitEvent;
+import org.goplanit.geoio.util.GeoIODataStoreManager;
+import org.goplanit.geoio.util.GeoIoWriterSettings;
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+
+/**
+ * Writes the features of a single layer, splitting the layer into numbered part files (shards) whenever the configured maximum
+ * number of features or the (estimated) maximum file size of a part is reached, see {@link GeoIoWriterSettings}. When the
+ * layer has more attributes than allowed per file, attributes are split across column parts as well, each repeating the first
+ * (id) attribute and the geometry so parts can be joined.
+ * <p>
+ *   A layer that fits a single file is written to the layer's own data store as before. Otherwise, parts are named
+ *   '&lt;schema&gt;_part&lt;k&gt;' (and '_col&lt;c&gt;' when attributes are split), with the first part being the layer itself
+ *   when attributes are not split. An index '&lt;schema&gt;_shards.csv' lists all parts with their feature count and bounding box.
+ *   A layer that fits a single file is written directly on the calling thread. Once the layer is split, each additional
+ *   part is written on its own sequential chain of tasks on the shared executor, so different parts are written in parallel
+ *   while the next chunk of features is being prepared.
+ * </p>
+ *
+ * @author markr
+ */
+public class GeometryLayerShardWriter implements AutoCloseable {
+
+  /** the logger to use */
+  private static final Logger LOGGER = Logger.getLogger(GeometryLayerShardWriter.class.getCanonicalName());
+
+  /** suffix of the index listing the shards of a layer */
+  public static final String SHARD_INDEX_SUFFIX = "_shards.csv";
+
+  /** header of the shard index */
+  private static final String SHARD_INDEX_HEADER = "shard,part,col,features,min_x,min_y,max_x,max_y";
+
+  /** length assumed for unrestricted string attributes, the maximum of a DBF character field */
+  private static final int DBF_DEFAULT_STRING_LENGTH = 254;
+
+  /** size of a DBF header (excluding field descriptors) */
+  private static final long DBF_HEADER_BYTES = 33;
+
+  /** size of each DBF field descriptor */
+  private static final long DBF_FIELD_DESCRIPTOR_BYTES = 32;
+
+  /** size of a shape file header */
+  private static final long SHP_HEADER_BYTES = 100;
+
+  /** maximum number of chunks written or waiting to be written per shard before the producer waits */
+  private static final int MAX_CHUNKS_IN_FLIGHT = 2;
+
+  /**
+   * A single part file of the layer
+   */
+  private static final class Shard {
+
+    /** schema (and file) name of the shard */
+    private final String schemaName;
+
+    /** row part index */
+    private final int part;
+
+    /** column part index */
+    private final int col;
+
+    /** data store of the shard */
+    private final DataStore dataStore;
+
+    /** true when the data store is created (and to be disposed) by the shard writer */
+    private final boolean ownsDataStore;
+
+    /** writer, opened on the shard's chain upon first write */
+    private FeatureWriter<SimpleFeatureType, SimpleFeature> featureWriter;
+
+    /** tasks of the shard, run in order, null when the shard is written directly on the calling thread */
+    private final OrderedTaskChain chain;
+
+    /** true once the shard's writer is closed and its data store disposed (when owned), set on the shard's chain */
+    private volatile boolean finalised;
+
+    /** rows assigned to the shard, not yet submitted */
+    private List<Object[]> pendingRows = new ArrayList<>();
+
+    /** number of features assigned */
+    private long features;
+
+    /** estimated DBF size so far */
+    private long dbfBytes;
+
+    /** estimated shape file size so far */
+    private long shpBytes;
+
+    /** bounding box of the assigned geometries */
+    private final Envelope bounds = new Envelope();
+
+    /**
+     * Constructor
+     *
+     * @param schemaName of the shard
+     * @param part row part index
+     * @param col column part index
+     * @param dataStore of the shard
+     * @param ownsDataStore true when to be disposed by the shard writer
+     * @param dbfHeaderBytes estimated DBF header size
+     * @param executor to run the shard's tasks on, null to write directly on the calling thread
+     */
+    private Shard(String schemaName, int part, int col, DataStore dataStore, boolean ownsDataStore, long dbfHeaderBytes,
+                  Executor executor){
+      this.schemaName = schemaName;
+      this.part = part;
+      this.col = col;
+      this.dataStore = dataStore;
+      this.ownsDataStore = ownsDataStore;
+      this.dbfBytes = dbfHeaderBytes;
+      this.shpBytes = SHP_HEADER_BYTES;
+      this.chain = executor == null ? null : new OrderedTaskChain(executor, MAX_CHUNKS_IN_FLIGHT);
+    }
+  }
+
+  /** full feature type of the layer */
+  private final SimpleFeatureType featureType;
+
+  /** names of the attributes as set on features, in order of the attribute values provided */
+  private final String[] attributeNames;
+
+  /** data store of the layer itself */
+  private final DataStore layerDataStore;
+
+  /** schema name of the layer */
+  private final String schemaName;
+
+  /** settings providing output location and limits */
+  private final GeoIoWriterSettings settings;
+
+  /** attribute value indices per column part */
+  private final List<int[]> columnGroups;
+
+  /** estimated DBF record size per column part */
+  private final long[] dbfRecordBytes;
+
+  /** estimated DBF header size per column part */
+  private final long[] dbfHeaderBytes;
+
+  /** index of the geometry value, -1 if absent */
+  private final int geometryIndex;
+
+  /** executor running the shard chains of additional parts */
+  private final Executor executor;
+
+  /** all shards created so far */
+  private final List<Shard> shards = new ArrayList<>();
+
+  /** shards (one per column part) of the current row part */
+  private List<Shard> currentShards;
+
+  /**
+   * Estimate the DBF field length of an attribute, following the field lengths used for shape files
+   *
+   * @param descriptor of attribute
+   * @return estimated length in bytes
+   */
+  private static int estimateDbfFieldLength(AttributeDescriptor descriptor){
+    var binding = descriptor.getType().getBinding();
+    if(String.class.equals(binding)){
+      int length = FeatureTypes.getFieldLength(descriptor);
+      return length > 0 ? Math.min(length, DBF_DEFAULT_STRING_LENGTH) : DBF_DEFAULT_STRING_LENGTH;
+    }
+    if(Integer.class.equals(binding) || Short.class.equals(binding) || Byte.class.equals(binding)){
+      return 9;
+    }
+    if(Long.class.equals(binding)){
+      return 19;
+    }
+    if(Boolean.class.equals(binding)){
+      return 1;
+    }
+    if(Date.class.isAssignableFrom(binding)){
+      return 8;
+    }
+    /* floating point and other numbers */
+    return 33;
+  }
+
+  /**
+   * Estimate the shape file record size of a geometry
+   *
+   * @param geometry to estimate for
+   * @return estimated size in bytes
+   */
+  static long estimateShpRecordBytes(Geometry geometry){
+    if(geometry == null){
+      return 12;
+    }
+    if(geometry instanceof Point){
+      return 28;
+    }
+    return 8 + 44 + 4L * geometry.getNumGeometries() + 16L * geometry.getNumPoints();
+  }
+
+  /**
+   * Split the attributes into column parts such that each part respects the maximum number of fields, each part holding the
+   * first (id) attribute, a subset of the remaining non-geometry attributes and the geometry
+   *
+   * @param maxFields maximum number of (non-geometry) fields per part
+   * @return attribute value indices per column part
+   */
+  private List<int[]> createColumnGroups(int maxFields){
+    var nonGeometryIndices = new ArrayList<Integer>();
+    for(int index = 0; index < attributeNames.length; ++index){
+      if(index != geometryIndex){
+        nonGeometryIndices.add(index);
+      }
+    }
+
+    var groups = new ArrayList<int[]>();
+    if(nonGeometryIndices.size() <= maxFields){
+      var all = new int[attributeNames.length];
+      for(int index = 0; index < all.length; ++index){
+        all[index] = index;
+      }
+      groups.add(all);
+      return groups;
+    }
+
+    int keyIndex = nonGeometryIndices.get(0);
+    int perGroup = Math.max(1, maxFields - 1);
+    for(int start = 1; start < nonGeometryIndices.size(); start += perGroup){
+      int end = Math.min(start + perGroup, nonGeometryIndices.size());
+      var group = new int[(end - start) + 1 + (geometryIndex >= 0 ? 1 : 0)];
+      int position = 0;
+      group[position++] = keyIndex;
+      for(int index = start; index < end; ++index){
+        group[position++] = nonGeometryIndices.get(index);
+      }
+      if(geometryIndex >= 0){
+        group[position] = geometryIndex;
+      }
+      groups.add(group);
+    }
+    return groups;
+  }
+
+  /**
+   * Create feature type holding the given attributes of the layer's feature type only
+   *
+   * @param name of the type
+   * @param attributeIndices to retain
+   * @return created feature type
+   */
+  private SimpleFeatureType createFeatureTypeSubset(String name, int[] attributeIndices){
+    var typeBuilder = new SimpleFeatureTypeBuilder();
+    typeBuilder.setName(name);
+    typeBuilder.setCRS(featureType.getCoordinateReferenceSystem());
+    for(int index : attributeIndices){
+      var descriptor = featureType.getDescriptor(index);
+      typeBuilder.add(descriptor);
+      if(descriptor instanceof GeometryDescriptor){
+        typeBuilder.setDefaultGeometry(descriptor.getLocalName());
+      }
+    }
+    return typeBuilder.buildFeatureType();
+  }
+
+  /**
+   * Open the shards of the next row part
+   */
+  private void openRowPart(){
+    int part = currentShards == null ? 0 : currentShards.get(0).part + 1;
+    boolean splitColumns = columnGroups.size() > 1;
+    currentShards = new ArrayList<>(columnGroups.size());
+    for(int col = 0; col < columnGroups.size(); ++col){
+      Shard shard;
+      if(part == 0 && !splitColumns){
+        /* the layer itself, written directly as long as the layer fits a single file */
+        GeoIODataStoreManager.registerFeatureOnDataStore(layerDataStore, featureType);
+        shard = new Shard(schemaName, part, col, layerDataStore, false, dbfHeaderBytes[col], null);
+      }else{
+        var shardName = schemaName + "_part" + part + (splitColumns ? "_col" + col : "");
+        var shardDataStore = GeoIODataStoreManager.createDataStore(
+            Path.of(settings.getOutputDirectory(), shardName + settings.getFileExtension()));
+        if(shardDataStore == null){
+          throw new PlanItRunTimeException("Unable to create data store for shard %s", shardName);
+        }
+        var shardType = createFeatureTypeSubset(shardName, columnGroups.get(col));
+        GeoIODataStoreManager.registerFeatureOnDataStore(shardDataStore, shardType);
+        shard = new Shard(shardName, part, col, shardDataStore, true, dbfHeaderBytes[col], executor);
+      }
+      currentShards.add(shard);
+      shards.add(shard);
+    }
+  }
+
+  /**
+   * Write rows to the shard, called on the shard's chain (or the calling thread when the shard has none) only
+   *
+   * @param shard to write to
+   * @param rows to write
+   * @param attributeIndices value indices of the shard's attributes
+   */
+  private void writeRows(Shard shard, List<Object[]> rows, int[] attributeIndices){
+    var event = new GeoIoBatchCommitEvent();
+    event.begin();
+    try {
+      if (shard.featureWriter == null) {
+        shard.featureWriter = shard.dataStore.getFeatureWriter(shard.schemaName, Transaction.AUTO_COMMIT);
+      }
+      for (var row : rows) {
+        var feature = shard.featureWriter.next();
+        for (int index : attributeIndices) {
+          feature.setAttribute(attributeNames[index], row[index]);
+        }
+        shard.featureWriter.write();
+      }
+    }catch (IOException e){
+      LOGGER.severe(e.getMessage());
+      throw new PlanItRunTimeException("Unable to write features to shard %s", shard.schemaName);
+    }
+    if(event.shouldCommit()){
+      long bytes = rows.size() * dbfRecordBytes[shard.col];
+      if(geometryIndex >= 0){
+        for(var row : rows){
+          bytes += estimateShpRecordBytes((Geometry) row[geometryIndex]);
+        }
+      }
+      event.setLayerId(shard.schemaName).setFeatureCount(rows.size()).setByteCount(bytes);
+      event.commit();
+    }
+  }
+
+  /**
+   * Finalise the shard, called on the shard's chain (or the calling thread when the shard has none) only
+   *
+   * @param shard to finalise
+   */
+  private void finaliseShard(Shard shard){
+    try {
+      if(shard.featureWriter == null){
+        /* ensure the shard's files exist even without features */
+        shard.featureWriter = shard.dataStore.getFeatureWriter(shard.schemaName, Transaction.AUTO_COMMIT);
+      }
+      shard.featureWriter.close();
+    }catch (IOException e){
+      LOGGER.severe(e.getMessage());
+      throw new PlanItRunTimeException("Unable to finalise shard %s", shard.schemaName);
+    }finally {
+      if(shard.ownsDataStore){
+        GeoIODataStoreManager.dispose(shard.dataStore);
+      }
+      shard.finalised = true;
+    }
+  }
+
+  /**
+   * Release the resources of a shard that was not finalised because writing it failed, without raising further failures
+   *
+   * @param shard to discard
+   */
+  private static void discardShard(Shard shard){
+    try {
+      if(shard.featureWriter != null){
+        shard.featureWriter.close();
+      }
+    }catch (IOException e){
+      LOGGER.warning(String.format("Unable to close writer of shard %s: %s", shard.schemaName, e.getMessage()));
+    }finally {
+      if(shard.ownsDataStore){
+        GeoIODataStoreManager.dispose(shard.dataStore);
+      }
+      shard.finalised = true;
+    }
+  }
+
+  /**
+   * Finalise the shard, on its chain when it has one, otherwise directly
+   *
+   * @param shard to finalise
+   */
+  private void submitFinaliseShard(Shard shard){
+    if(shard.chain == null){
+      finaliseShard(shard);
+      return;
+    }
+    shard.chain.submit(() -> finaliseShard(shard));
+  }
+
+  /**
+   * Submit the pending rows of the current row part to the shards' chains, each submission retaining the lease of the chunk
+   * the rows belong to until written
+   *
+   * @param lease of the chunk the pending rows belong to
+   */
+  private void submitPendingRows(ExportMemoryBudget.Lease lease){
+    for(var shard : currentShards){
+      if(shard.pendingRows.isEmpty()){
+        continue;
+      }
+      final var rows = shard.pendingRows;
+      final var attributeIndices = columnGroups.get(shard.col);
+      shard.pendingRows = new ArrayList<>(rows.size());
+      if(shard.chain == null){
+        writeRows(shard, rows, attributeIndices);
+        continue;
+      }
+      lease.retain();
+      shard.chain.submit(() -> writeRows(shard, rows, attributeIndices), lease::release);
+    }
+  }
+
+  /**
+   * Check if adding a row would exceed the limits of the current row part
+   *
+   * @param shpRecordBytes estimated shape file record size of the row
+   * @return true when exceeding, false otherwise
+   */
+  private boolean isExceedingLimits(long shpRecordBytes){
+    var first = currentShards.get(0);
+    if(first.features == 0){
+      return false;
+    }
+    if(first.features + 1 > settings.getMaxFeaturesPerShard()){
+      return true;
+    }
+    if(first.shpBytes + shpRecordBytes > settings.getMaxBytesPerShard()){
+      return true;
+    }
+    for(var shard : currentShards){
+      if(shard.dbfBytes + dbfRecordBytes[shard.col] > settings.getMaxBytesPerShard()){
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Write the shard index when the layer is split across multiple files
+   */
+  private void writeShardIndex(){
+    if(shards.size() <= 1){
+      return;
+    }
+    var indexPath = Path.of(settings.getOutputDirectory(), schemaName + SHARD_INDEX_SUFFIX);
+    LOGGER.info(String.format("Layer %s split into %d shards, index: %s", schemaName, shards.size(), indexPath.toAbsolutePath()));
+    try(BufferedWriter writer = Files.newBufferedWriter(indexPath, StandardCharsets.UTF_8)){
+      writer.write(SHARD_INDEX_HEADER);
+      writer.newLine();
+      for(var shard : shards){
+        var bounds = shard.bounds;
+        writer.write(String.join(",",
+            shard.schemaName,
+            String.valueOf(shard.part),
+            String.valueOf(shard.col),
+            String.valueOf(shard.features),
+            bounds.isNull() ? "" : String.valueOf(bounds.getMinX()),
+            bounds.isNull() ? "" : String.valueOf(bounds.getMinY()),
+            bounds.isNull() ? "" : String.valueOf(bounds.getMaxX()),
+            bounds.isNull() ? "" : String.valueOf(bounds.getMaxY())));
+        writer.newLine();
+      }
+    }catch (IOException e){
+      LOGGER.severe(e.getMessage());
+      throw new PlanItRunTimeException("Unable to persist shard index %s", indexPath.toString());
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param featureType of the layer
+   * @param attributeNames names of the attributes as set on features, in order of the attribute values provided
+   * @param layerDataStore data store of the layer itself, used when no shards are required
+   * @param schemaName of the layer
+   * @param settings providing output location and shard limits
+   * @param executor to write the parts of a split layer on, shared with other layers
+   */
+  public GeometryLayerShardWriter(SimpleFeatureType featureType, String[] attributeNames, DataStore layerDataStore,
+                                  String schemaName, GeoIoWriterSettings settings, Executor executor){
+    this.featureType = featureType;
+    this.attributeNames = attributeNames;
+    this.layerDataStore = layerDataStore;
+    this.schemaName = schemaName;
+    this.settings = settings;
+
+    int geometryValueIndex = -1;
+    for(int index = 0; index < featureType.getAttributeCount(); ++index){
+      if(featureType.getDescriptor(index) instanceof GeometryDescriptor){
+        geometryValueIndex = index;
+      }
+    }
+    this.geometryIndex = geometryValueIndex;
+
+    this.columnGroups = createColumnGroups(settings.getMaxFieldsPerShard());
+    this.dbfRecordBytes = new long[columnGroups.size()];
+    this.dbfHeaderBytes = new long[columnGroups.size()];
+    for(int col = 0; col < columnGroups.size(); ++col){
+      long recordBytes = 1; /* deletion flag */
+      long fields = 0;
+      for(int index : columnGroups.get(col)){
+        if(index != geometryIndex){
+          recordBytes += estimateDbfFieldLength(featureType.getDescriptor(index));
+          ++fields;
+        }
+      }
+      dbfRecordBytes[col] = recordBytes;
+      dbfHeaderBytes[col] = DBF_HEADER_BYTES + DBF_FIELD_DESCRIPTOR_BYTES * fields;
+    }
+    if(columnGroups.size() > 1){
+      LOGGER.info(String.format("Layer %s has more than %d fields, split into %d column parts",
+          schemaName, settings.getMaxFieldsPerShard(), columnGroups.size()));
+    }
+
+    this.executor = executor;
+    openRowPart();
+  }
+
+  /**
+   * Assign a chunk of rows to the shards, opening new row parts whenever limits are reached, and submit them for writing. No
+   * rows remain pending afterwards, so the chunk's reservation of the export memory budget is released once written
+   *
+   * @param chunkValues attribute values per feature, ordered as the attribute names
+   * @param lease of the chunk's reservation of the export memory budget, retained until its rows are written
+   */
+  public void write(Object[][] chunkValues, ExportMemoryBudget.Lease lease){
+    for(var row : chunkValues){
+      var geometry = geometryIndex >= 0 ? (Geometry) row[geometryIndex] : null;
+      long shpRecordBytes = geometryIndex >= 0 ? estimateShpRecordBytes(geometry) : 0;
+      if(isExceedingLimits(shpRecordBytes)){
+        submitPendingRows(lease);
+        for(var shard : currentShards){
+          submitFinaliseShard(shard);
+        }
+        openRowPart();
+      }
+
+      for(var shard : currentShards){
+        shard.pendingRows.add(row);
+        ++shard.features;
+        shard.dbfBytes += dbfRecordBytes[shard.col];
+        shard.shpBytes += shpRecordBytes;
+        if(geometry != null){
+          shard.bounds.expandToInclude(geometry.getEnvelopeInternal());
+        }
+      }
+    }
+    submitPendingRows(lease);
+  }
+
+  /**
+   * Number of shards created so far
+   *
+   * @return number of shards
+   */
+  public int getNumberOfShards(){
+    return shards.size();
+  }
+
+  /**
+   * Wait for all shards to be written, finalise them and persist the shard index when needed. All shards are awaited, also
+   * when some fail, after which any shard not finalised is discarded and the first failure is rethrown
+   */
+  @Override
+  public void close() {
+    PlanItRunTimeException failure = null;
+    try {
+      for (var shard : currentShards) {
+        try {
+          submitFinaliseShard(shard);
+        }catch (PlanItRunTimeException e){
+          failure = failure == null ? e : failure;
+        }
+      }
+      for (var shard : shards) {
+        try {
+          if(shard.chain != null) {
+            shard.chain.await();
+          }
+        }catch (PlanItRunTimeException e){
+          failure = failure == null ? e : failure;
+        }
+      }
+    }finally {
+      for (var shard : shards) {
+        if(!shard.finalised){
+          discardShard(shard);
+        }
+      }
+    }
+    if(failure != null){
+      throw failure;
+    }
+    writeShardIndex();
+  }
+
+}
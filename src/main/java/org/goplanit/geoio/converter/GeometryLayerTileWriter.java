@@ -0,0 +1,478 @@
+package org.goplanit.geoio.converter;
+
+import org.geotools.data.DataStore;
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Transaction;
+import org.goplanit.geoio.jfr.GeoIoBatchCommitEvent;
+import org.goplanit.geoio.util.GeoIODataStoreManager;
+import org.goplanit.geoio.util.GeoIoWriterSettings;
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+import org.locationtech.jts.geom.Geometry;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.GeometryDescriptor;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+
+/**
+ * Writes the features of a single layer as a regular grid of tiles rather than a single file, so consumers can load only the
+ * region they need. The grid is anchored at the origin of the destination CRS with square tiles of the configured size (in
+ * CRS units), see {@link GeoIoWriterSettings#getTileSize()}. Each feature is assigned to every tile its envelope intersects, so
+ * a tile holds all features relevant to its region.
+ * <p>
+ *   Tiles are written to '&lt;output dir&gt;/tiles/&lt;col&gt;_&lt;row&gt;/&lt;schema&gt;', with a manifest
+ *   'tiles/&lt;schema&gt;_tiles.csv' listing each tile's grid position, extent and feature count. Rows are buffered per tile
+ *   and flushed in chunks, each tile on its own sequential chain of tasks on the shared executor, so different tiles are
+ *   written in parallel. At most {@link GeoIoWriterSettings#getMaxOpenTileWriters()} tiles keep their writer (and its
+ *   files) open, the writer of the least recently flushed tile is closed on its chain when another tile needs one, and
+ *   reopened to append to the tile upon its next flush.
+ * </p>
+ *
+ * @author markr
+ */
+public class GeometryLayerTileWriter implements AutoCloseable {
+
+  /** the logger to use */
+  private static final Logger LOGGER = Logger.getLogger(GeometryLayerTileWriter.class.getCanonicalName());
+
+  /** directory (relative to the output directory) tiles are written to */
+  public static final String TILES_DIRECTORY = "tiles";
+
+  /** suffix of the manifest listing the tiles of a layer */
+  public static final String TILE_MANIFEST_SUFFIX = "_tiles.csv";
+
+  /** header of the tile manifest */
+  private static final String TILE_MANIFEST_HEADER = "tile,col,row,min_x,min_y,max_x,max_y,features";
+
+  /** maximum number of flushes written or waiting to be written per tile before the producer waits */
+  private static final int MAX_FLUSHES_IN_FLIGHT = 2;
+
+  /**
+   * A single tile of the layer
+   */
+  private static final class Tile {
+
+    /** grid column */
+    private final long col;
+
+    /** grid row */
+    private final long row;
+
+    /** tasks of the tile, run in order */
+    private final OrderedTaskChain chain;
+
+    /** data store, created on the tile's chain upon flushing while it has no open writer */
+    private DataStore dataStore;
+
+    /** writer, opened on the tile's chain upon flushing and closed when evicted or once the layer is complete */
+    private FeatureWriter<SimpleFeatureType, SimpleFeature> featureWriter;
+
+    /** flag indicating the tile's schema is created, so its writer is reopened for appending, accessed on its chain only */
+    private boolean schemaCreated;
+
+    /** rows assigned to the tile, not yet flushed */
+    private List<Object[]> pendingRows = new ArrayList<>();
+
+    /** number of features assigned */
+    private long features;
+
+    /**
+     * Constructor
+     *
+     * @param col grid column
+     * @param row grid row
+     * @param executor to run the tile's tasks on
+     */
+    private Tile(long col, long row, Executor executor){
+      this.col = col;
+      this.row = row;
+      this.chain = new OrderedTaskChain(executor, MAX_FLUSHES_IN_FLIGHT);
+    }
+
+    /**
+     * Name of the tile, also its directory name
+     *
+     * @return name
+     */
+    private String getName(){
+      return col + "_" + row;
+    }
+  }
+
+  /** feature type of the layer */
+  private final SimpleFeatureType featureType;
+
+  /** names of the attributes as set on features, in order of the attribute values provided */
+  private final String[] attributeNames;
+
+  /** schema name of the layer */
+  private final String schemaName;
+
+  /** settings providing output location and tile size */
+  private final GeoIoWriterSettings settings;
+
+  /** size of each tile in CRS units */
+  private final double tileSize;
+
+  /** number of rows buffered per tile before being flushed */
+  private final int flushSize;
+
+  /** index of the geometry value, -1 if absent */
+  private final int geometryIndex;
+
+  /** executor running the tile chains */
+  private final Executor executor;
+
+  /** tiles by their grid position */
+  private final Map<Long, Map<Long, Tile>> tilesByColAndRow = new HashMap<>();
+
+  /** maximum number of tiles holding an open writer */
+  private final int maxOpenTileWriters;
+
+  /** tiles flushed since their writer was last closed, least recently flushed first, accessed by the producer only */
+  private final LinkedHashMap<Tile, Boolean> openTiles = new LinkedHashMap<>(16, 0.75f, true);
+
+  /** number of features without geometry, not assigned to any tile */
+  private long featuresWithoutGeometry;
+
+  /**
+   * Directory of the given tile
+   *
+   * @param tile to get directory for
+   * @return directory
+   */
+  private Path getTileDirectory(Tile tile){
+    return Path.of(settings.getOutputDirectory(), TILES_DIRECTORY, tile.getName());
+  }
+
+  /**
+   * Collect tile for grid position, create it if not yet present
+   *
+   * @param col grid column
+   * @param row grid row
+   * @return tile
+   */
+  private Tile getOrCreateTile(long col, long row){
+    return tilesByColAndRow.computeIfAbsent(col, c -> new HashMap<>()).computeIfAbsent(row, r -> new Tile(col, r, executor));
+  }
+
+  /**
+   * Open the writer of the tile, called on the tile's chain only. The tile's layer is created on first use, afterwards the
+   * writer appends to it
+   *
+   * @param tile to open writer for
+   * @throws IOException when unable to open
+   */
+  private void openTileWriter(Tile tile) throws IOException {
+    var tileDirectory = getTileDirectory(tile);
+    Files.createDirectories(tileDirectory);
+    tile.dataStore = GeoIODataStoreManager.createDataStore(tileDirectory.resolve(schemaName + settings.getFileExtension()));
+    if(tile.dataStore == null){
+      throw new PlanItRunTimeException("Unable to create data store for tile %s of %s", tile.getName(), schemaName);
+    }
+    if(tile.schemaCreated){
+      tile.featureWriter = tile.dataStore.getFeatureWriterAppend(schemaName, Transaction.AUTO_COMMIT);
+      return;
+    }
+    GeoIODataStoreManager.registerFeatureOnDataStore(tile.dataStore, featureType);
+    tile.schemaCreated = true;
+    tile.featureWriter = tile.dataStore.getFeatureWriter(schemaName, Transaction.AUTO_COMMIT);
+  }
+
+  /**
+   * Write rows to the tile, called on the tile's chain only. The tile's writer is opened when not open, and kept open for
+   * subsequent flushes until evicted, see {@link #evictTileWriter(Tile)}
+   *
+   * @param tile to write to
+   * @param rows to write
+   */
+  private void writeRows(Tile tile, List<Object[]> rows){
+    var event = new GeoIoBatchCommitEvent();
+    event.begin();
+    try {
+      if (tile.featureWriter == null) {
+        openTileWriter(tile);
+      }
+
+      for (var row : rows) {
+        var feature = tile.featureWriter.next();
+        for (int index = 0; index < attributeNames.length; ++index) {
+          feature.setAttribute(attributeNames[index], row[index]);
+        }
+        tile.featureWriter.write();
+      }
+    }catch (IOException e){
+      LOGGER.severe(e.getMessage());
+      throw new PlanItRunTimeException("Unable to write features to tile %s of %s", tile.getName(), schemaName);
+    }
+    if(event.shouldCommit()){
+      /* shape file records only, DBF record sizes are not estimated for tiles */
+      long bytes = 0;
+      if(geometryIndex >= 0){
+        for(var row : rows){
+          bytes += GeometryLayerShardWriter.estimateShpRecordBytes((Geometry) row[geometryIndex]);
+        }
+      }
+      event.setLayerId(schemaName + "/" + tile.getName()).setFeatureCount(rows.size()).setByteCount(bytes);
+      event.commit();
+    }
+  }
+
+  /**
+   * Close the writer of the tile, called on the tile's chain only
+   *
+   * @param tile to finalise
+   */
+  private void finaliseTile(Tile tile){
+    if(tile.featureWriter == null){
+      return;
+    }
+    try {
+      tile.featureWriter.close();
+    }catch (IOException e){
+      LOGGER.severe(e.getMessage());
+      throw new PlanItRunTimeException("Unable to finalise tile %s of %s", tile.getName(), schemaName);
+    }finally {
+      tile.featureWriter = null;
+    }
+  }
+
+  /**
+   * Close the writer of the tile and dispose of its data store, releasing its files until it is flushed again, called on the
+   * tile's chain only
+   *
+   * @param tile to evict the writer of
+   */
+  private void evictTileWriter(Tile tile){
+    try {
+      finaliseTile(tile);
+    }finally {
+      if(tile.dataStore != null){
+        GeoIODataStoreManager.dispose(tile.dataStore);
+        tile.dataStore = null;
+      }
+    }
+  }
+
+  /**
+   * Register the tile as flushed, so it holds an open writer. When this exceeds the maximum number of open tile writers, the
+   * writer of the least recently flushed tile is closed on its chain, after its pending writes
+   *
+   * @param tile to register
+   */
+  private void registerOpenTile(Tile tile){
+    if(openTiles.put(tile, Boolean.TRUE) != null || openTiles.size() <= maxOpenTileWriters){
+      return;
+    }
+    var leastRecentTile = openTiles.keySet().iterator().next();
+    openTiles.remove(leastRecentTile);
+    leastRecentTile.chain.submit(() -> evictTileWriter(leastRecentTile));
+  }
+
+  /**
+   * Close the writer of a tile that was not finalised because writing it failed, without raising further failures
+   *
+   * @param tile to discard the writer of
+   */
+  private void discardTileWriter(Tile tile){
+    try {
+      tile.featureWriter.close();
+    }catch (IOException e){
+      LOGGER.warning(String.format("Unable to close writer of tile %s of %s: %s", tile.getName(), schemaName, e.getMessage()));
+    }finally {
+      tile.featureWriter = null;
+    }
+  }
+
+  /**
+   * Flush the pending rows of the tile to its chain
+   *
+   * @param tile to flush
+   * @param lease of the chunk the pending rows belong to, retained until written, null when not bounded
+   */
+  private void flush(Tile tile, ExportMemoryBudget.Lease lease){
+    if(tile.pendingRows.isEmpty()){
+      return;
+    }
+    registerOpenTile(tile);
+    final var rows = tile.pendingRows;
+    tile.pendingRows = new ArrayList<>(Math.min(rows.size(), flushSize));
+    if(lease == null){
+      tile.chain.submit(() -> writeRows(tile, rows));
+      return;
+    }
+    lease.retain();
+    tile.chain.submit(() -> writeRows(tile, rows), lease::release);
+  }
+
+  /**
+   * Flush all tiles with pending rows
+   *
+   * @param lease of the chunk the pending rows belong to, retained until written
+   */
+  private void flushAll(ExportMemoryBudget.Lease lease){
+    tilesByColAndRow.values().forEach(tilesOfCol -> tilesOfCol.values().forEach(tile -> flush(tile, lease)));
+  }
+
+  /**
+   * Write the manifest of all tiles of the layer
+   *
+   * @param tiles to list
+   */
+  private void writeManifest(List<Tile> tiles){
+    var manifestPath = Path.of(settings.getOutputDirectory(), TILES_DIRECTORY, schemaName + TILE_MANIFEST_SUFFIX);
+    LOGGER.info(String.format("Layer %s written as %d tiles, manifest: %s", schemaName, tiles.size(), manifestPath.toAbsolutePath()));
+    try {
+      Files.createDirectories(manifestPath.getParent());
+      try (BufferedWriter writer = Files.newBufferedWriter(manifestPath, StandardCharsets.UTF_8)) {
+        writer.write(TILE_MANIFEST_HEADER);
+        writer.newLine();
+        for (var tile : tiles) {
+          writer.write(String.join(",",
+              tile.getName(),
+              String.valueOf(tile.col),
+              String.valueOf(tile.row),
+              String.valueOf(tile.col * tileSize),
+              String.valueOf(tile.row * tileSize),
+              String.valueOf((tile.col + 1) * tileSize),
+              String.valueOf((tile.row + 1) * tileSize),
+              String.valueOf(tile.features)));
+          writer.newLine();
+        }
+      }
+    }catch (IOException e){
+      LOGGER.severe(e.getMessage());
+      throw new PlanItRunTimeException("Unable to persist tile manifest %s", manifestPath.toString());
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param featureType of the layer
+   * @param attributeNames names of the attributes as set on features, in order of the attribute values provided
+   * @param schemaName of the layer
+   * @param settings providing output location and tile size
+   * @param executor to write the tiles on, shared with other layers
+   */
+  public GeometryLayerTileWriter(
+      SimpleFeatureType featureType, String[] attributeNames, String schemaName, GeoIoWriterSettings settings, Executor executor){
+    this.featureType = featureType;
+    this.attributeNames = attributeNames;
+    this.schemaName = schemaName;
+    this.settings = settings;
+    this.tileSize = settings.getTileSize();
+    this.flushSize = settings.getAttributeExtractionChunkSize();
+    this.maxOpenTileWriters = settings.getMaxOpenTileWriters();
+    if(!(tileSize > 0)){
+      throw new PlanItRunTimeException("Tile size must be positive for tiled output of %s, found %f", schemaName, tileSize);
+    }
+
+    int geometryValueIndex = -1;
+    for(int index = 0; index < featureType.getAttributeCount(); ++index){
+      if(featureType.getDescriptor(index) instanceof GeometryDescriptor){
+        geometryValueIndex = index;
+      }
+    }
+    if(geometryValueIndex < 0){
+      throw new PlanItRunTimeException("Unable to tile layer %s without geometry", schemaName);
+    }
+    this.geometryIndex = geometryValueIndex;
+    this.executor = executor;
+  }
+
+  /**
+   * Assign a chunk of rows to the tiles their geometry intersects, flushing tiles with enough pending rows. For memory
+   * bounded exports all tiles are flushed at the end of the chunk instead, so no rows remain pending beyond the chunk's
+   * reservation of the export memory budget
+   *
+   * @param chunkValues attribute values per feature, ordered as the attribute names
+   * @param lease of the chunk's reservation of the export memory budget, retained until its rows are written
+   */
+  public void write(Object[][] chunkValues, ExportMemoryBudget.Lease lease){
+    final boolean bounded = lease.isBounded();
+    for(var row : chunkValues){
+      var geometry = (Geometry) row[geometryIndex];
+      if(geometry == null || geometry.isEmpty()){
+        ++featuresWithoutGeometry;
+        continue;
+      }
+
+      var envelope = geometry.getEnvelopeInternal();
+      long minCol = (long) Math.floor(envelope.getMinX() / tileSize);
+      long maxCol = (long) Math.floor(envelope.getMaxX() / tileSize);
+      long minRow = (long) Math.floor(envelope.getMinY() / tileSize);
+      long maxRow = (long) Math.floor(envelope.getMaxY() / tileSize);
+      for(long col = minCol; col <= maxCol; ++col){
+        for(long gridRow = minRow; gridRow <= maxRow; ++gridRow){
+          var tile = getOrCreateTile(col, gridRow);
+          tile.pendingRows.add(row);
+          ++tile.features;
+          if(!bounded && tile.pendingRows.size() >= flushSize){
+            flush(tile, null);
+          }
+        }
+      }
+    }
+    if(bounded){
+      flushAll(lease);
+    }
+  }
+
+  /**
+   * Flush all tiles, wait for them to be written, close their writers, dispose of their data stores and persist the manifest
+   */
+  @Override
+  public void close() {
+    var tiles = new ArrayList<Tile>();
+    tilesByColAndRow.values().forEach(tilesOfCol -> tiles.addAll(tilesOfCol.values()));
+    tiles.sort(Comparator.comparingLong((Tile t) -> t.col).thenComparingLong(t -> t.row));
+
+    /* await all tiles before disposing of any data store, even when some fail */
+    PlanItRunTimeException failure = null;
+    for (var tile : tiles) {
+      try {
+        flush(tile, null);
+        tile.chain.submit(() -> finaliseTile(tile));
+      }catch (PlanItRunTimeException e){
+        failure = failure == null ? e : failure;
+      }
+    }
+    for (var tile : tiles) {
+      try {
+        tile.chain.await();
+      }catch (PlanItRunTimeException e){
+        failure = failure == null ? e : failure;
+      }
+    }
+    for (var tile : tiles) {
+      if(tile.featureWriter != null){
+        discardTileWriter(tile);
+      }
+      if(tile.dataStore != null) {
+        GeoIODataStoreManager.dispose(tile.dataStore);
+      }
+    }
+    if(failure != null){
+      throw failure;
+    }
+
+    if(featuresWithoutGeometry > 0){
+      LOGGER.warning(String.format("IGNORE %d features of %s without geometry, not assigned to any tile", featuresWithoutGeometry, schemaName));
+    }
+    writeManifest(tiles);
+  }
+
+}
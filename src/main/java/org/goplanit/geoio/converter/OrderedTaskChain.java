@@ -0,0 +1,104 @@
+package org.goplanit.geoio.converter;
+
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Chain of tasks run one after the other on a shared executor, so tasks of different chains run in parallel while tasks of
+ * the same chain (e.g. writes to the same file) remain ordered. The number of tasks submitted but not yet completed is
+ * bounded, the submitting thread waits when this bound is reached. Not thread safe, tasks are to be submitted by a single
+ * thread.
+ *
+ * @author markr
+ */
+class OrderedTaskChain {
+
+  /** executor to run tasks on */
+  private final Executor executor;
+
+  /** maximum number of tasks submitted and not yet completed */
+  private final int maxInFlight;
+
+  /** tasks submitted and not known to be completed, oldest first */
+  private final Deque<CompletableFuture<Void>> inFlight;
+
+  /** latest task of the chain */
+  private CompletableFuture<Void> tail;
+
+  /**
+   * Wait for the future to complete, unwrapping any failure
+   *
+   * @param future to wait for
+   */
+  private static void join(CompletableFuture<Void> future){
+    try {
+      future.join();
+    }catch (CompletionException e){
+      if(e.getCause() instanceof PlanItRunTimeException){
+        throw (PlanItRunTimeException) e.getCause();
+      }
+      var exception = new PlanItRunTimeException("Unable to complete task");
+      exception.initCause(e.getCause());
+      throw exception;
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param executor to run tasks on
+   * @param maxInFlight maximum number of tasks submitted and not yet completed
+   */
+  OrderedTaskChain(Executor executor, int maxInFlight){
+    this.executor = executor;
+    this.maxInFlight = maxInFlight;
+    this.inFlight = new ArrayDeque<>(maxInFlight + 1);
+    this.tail = CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * Submit a task to run after all earlier tasks of the chain, waiting for earlier tasks when too many are in flight
+   *
+   * @param task to run
+   */
+  void submit(Runnable task){
+    inFlight.removeIf(CompletableFuture::isDone);
+    while(inFlight.size() >= maxInFlight){
+      join(inFlight.poll());
+    }
+    tail = tail.thenRunAsync(task, executor);
+    inFlight.add(tail);
+  }
+
+  /**
+   * Submit a task, see {@link #submit(Runnable)}, with a callback run once the task completes, also when the task fails or
+   * is skipped because an earlier task of the chain failed, e.g., to release resources held for the task. When the task
+   * cannot be submitted because an earlier task failed, the callback is run before rethrowing
+   *
+   * @param task to run
+   * @param onCompletion to run upon completion of the task, on any thread
+   */
+  void submit(Runnable task, Runnable onCompletion){
+    try {
+      submit(task);
+    }catch (RuntimeException e){
+      onCompletion.run();
+      throw e;
+    }
+    tail.whenComplete((result, failure) -> onCompletion.run());
+  }
+
+  /**
+   * Wait for all tasks of the chain to complete
+   */
+  void await(){
+    join(tail);
+    inFlight.clear();
+  }
+
+}
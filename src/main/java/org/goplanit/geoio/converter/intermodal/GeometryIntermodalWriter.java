@@ -2,24 +2,49 @@ package org.goplanit.geoio.converter.intermodal;
 
 import org.goplanit.converter.idmapping.IdMapperType;
 import org.goplanit.converter.intermodal.IntermodalWriter;
+import org.goplanit.geoio.converter.ExportMemoryBudget;
+import org.goplanit.geoio.converter.GeoIoCancellationToken;
+import org.goplanit.geoio.converter.GeoIoExportResult;
+import org.goplanit.geoio.converter.GeoIoExportSnapshot;
+import org.goplanit.geoio.converter.GeoIoProgressListener;
+import org.goplanit.geoio.converter.GeometryIoWriter;
 import org.goplanit.geoio.converter.network.GeometryNetworkWriter;
 import org.goplanit.geoio.converter.network.GeometryNetworkWriterFactory;
+import org.goplanit.geoio.converter.service.GeometryRoutedServicesWriter;
 import org.goplanit.geoio.converter.service.GeometryRoutedServicesWriterFactory;
+import org.goplanit.geoio.converter.service.GeometryServiceNetworkWriter;
 import org.goplanit.geoio.converter.service.GeometryServiceNetworkWriterFactory;
 import org.goplanit.geoio.converter.zoning.GeometryZoningWriter;
 import org.goplanit.geoio.converter.zoning.GeometryZoningWriterFactory;
+import org.goplanit.geoio.util.GeoIoMappedIdCache;
+import org.goplanit.geoio.util.GeoIoWriterSettings;
 import org.goplanit.network.MacroscopicNetwork;
 import org.goplanit.network.ServiceNetwork;
-import org.goplanit.network.transport.TransportModelNetwork;
 import org.goplanit.service.routed.RoutedServices;
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
 import org.goplanit.utils.misc.Pair;
 import org.goplanit.zoning.Zoning;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Geometry intermodal writer to persist in GIS format, wrapping a Geometry network writer and Geometry zoning writer (and optionally a
- * service network and routes services writer )in one
+ * service network and routes services writer )in one. Checkpointing applies per component, each recording its own checkpoint
+ * manifest, so resuming a failed export, see {@link GeometryIntermodalWriterSettings#setResumeFromCheckpoint(boolean)}, only
+ * writes the layers not completed by any of the components
  * 
  * @author markr
  *
@@ -37,45 +62,140 @@ public class GeometryIntermodalWriter implements IntermodalWriter<ServiceNetwork
    */
   protected IdMapperType idMapper;
 
+  /** listener passed on to all component writers */
+  private GeoIoProgressListener progressListener = GeoIoProgressListener.NONE;
+
+  /** token passed on to all component writers, so cancelling it cancels all of them */
+  private GeoIoCancellationToken cancellationToken = GeoIoCancellationToken.create();
+
+  /** true when the cancellation token is provided by the user, otherwise it is owned, and renewed after use, by this writer */
+  private boolean cancellationTokenProvided = false;
+
   /**
-   * Persist network and zoning and return writers used. If the virtual network of the combination of zoning and network is
-   * indicated to be persisted, then this is done automatically.
+   * Pass on the progress listener and cancellation token of this writer, and the checkpoint settings and attribute extensions
+   * of the component, to a component writer
    *
-   * @param macroscopicNetwork to persist
-   * @param zoning to persist
-   * @return used writers, network and zoning, respectively
-   */
-  protected Pair<GeometryNetworkWriter, GeometryZoningWriter> writeNetworkAndZoning(
-      MacroscopicNetwork macroscopicNetwork, Zoning zoning) {
-
-    /* also persist virtual network, i.e., the relation between zones and connectoids, including the virtual edges/edge segments */
-    if(getSettings().getZoningSettings().isPersistVirtualNetwork()){
-      if(zoning.getVirtualNetwork() != null && !zoning.getVirtualNetwork().isEmpty()){
-        LOGGER.info("Virtual network present on zoning, using existing virtual network to persist");
-      }else{
-        LOGGER.info("Virtual network not present on zoning, integrating network and zoning to be able to persist virtual network");
-        // zoning virtual network populated as a result of the below integration
-        new TransportModelNetwork(macroscopicNetwork, zoning).integrateTransportNetworkViaConnectoids();
-      }
-    }
+   * @param componentWriter to configure
+   * @param componentSettings the intermodal settings of the component
+   */
+  protected void configureComponentWriter(GeometryIoWriter<?> componentWriter, GeoIoWriterSettings componentSettings){
+    componentWriter.setProgressListener(progressListener);
+    componentWriter.setCancellationToken(cancellationToken);
+    componentWriter.getSettings().setCheckpointing(componentSettings.isCheckpointing());
+    componentWriter.getSettings().setResumeFromCheckpoint(componentSettings.isResumeFromCheckpoint());
+    var attributeExtensions = componentSettings.getAttributeExtensions();
+    componentWriter.getSettings().clearAttributeExtensions();
+    attributeExtensions.forEach(componentWriter.getSettings()::addAttributeExtension);
+  }
+
+  /**
+   * Create the memory budget of an export, shared by all its component writers, sized by the largest budget of the component
+   * settings, see {@link GeometryIntermodalWriterSettings#setExportMemoryBudget(long)}
+   *
+   * @return created budget
+   */
+  protected ExportMemoryBudget createExportMemoryBudget(){
+    return ExportMemoryBudget.create(Stream.of(
+        getSettings().getNetworkSettings(),
+        getSettings().getZoningSettings(),
+        getSettings().getServiceNetworkSettings(),
+        getSettings().getRoutedServicesSettings()).mapToLong(GeoIoWriterSettings::getExportMemoryBudget).max().orElse(0));
+  }
+
+  /**
+   * Create network and zoning writers with their id mappers resolved and the zoning writer's parent id mappers set to the
+   * network writer's primary id mappers, so both can write independently
+   *
+   * @param mappedIdCache shared by the writers
+   * @param exportMemoryBudget shared by the writers
+   * @return network and zoning writers, respectively
+   */
+  protected Pair<GeometryNetworkWriter, GeometryZoningWriter> createNetworkAndZoningWriters(
+      GeoIoMappedIdCache mappedIdCache, ExportMemoryBudget exportMemoryBudget) {
 
     /* network writer */
     var networkSettings = getSettings().getNetworkSettings();
     var networkWriter = GeometryNetworkWriterFactory.create(networkSettings.getOutputDirectory(), networkSettings.getCountry());
     networkWriter.setIdMapperType(getIdMapperType());
-    networkWriter.write(macroscopicNetwork);
+    networkWriter.setParentMappedIdCache(mappedIdCache);
+    networkWriter.setParentExportMemoryBudget(exportMemoryBudget);
+    networkWriter.resolveIdMappers();
+    configureComponentWriter(networkWriter, networkSettings);
 
     /* zoning writer - with pt component via transfer zones */
     var zoningSettings = getSettings().getZoningSettings();
     var zoningWriter =
             GeometryZoningWriterFactory.create(zoningSettings.getOutputDirectory(), zoningSettings.getCountry());
     zoningWriter.setParentIdMappers(networkWriter.getPrimaryIdMapper()); // pass on parent ref mapping
+    zoningWriter.setParentMappedIdCache(mappedIdCache); // reuse already mapped parent ids
+    zoningWriter.setParentExportMemoryBudget(exportMemoryBudget);
     zoningWriter.setIdMapperType(getIdMapperType());
-    zoningWriter.write(zoning);
+    zoningWriter.resolveIdMappers();
+    configureComponentWriter(zoningWriter, zoningSettings);
 
     return Pair.of(networkWriter, zoningWriter);
   }
 
+  /**
+   * Unwrap the cause of a failed future
+   *
+   * @param failure as reported by the future
+   * @return actual cause of the failure
+   */
+  private static Throwable unwrapFailure(Throwable failure){
+    return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+  }
+
+  /**
+   * Run the given write tasks concurrently on the shared executor of asynchronous writes, see
+   * {@link GeometryIoWriter#getDefaultAsyncExecutor()}, and wait for all of them to complete. All id mapper handovers
+   * between writers are resolved before the tasks are started, so the tasks do not depend on each other. On the first failure
+   * the cancellation token shared with the component writers is cancelled, so the remaining tasks stop early and discard what
+   * they started. The first failure is rethrown once all tasks completed, with any other failures added as suppressed.
+   *
+   * @param writeTasks to run
+   */
+  protected void runConcurrently(List<Runnable> writeTasks){
+    var executor = GeometryIoWriter.getDefaultAsyncExecutor();
+    var firstFailure = new AtomicReference<Throwable>();
+    var futures = writeTasks.stream().map(task -> CompletableFuture.runAsync(task, executor).whenComplete((result, failure) -> {
+      if(failure != null && firstFailure.compareAndSet(null, unwrapFailure(failure))){
+        cancellationToken.cancel();
+      }
+    })).collect(Collectors.toList());
+
+    var otherFailures = new ArrayList<Throwable>();
+    for(var future : futures){
+      try {
+        future.join();
+      }catch(CompletionException e){
+        var failure = unwrapFailure(e);
+        if(failure != firstFailure.get()){
+          otherFailures.add(failure);
+        }
+      }
+    }
+    if(firstFailure.get() == null){
+      return;
+    }
+
+    /* a token owned by this writer is renewed, so the next write is not cancelled upfront */
+    if(!cancellationTokenProvided){
+      cancellationToken = GeoIoCancellationToken.create();
+    }
+
+    var failure = firstFailure.get();
+    PlanItRunTimeException exception;
+    if(failure instanceof PlanItRunTimeException){
+      exception = (PlanItRunTimeException) failure;
+    }else{
+      exception = new PlanItRunTimeException("Unable to complete intermodal geometry write");
+      exception.initCause(failure);
+    }
+    otherFailures.forEach(exception::addSuppressed);
+    throw exception;
+  }
+
   /** Constructor
    *
    * @param outputDirectory to persist on
@@ -103,16 +223,128 @@ public class GeometryIntermodalWriter implements IntermodalWriter<ServiceNetwork
     writeNetworkAndZoning(macroscopicNetwork, zoning);
   }
 
+  /**
+   * Write network and zoning concurrently, see {@link #write(MacroscopicNetwork, Zoning)}
+   *
+   * @param macroscopicNetwork to persist
+   * @param zoning to persist
+   * @return component writers used, holding the result of their write
+   */
+  private List<GeometryIoWriter<?>> writeNetworkAndZoning(MacroscopicNetwork macroscopicNetwork, Zoning zoning){
+    var writers = createNetworkAndZoningWriters(new GeoIoMappedIdCache(), createExportMemoryBudget());
+    runConcurrently(List.of(
+        () -> writers.first().write(macroscopicNetwork),
+        () -> writers.second().write(zoning)));
+    return List.of(writers.first(), writers.second());
+  }
+
+  /**
+   * Combine the export results of the component writers of a write
+   *
+   * @param componentWriters used
+   * @param startNanos start of the write
+   * @return combined export result
+   */
+  private static GeoIoExportResult combineExportResults(List<GeometryIoWriter<?>> componentWriters, long startNanos){
+    return GeoIoExportResult.combine(
+        componentWriters.stream().map(GeometryIoWriter::getLastExportResult).collect(Collectors.toList()),
+        Duration.ofNanos(System.nanoTime() - startNanos));
+  }
+
+  /**
+   * Run an intermodal write asynchronously, providing the combined export result of its component writers
+   *
+   * @param write to run, providing the component writers used
+   * @param executor to run on
+   * @return future of the combined export result
+   */
+  private static CompletableFuture<GeoIoExportResult> supplyExportAsync(
+      Supplier<List<GeometryIoWriter<?>>> write, Executor executor){
+    PlanItRunTimeException.throwIfNull(executor, "Executor for asynchronous write is null");
+    return CompletableFuture.supplyAsync(() -> {
+      final long startNanos = System.nanoTime();
+      return combineExportResults(write.get(), startNanos);
+    }, executor);
+  }
+
+  /**
+   * Write network and zoning asynchronously on the default executor, see {@link GeometryIoWriter#getDefaultAsyncExecutor()}
+   *
+   * @param macroscopicNetwork to persist
+   * @param zoning to persist
+   * @return future of the combined export result
+   */
+  public CompletableFuture<GeoIoExportResult> writeAsync(MacroscopicNetwork macroscopicNetwork, Zoning zoning){
+    return writeAsync(macroscopicNetwork, zoning, GeometryIoWriter.getDefaultAsyncExecutor());
+  }
+
+  /**
+   * Write network and zoning asynchronously, the component writers still run concurrently to each other
+   *
+   * @param macroscopicNetwork to persist
+   * @param zoning to persist
+   * @param executor to write on
+   * @return future of the combined export result, completed exceptionally when any component fails or is cancelled
+   */
+  public CompletableFuture<GeoIoExportResult> writeAsync(MacroscopicNetwork macroscopicNetwork, Zoning zoning, Executor executor){
+    return supplyExportAsync(() -> writeNetworkAndZoning(macroscopicNetwork, zoning), executor);
+  }
+
+  /**
+   * Write network, zoning, service network and routed services asynchronously on the default executor, see
+   * {@link GeometryIoWriter#getDefaultAsyncExecutor()}
+   *
+   * @param macroscopicNetwork to persist
+   * @param zoning to persist
+   * @param serviceNetwork to persist
+   * @param routedServices to persist
+   * @return future of the combined export result
+   */
+  public CompletableFuture<GeoIoExportResult> writeWithServicesAsync(
+      MacroscopicNetwork macroscopicNetwork, Zoning zoning, ServiceNetwork serviceNetwork, RoutedServices routedServices){
+    return writeWithServicesAsync(
+        macroscopicNetwork, zoning, serviceNetwork, routedServices, GeometryIoWriter.getDefaultAsyncExecutor());
+  }
+
+  /**
+   * Write network, zoning, service network and routed services asynchronously, the component writers still run
+   * concurrently to each other
+   *
+   * @param macroscopicNetwork to persist
+   * @param zoning to persist
+   * @param serviceNetwork to persist
+   * @param routedServices to persist
+   * @param executor to write on
+   * @return future of the combined export result, completed exceptionally when any component fails or is cancelled
+   */
+  public CompletableFuture<GeoIoExportResult> writeWithServicesAsync(
+      MacroscopicNetwork macroscopicNetwork, Zoning zoning, ServiceNetwork serviceNetwork, RoutedServices routedServices,
+      Executor executor){
+    return supplyExportAsync(
+        () -> writeAllComponents(macroscopicNetwork, zoning, serviceNetwork, routedServices), executor);
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
   public void writeWithServices(MacroscopicNetwork macroscopicNetwork, Zoning zoning, ServiceNetwork serviceNetwork, RoutedServices routedServices) {
+    writeAllComponents(macroscopicNetwork, zoning, serviceNetwork, routedServices);
+  }
 
-    /* perform persistence without services first */
-    var networkAndZoningWriter = writeNetworkAndZoning(macroscopicNetwork, zoning);
+  /**
+   * Create the writers of all components with their id mappers resolved, each using the parent id mappers of the writers of
+   * the components it depends on, so all can write independently
+   *
+   * @return network and zoning writers, and service network and routed services writers, respectively
+   */
+  private Pair<Pair<GeometryNetworkWriter, GeometryZoningWriter>, Pair<GeometryServiceNetworkWriter, GeometryRoutedServicesWriter>>
+      createAllComponentWriters() {
 
-    /* perform persistence for services */
+    /* all writers share the same parent id mappers, so they can share their mapped ids as well */
+    var mappedIdCache = new GeoIoMappedIdCache();
+    var exportMemoryBudget = createExportMemoryBudget();
+    var networkAndZoningWriter = createNetworkAndZoningWriters(mappedIdCache, exportMemoryBudget);
 
     /* service network writer */
     var serviceNetworkSettings = getSettings().getServiceNetworkSettings();
@@ -124,9 +356,11 @@ public class GeometryIntermodalWriter implements IntermodalWriter<ServiceNetwork
     var networkIdMapper = networkAndZoningWriter.first().getPrimaryIdMapper();
     var zoningIdMapper = networkAndZoningWriter.second().getPrimaryIdMapper();
     serviceNetworkWriter.setParentIdMappers(networkIdMapper, zoningIdMapper);
-
+    serviceNetworkWriter.setParentMappedIdCache(mappedIdCache);
+    serviceNetworkWriter.setParentExportMemoryBudget(exportMemoryBudget);
     serviceNetworkWriter.setIdMapperType(getIdMapperType());
-    serviceNetworkWriter.write(serviceNetwork);
+    serviceNetworkWriter.resolveIdMappers();
+    configureComponentWriter(serviceNetworkWriter, serviceNetworkSettings);
 
     /* routed services writer */
     var routedServicesSettings = getSettings().getRoutedServicesSettings();
@@ -136,9 +370,93 @@ public class GeometryIntermodalWriter implements IntermodalWriter<ServiceNetwork
 
     // routed services only requires service network entity references, those are present on the service network writer id mappings
     routedServicesWriter.setParentIdMappers(networkIdMapper, zoningIdMapper, serviceNetworkWriter.getPrimaryIdMapper());
-
+    routedServicesWriter.setParentMappedIdCache(mappedIdCache);
+    routedServicesWriter.setParentExportMemoryBudget(exportMemoryBudget);
     routedServicesWriter.setIdMapperType(getIdMapperType());
-    routedServicesWriter.write(routedServices);
+    routedServicesWriter.resolveIdMappers();
+    configureComponentWriter(routedServicesWriter, routedServicesSettings);
+
+    return Pair.of(networkAndZoningWriter, Pair.of(serviceNetworkWriter, routedServicesWriter));
+  }
+
+  /**
+   * Write all components concurrently, see {@link #writeWithServices(MacroscopicNetwork, Zoning, ServiceNetwork, RoutedServices)}
+   *
+   * @param macroscopicNetwork to persist
+   * @param zoning to persist
+   * @param serviceNetwork to persist
+   * @param routedServices to persist
+   * @return component writers used, holding the result of their write
+   */
+  private List<GeometryIoWriter<?>> writeAllComponents(
+      MacroscopicNetwork macroscopicNetwork, Zoning zoning, ServiceNetwork serviceNetwork, RoutedServices routedServices) {
+    var writers = createAllComponentWriters();
+    var networkAndZoningWriter = writers.first();
+    var serviceWriters = writers.second();
+
+    /* with all id mappers resolved, the writers no longer depend on each other */
+    runConcurrently(List.of(
+        () -> networkAndZoningWriter.first().write(macroscopicNetwork),
+        () -> networkAndZoningWriter.second().write(zoning),
+        () -> serviceWriters.first().write(serviceNetwork),
+        () -> serviceWriters.second().write(routedServices)));
+    return List.of(networkAndZoningWriter.first(), networkAndZoningWriter.second(), serviceWriters.first(), serviceWriters.second());
+  }
+
+  /**
+   * Run the given captures concurrently and combine their snapshots. When any capture fails, the snapshots of the others are
+   * discarded
+   *
+   * @param captures to run
+   * @return combined snapshot
+   */
+  private GeoIoExportSnapshot captureConcurrently(List<Supplier<GeoIoExportSnapshot>> captures){
+    var snapshots = new GeoIoExportSnapshot[captures.size()];
+    try {
+      runConcurrently(IntStream.range(0, captures.size()).<Runnable>mapToObj(
+          index -> () -> snapshots[index] = captures.get(index).get()).collect(Collectors.toList()));
+    }catch (RuntimeException e){
+      Arrays.stream(snapshots).filter(Objects::nonNull).forEach(GeoIoExportSnapshot::discard);
+      throw e;
+    }
+    return GeoIoExportSnapshot.combine(List.of(snapshots));
+  }
+
+  /**
+   * Capture a snapshot of network and zoning, to be written afterwards while they may change again, see
+   * {@link GeoIoExportSnapshot}. The components are captured concurrently and written concurrently
+   *
+   * @param macroscopicNetwork to capture
+   * @param zoning to capture
+   * @return captured snapshot
+   */
+  public GeoIoExportSnapshot captureSnapshot(MacroscopicNetwork macroscopicNetwork, Zoning zoning){
+    var writers = createNetworkAndZoningWriters(new GeoIoMappedIdCache(), createExportMemoryBudget());
+    return captureConcurrently(List.of(
+        () -> writers.first().captureSnapshot(macroscopicNetwork),
+        () -> writers.second().captureSnapshot(zoning)));
+  }
+
+  /**
+   * Capture a snapshot of network, zoning, service network and routed services, to be written afterwards while they may
+   * change again, see {@link GeoIoExportSnapshot}. The components are captured concurrently and written concurrently
+   *
+   * @param macroscopicNetwork to capture
+   * @param zoning to capture
+   * @param serviceNetwork to capture
+   * @param routedServices to capture
+   * @return captured snapshot
+   */
+  public GeoIoExportSnapshot captureSnapshotWithServices(
+      MacroscopicNetwork macroscopicNetwork, Zoning zoning, ServiceNetwork serviceNetwork, RoutedServices routedServices){
+    var writers = createAllComponentWriters();
+    var networkAndZoningWriter = writers.first();
+    var serviceWriters = writers.second();
+    return captureConcurrently(List.of(
+        () -> networkAndZoningWriter.first().captureSnapshot(macroscopicNetwork),
+        () -> networkAndZoningWriter.second().captureSnapshot(zoning),
+        () -> serviceWriters.first().captureSnapshot(serviceNetwork),
+        () -> serviceWriters.second().captureSnapshot(routedServices)));
   }
 
   /**
@@ -172,4 +490,26 @@ public class GeometryIntermodalWriter implements IntermodalWriter<ServiceNetwork
     return this.settings;
   }
 
+  /**
+   * Report progress of all component writers to the given listener, components run concurrently so the listener may be
+   * invoked from several threads at once
+   *
+   * @param progressListener to use, null to not report progress
+   */
+  public void setProgressListener(GeoIoProgressListener progressListener){
+    this.progressListener = progressListener == null ? GeoIoProgressListener.NONE : progressListener;
+  }
+
+  /**
+   * Check the given token for cancellation in all component writers, when cancelled each component writer removes the layers
+   * it started before the {@link org.goplanit.geoio.converter.GeoIoExportCancelledException} is rethrown. The token is also
+   * cancelled by this writer when one of its concurrently running component writes fails
+   *
+   * @param cancellationToken to use, null to never cancel
+   */
+  public void setCancellationToken(GeoIoCancellationToken cancellationToken){
+    this.cancellationTokenProvided = cancellationToken != null;
+    this.cancellationToken = cancellationToken == null ? GeoIoCancellationToken.create() : cancellationToken;
+  }
+
 }
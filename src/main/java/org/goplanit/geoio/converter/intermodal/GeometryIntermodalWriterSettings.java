@@ -5,6 +5,7 @@ import org.goplanit.geoio.converter.network.GeometryNetworkWriterSettings;
 import org.goplanit.geoio.converter.service.GeometryRoutedServicesWriterSettings;
 import org.goplanit.geoio.converter.service.GeometryServiceNetworkWriterSettings;
 import org.goplanit.geoio.converter.zoning.GeometryZoningWriterSettings;
+import org.goplanit.geoio.util.GeoIoAttributeExtension;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 /**
@@ -146,5 +147,53 @@ public class GeometryIntermodalWriterSettings implements ConverterWriterSettings
     getServiceNetworkSettings().setDestinationCoordinateReferenceSystem(destinationCoordinateReferenceSystem);
     getRoutedServicesSettings().setDestinationCoordinateReferenceSystem(destinationCoordinateReferenceSystem);
   }  
+
+  /** Set checkpointing of completed layers on zoning, (service) network and routed services settings
+   *
+   * @param checkpointing flag to set
+   */
+  public void setCheckpointing(boolean checkpointing) {
+    getZoningSettings().setCheckpointing(checkpointing);
+    getNetworkSettings().setCheckpointing(checkpointing);
+    getServiceNetworkSettings().setCheckpointing(checkpointing);
+    getRoutedServicesSettings().setCheckpointing(checkpointing);
+  }
+
+  /** Set resuming from checkpoint on zoning, (service) network and routed services settings, so each component only writes
+   * the layers not completed by an earlier export
+   *
+   * @param resumeFromCheckpoint flag to set
+   */
+  public void setResumeFromCheckpoint(boolean resumeFromCheckpoint) {
+    getZoningSettings().setResumeFromCheckpoint(resumeFromCheckpoint);
+    getNetworkSettings().setResumeFromCheckpoint(resumeFromCheckpoint);
+    getServiceNetworkSettings().setResumeFromCheckpoint(resumeFromCheckpoint);
+    getRoutedServicesSettings().setResumeFromCheckpoint(resumeFromCheckpoint);
+  }
   
+  /** Set the export memory budget on zoning, (service) network and routed services settings. The components of an
+   * intermodal export share a single budget, sized by the largest budget of the component settings, see
+   * {@link org.goplanit.geoio.util.GeoIoWriterSettings#setExportMemoryBudget(long)}
+   *
+   * @param exportMemoryBudget in bytes, zero to not bound export buffers
+   */
+  public void setExportMemoryBudget(long exportMemoryBudget) {
+    getZoningSettings().setExportMemoryBudget(exportMemoryBudget);
+    getNetworkSettings().setExportMemoryBudget(exportMemoryBudget);
+    getServiceNetworkSettings().setExportMemoryBudget(exportMemoryBudget);
+    getRoutedServicesSettings().setExportMemoryBudget(exportMemoryBudget);
+  }
+
+  /** Register a custom attribute on zoning, (service) network and routed services settings, so it is added to the layers of
+   * its entity class by whichever component persists them
+   *
+   * @param attributeExtension to add
+   */
+  public void addAttributeExtension(GeoIoAttributeExtension<?> attributeExtension) {
+    getZoningSettings().addAttributeExtension(attributeExtension);
+    getNetworkSettings().addAttributeExtension(attributeExtension);
+    getServiceNetworkSettings().addAttributeExtension(attributeExtension);
+    getRoutedServicesSettings().addAttributeExtension(attributeExtension);
+  }
+
 }
@@ -0,0 +1,460 @@
+package org.goplanit.geoio.converter.network;
+
+import org.goplanit.converter.network.NetworkReader;
+import org.goplanit.geoio.converter.GeometryLayerReader;
+import org.goplanit.geoio.util.ModeShortNameConverter;
+import org.goplanit.network.LayeredNetwork;
+import org.goplanit.network.MacroscopicNetwork;
+import org.goplanit.network.layer.macroscopic.AccessGroupPropertiesFactory;
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+import org.goplanit.utils.id.IdGroupingToken;
+import org.goplanit.utils.misc.LoggingUtils;
+import org.goplanit.utils.misc.StringUtils;
+import org.goplanit.utils.mode.Mode;
+import org.goplanit.utils.mode.PredefinedModeType;
+import org.goplanit.utils.network.layer.MacroscopicNetworkLayer;
+import org.goplanit.utils.network.layer.macroscopic.MacroscopicLink;
+import org.goplanit.utils.network.layer.macroscopic.MacroscopicLinkSegment;
+import org.goplanit.utils.network.layer.macroscopic.MacroscopicLinkSegmentType;
+import org.goplanit.utils.network.layer.physical.Node;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Point;
+import org.opengis.feature.simple.SimpleFeature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Reader to rebuild a PLANit macroscopic network from the node, link and link segment layers persisted by a
+ * {@link GeometryNetworkWriter}. Layers are identified by the node files present in the input directory. Link segment types
+ * and modes are not persisted separately, they are reconstructed from the type and mode specific ('_ban', '_spd', '_spdc')
+ * attributes of the link segments. Only predefined modes can be identified by their short name, custom modes are ignored.
+ * <p>
+ *   Files are memory-mapped and the node, link and link segment files (and parts of sharded layers) are read and decoded in
+ *   parallel. Decoded records are registered on the network sequentially afterwards, since PLANit containers are not thread safe.
+ * </p>
+ *
+ * @author markr
+ *
+ */
+public class GeometryNetworkReader implements NetworkReader {
+
+  /** the logger to use */
+  private static final Logger LOGGER = Logger.getLogger(GeometryNetworkReader.class.getCanonicalName());
+
+  /** suffix of the attribute indicating a mode is banned */
+  private static final String MODE_BANNED_SUFFIX = "_ban";
+
+  /** suffix of the attribute with the mode specific maximum speed */
+  private static final String MODE_SPEED_SUFFIX = "_spd";
+
+  /** suffix of the attribute with the mode specific critical speed */
+  private static final String MODE_CRITICAL_SPEED_SUFFIX = "_spdc";
+
+  /** settings to use */
+  private final GeometryNetworkReaderSettings settings;
+
+  /** id token to create network with */
+  private final IdGroupingToken idToken;
+
+  /** modes registered on the network by their short name */
+  private final Map<String, Mode> modesByShortName = new HashMap<>();
+
+  /** nodes of all layers read by the id they were persisted with (mapped_id) */
+  private final Map<String, Node> nodesByPersistedId = new HashMap<>();
+
+  /** link segments of all layers read by the id they were persisted with (mapped_id) */
+  private final Map<String, MacroscopicLinkSegment> linkSegmentsByPersistedId = new HashMap<>();
+
+  /**
+   * Decoded node
+   */
+  private static final class NodeRecord {
+    private String mappedId;
+    private String xmlId;
+    private String externalId;
+    private String name;
+    private Point position;
+  }
+
+  /**
+   * Decoded link
+   */
+  private static final class LinkRecord {
+    private String mappedId;
+    private String xmlId;
+    private String externalId;
+    private String name;
+    private Double lengthKm;
+    private String nodeA;
+    private String nodeB;
+    private LineString geometry;
+  }
+
+  /**
+   * Decoded link segment, mode specific values are indexed by the position of the mode in the layer's mode short names
+   */
+  private static final class LinkSegmentRecord {
+    private String mappedId;
+    private String xmlId;
+    private String externalId;
+    private String parentId;
+    private String nodeUp;
+    private Integer lanes;
+    private Double capacityPcuH;
+    private Double speedLimitKmH;
+    private String typeId;
+    private String typeName;
+    private Double maxDensityPcuKm;
+    private boolean[] modeBanned;
+    private Double[] modeSpeedKmH;
+    private Double[] modeCriticalSpeedKmH;
+  }
+
+  /**
+   * Decode a node feature
+   *
+   * @param feature to decode
+   * @return decoded node
+   */
+  private static NodeRecord decodeNode(SimpleFeature feature){
+    var record = new NodeRecord();
+    record.mappedId = GeometryLayerReader.getString(feature, "mapped_id");
+    record.xmlId = GeometryLayerReader.getString(feature, "xml_id");
+    record.externalId = GeometryLayerReader.getString(feature, "ext_id");
+    record.name = GeometryLayerReader.getString(feature, "name");
+    record.position = GeometryLayerReader.asPoint((Geometry) feature.getDefaultGeometry());
+    return record;
+  }
+
+  /**
+   * Decode a link feature
+   *
+   * @param feature to decode
+   * @return decoded link
+   */
+  private static LinkRecord decodeLink(SimpleFeature feature){
+    var record = new LinkRecord();
+    record.mappedId = GeometryLayerReader.getString(feature, "mapped_id");
+    record.xmlId = GeometryLayerReader.getString(feature, "xml_id");
+    record.externalId = GeometryLayerReader.getString(feature, "ext_id");
+    record.name = GeometryLayerReader.getString(feature, "name");
+    record.lengthKm = GeometryLayerReader.getDouble(feature, "length_km");
+    record.nodeA = GeometryLayerReader.getString(feature, "node_a");
+    record.nodeB = GeometryLayerReader.getString(feature, "node_b");
+    record.geometry = GeometryLayerReader.asLineString((Geometry) feature.getDefaultGeometry());
+    return record;
+  }
+
+  /**
+   * Decode a link segment feature
+   *
+   * @param feature to decode
+   * @param modeShortNames of the modes with attributes on the layer
+   * @return decoded link segment
+   */
+  private static LinkSegmentRecord decodeLinkSegment(SimpleFeature feature, List<String> modeShortNames){
+    var record = new LinkSegmentRecord();
+    record.mappedId = GeometryLayerReader.getString(feature, "mapped_id");
+    record.xmlId = GeometryLayerReader.getString(feature, "xml_id");
+    record.externalId = GeometryLayerReader.getString(feature, "ext_id");
+    record.parentId = GeometryLayerReader.getString(feature, "parent_id");
+    record.nodeUp = GeometryLayerReader.getString(feature, "node_up");
+    var lanes = GeometryLayerReader.getDouble(feature, "lanes");
+    record.lanes = lanes == null ? null : lanes.intValue();
+    record.capacityPcuH = GeometryLayerReader.getDouble(feature, "cap_pcuh");
+    record.speedLimitKmH = GeometryLayerReader.getDouble(feature, "speed_kmh");
+    record.typeId = GeometryLayerReader.getString(feature, "type_id");
+    record.typeName = GeometryLayerReader.getString(feature, "type_name");
+    record.maxDensityPcuKm = GeometryLayerReader.getDouble(feature, "dens_pcukm");
+
+    int numModes = modeShortNames.size();
+    record.modeBanned = new boolean[numModes];
+    record.modeSpeedKmH = new Double[numModes];
+    record.modeCriticalSpeedKmH = new Double[numModes];
+    for(int index = 0; index < numModes; ++index){
+      var shortName = modeShortNames.get(index);
+      record.modeBanned[index] = GeometryLayerReader.getBoolean(feature, shortName + MODE_BANNED_SUFFIX, true);
+      record.modeSpeedKmH[index] = GeometryLayerReader.getDouble(feature, shortName + MODE_SPEED_SUFFIX);
+      record.modeCriticalSpeedKmH[index] = GeometryLayerReader.getDouble(feature, shortName + MODE_CRITICAL_SPEED_SUFFIX);
+    }
+    return record;
+  }
+
+  /**
+   * Identify the layers present in the input directory by their node files
+   *
+   * @return layer ids (as used in the file names) in alphabetical order
+   */
+  private List<String> findLayerIds(){
+    var layerFilePattern = Pattern.compile(
+        Pattern.quote(settings.getLayerPrefix() + "_") + "(.+)" + Pattern.quote("_" + settings.getNodesFileName() + settings.getFileExtension()));
+    try (var files = Files.list(Path.of(settings.getInputDirectory()))){
+      return files.map(file -> layerFilePattern.matcher(file.getFileName().toString()))
+          .filter(matcher -> matcher.matches()).map(matcher -> matcher.group(1)).sorted().collect(Collectors.toList());
+    }catch (IOException e){
+      LOGGER.severe(e.getMessage());
+      throw new PlanItRunTimeException("Unable to list input directory %s", settings.getInputDirectory());
+    }
+  }
+
+  /**
+   * Collect or register the mode with the given short name
+   *
+   * @param network to register on
+   * @param shortName of the mode
+   * @return mode, null when not a predefined mode
+   */
+  private Mode getOrRegisterMode(MacroscopicNetwork network, String shortName){
+    if(modesByShortName.containsKey(shortName)){
+      return modesByShortName.get(shortName);
+    }
+    var modeType = ModeShortNameConverter.asPredefinedModeType(shortName);
+    Mode mode = null;
+    if(modeType == PredefinedModeType.CUSTOM){
+      LOGGER.warning(String.format("IGNORE: Unable to identify mode %s, only predefined modes are supported when reading", shortName));
+    }else{
+      mode = network.getModes().getFactory().registerNew(modeType);
+    }
+    modesByShortName.put(shortName, mode);
+    return mode;
+  }
+
+  /**
+   * Register the link segment types of the layer based on the type attributes of its link segments. A mode is allowed on a
+   * type when it is not banned on its link segments, with the highest mode specific speed found as its maximum speed
+   *
+   * @param layer to register on
+   * @param linkSegmentRecords to extract types from
+   * @param layerModes modes by position of their short name
+   * @return types by their persisted id
+   */
+  private Map<String, MacroscopicLinkSegmentType> registerLinkSegmentTypes(
+      MacroscopicNetworkLayer layer, List<LinkSegmentRecord> linkSegmentRecords, List<Mode> layerModes){
+    var firstRecordByType = new LinkedHashMap<String, LinkSegmentRecord>();
+    var maxSpeedsByType = new HashMap<String, Double[]>();
+    for(var record : linkSegmentRecords){
+      firstRecordByType.putIfAbsent(record.typeId, record);
+      var maxSpeeds = maxSpeedsByType.computeIfAbsent(record.typeId, typeId -> new Double[layerModes.size()]);
+      for(int index = 0; index < layerModes.size(); ++index){
+        if(!record.modeBanned[index] && record.modeSpeedKmH[index] != null){
+          maxSpeeds[index] = maxSpeeds[index] == null ? record.modeSpeedKmH[index] : Math.max(maxSpeeds[index], record.modeSpeedKmH[index]);
+        }
+      }
+    }
+
+    var typesById = new HashMap<String, MacroscopicLinkSegmentType>();
+    for(var entry : firstRecordByType.entrySet()){
+      var record = entry.getValue();
+      double lanes = (record.lanes == null || record.lanes < 1) ? 1 : record.lanes;
+      double capacityPerLane = record.capacityPcuH == null ? MacroscopicLinkSegmentType.DEFAULT_CAPACITY_LANE : record.capacityPcuH / lanes;
+      double maxDensityPerLane = record.maxDensityPcuKm == null ? MacroscopicLinkSegmentType.DEFAULT_MAX_DENSITY_LANE : record.maxDensityPcuKm;
+      var type = layer.getLinkSegmentTypes().getFactory().registerNew(record.typeName, capacityPerLane, maxDensityPerLane);
+      type.setXmlId(entry.getKey());
+
+      var maxSpeeds = maxSpeedsByType.get(entry.getKey());
+      for(int index = 0; index < layerModes.size(); ++index){
+        var mode = layerModes.get(index);
+        if(mode == null || maxSpeeds[index] == null){
+          continue;
+        }
+        double criticalSpeed = record.modeCriticalSpeedKmH[index] == null ?
+            Math.min(maxSpeeds[index], mode.getMaximumSpeedKmH()) : record.modeCriticalSpeedKmH[index];
+        type.setAccessGroupProperties(AccessGroupPropertiesFactory.create(maxSpeeds[index], criticalSpeed, mode));
+      }
+      typesById.put(entry.getKey(), type);
+    }
+    return typesById;
+  }
+
+  /**
+   * Read a single layer and register it on the network
+   *
+   * @param network to register on
+   * @param layerId as used in the file names
+   * @param executor to read on
+   */
+  private void readLayer(MacroscopicNetwork network, String layerId, ExecutorService executor){
+    final var inputDirectory = Path.of(settings.getInputDirectory());
+    final var layerPrefix = String.join("_", settings.getLayerPrefix(), layerId);
+    final var nodesSchema = String.join("_", layerPrefix, settings.getNodesFileName());
+    final var linksSchema = String.join("_", layerPrefix, settings.getLinksFileName());
+    final var linkSegmentsSchema = String.join("_", layerPrefix, settings.getLinkSegmentsFileName());
+    final String layerLogPrefix = LoggingUtils.surroundwithBrackets(String.join(" ", "layer:", layerId));
+
+    /* modes present on the layer, identified by their mode specific attributes */
+    var linkSegmentsType = GeometryLayerReader.readSchema(inputDirectory, linkSegmentsSchema, settings.getFileExtension());
+    final var modeShortNames = linkSegmentsType.getAttributeDescriptors().stream()
+        .map(descriptor -> descriptor.getLocalName())
+        .filter(name -> name.endsWith(MODE_BANNED_SUFFIX))
+        .map(name -> name.substring(0, name.length() - MODE_BANNED_SUFFIX.length()))
+        .collect(Collectors.toList());
+    if(network.getCoordinateReferenceSystem() == null && linkSegmentsType.getCoordinateReferenceSystem() != null){
+      network.setCoordinateReferenceSystem(linkSegmentsType.getCoordinateReferenceSystem());
+    }
+
+    /* read and decode all files in parallel */
+    final boolean memoryMapped = settings.isMemoryMapped();
+    var nodesFuture = GeometryLayerReader.readLayerAsync(
+        inputDirectory, nodesSchema, settings.getFileExtension(), memoryMapped, GeometryNetworkReader::decodeNode, executor);
+    var linksFuture = GeometryLayerReader.readLayerAsync(
+        inputDirectory, linksSchema, settings.getFileExtension(), memoryMapped, GeometryNetworkReader::decodeLink, executor);
+    var linkSegmentsFuture = GeometryLayerReader.readLayerAsync(
+        inputDirectory, linkSegmentsSchema, settings.getFileExtension(), memoryMapped, f -> decodeLinkSegment(f, modeShortNames), executor);
+
+    /* register sequentially */
+    var layer = network.getTransportLayers().getFactory().registerNew();
+    layer.setXmlId(layerId);
+
+    var layerModes = new ArrayList<Mode>(modeShortNames.size());
+    for(var shortName : modeShortNames){
+      var mode = getOrRegisterMode(network, shortName);
+      layerModes.add(mode);
+      if(mode != null){
+        layer.registerSupportedMode(mode);
+      }
+    }
+
+    var nodesByMappedId = new HashMap<String, Node>();
+    for(var record : GeometryLayerReader.join(nodesFuture)){
+      var node = layer.getNodes().getFactory().registerNew();
+      node.setXmlId(StringUtils.isNullOrBlank(record.xmlId) ? record.mappedId : record.xmlId);
+      node.setExternalId(record.externalId);
+      node.setName(record.name);
+      node.setPosition(record.position);
+      nodesByMappedId.put(record.mappedId, node);
+      nodesByPersistedId.put(record.mappedId, node);
+    }
+
+    var linksByMappedId = new HashMap<String, MacroscopicLink>();
+    var nodeAMappedIdByLink = new HashMap<MacroscopicLink, String>();
+    for(var record : GeometryLayerReader.join(linksFuture)){
+      var nodeA = nodesByMappedId.get(record.nodeA);
+      var nodeB = nodesByMappedId.get(record.nodeB);
+      if(nodeA == null || nodeB == null){
+        throw new PlanItRunTimeException("%s Link %s references unknown node(s) %s, %s", layerLogPrefix, record.mappedId, record.nodeA, record.nodeB);
+      }
+      double lengthKm = record.lengthKm != null ? record.lengthKm : 0;
+      var link = layer.getLinks().getFactory().registerNew(nodeA, nodeB, lengthKm, true);
+      link.setXmlId(StringUtils.isNullOrBlank(record.xmlId) ? record.mappedId : record.xmlId);
+      link.setExternalId(record.externalId);
+      link.setName(record.name);
+      link.setGeometry(record.geometry);
+      linksByMappedId.put(record.mappedId, link);
+      nodeAMappedIdByLink.put(link, record.nodeA);
+    }
+
+    var linkSegmentRecords = GeometryLayerReader.join(linkSegmentsFuture);
+    var typesById = registerLinkSegmentTypes(layer, linkSegmentRecords, layerModes);
+    for(var record : linkSegmentRecords){
+      var parentLink = linksByMappedId.get(record.parentId);
+      if(parentLink == null){
+        throw new PlanItRunTimeException("%s Link segment %s references unknown link %s", layerLogPrefix, record.mappedId, record.parentId);
+      }
+      boolean directionAb = nodeAMappedIdByLink.get(parentLink).equals(record.nodeUp);
+      var linkSegment = layer.getLinkSegments().getFactory().registerNew(parentLink, directionAb, true);
+      linkSegment.setXmlId(StringUtils.isNullOrBlank(record.xmlId) ? record.mappedId : record.xmlId);
+      linkSegment.setExternalId(record.externalId);
+      if(record.lanes != null){
+        linkSegment.setNumberOfLanes(record.lanes);
+      }
+      if(record.speedLimitKmH != null){
+        linkSegment.setPhysicalSpeedLimitKmH(record.speedLimitKmH);
+      }
+      linkSegment.setLinkSegmentType(typesById.get(record.typeId));
+      linkSegmentsByPersistedId.put(record.mappedId, linkSegment);
+    }
+
+    LOGGER.info(String.format("%s Nodes: %d, links: %d, link segments: %d, link segment types: %d",
+        layerLogPrefix, layer.getNodes().size(), layer.getLinks().size(), layer.getLinkSegments().size(), typesById.size()));
+  }
+
+  /**
+   * Constructor
+   *
+   * @param idToken to use for the network
+   * @param settings to use
+   */
+  protected GeometryNetworkReader(IdGroupingToken idToken, GeometryNetworkReaderSettings settings){
+    this.idToken = idToken;
+    this.settings = settings;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public LayeredNetwork<?, ?> read() {
+    PlanItRunTimeException.throwIfNull(settings.getInputDirectory(), "Input directory not set");
+    settings.logSettings();
+
+    var layerIds = findLayerIds();
+    if(layerIds.isEmpty()){
+      throw new PlanItRunTimeException("No network layers found in %s", settings.getInputDirectory());
+    }
+
+    reset();
+    var network = new MacroscopicNetwork(idToken);
+    var executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    try {
+      for (var layerId : layerIds) {
+        readLayer(network, layerId, executor);
+      }
+    }finally {
+      executor.shutdown();
+    }
+    return network;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public GeometryNetworkReaderSettings getSettings() {
+    return settings;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void reset() {
+    modesByShortName.clear();
+    nodesByPersistedId.clear();
+    linkSegmentsByPersistedId.clear();
+  }
+
+  /**
+   * Collect a node of the most recently read network by the id it was persisted with, e.g., to relink entities of other
+   * GeoIO layers (such as connectoids) referencing it
+   *
+   * @param persistedId the node's 'mapped_id'
+   * @return node, null if not found
+   */
+  public Node getNodeByPersistedId(String persistedId) {
+    return nodesByPersistedId.get(persistedId);
+  }
+
+  /**
+   * Collect a link segment of the most recently read network by the id it was persisted with, e.g., to relink entities of
+   * other GeoIO layers (such as connectoids) referencing it
+   *
+   * @param persistedId the link segment's 'mapped_id'
+   * @return link segment, null if not found
+   */
+  public MacroscopicLinkSegment getLinkSegmentByPersistedId(String persistedId) {
+    return linkSegmentsByPersistedId.get(persistedId);
+  }
+}
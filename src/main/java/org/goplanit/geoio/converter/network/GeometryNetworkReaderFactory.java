@@ -0,0 +1,40 @@
+package org.goplanit.geoio.converter.network;
+
+import org.goplanit.utils.id.IdGroupingToken;
+
+/**
+ * Factory for creating GeometryNetworkReaders
+ * @author markr
+ *
+ */
+public class GeometryNetworkReaderFactory {
+
+  /** Create a GeometryNetworkReader which reads a PLANit network persisted in common GIS formats
+   *
+   * @param inputDirectory to use
+   * @return created GeometryNetworkReader
+   */
+  public static GeometryNetworkReader create(String inputDirectory) {
+    return create(new GeometryNetworkReaderSettings(inputDirectory));
+  }
+
+  /** Create a GeometryNetworkReader which reads a PLANit network persisted in common GIS formats
+   *
+   * @param networkSettings to use
+   * @return created GeometryNetworkReader
+   */
+  public static GeometryNetworkReader create(GeometryNetworkReaderSettings networkSettings) {
+    return create(networkSettings, IdGroupingToken.collectGlobalToken());
+  }
+
+  /** Create a GeometryNetworkReader which reads a PLANit network persisted in common GIS formats
+   *
+   * @param networkSettings to use
+   * @param idToken to create the network's ids with
+   * @return created GeometryNetworkReader
+   */
+  public static GeometryNetworkReader create(GeometryNetworkReaderSettings networkSettings, IdGroupingToken idToken) {
+    return new GeometryNetworkReader(idToken, networkSettings);
+  }
+
+}
@@ -0,0 +1,136 @@
+package org.goplanit.geoio.converter.network;
+
+import org.goplanit.converter.ConverterReaderSettings;
+
+import java.util.logging.Logger;
+
+/**
+ * Settings relevant for reading a PLANit network persisted in Geo IO format, see {@link GeometryNetworkWriter}. File names
+ * and layer prefix default to those of the writer
+ *
+ * @author markr
+ *
+ */
+public class GeometryNetworkReaderSettings implements ConverterReaderSettings {
+
+  /** logger to use */
+  private static final Logger LOGGER = Logger.getLogger(GeometryNetworkReaderSettings.class.getCanonicalName());
+
+  /** directory to read from */
+  private String inputDirectory;
+
+  /** links file name to use */
+  private String linksFileName = GeometryNetworkWriterSettings.DEFAULT_LINKS_FILE_NAME;
+
+  /** link segments file name to use */
+  private String linkSegmentsFileName = GeometryNetworkWriterSettings.DEFAULT_LINKSEGMENTS_FILE_NAME;
+
+  /** nodes file name to use */
+  private String nodesFileName = GeometryNetworkWriterSettings.DEFAULT_NODES_FILE_NAME;
+
+  /** prefix of each layer's file names, e.g., #layer_prefix_#id_#filename */
+  private String layerPrefix = GeometryNetworkWriterSettings.DEFAULT_LAYER_PREFIX;
+
+  /** extension of the files to read */
+  private String fileExtension = GeometryNetworkWriterSettings.DEFAULT_EXTENSION;
+
+  /** flag indicating if files are memory-mapped when read */
+  private boolean memoryMapped = DEFAULT_MEMORY_MAPPED;
+
+  /** by default files are memory-mapped */
+  public static final boolean DEFAULT_MEMORY_MAPPED = true;
+
+  /**
+   * Default constructor
+   */
+  public GeometryNetworkReaderSettings() {
+    this(".");
+  }
+
+  /**
+   * Constructor
+   *
+   * @param inputDirectory to use
+   */
+  public GeometryNetworkReaderSettings(final String inputDirectory) {
+    this.inputDirectory = inputDirectory;
+  }
+
+  /**
+   * Convenience method to log all the current settings
+   */
+  public void logSettings() {
+    LOGGER.info(String.format("Input directory: %s", inputDirectory));
+    LOGGER.info(String.format("Files (layer prefix %s): %s, %s, %s (%s)", layerPrefix, nodesFileName, linksFileName, linkSegmentsFileName, fileExtension));
+    LOGGER.info(String.format("Memory-mapped: %s", memoryMapped));
+  }
+
+  /**
+   * Reset content
+   */
+  @Override
+  public void reset() {
+    linksFileName = GeometryNetworkWriterSettings.DEFAULT_LINKS_FILE_NAME;
+    linkSegmentsFileName = GeometryNetworkWriterSettings.DEFAULT_LINKSEGMENTS_FILE_NAME;
+    nodesFileName = GeometryNetworkWriterSettings.DEFAULT_NODES_FILE_NAME;
+    layerPrefix = GeometryNetworkWriterSettings.DEFAULT_LAYER_PREFIX;
+    fileExtension = GeometryNetworkWriterSettings.DEFAULT_EXTENSION;
+    memoryMapped = DEFAULT_MEMORY_MAPPED;
+  }
+
+  public String getInputDirectory() {
+    return inputDirectory;
+  }
+
+  public void setInputDirectory(String inputDirectory) {
+    this.inputDirectory = inputDirectory;
+  }
+
+  public String getLinksFileName() {
+    return linksFileName;
+  }
+
+  public void setLinksFileName(String linksFileName) {
+    this.linksFileName = linksFileName;
+  }
+
+  public String getLinkSegmentsFileName() {
+    return linkSegmentsFileName;
+  }
+
+  public void setLinkSegmentsFileName(String linkSegmentsFileName) {
+    this.linkSegmentsFileName = linkSegmentsFileName;
+  }
+
+  public String getNodesFileName() {
+    return nodesFileName;
+  }
+
+  public void setNodesFileName(String nodesFileName) {
+    this.nodesFileName = nodesFileName;
+  }
+
+  public String getLayerPrefix() {
+    return layerPrefix;
+  }
+
+  public void setLayerPrefix(String layerPrefix) {
+    this.layerPrefix = layerPrefix;
+  }
+
+  public String getFileExtension() {
+    return fileExtension;
+  }
+
+  public void setFileExtension(String fileExtension) {
+    this.fileExtension = fileExtension;
+  }
+
+  public boolean isMemoryMapped() {
+    return memoryMapped;
+  }
+
+  public void setMemoryMapped(boolean memoryMapped) {
+    this.memoryMapped = memoryMapped;
+  }
+}
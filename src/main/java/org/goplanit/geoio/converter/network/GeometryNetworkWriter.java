@@ -3,6 +3,8 @@ package org.goplanit.geoio.converter.network;
 import org.geotools.data.DataStore;
 import org.goplanit.converter.idmapping.NetworkIdMapper;
 import org.goplanit.converter.network.NetworkWriter;
+import org.goplanit.geoio.converter.GeoIoExportResult;
+import org.goplanit.geoio.converter.GeoIoExportSnapshot;
 import org.goplanit.geoio.converter.GeometryIoWriter;
 import org.goplanit.geoio.converter.network.featurecontext.PlanitLinkFeatureTypeContext;
 import org.goplanit.geoio.converter.network.featurecontext.PlanitLinkSegmentFeatureTypeContext;
@@ -24,6 +26,8 @@ import org.opengis.feature.simple.SimpleFeatureType;
 
 import java.nio.file.Path;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 import java.util.logging.Logger;
 
@@ -95,7 +99,8 @@ public class GeometryNetworkWriter extends GeometryIoWriter<LayeredNetwork<?,?>>
    * @param macroscopicNetwork to writer
    */
   private void initialiseWrite(MacroscopicNetwork macroscopicNetwork) {
-    getComponentIdMappers().populateMissingIdMappers(getIdMapperType());
+    resolveIdMappers();
+    prepareMappedIdCache();
     layerPrefixProducer =
             (UntypedDirectedGraphLayer<?,?,?> l) ->
                     String.join("_", "layer", getPrimaryIdMapper().getNetworkLayerIdMapper().apply( (MacroscopicNetworkLayer) l));
@@ -206,9 +211,10 @@ public class GeometryNetworkWriter extends GeometryIoWriter<LayeredNetwork<?,?>>
 
     /* Ensure all geo features are available and configured for the correct CRS once we start using them */
     for( var layer : macroscopicNetwork.getTransportLayers()) {
+      checkCancelled("network layer " + layer.getXmlId());
 
       var supportedFeatures =
-          GeoIoFeatureTypeBuilder.createNetworkLayerFeatureContexts(getPrimaryIdMapper(), layer);
+          GeoIoFeatureTypeBuilder.createNetworkLayerFeatureContexts(getPrimaryIdMapper(), layer, getMappedIdCache());
 
       /* feature types per layer */
       var geoFeatureTypesByPlanitEntity =
@@ -287,6 +293,18 @@ public class GeometryNetworkWriter extends GeometryIoWriter<LayeredNetwork<?,?>>
    */
 //  @Override
   public void write(LayeredNetwork<?,?> network) {
+    exportNetwork(network);
+  }
+
+  /**
+   * Write the network, see {@link #write(LayeredNetwork)}
+   *
+   * @param network to persist
+   * @return export result of the write, null when capturing a snapshot rather than writing
+   */
+  private GeoIoExportResult exportNetwork(LayeredNetwork<?,?> network) {
+
+    var writerEvent = beginWrite();
 
     validate(network);
     MacroscopicNetwork macroscopicNetwork = (MacroscopicNetwork)network;
@@ -297,11 +315,47 @@ public class GeometryNetworkWriter extends GeometryIoWriter<LayeredNetwork<?,?>>
     /* logging */
     getSettings().logSettings();
 
-    /* perform actual persistence */
-    writeLayers(macroscopicNetwork);
+    try {
+      /* perform actual persistence */
+      runCancellable(() -> writeLayers(macroscopicNetwork));
+    }finally {
+      /* disposes of any registered data stores */
+      disposeDataStores();
+    }
+
+    return completeWrite(writerEvent, MacroscopicNetwork.class);
+  }
+
+  /**
+   * Write the network asynchronously on the default executor, see {@link #getDefaultAsyncExecutor()}
+   *
+   * @param network to persist
+   * @return future of the export result
+   */
+  public CompletableFuture<GeoIoExportResult> writeAsync(LayeredNetwork<?,?> network) {
+    return writeAsync(network, getDefaultAsyncExecutor());
+  }
+
+  /**
+   * Write the network asynchronously, the writer should not be used for another write until the returned future completes
+   *
+   * @param network to persist
+   * @param executor to write on
+   * @return future of the export result, completed exceptionally when the write fails or is cancelled
+   */
+  public CompletableFuture<GeoIoExportResult> writeAsync(LayeredNetwork<?,?> network, Executor executor) {
+    return supplyExportAsync(() -> exportNetwork(network), executor);
+  }
 
-    /* disposes of any registered data stores */
-    GeoIODataStoreManager.reset();
+  /**
+   * Capture a snapshot of the network's layers, to be written afterwards while the network may change again, see
+   * {@link GeoIoExportSnapshot}
+   *
+   * @param network to capture
+   * @return captured snapshot
+   */
+  public GeoIoExportSnapshot captureSnapshot(LayeredNetwork<?,?> network) {
+    return captureWriteSnapshot(() -> write(network));
   }
 
   /**
@@ -1,6 +1,8 @@
 package org.goplanit.geoio.converter.network.featurecontext;
 
 import org.goplanit.converter.idmapping.NetworkIdMapper;
+import org.goplanit.geoio.util.GeoIoMappedIdCache;
+import org.goplanit.geoio.util.KeyedAttributeValueTable;
 import org.goplanit.geoio.util.ModeShortNameConverter;
 import org.goplanit.geoio.util.PlanitEntityFeatureTypeContext;
 import org.goplanit.utils.graph.Vertex;
@@ -31,32 +33,40 @@ import java.util.stream.Stream;
 public class PlanitLinkSegmentFeatureTypeContext extends PlanitEntityFeatureTypeContext<MacroscopicLinkSegment> {
 
   /**
-   * The mapping from PLANIT link segment instance to fixed GIS attributes of link segment
+   * The mapping from PLANIT link segment instance to fixed GIS attributes of link segment. Attributes that only depend on the
+   * link segment type are sourced from the type table, so they are computed once per link segment type rather than once per segment
    *
    * @param networkIdMapper to apply
+   * @param mappedIdCache to cache mapped ids in
+   * @param typeTable to register link segment type derived attributes on
    * @return feature mapping
    */
   private static List<Triple<String,String, Function<MacroscopicLinkSegment, ? extends Object>>> createFixedFeatureDescription(
-          final NetworkIdMapper networkIdMapper){
+          final NetworkIdMapper networkIdMapper,
+          final GeoIoMappedIdCache mappedIdCache,
+          final KeyedAttributeValueTable<MacroscopicLinkSegment, MacroscopicLinkSegmentType> typeTable){
+    final var linkIdMapper = mappedIdCache.cached(GeoIoMappedIdCache.LINK, networkIdMapper.getLinkIdMapper());
+    final var vertexIdMapper = mappedIdCache.cached(GeoIoMappedIdCache.VERTEX, networkIdMapper.getVertexIdMapper());
     return List.of(
             /* link segment info (fixed) */
-            Triple.of("mapped_id", "java.lang.String", networkIdMapper.getLinkSegmentIdMapper()),
+            Triple.of("mapped_id", "java.lang.String", mappedIdCache.cached(GeoIoMappedIdCache.LINK_SEGMENT, networkIdMapper.getLinkSegmentIdMapper())),
             Triple.of("id", "java.lang.Long", MacroscopicLinkSegment::getId),
             Triple.of("segment_id", "java.lang.Long", MacroscopicLinkSegment::getLinkSegmentId),
             Triple.of("xml_id", "String", MacroscopicLinkSegment::getXmlId),
             Triple.of("ext_id", "String", MacroscopicLinkSegment::getExternalId),
-            Triple.of("parent_id", "String", ls -> networkIdMapper.getLinkIdMapper().apply(ls.getParentLink())),
+            Triple.of("parent_id", "String", ls -> linkIdMapper.apply(ls.getParentLink())),
             Triple.of("lanes", "Integer", MacroscopicLinkSegment::getNumberOfLanes),
             Triple.of("cap_pcuh", "Float", MacroscopicLinkSegment::getCapacityOrDefaultPcuH),    /* max flow in pcu per hour across all lanes */
             Triple.of("speed_kmh", "Float", MacroscopicLinkSegment::getPhysicalSpeedLimitKmH),   /* speed limit on sign, not mode dependent */
             Triple.of("geom_opp", "Boolean", ls -> !ls.isParentGeometryInSegmentDirection(true)),     /* does geometry run in opposite direction to travel direction */
-            Triple.of("node_up", "String", ls -> networkIdMapper.getVertexIdMapper().apply(ls.getUpstreamNode())),
-            Triple.of("node_down", "String", ls -> networkIdMapper.getVertexIdMapper().apply(ls.getDownstreamNode())),
+            Triple.of("node_up", "String", ls -> vertexIdMapper.apply(ls.getUpstreamNode())),
+            Triple.of("node_down", "String", ls -> vertexIdMapper.apply(ls.getDownstreamNode())),
 
-            /* link segment type info (fixed) */
-            Triple.of("type_id", "String", ls -> networkIdMapper.getLinkSegmentTypeIdMapper().apply(ls.getLinkSegmentType())),
-            Triple.of("type_name", "String", ls -> ls.getLinkSegmentType().getName()),
-            Triple.of("dens_pcukm", "Float", ls -> ls.getLinkSegmentType().getExplicitMaximumDensityPerLaneOrDefault()),
+            /* link segment type info (fixed), memoised per link segment type */
+            Triple.of("type_id", "String",
+                    typeTable.register(String.class, type -> networkIdMapper.getLinkSegmentTypeIdMapper().apply(type))),
+            Triple.of("type_name", "String", typeTable.register(String.class, MacroscopicLinkSegmentType::getName)),
+            Triple.of("dens_pcukm", "Float", typeTable.register(Float.class, MacroscopicLinkSegmentType::getExplicitMaximumDensityPerLaneOrDefault)),
 
             /* geometry taken from parent link */
             Triple.of(DEFAULT_GEOMETRY_ATTRIBUTE_KEY, "LineString",
@@ -68,14 +78,20 @@ public class PlanitLinkSegmentFeatureTypeContext extends PlanitEntityFeatureType
    *
    * @param networkIdMapper to apply
    * @param supportedModes modes supported on at least a single link segment type on the layer, hence included in all records
+   * @param mappedIdCache to cache mapped ids in
    * @return feature mapping
    */
   private static List<Triple<String,String, Function<MacroscopicLinkSegment, ? extends Object>>> createFeatureDescription(
           final NetworkIdMapper networkIdMapper,
-          Collection<? extends Mode> supportedModes){
+          Collection<? extends Mode> supportedModes,
+          final GeoIoMappedIdCache mappedIdCache){
+    /* link segment type derived attributes are computed once per type, of which there are few */
+    final var typeTable =
+            new KeyedAttributeValueTable<MacroscopicLinkSegment, MacroscopicLinkSegmentType>(MacroscopicLinkSegment::getLinkSegmentType);
+
     /* fixed features -  always present and non-variable number */
     var fixedFeatures =
-            createFixedFeatureDescription(networkIdMapper);
+            createFixedFeatureDescription(networkIdMapper, mappedIdCache, typeTable);
 
     /* variable features - depends on modes present */
     var modeSpecificFeatures = new ArrayList<Triple<String,String, Function<MacroscopicLinkSegment, ? extends Object>>>();
@@ -86,10 +102,13 @@ public class PlanitLinkSegmentFeatureTypeContext extends PlanitEntityFeatureType
       modeSpecificFeatures.add(Triple.of(modeAttributeShortName + "_ban", "Boolean", ls -> !ls.isModeAllowed(mode)));
       /* mode specific maximum speed */
       modeSpecificFeatures.add(Triple.of(modeAttributeShortName + "_spd", "String", ls -> ls.getModelledSpeedLimitKmH(mode)));
-      /* mode specific critical speed */
-      modeSpecificFeatures.add(Triple.of(modeAttributeShortName + "_spdc", "String", ls -> ls.getLinkSegmentType().getCriticalSpeedKmH(mode)));
+      /* mode specific critical speed (link segment type derived) */
+      modeSpecificFeatures.add(Triple.of(modeAttributeShortName + "_spdc", "String", typeTable.register(String.class, type -> type.getCriticalSpeedKmH(mode))));
     }
 
+    /* all type derived attributes are registered */
+    typeTable.seal();
+
     /* features that depend on which modes are supported on the layer */
     return Stream.concat(fixedFeatures.stream(),modeSpecificFeatures.stream()).collect(Collectors.toList());
   }
@@ -99,12 +118,14 @@ public class PlanitLinkSegmentFeatureTypeContext extends PlanitEntityFeatureType
    *
    * @param networkIdMapper id mapper to apply
    * @param supportedModes modes supported on at least a single link segment type on the layer, hence included in all records
+   * @param mappedIdCache to cache mapped ids in
    */
   protected PlanitLinkSegmentFeatureTypeContext(
           final NetworkIdMapper networkIdMapper,
-          final Collection<? extends Mode> supportedModes){
+          final Collection<? extends Mode> supportedModes,
+          final GeoIoMappedIdCache mappedIdCache){
     super(MacroscopicLinkSegment.class,
-            createFeatureDescription(networkIdMapper, supportedModes));
+            createFeatureDescription(networkIdMapper, supportedModes, mappedIdCache));
   }
 
   /**
@@ -112,12 +133,14 @@ public class PlanitLinkSegmentFeatureTypeContext extends PlanitEntityFeatureType
    *
    * @param networkIdMapper to apply for creating each ids when persisting
    * @param supportedModes modes supported on at least a single link segment type on the layer, hence included in all records
+   * @param mappedIdCache to cache mapped ids in
    * @return created instance
    */
   public static PlanitLinkSegmentFeatureTypeContext create(
           final NetworkIdMapper networkIdMapper,
-          final Collection<? extends Mode> supportedModes){
-    return new PlanitLinkSegmentFeatureTypeContext( networkIdMapper, supportedModes);
+          final Collection<? extends Mode> supportedModes,
+          final GeoIoMappedIdCache mappedIdCache){
+    return new PlanitLinkSegmentFeatureTypeContext( networkIdMapper, supportedModes, mappedIdCache);
   }
 
 }
@@ -0,0 +1,126 @@
+package org.goplanit.geoio.converter.scan;
+
+/**
+ * Description of a single column (field) of a DBF file
+ *
+ * @author markr
+ */
+public final class DbfColumn {
+
+  /** position of the column in the file */
+  private final int index;
+
+  /** name of the column */
+  private final String name;
+
+  /** DBF field type, e.g., 'C' (character), 'N' (numeric), 'F' (float), 'L' (logical), 'D' (date) */
+  private final char type;
+
+  /** offset of the field within each record */
+  private final int recordOffset;
+
+  /** length of the field in bytes */
+  private final int length;
+
+  /** number of decimals of numeric fields */
+  private final int decimalCount;
+
+  /**
+   * Constructor
+   *
+   * @param index position of the column in the file
+   * @param name of the column
+   * @param type DBF field type
+   * @param recordOffset offset of the field within each record
+   * @param length of the field in bytes
+   * @param decimalCount number of decimals of numeric fields
+   */
+  DbfColumn(int index, String name, char type, int recordOffset, int length, int decimalCount){
+    this.index = index;
+    this.name = name;
+    this.type = type;
+    this.recordOffset = recordOffset;
+    this.length = length;
+    this.decimalCount = decimalCount;
+  }
+
+  /**
+   * Position of the column in the file
+   *
+   * @return index
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * Name of the column
+   *
+   * @return name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * DBF field type
+   *
+   * @return type
+   */
+  public char getType() {
+    return type;
+  }
+
+  /**
+   * Offset of the field within each record
+   *
+   * @return offset
+   */
+  int getRecordOffset() {
+    return recordOffset;
+  }
+
+  /**
+   * Length of the field in bytes
+   *
+   * @return length
+   */
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * Number of decimals of numeric fields
+   *
+   * @return decimal count
+   */
+  public int getDecimalCount() {
+    return decimalCount;
+  }
+
+  /**
+   * Check if the column is numeric
+   *
+   * @return true when numeric
+   */
+  public boolean isNumeric() {
+    return type == 'N' || type == 'F';
+  }
+
+  /**
+   * Check if the column is logical
+   *
+   * @return true when logical
+   */
+  public boolean isLogical() {
+    return type == 'L';
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return name + "(" + type + length + (decimalCount > 0 ? "." + decimalCount : "") + ")";
+  }
+}
@@ -0,0 +1,252 @@
+package org.goplanit.geoio.converter.scan;
+
+import org.geotools.data.shapefile.shp.ShapefileReader;
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+import org.locationtech.jts.geom.Geometry;
+
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+/**
+ * View on the current row of a {@link GeoIoLayerScanner}. Values are decoded on access directly from the memory-mapped
+ * file, so only the columns accessed are decoded and numeric and logical values never pass through strings or boxed types.
+ * The same instance is reused for every row, it is only valid until the scanner advances.
+ *
+ * @author markr
+ */
+public final class GeoIoLayerRow {
+
+  /** names of the projected columns */
+  private final String[] columnNames;
+
+  /** charset to decode character fields with */
+  private final Charset charset;
+
+  /** file of the current row */
+  private MappedDbfFile dbfFile;
+
+  /** projected columns resolved on the current file */
+  private DbfColumn[] columns;
+
+  /** path of the current file */
+  private Path shapeFile;
+
+  /** record number of the current row within its file */
+  private long recordNumber;
+
+  /** shape record of the current row, null when geometry is not requested */
+  private ShapefileReader.Record shapeRecord;
+
+  /**
+   * Constructor
+   *
+   * @param columnNames names of the projected columns
+   * @param charset to decode character fields with
+   */
+  GeoIoLayerRow(String[] columnNames, Charset charset){
+    this.columnNames = columnNames;
+    this.charset = charset;
+  }
+
+  /**
+   * Move the view to a file
+   *
+   * @param shapeFile path of the file
+   * @param dbfFile to read from
+   * @param columns projected columns resolved on the file
+   */
+  void setFile(Path shapeFile, MappedDbfFile dbfFile, DbfColumn[] columns){
+    this.shapeFile = shapeFile;
+    this.dbfFile = dbfFile;
+    this.columns = columns;
+  }
+
+  /**
+   * Move the view to a record of the current file, the DBF file is expected to be positioned on it
+   *
+   * @param recordNumber within the current file
+   * @param shapeRecord of the record, may be null
+   */
+  void setRecord(long recordNumber, ShapefileReader.Record shapeRecord){
+    this.recordNumber = recordNumber;
+    this.shapeRecord = shapeRecord;
+  }
+
+  /**
+   * Number of projected columns
+   *
+   * @return number of columns
+   */
+  public int getNumberOfColumns(){
+    return columnNames.length;
+  }
+
+  /**
+   * Names of the projected columns
+   *
+   * @return column names
+   */
+  String[] getColumnNames(){
+    return columnNames;
+  }
+
+  /**
+   * Name of a projected column
+   *
+   * @param column index of the projected column
+   * @return name
+   */
+  public String getColumnName(int column){
+    return columnNames[column];
+  }
+
+  /**
+   * Index of a projected column by its name
+   *
+   * @param columnName to find
+   * @return index, -1 when not projected
+   */
+  public int indexOf(String columnName){
+    for(int index = 0; index < columnNames.length; ++index){
+      if(columnNames[index].equals(columnName)){
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Check if the value of a projected column is null
+   *
+   * @param column index of the projected column
+   * @return true when null
+   */
+  public boolean isNull(int column){
+    return dbfFile.isNull(columns[column]);
+  }
+
+  /**
+   * Numeric value of a projected column
+   *
+   * @param column index of the projected column
+   * @return value, NaN when null or not numeric
+   */
+  public double getDouble(int column){
+    return dbfFile.getNumber(columns[column]);
+  }
+
+  /**
+   * Numeric value of a projected column
+   *
+   * @param columnName of the projected column
+   * @return value, NaN when null or not numeric
+   */
+  public double getDouble(String columnName){
+    return getDouble(requireIndexOf(columnName));
+  }
+
+  /**
+   * Integral value of a projected column, decoded directly so ids beyond the precision of a double are retained. Fractional
+   * values are truncated
+   *
+   * @param column index of the projected column
+   * @return value, zero when null or not numeric (use {@link #isNull(int)} to distinguish)
+   */
+  public long getLong(int column){
+    return dbfFile.getLong(columns[column]);
+  }
+
+  /**
+   * Integral value of a projected column
+   *
+   * @param columnName of the projected column
+   * @return value, zero when null or not numeric
+   */
+  public long getLong(String columnName){
+    return getLong(requireIndexOf(columnName));
+  }
+
+  /**
+   * Logical value of a projected column
+   *
+   * @param column index of the projected column
+   * @return value, false when null (use {@link #isNull(int)} to distinguish)
+   */
+  public boolean getBoolean(int column){
+    return Boolean.TRUE.equals(dbfFile.getLogical(columns[column]));
+  }
+
+  /**
+   * Logical value of a projected column
+   *
+   * @param columnName of the projected column
+   * @return value, false when null
+   */
+  public boolean getBoolean(String columnName){
+    return getBoolean(requireIndexOf(columnName));
+  }
+
+  /**
+   * Value of a projected column as (trimmed) string
+   *
+   * @param column index of the projected column
+   * @return value, null when blank
+   */
+  public String getString(int column){
+    return dbfFile.getString(columns[column], charset);
+  }
+
+  /**
+   * Value of a projected column as (trimmed) string
+   *
+   * @param columnName of the projected column
+   * @return value, null when blank
+   */
+  public String getString(String columnName){
+    return getString(requireIndexOf(columnName));
+  }
+
+  /**
+   * Geometry of the row, decoded on access
+   *
+   * @return geometry
+   */
+  public Geometry getGeometry(){
+    if(shapeRecord == null){
+      throw new PlanItRunTimeException("Geometry not requested on scanner of %s", shapeFile.toString());
+    }
+    return (Geometry) shapeRecord.shape();
+  }
+
+  /**
+   * The file the row is read from
+   *
+   * @return path of the shape file
+   */
+  public Path getFile(){
+    return shapeFile;
+  }
+
+  /**
+   * Record number of the row within its file
+   *
+   * @return record number (zero based)
+   */
+  public long getRecordNumber(){
+    return recordNumber;
+  }
+
+  /**
+   * Index of a projected column, throwing when absent
+   *
+   * @param columnName to find
+   * @return index
+   */
+  private int requireIndexOf(String columnName){
+    int index = indexOf(columnName);
+    if(index < 0){
+      throw new PlanItRunTimeException("Column %s not projected", columnName);
+    }
+    return index;
+  }
+}
@@ -0,0 +1,430 @@
+package org.goplanit.geoio.converter.scan;
+
+import org.apache.commons.io.FilenameUtils;
+import org.geotools.data.shapefile.files.ShpFiles;
+import org.geotools.data.shapefile.shp.ShapefileReader;
+import org.goplanit.geoio.converter.GeometryLayerReader;
+import org.goplanit.geoio.util.GeoIoWriterSettings;
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.DoublePredicate;
+import java.util.function.Predicate;
+
+/**
+ * Lightweight scanner over the rows of a GeoIO layer, without creating PLANit entities or GeoTools features. The DBF file
+ * is memory-mapped and only the projected columns, and the columns predicates apply to, are decoded. Predicates are evaluated
+ * first, directly on the mapped bytes, so rows not matching are skipped without decoding anything else. Geometries are only
+ * read when requested. Layers split into row parts are scanned part by part.
+ * <p>
+ *   Example, all capacities of link segments with more than three lanes:
+ * </p>
+ * <pre>
+ *   try(var scanner = GeoIoLayerScanner.create(directory, "layer_0_planit_linksegments")
+ *       .select("cap_pcuh").whereNumber("lanes", lanes -&gt; lanes &gt; 3)){
+ *     for(var row : scanner){
+ *       double capacity = row.getDouble(0);
+ *     }
+ *   }
+ * </pre>
+ * Not thread safe, each thread should use its own scanner.
+ *
+ * @author markr
+ */
+public class GeoIoLayerScanner implements Iterable<GeoIoLayerRow>, AutoCloseable {
+
+  /** extension of DBF files */
+  private static final String DBF_EXTENSION = "dbf";
+
+  /** by default character fields are decoded as ISO-8859-1, the default of GeoTools shape files */
+  public static final Charset DEFAULT_CHARSET = StandardCharsets.ISO_8859_1;
+
+  /**
+   * Predicate on a single column, evaluated on the mapped bytes
+   */
+  private interface ColumnPredicate {
+
+    /**
+     * Test the column of the current record
+     *
+     * @param dbfFile positioned on the record
+     * @param column to test
+     * @param charset to decode character fields with
+     * @return true when matching
+     */
+    boolean test(MappedDbfFile dbfFile, DbfColumn column, Charset charset);
+  }
+
+  /** shape files of the layer, in part order */
+  private final List<Path> shapeFiles;
+
+  /** names of predicate columns */
+  private final List<String> predicateColumnNames = new ArrayList<>();
+
+  /** predicates by position of their column name */
+  private final List<ColumnPredicate> predicates = new ArrayList<>();
+
+  /** projected column names, all columns of the first file when null */
+  private String[] projection;
+
+  /** flag indicating geometries are read */
+  private boolean withGeometry;
+
+  /** charset of character fields */
+  private Charset charset = DEFAULT_CHARSET;
+
+  /** iterations with open files, closed with the scanner */
+  private final List<RowIterator> openIterators = new ArrayList<>();
+
+  /**
+   * Resolve column names on a DBF file
+   *
+   * @param dbfFile to resolve on
+   * @param columnNames to resolve
+   * @return columns
+   */
+  private static DbfColumn[] resolveColumns(MappedDbfFile dbfFile, List<String> columnNames){
+    var resolved = new DbfColumn[columnNames.size()];
+    for(int index = 0; index < resolved.length; ++index){
+      var columnName = columnNames.get(index);
+      resolved[index] = dbfFile.getColumns().stream().filter(c -> c.getName().equals(columnName)).findFirst().orElseThrow(
+          () -> new PlanItRunTimeException("Unknown column %s, available: %s", columnName, dbfFile.getColumns().toString()));
+    }
+    return resolved;
+  }
+
+  /**
+   * Projected column names, all columns of the first file when no projection is set
+   *
+   * @return column names
+   */
+  private String[] getProjectedColumnNames(){
+    if(projection != null){
+      return projection;
+    }
+    return getAvailableColumns().stream().map(DbfColumn::getName).toArray(String[]::new);
+  }
+
+  /**
+   * Iterator over the matching rows of all files
+   */
+  private final class RowIterator implements Iterator<GeoIoLayerRow> {
+
+    /** the row view, reused */
+    private final GeoIoLayerRow row;
+
+    /** index of the next file to open */
+    private int nextFileIndex = 0;
+
+    /** current DBF file */
+    private MappedDbfFile dbfFile;
+
+    /** current shape reader, null when geometry is not requested */
+    private ShapefileReader shapeReader;
+
+    /** predicate columns resolved on the current file */
+    private DbfColumn[] predicateColumns;
+
+    /** next record of the current file to test */
+    private long nextRecord;
+
+    /** flag indicating the row is positioned on a matching record not yet returned */
+    private boolean pending;
+
+    /**
+     * Open the next file
+     *
+     * @return false when no more files
+     */
+    private boolean openNextFile(){
+      closeCurrentFile();
+      if(nextFileIndex >= shapeFiles.size()){
+        return false;
+      }
+      var shapeFile = shapeFiles.get(nextFileIndex++);
+      dbfFile = new MappedDbfFile(Path.of(FilenameUtils.removeExtension(shapeFile.toString()) + "." + DBF_EXTENSION));
+      openIterators.add(this);
+      if(withGeometry){
+        try {
+          shapeReader = new ShapefileReader(new ShpFiles(shapeFile.toFile()), false, true, new GeometryFactory());
+        }catch (IOException e){
+          var exception = new PlanItRunTimeException("Unable to open %s", shapeFile.toString());
+          exception.initCause(e);
+          throw exception;
+        }
+      }
+      predicateColumns = resolveColumns(dbfFile, predicateColumnNames);
+      row.setFile(shapeFile, dbfFile, resolveColumns(dbfFile, List.of(row.getColumnNames())));
+      nextRecord = 0;
+      return true;
+    }
+
+    /**
+     * Close the current file, if any
+     */
+    private void closeCurrentFile(){
+      openIterators.remove(this);
+      if(dbfFile != null){
+        dbfFile.close();
+        dbfFile = null;
+      }
+      if(shapeReader != null){
+        try {
+          shapeReader.close();
+        }catch (IOException e){
+          var exception = new PlanItRunTimeException("Unable to close shape file");
+          exception.initCause(e);
+          throw exception;
+        }
+        shapeReader = null;
+      }
+    }
+
+    /**
+     * Check the predicates on the current record
+     *
+     * @return true when all match
+     */
+    private boolean matches(){
+      for(int index = 0; index < predicateColumns.length; ++index){
+        if(!predicates.get(index).test(dbfFile, predicateColumns[index], charset)){
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Advance to the next matching record
+     *
+     * @return true when found
+     */
+    private boolean advance(){
+      while(dbfFile != null || openNextFile()){
+        while(nextRecord < dbfFile.getNumberOfRecords()){
+          long record = nextRecord++;
+          ShapefileReader.Record shapeRecord = null;
+          try {
+            /* shape records are read for every record to stay aligned, shapes are only decoded on access */
+            shapeRecord = shapeReader != null && shapeReader.hasNext() ? shapeReader.nextRecord() : null;
+          }catch (IOException e){
+            var exception = new PlanItRunTimeException("Unable to read shape record %d", record);
+            exception.initCause(e);
+            throw exception;
+          }
+          if(dbfFile.position(record) && matches()){
+            row.setRecord(record, shapeRecord);
+            return true;
+          }
+        }
+        closeCurrentFile();
+      }
+      return false;
+    }
+
+    /**
+     * Constructor
+     */
+    private RowIterator(){
+      this.row = new GeoIoLayerRow(getProjectedColumnNames(), charset);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() {
+      if(!pending){
+        pending = advance();
+      }
+      return pending;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public GeoIoLayerRow next() {
+      if(!hasNext()){
+        throw new NoSuchElementException();
+      }
+      pending = false;
+      return row;
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param shapeFiles of the layer, in part order
+   */
+  protected GeoIoLayerScanner(List<Path> shapeFiles){
+    this.shapeFiles = shapeFiles;
+  }
+
+  /**
+   * Create a scanner over a single shape file
+   *
+   * @param shapeFile to scan
+   * @return created scanner
+   */
+  public static GeoIoLayerScanner create(Path shapeFile){
+    if(!Files.exists(shapeFile)){
+      throw new PlanItRunTimeException("Unable to find %s", shapeFile.toAbsolutePath().toString());
+    }
+    return new GeoIoLayerScanner(List.of(shapeFile));
+  }
+
+  /**
+   * Create a scanner over a layer, including all its row parts when it was split into shards
+   *
+   * @param inputDirectory the layer resides in
+   * @param schemaName of the layer
+   * @return created scanner
+   */
+  public static GeoIoLayerScanner create(Path inputDirectory, String schemaName){
+    return new GeoIoLayerScanner(
+        GeometryLayerReader.findLayerFiles(inputDirectory, schemaName, GeoIoWriterSettings.DEFAULT_EXTENSION));
+  }
+
+  /**
+   * Project the given columns, accessible on each row by their position in this list
+   *
+   * @param columnNames to project
+   * @return this scanner
+   */
+  public GeoIoLayerScanner select(String... columnNames){
+    this.projection = columnNames.clone();
+    return this;
+  }
+
+  /**
+   * Only include rows whose numeric column matches the predicate, null values are passed as NaN
+   *
+   * @param columnName to test
+   * @param predicate to apply
+   * @return this scanner
+   */
+  public GeoIoLayerScanner whereNumber(String columnName, DoublePredicate predicate){
+    predicateColumnNames.add(columnName);
+    predicates.add((dbfFile, column, charset) -> predicate.test(dbfFile.getNumber(column)));
+    return this;
+  }
+
+  /**
+   * Only include rows whose column matches the predicate, blank values are passed as null
+   *
+   * @param columnName to test
+   * @param predicate to apply
+   * @return this scanner
+   */
+  public GeoIoLayerScanner whereString(String columnName, Predicate<String> predicate){
+    predicateColumnNames.add(columnName);
+    predicates.add((dbfFile, column, charset) -> predicate.test(dbfFile.getString(column, charset)));
+    return this;
+  }
+
+  /**
+   * Only include rows whose logical column has the given value
+   *
+   * @param columnName to test
+   * @param value to match
+   * @return this scanner
+   */
+  public GeoIoLayerScanner whereLogical(String columnName, boolean value){
+    predicateColumnNames.add(columnName);
+    predicates.add((dbfFile, column, charset) -> Boolean.valueOf(value).equals(dbfFile.getLogical(column)));
+    return this;
+  }
+
+  /**
+   * Only include rows where the column is not null
+   *
+   * @param columnName to test
+   * @return this scanner
+   */
+  public GeoIoLayerScanner whereNotNull(String columnName){
+    predicateColumnNames.add(columnName);
+    predicates.add((dbfFile, column, charset) -> !dbfFile.isNull(column));
+    return this;
+  }
+
+  /**
+   * Read the geometry of each row, see {@link GeoIoLayerRow#getGeometry()}. By default geometries are not read
+   *
+   * @param withGeometry flag
+   * @return this scanner
+   */
+  public GeoIoLayerScanner withGeometry(boolean withGeometry){
+    this.withGeometry = withGeometry;
+    return this;
+  }
+
+  /**
+   * Charset to decode character fields with, default {@link #DEFAULT_CHARSET}
+   *
+   * @param charset to use
+   * @return this scanner
+   */
+  public GeoIoLayerScanner withCharset(Charset charset){
+    this.charset = charset;
+    return this;
+  }
+
+  /**
+   * Columns available on the (first file of the) layer
+   *
+   * @return columns
+   */
+  public List<DbfColumn> getAvailableColumns(){
+    var shapeFile = shapeFiles.get(0);
+    try(var dbfFile = new MappedDbfFile(Path.of(FilenameUtils.removeExtension(shapeFile.toString()) + "." + DBF_EXTENSION))){
+      return dbfFile.getColumns();
+    }
+  }
+
+  /**
+   * Iterate over the matching rows, the returned row is reused and only valid until the next row is requested
+   *
+   * @return iterator
+   */
+  @Override
+  public Iterator<GeoIoLayerRow> iterator() {
+    return new RowIterator();
+  }
+
+  /**
+   * Apply the consumer to each matching row
+   *
+   * @param rowConsumer to apply
+   * @return number of matching rows
+   */
+  public long forEachRow(Consumer<GeoIoLayerRow> rowConsumer){
+    long matches = 0;
+    for(var row : this){
+      rowConsumer.accept(row);
+      ++matches;
+    }
+    return matches;
+  }
+
+  /**
+   * Release files of iterations that did not run to completion
+   */
+  @Override
+  public void close() {
+    for(var iterator : new ArrayList<>(openIterators)){
+      iterator.closeCurrentFile();
+    }
+  }
+}
@@ -0,0 +1,386 @@
+package org.goplanit.geoio.converter.scan;
+
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Memory-mapped read only access to the records of a DBF file, decoding individual fields directly from the mapped bytes.
+ * Files are mapped in windows of whole records, so files beyond the 2GB limit of a single mapping can be read as well.
+ *
+ * @author markr
+ */
+final class MappedDbfFile implements AutoCloseable {
+
+  /** size of a field descriptor in the header */
+  private static final int FIELD_DESCRIPTOR_BYTES = 32;
+
+  /** marker terminating the field descriptors */
+  private static final byte HEADER_TERMINATOR = 0x0D;
+
+  /** marker of deleted records */
+  private static final byte DELETED_RECORD = '*';
+
+  /** target size of each mapped window */
+  private static final long WINDOW_BYTES = 1L << 30;
+
+  /** path of the file */
+  private final Path dbfFile;
+
+  /** channel of the file */
+  private final FileChannel channel;
+
+  /** number of records */
+  private final long numberOfRecords;
+
+  /** length of the header, i.e., offset of the first record */
+  private final int headerLength;
+
+  /** length of each record, including the deletion flag */
+  private final int recordLength;
+
+  /** columns of the file */
+  private final List<DbfColumn> columns;
+
+  /** records per mapped window */
+  private final long recordsPerWindow;
+
+  /** currently mapped window */
+  private MappedByteBuffer window;
+
+  /** first record of the current window */
+  private long windowFirstRecord = -1;
+
+  /** offset of the current record within the window */
+  private int recordOffset;
+
+  /**
+   * Parse the column descriptors of the header
+   *
+   * @param header mapped header
+   * @return columns
+   */
+  private static List<DbfColumn> parseColumns(MappedByteBuffer header){
+    var columns = new ArrayList<DbfColumn>();
+    int recordOffset = 1; // deletion flag
+    for(int descriptor = FIELD_DESCRIPTOR_BYTES; descriptor + FIELD_DESCRIPTOR_BYTES <= header.limit(); descriptor += FIELD_DESCRIPTOR_BYTES){
+      if(header.get(descriptor) == HEADER_TERMINATOR){
+        break;
+      }
+      var nameBuilder = new StringBuilder(11);
+      for(int index = 0; index < 11 && header.get(descriptor + index) != 0; ++index){
+        nameBuilder.append((char) header.get(descriptor + index));
+      }
+      char type = (char) header.get(descriptor + 11);
+      int length = header.get(descriptor + 16) & 0xFF;
+      int decimalCount = header.get(descriptor + 17) & 0xFF;
+      columns.add(new DbfColumn(columns.size(), nameBuilder.toString().trim(), type, recordOffset, length, decimalCount));
+      recordOffset += length;
+    }
+    return Collections.unmodifiableList(columns);
+  }
+
+  /**
+   * Constructor, maps and parses the header
+   *
+   * @param dbfFile to open
+   */
+  MappedDbfFile(Path dbfFile){
+    this.dbfFile = dbfFile;
+    FileChannel dbfChannel = null;
+    try {
+      dbfChannel = FileChannel.open(dbfFile, StandardOpenOption.READ);
+      var fixedHeader = dbfChannel.map(FileChannel.MapMode.READ_ONLY, 0, FIELD_DESCRIPTOR_BYTES);
+      fixedHeader.order(ByteOrder.LITTLE_ENDIAN);
+      this.numberOfRecords = Integer.toUnsignedLong(fixedHeader.getInt(4));
+      this.headerLength = Short.toUnsignedInt(fixedHeader.getShort(8));
+      this.recordLength = Short.toUnsignedInt(fixedHeader.getShort(10));
+      this.columns = parseColumns(dbfChannel.map(FileChannel.MapMode.READ_ONLY, 0, headerLength));
+      this.channel = dbfChannel;
+    }catch (IOException | RuntimeException e){
+      try {
+        if (dbfChannel != null) {
+          dbfChannel.close();
+        }
+      }catch (IOException closeException){
+        e.addSuppressed(closeException);
+      }
+      var exception = new PlanItRunTimeException("Unable to open DBF file %s", dbfFile.toString());
+      exception.initCause(e);
+      throw exception;
+    }
+    this.recordsPerWindow = Math.max(1, WINDOW_BYTES / Math.max(1, recordLength));
+  }
+
+  /**
+   * Number of records in the file, including deleted ones
+   *
+   * @return number of records
+   */
+  long getNumberOfRecords(){
+    return numberOfRecords;
+  }
+
+  /**
+   * Columns of the file
+   *
+   * @return columns in file order
+   */
+  List<DbfColumn> getColumns(){
+    return columns;
+  }
+
+  /**
+   * Position on the given record, mapping the window containing it when needed
+   *
+   * @param record to position on
+   * @return true when the record is not deleted, false otherwise
+   */
+  boolean position(long record){
+    if(window == null || record < windowFirstRecord || record >= windowFirstRecord + recordsPerWindow){
+      windowFirstRecord = record - (record % recordsPerWindow);
+      long windowRecords = Math.min(recordsPerWindow, numberOfRecords - windowFirstRecord);
+      try {
+        window = channel.map(FileChannel.MapMode.READ_ONLY,
+            headerLength + windowFirstRecord * recordLength, windowRecords * recordLength);
+      }catch (IOException e){
+        var exception = new PlanItRunTimeException("Unable to map records of DBF file %s", dbfFile.toString());
+        exception.initCause(e);
+        throw exception;
+      }
+    }
+    recordOffset = (int) ((record - windowFirstRecord) * recordLength);
+    return window.get(recordOffset) != DELETED_RECORD;
+  }
+
+  /**
+   * Check if the field of the current record is null, i.e., blank or filled with '*' or '?'
+   *
+   * @param column of the field
+   * @return true when null
+   */
+  boolean isNull(DbfColumn column){
+    int start = recordOffset + column.getRecordOffset();
+    for(int index = start; index < start + column.getLength(); ++index){
+      byte value = window.get(index);
+      if(value != ' ' && value != '*' && value != '?' && value != 0){
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Decode a numeric field of the current record without creating intermediate strings (except for exponent notation)
+   *
+   * @param column of the field
+   * @return value, NaN when null or not numeric
+   */
+  double getNumber(DbfColumn column){
+    int index = recordOffset + column.getRecordOffset();
+    int end = index + column.getLength();
+    while(index < end && window.get(index) == ' '){
+      ++index;
+    }
+    if(index >= end){
+      return Double.NaN;
+    }
+
+    boolean negative = false;
+    byte value = window.get(index);
+    if(value == '-' || value == '+'){
+      negative = value == '-';
+      ++index;
+    }
+
+    long mantissa = 0;
+    int digits = 0;
+    int fractionDigits = 0;
+    boolean fraction = false;
+    for(; index < end; ++index){
+      value = window.get(index);
+      if(value >= '0' && value <= '9'){
+        if(digits < 18) {
+          mantissa = mantissa * 10 + (value - '0');
+          ++digits;
+          if (fraction) {
+            ++fractionDigits;
+          }
+        }else if(!fraction){
+          return getNumberSlow(column);
+        }
+      }else if(value == '.' && !fraction){
+        fraction = true;
+      }else if(value == ' ' || value == 0){
+        break;
+      }else if(value == 'e' || value == 'E'){
+        return getNumberSlow(column);
+      }else{
+        return Double.NaN;
+      }
+    }
+    if(digits == 0){
+      return Double.NaN;
+    }
+    double result = fractionDigits == 0 ? mantissa : mantissa / Math.pow(10, fractionDigits);
+    return negative ? -result : result;
+  }
+
+  /**
+   * Decode an integral field of the current record directly as long, so values beyond the 53 bits of precision of a double
+   * are retained. Fields with a non-zero fraction or in exponent notation are decoded as double and truncated, as are values
+   * beyond the range of a long
+   *
+   * @param column of the field
+   * @return value, zero when null or not numeric
+   */
+  long getLong(DbfColumn column){
+    int index = recordOffset + column.getRecordOffset();
+    int end = index + column.getLength();
+    while(index < end && window.get(index) == ' '){
+      ++index;
+    }
+    if(index >= end){
+      return 0;
+    }
+
+    boolean negative = false;
+    byte value = window.get(index);
+    if(value == '-' || value == '+'){
+      negative = value == '-';
+      ++index;
+    }
+
+    long result = 0;
+    int digits = 0;
+    boolean fraction = false;
+    for(; index < end; ++index){
+      value = window.get(index);
+      if(value >= '0' && value <= '9'){
+        if(fraction){
+          if(value != '0'){
+            return truncate(getNumber(column));
+          }
+          continue;
+        }
+        try {
+          result = Math.addExact(Math.multiplyExact(result, 10), value - '0');
+        }catch (ArithmeticException e){
+          return truncate(getNumberSlow(column));
+        }
+        ++digits;
+      }else if(value == '.' && !fraction){
+        fraction = true;
+      }else if(value == ' ' || value == 0){
+        break;
+      }else if(value == 'e' || value == 'E'){
+        return truncate(getNumberSlow(column));
+      }else{
+        return 0;
+      }
+    }
+    if(digits == 0){
+      return 0;
+    }
+    return negative ? -result : result;
+  }
+
+  /**
+   * Truncate a decoded numeric value to a long
+   *
+   * @param value to truncate
+   * @return truncated value, zero when NaN
+   */
+  private static long truncate(double value){
+    return Double.isNaN(value) ? 0 : (long) value;
+  }
+
+  /**
+   * Decode a numeric field of the current record via its string representation
+   *
+   * @param column of the field
+   * @return value, NaN when not numeric
+   */
+  private double getNumberSlow(DbfColumn column){
+    try {
+      return Double.parseDouble(getString(column, StandardCharsets.US_ASCII));
+    }catch (NumberFormatException | NullPointerException e){
+      return Double.NaN;
+    }
+  }
+
+  /**
+   * Decode a logical field of the current record
+   *
+   * @param column of the field
+   * @return TRUE, FALSE, or null when not set
+   */
+  Boolean getLogical(DbfColumn column){
+    byte value = window.get(recordOffset + column.getRecordOffset());
+    switch (value){
+      case 'T':
+      case 't':
+      case 'Y':
+      case 'y':
+        return Boolean.TRUE;
+      case 'F':
+      case 'f':
+      case 'N':
+      case 'n':
+        return Boolean.FALSE;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Decode a field of the current record as trimmed string
+   *
+   * @param column of the field
+   * @param charset to decode with
+   * @return value, null when blank
+   */
+  String getString(DbfColumn column, Charset charset){
+    int start = recordOffset + column.getRecordOffset();
+    int end = start + column.getLength();
+    while(start < end && (window.get(start) == ' ' || window.get(start) == 0)){
+      ++start;
+    }
+    while(end > start && (window.get(end - 1) == ' ' || window.get(end - 1) == 0)){
+      --end;
+    }
+    if(start == end){
+      return null;
+    }
+    var bytes = new byte[end - start];
+    window.duplicate().position(start).get(bytes);
+    return new String(bytes, charset);
+  }
+
+  /**
+   * Close the file, the mapping is released once garbage collected
+   */
+  @Override
+  public void close() {
+    window = null;
+    try {
+      if(channel != null) {
+        channel.close();
+      }
+    }catch (IOException e){
+      var exception = new PlanItRunTimeException("Unable to close DBF file %s", dbfFile.toString());
+      exception.initCause(e);
+      throw exception;
+    }
+  }
+}
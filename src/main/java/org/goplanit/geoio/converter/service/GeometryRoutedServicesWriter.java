@@ -3,11 +3,15 @@ package org.goplanit.geoio.converter.service;
 import org.geotools.data.DataStore;
 import org.goplanit.converter.idmapping.RoutedServicesIdMapper;
 import org.goplanit.converter.service.RoutedServicesWriter;
+import org.goplanit.geoio.converter.GeoIoExportResult;
+import org.goplanit.geoio.converter.GeoIoExportSnapshot;
 import org.goplanit.geoio.converter.GeometryIoWriter;
 import org.goplanit.geoio.converter.service.featurecontext.PlanitRoutedServiceFeatureTypeContext;
-import org.goplanit.geoio.converter.service.featurecontext.PlanitServiceNodeFeatureTypeContext;
+import org.goplanit.geoio.converter.service.featurecontext.PlanitRoutedTripFrequencyFeatureTypeContext;
+import org.goplanit.geoio.converter.service.featurecontext.PlanitRoutedTripScheduleFeatureTypeContext;
 import org.goplanit.geoio.util.GeoIODataStoreManager;
 import org.goplanit.geoio.util.GeoIoFeatureTypeBuilder;
+import org.goplanit.geoio.util.GeoIoMappedIdCache;
 import org.goplanit.geoio.util.PlanitEntityFeatureTypeContext;
 import org.goplanit.network.MacroscopicNetwork;
 import org.goplanit.service.routed.RoutedServices;
@@ -16,13 +20,16 @@ import org.goplanit.utils.id.ManagedId;
 import org.goplanit.utils.locale.CountryNames;
 import org.goplanit.utils.misc.LoggingUtils;
 import org.goplanit.utils.mode.Mode;
-import org.goplanit.utils.network.layer.MacroscopicNetworkLayer;
-import org.goplanit.utils.network.layer.service.ServiceNode;
 import org.goplanit.utils.service.routed.*;
 import org.opengis.feature.simple.SimpleFeatureType;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 import java.util.logging.Logger;
 
@@ -45,6 +52,9 @@ public class GeometryRoutedServicesWriter extends GeometryIoWriter<RoutedService
   /** construct prefix for a given layer in String format */
   private Function<RoutedServicesLayer, String> layerPrefixProducer = null;
 
+  /** geometries of services and their leg segments, owned by the export that is in progress */
+  private RoutedServiceGeometryCache geometryCache = null;
+
   /** Default constructor
    *
    */
@@ -84,7 +94,9 @@ public class GeometryRoutedServicesWriter extends GeometryIoWriter<RoutedService
    * @param routedServices to prepare persistence for
    */
   private void initialiseWrite(RoutedServices routedServices) {
-    getComponentIdMappers().populateMissingIdMappers(getIdMapperType());
+    resolveIdMappers();
+    prepareMappedIdCache();
+    geometryCache = new RoutedServiceGeometryCache();
     layerPrefixProducer =
         (RoutedServicesLayer l) ->
             String.join("_", "layer", getPrimaryIdMapper().getRoutedServiceLayerIdMapper().apply(l));
@@ -188,10 +200,140 @@ public class GeometryRoutedServicesWriter extends GeometryIoWriter<RoutedService
     /* the feature writer through which to provide each result row */
     final var schemaName = createLayerModeAwareBaseFileName(layer, layerMode, getSettings().getServicesFileName());
 
+    /* service geometries are the most costly attribute to construct, do so upfront in parallel */
+    geometryCache.precomputeServiceGeometries(servicesByMode);
+
     /* perform persistence */
     writeGeometryLayerForEntity(featureType, featureDescription, layerLogPrefix, dataStore, schemaName, servicesByMode);
   }
 
+  /**
+   * Map each trip of the layer mode combination to its service, so trips can reference the service they belong to
+   *
+   * @param layer to collect trips for
+   * @param layerMode to collect trips for
+   * @return function providing the mapped id of the service of a trip
+   */
+  private Function<RoutedTrip, String> createTripServiceIdMapper(RoutedServicesLayer layer, Mode layerMode){
+    final var serviceByTrip = new IdentityHashMap<RoutedTrip, RoutedService>();
+    for(var service : layer.getServicesByMode(layerMode)){
+      service.getTripInfo().getScheduleBasedTrips().forEach(t -> serviceByTrip.put(t, service));
+      service.getTripInfo().getFrequencyBasedTrips().forEach(t -> serviceByTrip.put(t, service));
+    }
+    final var serviceIdMapper = getPrimaryIdMapper().getRoutedServiceRefIdMapper();
+    return t -> {
+      var service = serviceByTrip.get(t);
+      return service == null ? null : serviceIdMapper.apply(service);
+    };
+  }
+
+  /**
+   * Collect the trips of a given type across all services of the layer mode combination
+   *
+   * @param <TT> type of trip
+   * @param layer to collect trips for
+   * @param layerMode to collect trips for
+   * @param tripsOfService provides the trips of the desired type for each service
+   * @return trips found
+   */
+  private <TT extends RoutedTrip> List<TT> collectTrips(
+      RoutedServicesLayer layer, Mode layerMode, Function<RoutedService, Iterable<TT>> tripsOfService){
+    var trips = new ArrayList<TT>();
+    for(var service : layer.getServicesByMode(layerMode)){
+      tripsOfService.apply(service).forEach(trips::add);
+    }
+    return trips;
+  }
+
+  /**
+   * Writer the schedule based trips of the layer mode combination. Trips are persisted as features, whereas their departures
+   * and relative leg timings are streamed to separate tables to avoid creating a feature per departure. When capturing a
+   * snapshot, the rows of the tables are captured instead and written when the snapshot is
+   *
+   * @param layer          to persist trips for
+   * @param layerMode      to persist trips for
+   * @param featureType     to use
+   * @param featureDescription the context to convert instances to features
+   * @param layerLogPrefix to use
+   */
+  protected void writeRoutedServicesLayerTripsSchedule(
+      RoutedServicesLayer layer, Mode layerMode, SimpleFeatureType featureType, PlanitRoutedTripScheduleFeatureTypeContext featureDescription, String layerLogPrefix) {
+
+    if(featureType==null || featureDescription == null){
+      throw new PlanItRunTimeException("No Feature type description available for PLANit routed services - trips schedule, this shouldn't happen");
+    }
+    var trips = collectTrips(layer, layerMode, s -> s.getTripInfo().getScheduleBasedTrips());
+    if(trips.isEmpty()){
+      return;
+    }
+    LOGGER.info(String.format("%s Trips schedule (mode: %s): %d", layerLogPrefix, layerMode.getIdsAsString(), trips.size()));
+
+    /* data store, e.g., underlying shape file(s) */
+    DataStore dataStore = findDataStore(
+        featureDescription, layerMode, createFullPathFromFileName(layer, layerMode, getSettings().getTripsScheduleFileName()));
+    final var schemaName = createLayerModeAwareBaseFileName(layer, layerMode, getSettings().getTripsScheduleFileName());
+
+    /* trip features */
+    writeGeometryLayerForEntity(featureType, featureDescription, layerLogPrefix, dataStore, schemaName, trips);
+
+    /* departures and leg timings tables */
+    final var tripIdMapper = getPrimaryIdMapper().getRoutedTripRefIdMapper();
+    final var departureIdMapper = getPrimaryIdMapper().getRoutedTripDepartureRefIdMapper();
+    final var legSegmentIdMapper = getMappedIdCache().cached(
+        GeoIoMappedIdCache.SERVICE_LEG_SEGMENT, getComponentIdMappers().getServiceNetworkIdMapper().getServiceLegSegmentIdMapper());
+    final var outputDirectory = getSettings().getOutputDirectory();
+    /* tables are extended alongside the trips layer when appending to existing layers */
+    final boolean append = getSettings().isAppendToExistingLayers();
+    if(isCapturingSnapshot()){
+      final var capturedRows = new RoutedTripScheduleTableWriter.CapturedRows();
+      for(var trip : trips){
+        capturedRows.add(trip, tripIdMapper.apply(trip), departureIdMapper, legSegmentIdMapper);
+      }
+      deferUntilSnapshotWritten(() -> {
+        try(var tableWriter = new RoutedTripScheduleTableWriter(outputDirectory, schemaName, append)){
+          tableWriter.write(capturedRows);
+        }
+      });
+      return;
+    }
+
+    try(var tableWriter = new RoutedTripScheduleTableWriter(outputDirectory, schemaName, append)){
+      for(var trip : trips){
+        tableWriter.write(trip, tripIdMapper.apply(trip), departureIdMapper, legSegmentIdMapper);
+      }
+    }
+  }
+
+  /**
+   * Writer the frequency based trips of the layer mode combination
+   *
+   * @param layer          to persist trips for
+   * @param layerMode      to persist trips for
+   * @param featureType     to use
+   * @param featureDescription the context to convert instances to features
+   * @param layerLogPrefix to use
+   */
+  protected void writeRoutedServicesLayerTripsFrequency(
+      RoutedServicesLayer layer, Mode layerMode, SimpleFeatureType featureType, PlanitRoutedTripFrequencyFeatureTypeContext featureDescription, String layerLogPrefix) {
+
+    if(featureType==null || featureDescription == null){
+      throw new PlanItRunTimeException("No Feature type description available for PLANit routed services - trips frequency, this shouldn't happen");
+    }
+    var trips = collectTrips(layer, layerMode, s -> s.getTripInfo().getFrequencyBasedTrips());
+    if(trips.isEmpty()){
+      return;
+    }
+    LOGGER.info(String.format("%s Trips frequency (mode: %s): %d", layerLogPrefix, layerMode.getIdsAsString(), trips.size()));
+
+    /* data store, e.g., underlying shape file(s) */
+    DataStore dataStore = findDataStore(
+        featureDescription, layerMode, createFullPathFromFileName(layer, layerMode, getSettings().getTripsFrequencyFileName()));
+    final var schemaName = createLayerModeAwareBaseFileName(layer, layerMode, getSettings().getTripsFrequencyFileName());
+
+    /* perform persistence */
+    writeGeometryLayerForEntity(featureType, featureDescription, layerLogPrefix, dataStore, schemaName, trips);
+  }
+
   /**
    * Write layers of the routed services
    *
@@ -206,6 +348,7 @@ public class GeometryRoutedServicesWriter extends GeometryIoWriter<RoutedService
           "layer:",getPrimaryIdMapper().getRoutedServiceLayerIdMapper().apply(layer)));
 
       for (var layerMode : layer.getSupportedModes()) {
+        checkCancelled("routed services layer " + layer.getXmlId());
 
         if(layer.isServicesByModeEmpty(layerMode)){
           continue;
@@ -213,7 +356,12 @@ public class GeometryRoutedServicesWriter extends GeometryIoWriter<RoutedService
 
         var supportedFeatures =
             GeoIoFeatureTypeBuilder.createRoutedServicesLayerFeatureContexts(
-                getPrimaryIdMapper(), layerMode, getComponentIdMappers().getServiceNetworkIdMapper());
+                getPrimaryIdMapper(),
+                layerMode,
+                getComponentIdMappers().getServiceNetworkIdMapper(),
+                createTripServiceIdMapper(layer, layerMode),
+                getMappedIdCache(),
+                geometryCache);
 
         /* feature types per layer */
         var geoFeatureTypesByPlanitEntity =
@@ -231,9 +379,23 @@ public class GeometryRoutedServicesWriter extends GeometryIoWriter<RoutedService
               layer, layerMode, featureInfo.first(), (PlanitRoutedServiceFeatureTypeContext) featureInfo.second(), layerLogPrefix);
         }
 
-        //todo: trips schedules
+        /* trips schedule */
+        if(getSettings().isPersistTripsSchedule()) {
+          LOGGER.info(String.format("%sPersisting trips schedule to: %s",
+              layerLogPrefix, createFullPathFromFileName(layer, layerMode, getSettings().getTripsScheduleFileName()).toAbsolutePath()));
+          var featureInfo = findFeaturePairForPlanitEntity(RoutedTripSchedule.class, geoFeatureTypesByPlanitEntity);
+          writeRoutedServicesLayerTripsSchedule(
+              layer, layerMode, featureInfo.first(), (PlanitRoutedTripScheduleFeatureTypeContext) featureInfo.second(), layerLogPrefix);
+        }
 
-        //todo: trips frequencies
+        /* trips frequency */
+        if(getSettings().isPersistTripsFrequency()) {
+          LOGGER.info(String.format("%sPersisting trips frequency to: %s",
+              layerLogPrefix, createFullPathFromFileName(layer, layerMode, getSettings().getTripsFrequencyFileName()).toAbsolutePath()));
+          var featureInfo = findFeaturePairForPlanitEntity(RoutedTripFrequency.class, geoFeatureTypesByPlanitEntity);
+          writeRoutedServicesLayerTripsFrequency(
+              layer, layerMode, featureInfo.first(), (PlanitRoutedTripFrequencyFeatureTypeContext) featureInfo.second(), layerLogPrefix);
+        }
       }
     }
   }
@@ -261,6 +423,18 @@ public class GeometryRoutedServicesWriter extends GeometryIoWriter<RoutedService
    */
   @Override
   public void write(RoutedServices routedServices) {
+    exportRoutedServices(routedServices);
+  }
+
+  /**
+   * Write the routed services, see {@link #write(RoutedServices)}
+   *
+   * @param routedServices to persist
+   * @return export result of the write, null when capturing a snapshot rather than writing
+   */
+  private GeoIoExportResult exportRoutedServices(RoutedServices routedServices) {
+
+    var writerEvent = beginWrite();
 
     validate(routedServices);
 
@@ -270,11 +444,51 @@ public class GeometryRoutedServicesWriter extends GeometryIoWriter<RoutedService
     /* logging */
     getSettings().logSettings();
 
-    /* perform actual persistence */
-    writeLayers(routedServices);
+    try {
+      /* perform actual persistence */
+      runCancellable(() -> writeLayers(routedServices));
+    }finally {
+      /* cached geometries are only valid for this export */
+      geometryCache.clear();
+      geometryCache = null;
+
+      /* disposes of any registered data stores */
+      disposeDataStores();
+    }
+
+    return completeWrite(writerEvent, RoutedServices.class);
+  }
 
-    /* disposes of any registered data stores */
-    GeoIODataStoreManager.reset();
+  /**
+   * Write the routed services asynchronously on the default executor, see {@link #getDefaultAsyncExecutor()}
+   *
+   * @param routedServices to persist
+   * @return future of the export result
+   */
+  public CompletableFuture<GeoIoExportResult> writeAsync(RoutedServices routedServices) {
+    return writeAsync(routedServices, getDefaultAsyncExecutor());
+  }
+
+  /**
+   * Write the routed services asynchronously, the writer should not be used for another write until the returned future completes
+   *
+   * @param routedServices to persist
+   * @param executor to write on
+   * @return future of the export result, completed exceptionally when the write fails or is cancelled
+   */
+  public CompletableFuture<GeoIoExportResult> writeAsync(RoutedServices routedServices, Executor executor) {
+    return supplyExportAsync(() -> exportRoutedServices(routedServices), executor);
+  }
+
+  /**
+   * Capture a snapshot of the routed services's layers, to be written afterwards while the routed services may change again, see
+   * {@link GeoIoExportSnapshot}. The departures and leg timings tables of schedule based trips are captured as well
+   *
+   * @param routedServices to capture
+   * @return captured snapshot
+   */
+  public GeoIoExportSnapshot captureSnapshot(RoutedServices routedServices) {
+    return captureWriteSnapshot(() -> write(routedServices));
   }
 
   /**
@@ -282,7 +496,7 @@ public class GeometryRoutedServicesWriter extends GeometryIoWriter<RoutedService
    */
   @Override
   public void reset() {
-    GeoIODataStoreManager.reset();
+    disposeDataStores();
   }  
   
   // GETTERS/SETTERS
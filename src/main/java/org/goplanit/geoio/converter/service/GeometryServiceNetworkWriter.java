@@ -3,6 +3,8 @@ package org.goplanit.geoio.converter.service;
 import org.geotools.data.DataStore;
 import org.goplanit.converter.idmapping.ServiceNetworkIdMapper;
 import org.goplanit.converter.service.ServiceNetworkWriter;
+import org.goplanit.geoio.converter.GeoIoExportResult;
+import org.goplanit.geoio.converter.GeoIoExportSnapshot;
 import org.goplanit.geoio.converter.GeometryIoWriter;
 import org.goplanit.geoio.converter.service.featurecontext.PlanitServiceLegFeatureTypeContext;
 import org.goplanit.geoio.converter.service.featurecontext.PlanitServiceLegSegmentFeatureTypeContext;
@@ -23,6 +25,8 @@ import org.opengis.feature.simple.SimpleFeatureType;
 
 import java.nio.file.Path;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 import java.util.logging.Logger;
 
@@ -89,7 +93,8 @@ public class GeometryServiceNetworkWriter extends GeometryIoWriter<ServiceNetwor
    * @param serviceNetwork to writer
    */
   private void initialiseWrite(ServiceNetwork serviceNetwork) {
-    getComponentIdMappers().populateMissingIdMappers(getIdMapperType());
+    resolveIdMappers();
+    prepareMappedIdCache();
     layerPrefixProducer =
             (UntypedDirectedGraphLayer<?,?,?> l) ->
                     String.join("_", "layer", getPrimaryIdMapper().getServiceNetworkLayerIdMapper().apply( (ServiceNetworkLayer) l));
@@ -214,10 +219,11 @@ public class GeometryServiceNetworkWriter extends GeometryIoWriter<ServiceNetwor
 
     /* Ensure all geo features are available and configured for the correct CRS once we start using them */
     for( var layer : serviceNetwork.getTransportLayers()) {
+      checkCancelled("service network layer " + layer.getXmlId());
 
       var supportedFeatures =
           GeoIoFeatureTypeBuilder.createServiceNetworkLayerFeatureContexts(
-              getPrimaryIdMapper(), layer, getComponentIdMappers().getNetworkIdMappers());
+              getPrimaryIdMapper(), layer, getComponentIdMappers().getNetworkIdMappers(), getMappedIdCache());
 
       /* feature types per layer */
       var geoFeatureTypesByPlanitEntity =
@@ -295,6 +301,18 @@ public class GeometryServiceNetworkWriter extends GeometryIoWriter<ServiceNetwor
    */
 //  @Override
   public void write(ServiceNetwork serviceNetwork) {
+    exportServiceNetwork(serviceNetwork);
+  }
+
+  /**
+   * Write the service network, see {@link #write(ServiceNetwork)}
+   *
+   * @param serviceNetwork to persist
+   * @return export result of the write, null when capturing a snapshot rather than writing
+   */
+  private GeoIoExportResult exportServiceNetwork(ServiceNetwork serviceNetwork) {
+
+    var writerEvent = beginWrite();
 
     validate(serviceNetwork);
 
@@ -304,11 +322,47 @@ public class GeometryServiceNetworkWriter extends GeometryIoWriter<ServiceNetwor
     /* logging */
     getSettings().logSettings();
 
-    /* perform actual persistence */
-    writeLayers(serviceNetwork);
+    try {
+      /* perform actual persistence */
+      runCancellable(() -> writeLayers(serviceNetwork));
+    }finally {
+      /* disposes of any registered data stores */
+      disposeDataStores();
+    }
+
+    return completeWrite(writerEvent, ServiceNetwork.class);
+  }
+
+  /**
+   * Write the service network asynchronously on the default executor, see {@link #getDefaultAsyncExecutor()}
+   *
+   * @param serviceNetwork to persist
+   * @return future of the export result
+   */
+  public CompletableFuture<GeoIoExportResult> writeAsync(ServiceNetwork serviceNetwork) {
+    return writeAsync(serviceNetwork, getDefaultAsyncExecutor());
+  }
+
+  /**
+   * Write the service network asynchronously, the writer should not be used for another write until the returned future completes
+   *
+   * @param serviceNetwork to persist
+   * @param executor to write on
+   * @return future of the export result, completed exceptionally when the write fails or is cancelled
+   */
+  public CompletableFuture<GeoIoExportResult> writeAsync(ServiceNetwork serviceNetwork, Executor executor) {
+    return supplyExportAsync(() -> exportServiceNetwork(serviceNetwork), executor);
+  }
 
-    /* disposes of any registered data stores */
-    GeoIODataStoreManager.reset();
+  /**
+   * Capture a snapshot of the service network's layers, to be written afterwards while the service network may change again, see
+   * {@link GeoIoExportSnapshot}
+   *
+   * @param serviceNetwork to capture
+   * @return captured snapshot
+   */
+  public GeoIoExportSnapshot captureSnapshot(ServiceNetwork serviceNetwork) {
+    return captureWriteSnapshot(() -> write(serviceNetwork));
   }
 
   /**
@@ -316,7 +370,7 @@ public class GeometryServiceNetworkWriter extends GeometryIoWriter<ServiceNetwor
    */
   @Override
   public void reset() {
-    GeoIODataStoreManager.reset();
+    disposeDataStores();
   }
   
   // GETTERS/SETTERS
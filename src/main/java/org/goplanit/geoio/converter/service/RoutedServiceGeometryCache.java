@@ -0,0 +1,197 @@
+package org.goplanit.geoio.converter.service;
+
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.goplanit.utils.network.layer.service.ServiceLegSegment;
+import org.goplanit.utils.service.routed.RoutedService;
+import org.goplanit.utils.service.routed.RoutedTripFrequency;
+import org.goplanit.utils.service.routed.RoutedTripSchedule;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Cache of geometries used when persisting routed services. The geometry of a routed service is the combination of the
+ * geometries of the service leg segments used by its trips. Since many services (and trips) share the same leg segments,
+ * each leg segment's polyline is constructed once and reused, rather than rebuilt from its physical link segments for every
+ * service as {@link RoutedService#extractGeometry(boolean, boolean)} would.
+ * <p>
+ *   An instance is meant to live for the duration of a single export, service geometries can be precomputed in parallel
+ *   before they are persisted.
+ * </p>
+ *
+ * @author markr
+ */
+public class RoutedServiceGeometryCache {
+
+  /** logger to use */
+  private static final Logger LOGGER = Logger.getLogger(RoutedServiceGeometryCache.class.getCanonicalName());
+
+  /** factory to create the service geometries with */
+  private final GeometryFactory geometryFactory;
+
+  /** leg segment geometries by leg segment id */
+  private final Map<Long, LineString> legSegmentGeometries;
+
+  /** service geometries by routed service */
+  private final Map<RoutedService, MultiLineString> serviceGeometries;
+
+  /**
+   * Collect the distinct leg segments used by the trips of the service in order of first appearance
+   *
+   * @param routedService to collect leg segments for
+   * @return used leg segments
+   */
+  private static Set<ServiceLegSegment> collectUsedLegSegments(RoutedService routedService){
+    var usedLegSegments = new LinkedHashSet<ServiceLegSegment>();
+    for(RoutedTripFrequency trip : routedService.getTripInfo().getFrequencyBasedTrips()){
+      collectUsedLegSegments(trip, usedLegSegments);
+    }
+    for(RoutedTripSchedule trip : routedService.getTripInfo().getScheduleBasedTrips()){
+      collectUsedLegSegments(trip, usedLegSegments);
+    }
+    return usedLegSegments;
+  }
+
+  /**
+   * Collect the leg segments used by a frequency based trip
+   *
+   * @param trip to collect leg segments for
+   * @param usedLegSegments to add to
+   */
+  private static void collectUsedLegSegments(RoutedTripFrequency trip, Set<ServiceLegSegment> usedLegSegments){
+    for(int index = 0; index < trip.getNumberOfLegSegments(); ++index){
+      usedLegSegments.add(trip.getLegSegment(index));
+    }
+  }
+
+  /**
+   * Collect the leg segments used by a schedule based trip
+   *
+   * @param trip to collect leg segments for
+   * @param usedLegSegments to add to
+   */
+  private static void collectUsedLegSegments(RoutedTripSchedule trip, Set<ServiceLegSegment> usedLegSegments){
+    for(int index = 0; index < trip.getRelativeLegTimingsSize(); ++index){
+      usedLegSegments.add(trip.getRelativeLegTiming(index).getParentLegSegment());
+    }
+  }
+
+  /**
+   * Construct the geometry of the service from the (cached) geometries of its leg segments
+   *
+   * @param routedService to construct geometry for
+   * @return created geometry
+   */
+  private MultiLineString createServiceGeometry(RoutedService routedService){
+    return createMultiLineString(collectUsedLegSegments(routedService));
+  }
+
+  /**
+   * Construct a multi line string from the (cached) geometries of the given leg segments
+   *
+   * @param usedLegSegments to construct geometry for
+   * @return created geometry
+   */
+  private MultiLineString createMultiLineString(Set<ServiceLegSegment> usedLegSegments){
+    var lineStrings = new ArrayList<LineString>(usedLegSegments.size());
+    for(var legSegment : usedLegSegments){
+      var lineString = getLegSegmentGeometry(legSegment);
+      if(lineString != null){
+        lineStrings.add(lineString);
+      }
+    }
+    return geometryFactory.createMultiLineString(lineStrings.toArray(LineString[]::new));
+  }
+
+  /**
+   * Constructor
+   */
+  public RoutedServiceGeometryCache(){
+    this.geometryFactory = JTSFactoryFinder.getGeometryFactory();
+    this.legSegmentGeometries = new ConcurrentHashMap<>();
+    this.serviceGeometries = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Compute the geometries of all provided services in parallel, so they are readily available when persisting them
+   *
+   * @param routedServices to compute geometries for
+   */
+  public void precomputeServiceGeometries(Iterable<? extends RoutedService> routedServices){
+    var services = new ArrayList<RoutedService>();
+    routedServices.forEach(services::add);
+    services.parallelStream().forEach(this::getServiceGeometry);
+    LOGGER.fine(String.format("Cached geometries for %d services based on %d distinct service leg segments",
+        serviceGeometries.size(), legSegmentGeometries.size()));
+  }
+
+  /**
+   * Collect the geometry of the leg segment, constructed only upon first request
+   *
+   * @param legSegment to collect geometry for
+   * @return geometry, may be null if the leg segment has no geometry
+   */
+  public LineString getLegSegmentGeometry(ServiceLegSegment legSegment){
+    var lineString = legSegmentGeometries.get(legSegment.getId());
+    if(lineString == null){
+      lineString = legSegment.getGeometry();
+      if(lineString != null){
+        legSegmentGeometries.putIfAbsent(legSegment.getId(), lineString);
+      }
+    }
+    return lineString;
+  }
+
+  /**
+   * Collect the geometry of the service comprising the leg segments of all its frequency and schedule based trips, constructed
+   * only upon first request
+   *
+   * @param routedService to collect geometry for
+   * @return geometry
+   */
+  public MultiLineString getServiceGeometry(RoutedService routedService){
+    return serviceGeometries.computeIfAbsent(routedService, this::createServiceGeometry);
+  }
+
+  /**
+   * Construct the geometry of a frequency based trip from the (cached) geometries of its leg segments. Trip geometries
+   * themselves are not cached since each trip is persisted only once
+   *
+   * @param trip to construct geometry for
+   * @return geometry
+   */
+  public MultiLineString getTripGeometry(RoutedTripFrequency trip){
+    var usedLegSegments = new LinkedHashSet<ServiceLegSegment>();
+    collectUsedLegSegments(trip, usedLegSegments);
+    return createMultiLineString(usedLegSegments);
+  }
+
+  /**
+   * Construct the geometry of a schedule based trip from the (cached) geometries of its leg segments. Trip geometries
+   * themselves are not cached since each trip is persisted only once
+   *
+   * @param trip to construct geometry for
+   * @return geometry
+   */
+  public MultiLineString getTripGeometry(RoutedTripSchedule trip){
+    var usedLegSegments = new LinkedHashSet<ServiceLegSegment>();
+    collectUsedLegSegments(trip, usedLegSegments);
+    return createMultiLineString(usedLegSegments);
+  }
+
+  /**
+   * Remove all cached geometries
+   */
+  public void clear(){
+    legSegmentGeometries.clear();
+    serviceGeometries.clear();
+  }
+
+}
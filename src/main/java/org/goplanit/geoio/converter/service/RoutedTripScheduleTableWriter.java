@@ -0,0 +1,298 @@
+package org.goplanit.geoio.converter.service;
+
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+import org.goplanit.utils.network.layer.service.ServiceLegSegment;
+import org.goplanit.utils.service.routed.RoutedTripDeparture;
+import org.goplanit.utils.service.routed.RoutedTripSchedule;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Streaming writer of the timetable of schedule based trips in a compact tabular (CSV) form. Rather than creating a GIS feature
+ * per departure, each trip contributes one row per departure to a departures table and one row per leg segment to a relative
+ * leg timings table. The (absolute) stop times of any departure follow from combining both tables. All times are persisted in
+ * seconds, departure times relative to midnight (possibly exceeding 24 hours), leg timings relative to the departure. Id
+ * columns hold the mapped ids, quoted for CSV, and are left empty when an entity has no mapped id.
+ * <p>
+ *   Departures table columns: trip, dep_id, dep_time_s<br>
+ *   Leg timings table columns: trip, seq, leg_seg, dur_s, dwell_s
+ * </p>
+ *
+ * @author markr
+ */
+public class RoutedTripScheduleTableWriter implements AutoCloseable {
+
+  /** the logger to use */
+  private static final Logger LOGGER = Logger.getLogger(RoutedTripScheduleTableWriter.class.getCanonicalName());
+
+  /** suffix for departures table file */
+  public static final String DEPARTURES_TABLE_SUFFIX = "_departures.csv";
+
+  /** suffix for relative leg timings table file */
+  public static final String LEG_TIMINGS_TABLE_SUFFIX = "_leg_timings.csv";
+
+  /** header of departures table */
+  private static final String DEPARTURES_HEADER = "trip,dep_id,dep_time_s";
+
+  /** header of relative leg timings table */
+  private static final String LEG_TIMINGS_HEADER = "trip,seq,leg_seg,dur_s,dwell_s";
+
+  /** column delimiter */
+  private static final char DELIMITER = ',';
+
+  /** size of the output buffers, large since rows are short and numerous */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /** departures table output */
+  private final BufferedWriter departuresWriter;
+
+  /** relative leg timings table output */
+  private final BufferedWriter legTimingsWriter;
+
+  /** reusable rows buffer */
+  private final StringBuilder rows;
+
+  /** paths written to, for logging and error reporting */
+  private final Path departuresPath;
+
+  /** number of departure rows written */
+  private long numberOfDepartures;
+
+  /** number of leg timing rows written */
+  private long numberOfLegTimings;
+
+  /**
+   * Departures and relative leg timings of trips captured as rows of the tables, so they can be written afterwards while the
+   * trips may change again, see {@link RoutedTripScheduleTableWriter#write(CapturedRows)}
+   */
+  public static final class CapturedRows {
+
+    /** captured departure rows */
+    private final StringBuilder departureRows = new StringBuilder();
+
+    /** captured leg timing rows */
+    private final StringBuilder legTimingRows = new StringBuilder();
+
+    /** number of departure rows captured */
+    private long numberOfDepartures;
+
+    /** number of leg timing rows captured */
+    private long numberOfLegTimings;
+
+    /**
+     * Capture all departures and relative leg timings of the trip
+     *
+     * @param trip to capture timetable of
+     * @param tripMappedId the mapped id of the trip as used in its GIS feature
+     * @param departureIdMapper to apply to the departures of the trip
+     * @param legSegmentIdMapper to apply to referenced leg segments
+     */
+    public void add(
+        RoutedTripSchedule trip,
+        String tripMappedId,
+        Function<RoutedTripDeparture, String> departureIdMapper,
+        Function<ServiceLegSegment, String> legSegmentIdMapper){
+      numberOfDepartures += appendDepartureRows(departureRows, trip, tripMappedId, departureIdMapper);
+      numberOfLegTimings += appendLegTimingRows(legTimingRows, trip, tripMappedId, legSegmentIdMapper);
+    }
+  }
+
+  /**
+   * Append a mapped id to the rows, quoted for CSV, nothing is appended for a null id
+   *
+   * @param rows to append to
+   * @param mappedId to append
+   * @return rows
+   */
+  private static StringBuilder appendId(StringBuilder rows, String mappedId){
+    if(mappedId != null){
+      rows.append('"');
+      for(int index = 0; index < mappedId.length(); ++index){
+        char c = mappedId.charAt(index);
+        if(c == '"'){
+          rows.append('"');
+        }
+        rows.append(c);
+      }
+      rows.append('"');
+    }
+    return rows;
+  }
+
+  /**
+   * Append a departures table row per departure of the trip
+   *
+   * @param rows to append to
+   * @param trip to append departures of
+   * @param tripMappedId the mapped id of the trip as used in its GIS feature
+   * @param departureIdMapper to apply to the departures of the trip
+   * @return number of rows appended
+   */
+  private static long appendDepartureRows(
+      StringBuilder rows, RoutedTripSchedule trip, String tripMappedId, Function<RoutedTripDeparture, String> departureIdMapper){
+    long numberOfRows = 0;
+    for (var departure : trip.getDepartures()) {
+      appendId(rows, tripMappedId).append(DELIMITER);
+      appendId(rows, departureIdMapper.apply(departure)).append(DELIMITER)
+          .append(departure.getDepartureTime().toSecondOfDay()).append('\n');
+      ++numberOfRows;
+    }
+    return numberOfRows;
+  }
+
+  /**
+   * Append a relative leg timings table row per leg timing of the trip
+   *
+   * @param rows to append to
+   * @param trip to append leg timings of
+   * @param tripMappedId the mapped id of the trip as used in its GIS feature
+   * @param legSegmentIdMapper to apply to referenced leg segments
+   * @return number of rows appended
+   */
+  private static long appendLegTimingRows(
+      StringBuilder rows, RoutedTripSchedule trip, String tripMappedId, Function<ServiceLegSegment, String> legSegmentIdMapper){
+    for (int index = 0; index < trip.getRelativeLegTimingsSize(); ++index) {
+      var legTiming = trip.getRelativeLegTiming(index);
+      appendId(rows, tripMappedId).append(DELIMITER)
+          .append(index).append(DELIMITER);
+      appendId(rows, legSegmentIdMapper.apply(legTiming.getParentLegSegment())).append(DELIMITER)
+          .append(legTiming.getDuration().toSecondOfDay()).append(DELIMITER)
+          .append(legTiming.getDwellTime().toSecondOfDay()).append('\n');
+    }
+    return trip.getRelativeLegTimingsSize();
+  }
+
+  /**
+   * Open a table for writing, when appending the table is created if absent and the header is only written to an empty table,
+   * otherwise any existing table is replaced
+   *
+   * @param path of the table
+   * @param header of the table
+   * @param append when true append to an existing table, otherwise replace it
+   * @return writer positioned after the header or after the existing rows
+   * @throws IOException when unable to open the table
+   */
+  private static BufferedWriter openTable(Path path, String header, boolean append) throws IOException {
+    var writer = new BufferedWriter(append ?
+        Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND) :
+        Files.newBufferedWriter(path, StandardCharsets.UTF_8), BUFFER_SIZE);
+    try {
+      if (!append || Files.size(path) == 0) {
+        writer.write(header);
+        writer.newLine();
+      }
+    }catch (IOException e){
+      writer.close();
+      throw e;
+    }
+    return writer;
+  }
+
+  /**
+   * Constructor, replacing any existing tables
+   *
+   * @param outputDirectory to create tables in
+   * @param baseFileName the table files are prefixed with, e.g., the schema name of the trips layer
+   */
+  public RoutedTripScheduleTableWriter(String outputDirectory, String baseFileName){
+    this(outputDirectory, baseFileName, false);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param outputDirectory to create tables in
+   * @param baseFileName the table files are prefixed with, e.g., the schema name of the trips layer
+   * @param append when true rows are appended to existing tables, otherwise existing tables are replaced
+   */
+  public RoutedTripScheduleTableWriter(String outputDirectory, String baseFileName, boolean append){
+    this.departuresPath = Path.of(outputDirectory, baseFileName + DEPARTURES_TABLE_SUFFIX);
+    var legTimingsPath = Path.of(outputDirectory, baseFileName + LEG_TIMINGS_TABLE_SUFFIX);
+    this.rows = new StringBuilder(256);
+    BufferedWriter openedDeparturesWriter = null;
+    try {
+      openedDeparturesWriter = openTable(departuresPath, DEPARTURES_HEADER, append);
+      this.legTimingsWriter = openTable(legTimingsPath, LEG_TIMINGS_HEADER, append);
+      this.departuresWriter = openedDeparturesWriter;
+    }catch (IOException e){
+      LOGGER.severe(e.getMessage());
+      if(openedDeparturesWriter != null){
+        try {
+          openedDeparturesWriter.close();
+        }catch (IOException closeException){
+          e.addSuppressed(closeException);
+        }
+      }
+      var exception = new PlanItRunTimeException("Unable to create trip schedule tables at %s", departuresPath.toAbsolutePath().toString());
+      exception.initCause(e);
+      throw exception;
+    }
+  }
+
+  /**
+   * Append all departures and relative leg timings of the trip to the tables
+   *
+   * @param trip to persist timetable of
+   * @param tripMappedId the mapped id of the trip as used in its GIS feature
+   * @param departureIdMapper to apply to the departures of the trip
+   * @param legSegmentIdMapper to apply to referenced leg segments
+   */
+  public void write(
+      RoutedTripSchedule trip,
+      String tripMappedId,
+      Function<RoutedTripDeparture, String> departureIdMapper,
+      Function<ServiceLegSegment, String> legSegmentIdMapper){
+    try {
+      numberOfDepartures += appendDepartureRows(rows, trip, tripMappedId, departureIdMapper);
+      departuresWriter.append(rows);
+      rows.setLength(0);
+
+      numberOfLegTimings += appendLegTimingRows(rows, trip, tripMappedId, legSegmentIdMapper);
+      legTimingsWriter.append(rows);
+      rows.setLength(0);
+    }catch (IOException e){
+      LOGGER.severe(e.getMessage());
+      throw new PlanItRunTimeException("Unable to persist timetable of trip %s", tripMappedId);
+    }
+  }
+
+  /**
+   * Append the departures and relative leg timings captured earlier to the tables
+   *
+   * @param capturedRows to persist
+   */
+  public void write(CapturedRows capturedRows){
+    try {
+      departuresWriter.append(capturedRows.departureRows);
+      legTimingsWriter.append(capturedRows.legTimingRows);
+      numberOfDepartures += capturedRows.numberOfDepartures;
+      numberOfLegTimings += capturedRows.numberOfLegTimings;
+    }catch (IOException e){
+      LOGGER.severe(e.getMessage());
+      throw new PlanItRunTimeException("Unable to persist captured timetables at %s", departuresPath.toAbsolutePath().toString());
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() {
+    try (legTimingsWriter) {
+      departuresWriter.close();
+    }catch (IOException e){
+      LOGGER.severe(e.getMessage());
+      throw new PlanItRunTimeException("Unable to finalise trip schedule tables at %s", departuresPath.toAbsolutePath().toString());
+    }
+    LOGGER.info(String.format("Persisted %d departures and %d relative leg timings alongside %s",
+        numberOfDepartures, numberOfLegTimings, departuresPath.getFileName()));
+  }
+
+}
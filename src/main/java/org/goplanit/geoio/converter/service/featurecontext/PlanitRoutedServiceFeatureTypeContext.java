@@ -1,20 +1,15 @@
 package org.goplanit.geoio.converter.service.featurecontext;
 
-import org.goplanit.converter.idmapping.NetworkIdMapper;
 import org.goplanit.converter.idmapping.RoutedServicesIdMapper;
-import org.goplanit.converter.idmapping.ServiceNetworkIdMapper;
+import org.goplanit.geoio.converter.service.RoutedServiceGeometryCache;
+import org.goplanit.geoio.util.ListAttributeEncoder;
 import org.goplanit.geoio.util.PlanitEntityFeatureTypeContext;
-import org.goplanit.service.routed.RoutedServices;
 import org.goplanit.utils.misc.Triple;
-import org.goplanit.utils.network.layer.macroscopic.MacroscopicLinkSegment;
-import org.goplanit.utils.network.layer.service.ServiceLegSegment;
 import org.goplanit.utils.service.routed.RoutedService;
-import org.locationtech.jts.geom.LineString;
 import org.locationtech.jts.geom.MultiLineString;
 
 import java.util.List;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * Track contextual relevant information for PLANit routed service that is persisted
@@ -27,10 +22,13 @@ public class PlanitRoutedServiceFeatureTypeContext extends PlanitEntityFeatureTy
    * The mapping from PLANIT routed service instance to fixed GIS attributes of that service
    *
    * @param routedServicesIdMapper to apply
+   * @param listEncoder to encode list valued attributes with
+   * @param geometryCache to obtain (cached) service geometries from
    * @return feature mapping
    */
   private static List<Triple<String,String, Function<RoutedService, ? extends Object>>> createFixedFeatureDescription(
-      final RoutedServicesIdMapper routedServicesIdMapper){
+      final RoutedServicesIdMapper routedServicesIdMapper, final ListAttributeEncoder listEncoder, final RoutedServiceGeometryCache geometryCache){
+    final var tripIdMapper = routedServicesIdMapper.getRoutedTripRefIdMapper();
     return List.of(
         /* service leg segment info (fixed) */
         Triple.of("mapped_id", "java.lang.String", routedServicesIdMapper.getRoutedServiceRefIdMapper()),
@@ -41,43 +39,50 @@ public class PlanitRoutedServiceFeatureTypeContext extends PlanitEntityFeatureTy
         Triple.of("name_descr", "String", RoutedService::getNameDescription),
         Triple.of("serv_descr", "String", RoutedService::getServiceDescription),
         Triple.of("trips_schd", "String",
-            (rs) -> rs.getTripInfo().getScheduleBasedTrips().stream().map( t -> routedServicesIdMapper.getRoutedTripRefIdMapper().apply(t)).collect(Collectors.joining(","))),
+            (rs) -> listEncoder.encode(rs.getId(), "trips_schd", rs.getTripInfo().getScheduleBasedTrips(), t -> tripIdMapper.apply(t))),
         Triple.of("trips_freq", "String",
-            (rs) -> rs.getTripInfo().getFrequencyBasedTrips().stream().map( t -> routedServicesIdMapper.getRoutedTripRefIdMapper().apply(t)).collect(Collectors.joining(","))),
+            (rs) -> listEncoder.encode(rs.getId(), "trips_freq", rs.getTripInfo().getFrequencyBasedTrips(), t -> tripIdMapper.apply(t))),
 
-        /* geometry taken from underlying trips */
+        /* geometry taken from underlying trips, leg segment geometries shared between services are constructed only once */
         Triple.of(DEFAULT_GEOMETRY_ATTRIBUTE_KEY, "MultiLineString",
-                (Function<RoutedService, MultiLineString>) rs -> rs.extractGeometry(true, true)));
+                (Function<RoutedService, MultiLineString>) geometryCache::getServiceGeometry));
   }
 
   /**
    * The mapping from PLANIT routed service instance to GIS attributes
    *
    * @param routedServicesIdMapper to apply
+   * @param listEncoder to encode list valued attributes with
+   * @param geometryCache to obtain (cached) service geometries from
    * @return feature mapping
    */
   private static List<Triple<String,String, Function<RoutedService, ? extends Object>>> createFeatureDescription(
-      final RoutedServicesIdMapper routedServicesIdMapper){
-    return createFixedFeatureDescription(routedServicesIdMapper);
+      final RoutedServicesIdMapper routedServicesIdMapper, final ListAttributeEncoder listEncoder, final RoutedServiceGeometryCache geometryCache){
+    return createFixedFeatureDescription(routedServicesIdMapper, listEncoder, geometryCache);
   }
 
   /**
    * Constructor
    *
    * @param routedServicesIdMapper id mapper to apply
+   * @param listEncoder to encode list valued attributes with
+   * @param geometryCache to obtain (cached) service geometries from
    */
-  protected PlanitRoutedServiceFeatureTypeContext(final RoutedServicesIdMapper routedServicesIdMapper){
-    super(RoutedService.class, createFeatureDescription(routedServicesIdMapper));
+  protected PlanitRoutedServiceFeatureTypeContext(
+      final RoutedServicesIdMapper routedServicesIdMapper, final ListAttributeEncoder listEncoder, final RoutedServiceGeometryCache geometryCache){
+    super(RoutedService.class, createFeatureDescription(routedServicesIdMapper, listEncoder, geometryCache), listEncoder);
   }
 
   /**
    * Factory method
    *
    * @param routedServicesIdMapper to apply for creating each ids when persisting
+   * @param geometryCache to obtain (cached) service geometries from
    * @return created instance
    */
-  public static PlanitRoutedServiceFeatureTypeContext create(final RoutedServicesIdMapper routedServicesIdMapper){
-    return new PlanitRoutedServiceFeatureTypeContext(routedServicesIdMapper);
+  public static PlanitRoutedServiceFeatureTypeContext create(
+      final RoutedServicesIdMapper routedServicesIdMapper, final RoutedServiceGeometryCache geometryCache){
+    return new PlanitRoutedServiceFeatureTypeContext(routedServicesIdMapper, new ListAttributeEncoder(), geometryCache);
   }
 
 }
@@ -0,0 +1,119 @@
+package org.goplanit.geoio.converter.service.featurecontext;
+
+import org.goplanit.converter.idmapping.RoutedServicesIdMapper;
+import org.goplanit.converter.idmapping.ServiceNetworkIdMapper;
+import org.goplanit.geoio.converter.service.RoutedServiceGeometryCache;
+import org.goplanit.geoio.util.GeoIoMappedIdCache;
+import org.goplanit.geoio.util.ListAttributeEncoder;
+import org.goplanit.geoio.util.PlanitEntityFeatureTypeContext;
+import org.goplanit.utils.misc.Triple;
+import org.goplanit.utils.network.layer.service.ServiceLegSegment;
+import org.goplanit.utils.service.routed.RoutedTrip;
+import org.goplanit.utils.service.routed.RoutedTripFrequency;
+import org.locationtech.jts.geom.MultiLineString;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Track contextual relevant information for PLANit frequency based routed trips that are persisted
+ *
+ * @author markr
+ */
+public class PlanitRoutedTripFrequencyFeatureTypeContext extends PlanitEntityFeatureTypeContext<RoutedTripFrequency> {
+
+  /**
+   * Collect the leg segments of the trip in order
+   *
+   * @param trip to collect for
+   * @return leg segments
+   */
+  private static List<ServiceLegSegment> getLegSegments(RoutedTripFrequency trip){
+    var legSegments = new ArrayList<ServiceLegSegment>(trip.getNumberOfLegSegments());
+    for(int index = 0; index < trip.getNumberOfLegSegments(); ++index){
+      legSegments.add(trip.getLegSegment(index));
+    }
+    return legSegments;
+  }
+
+  /**
+   * The mapping from PLANIT frequency based trip instance to GIS attributes
+   *
+   * @param routedServicesIdMapper to apply
+   * @param serviceNetworkIdMapper to apply for referenced leg segments
+   * @param tripServiceIdMapper provides the mapped id of the service a trip belongs to
+   * @param mappedIdCache to cache mapped ids in
+   * @param listEncoder to encode list valued attributes with
+   * @param geometryCache to obtain (cached) leg segment geometries from
+   * @return feature mapping
+   */
+  private static List<Triple<String,String, Function<RoutedTripFrequency, ? extends Object>>> createFeatureDescription(
+      final RoutedServicesIdMapper routedServicesIdMapper,
+      final ServiceNetworkIdMapper serviceNetworkIdMapper,
+      final Function<RoutedTrip, String> tripServiceIdMapper,
+      final GeoIoMappedIdCache mappedIdCache,
+      final ListAttributeEncoder listEncoder,
+      final RoutedServiceGeometryCache geometryCache){
+    final var tripIdMapper = routedServicesIdMapper.getRoutedTripRefIdMapper();
+    final var legSegmentIdMapper =
+        mappedIdCache.cached(GeoIoMappedIdCache.SERVICE_LEG_SEGMENT, serviceNetworkIdMapper.getServiceLegSegmentIdMapper());
+    return List.of(
+        Triple.of("mapped_id", "java.lang.String", t -> tripIdMapper.apply(t)),
+        Triple.of("id", "java.lang.Long", RoutedTripFrequency::getId),
+        Triple.of("xml_id", "String", RoutedTripFrequency::getXmlId),
+        Triple.of("ext_id", "String", RoutedTripFrequency::getExternalId),
+        Triple.of("service", "String", t -> tripServiceIdMapper.apply(t)),
+        Triple.of("freq_h", "java.lang.Double", RoutedTripFrequency::getFrequencyPerHour),
+        Triple.of("leg_segs", "String",
+            t -> listEncoder.encode(t.getId(), "leg_segs", getLegSegments(t), legSegmentIdMapper)),
+
+        /* geometry taken from leg segments of trip */
+        Triple.of(DEFAULT_GEOMETRY_ATTRIBUTE_KEY, "MultiLineString",
+            (Function<RoutedTripFrequency, MultiLineString>) geometryCache::getTripGeometry));
+  }
+
+  /**
+   * Constructor
+   *
+   * @param routedServicesIdMapper to apply
+   * @param serviceNetworkIdMapper to apply for referenced leg segments
+   * @param tripServiceIdMapper provides the mapped id of the service a trip belongs to
+   * @param mappedIdCache to cache mapped ids in
+   * @param listEncoder to encode list valued attributes with
+   * @param geometryCache to obtain (cached) leg segment geometries from
+   */
+  protected PlanitRoutedTripFrequencyFeatureTypeContext(
+      final RoutedServicesIdMapper routedServicesIdMapper,
+      final ServiceNetworkIdMapper serviceNetworkIdMapper,
+      final Function<RoutedTrip, String> tripServiceIdMapper,
+      final GeoIoMappedIdCache mappedIdCache,
+      final ListAttributeEncoder listEncoder,
+      final RoutedServiceGeometryCache geometryCache){
+    super(RoutedTripFrequency.class,
+        createFeatureDescription(
+            routedServicesIdMapper, serviceNetworkIdMapper, tripServiceIdMapper, mappedIdCache, listEncoder, geometryCache),
+        listEncoder);
+  }
+
+  /**
+   * Factory method
+   *
+   * @param routedServicesIdMapper to apply
+   * @param serviceNetworkIdMapper to apply for referenced leg segments
+   * @param tripServiceIdMapper provides the mapped id of the service a trip belongs to
+   * @param mappedIdCache to cache mapped ids in
+   * @param geometryCache to obtain (cached) leg segment geometries from
+   * @return created instance
+   */
+  public static PlanitRoutedTripFrequencyFeatureTypeContext create(
+      final RoutedServicesIdMapper routedServicesIdMapper,
+      final ServiceNetworkIdMapper serviceNetworkIdMapper,
+      final Function<RoutedTrip, String> tripServiceIdMapper,
+      final GeoIoMappedIdCache mappedIdCache,
+      final RoutedServiceGeometryCache geometryCache){
+    return new PlanitRoutedTripFrequencyFeatureTypeContext(
+        routedServicesIdMapper, serviceNetworkIdMapper, tripServiceIdMapper, mappedIdCache, new ListAttributeEncoder(), geometryCache);
+  }
+
+}
@@ -0,0 +1,121 @@
+package org.goplanit.geoio.converter.service.featurecontext;
+
+import org.goplanit.converter.idmapping.RoutedServicesIdMapper;
+import org.goplanit.converter.idmapping.ServiceNetworkIdMapper;
+import org.goplanit.geoio.converter.service.RoutedServiceGeometryCache;
+import org.goplanit.geoio.util.GeoIoMappedIdCache;
+import org.goplanit.geoio.util.ListAttributeEncoder;
+import org.goplanit.geoio.util.PlanitEntityFeatureTypeContext;
+import org.goplanit.utils.misc.Triple;
+import org.goplanit.utils.network.layer.service.ServiceLegSegment;
+import org.goplanit.utils.service.routed.RoutedTrip;
+import org.goplanit.utils.service.routed.RoutedTripSchedule;
+import org.locationtech.jts.geom.MultiLineString;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Track contextual relevant information for PLANit schedule based routed trips that are persisted. Only trip level
+ * information is part of the feature, the departures and relative leg timings of each trip are persisted in separate
+ * tables, see {@link org.goplanit.geoio.converter.service.RoutedTripScheduleTableWriter}
+ *
+ * @author markr
+ */
+public class PlanitRoutedTripScheduleFeatureTypeContext extends PlanitEntityFeatureTypeContext<RoutedTripSchedule> {
+
+  /**
+   * Collect the leg segments of the trip in order
+   *
+   * @param trip to collect for
+   * @return leg segments
+   */
+  private static List<ServiceLegSegment> getLegSegments(RoutedTripSchedule trip){
+    var legSegments = new ArrayList<ServiceLegSegment>(trip.getRelativeLegTimingsSize());
+    for(int index = 0; index < trip.getRelativeLegTimingsSize(); ++index){
+      legSegments.add(trip.getRelativeLegTiming(index).getParentLegSegment());
+    }
+    return legSegments;
+  }
+
+  /**
+   * The mapping from PLANIT schedule based trip instance to GIS attributes
+   *
+   * @param routedServicesIdMapper to apply
+   * @param serviceNetworkIdMapper to apply for referenced leg segments
+   * @param tripServiceIdMapper provides the mapped id of the service a trip belongs to
+   * @param mappedIdCache to cache mapped ids in
+   * @param listEncoder to encode list valued attributes with
+   * @param geometryCache to obtain (cached) leg segment geometries from
+   * @return feature mapping
+   */
+  private static List<Triple<String,String, Function<RoutedTripSchedule, ? extends Object>>> createFeatureDescription(
+      final RoutedServicesIdMapper routedServicesIdMapper,
+      final ServiceNetworkIdMapper serviceNetworkIdMapper,
+      final Function<RoutedTrip, String> tripServiceIdMapper,
+      final GeoIoMappedIdCache mappedIdCache,
+      final ListAttributeEncoder listEncoder,
+      final RoutedServiceGeometryCache geometryCache){
+    final var tripIdMapper = routedServicesIdMapper.getRoutedTripRefIdMapper();
+    final var legSegmentIdMapper =
+        mappedIdCache.cached(GeoIoMappedIdCache.SERVICE_LEG_SEGMENT, serviceNetworkIdMapper.getServiceLegSegmentIdMapper());
+    return List.of(
+        Triple.of("mapped_id", "java.lang.String", t -> tripIdMapper.apply(t)),
+        Triple.of("id", "java.lang.Long", RoutedTripSchedule::getId),
+        Triple.of("xml_id", "String", RoutedTripSchedule::getXmlId),
+        Triple.of("ext_id", "String", RoutedTripSchedule::getExternalId),
+        Triple.of("service", "String", t -> tripServiceIdMapper.apply(t)),
+        Triple.of("num_deps", "java.lang.Integer", t -> t.getDepartures().size()),
+        Triple.of("leg_segs", "String",
+            t -> listEncoder.encode(t.getId(), "leg_segs", getLegSegments(t), legSegmentIdMapper)),
+
+        /* geometry taken from leg segments of trip */
+        Triple.of(DEFAULT_GEOMETRY_ATTRIBUTE_KEY, "MultiLineString",
+            (Function<RoutedTripSchedule, MultiLineString>) geometryCache::getTripGeometry));
+  }
+
+  /**
+   * Constructor
+   *
+   * @param routedServicesIdMapper to apply
+   * @param serviceNetworkIdMapper to apply for referenced leg segments
+   * @param tripServiceIdMapper provides the mapped id of the service a trip belongs to
+   * @param mappedIdCache to cache mapped ids in
+   * @param listEncoder to encode list valued attributes with
+   * @param geometryCache to obtain (cached) leg segment geometries from
+   */
+  protected PlanitRoutedTripScheduleFeatureTypeContext(
+      final RoutedServicesIdMapper routedServicesIdMapper,
+      final ServiceNetworkIdMapper serviceNetworkIdMapper,
+      final Function<RoutedTrip, String> tripServiceIdMapper,
+      final GeoIoMappedIdCache mappedIdCache,
+      final ListAttributeEncoder listEncoder,
+      final RoutedServiceGeometryCache geometryCache){
+    super(RoutedTripSchedule.class,
+        createFeatureDescription(
+            routedServicesIdMapper, serviceNetworkIdMapper, tripServiceIdMapper, mappedIdCache, listEncoder, geometryCache),
+        listEncoder);
+  }
+
+  /**
+   * Factory method
+   *
+   * @param routedServicesIdMapper to apply
+   * @param serviceNetworkIdMapper to apply for referenced leg segments
+   * @param tripServiceIdMapper provides the mapped id of the service a trip belongs to
+   * @param mappedIdCache to cache mapped ids in
+   * @param geometryCache to obtain (cached) leg segment geometries from
+   * @return created instance
+   */
+  public static PlanitRoutedTripScheduleFeatureTypeContext create(
+      final RoutedServicesIdMapper routedServicesIdMapper,
+      final ServiceNetworkIdMapper serviceNetworkIdMapper,
+      final Function<RoutedTrip, String> tripServiceIdMapper,
+      final GeoIoMappedIdCache mappedIdCache,
+      final RoutedServiceGeometryCache geometryCache){
+    return new PlanitRoutedTripScheduleFeatureTypeContext(
+        routedServicesIdMapper, serviceNetworkIdMapper, tripServiceIdMapper, mappedIdCache, new ListAttributeEncoder(), geometryCache);
+  }
+
+}
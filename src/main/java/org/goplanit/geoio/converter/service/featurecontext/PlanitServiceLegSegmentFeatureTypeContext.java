@@ -2,6 +2,8 @@ package org.goplanit.geoio.converter.service.featurecontext;
 
 import org.goplanit.converter.idmapping.NetworkIdMapper;
 import org.goplanit.converter.idmapping.ServiceNetworkIdMapper;
+import org.goplanit.geoio.util.GeoIoMappedIdCache;
+import org.goplanit.geoio.util.ListAttributeEncoder;
 import org.goplanit.geoio.util.PlanitEntityFeatureTypeContext;
 import org.goplanit.utils.misc.Triple;
 import org.goplanit.utils.network.layer.macroscopic.MacroscopicLinkSegment;
@@ -11,7 +13,6 @@ import org.locationtech.jts.geom.LineString;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * Track contextual relevant information for PLANit service leg segment type that is persisted
@@ -25,21 +26,29 @@ public class PlanitServiceLegSegmentFeatureTypeContext extends PlanitEntityFeatu
    *
    * @param serviceNetworkIdMapper to apply
    * @param networkIdMapper to apply
+   * @param mappedIdCache to cache mapped ids in
+   * @param listEncoder to encode list valued attributes with
    * @return feature mapping
    */
   private static List<Triple<String,String, Function<ServiceLegSegment, ? extends Object>>> createFixedFeatureDescription(
-          final ServiceNetworkIdMapper serviceNetworkIdMapper, NetworkIdMapper networkIdMapper){
+          final ServiceNetworkIdMapper serviceNetworkIdMapper,
+          final NetworkIdMapper networkIdMapper,
+          final GeoIoMappedIdCache mappedIdCache,
+          final ListAttributeEncoder listEncoder){
+    final var legIdMapper = mappedIdCache.cached(GeoIoMappedIdCache.SERVICE_LEG, serviceNetworkIdMapper.getServiceLegIdMapper());
+    final var serviceNodeIdMapper = mappedIdCache.cached(GeoIoMappedIdCache.SERVICE_NODE, serviceNetworkIdMapper.getServiceNodeIdMapper());
+    final var linkSegmentIdMapper = mappedIdCache.cached(GeoIoMappedIdCache.LINK_SEGMENT, networkIdMapper.getLinkSegmentIdMapper());
     return List.of(
             /* service leg segment info (fixed) */
             Triple.of("mapped_id", "java.lang.String", serviceNetworkIdMapper.getServiceLegSegmentIdMapper()),
             Triple.of("id", "java.lang.Long", ServiceLegSegment::getId),
             Triple.of("xml_id", "String", ServiceLegSegment::getXmlId),
             Triple.of("ext_id", "String", ServiceLegSegment::getExternalId),
-            Triple.of("parent_id", "String", sls -> serviceNetworkIdMapper.getServiceLegIdMapper().apply(sls.getParent())),
+            Triple.of("parent_id", "String", sls -> legIdMapper.apply(sls.getParent())),
             Triple.of("phys_segs", "String", sls -> !sls.hasPhysicalParentSegments() ? "" :   /* physical parent segments that make up for the service leg segment */
-                    sls.getPhysicalParentSegments().stream().map( ls -> networkIdMapper.getLinkSegmentIdMapper().apply((MacroscopicLinkSegment) ls)).collect(Collectors.joining(","))),
-            Triple.of("snode_up", "String", sls -> serviceNetworkIdMapper.getServiceNodeIdMapper().apply(sls.getUpstreamServiceNode())),
-            Triple.of("snode_down", "String", sls -> serviceNetworkIdMapper.getServiceNodeIdMapper().apply(sls.getDownstreamServiceNode())),
+                    listEncoder.encode(sls.getId(), "phys_segs", sls.getPhysicalParentSegments(), ls -> linkSegmentIdMapper.apply((MacroscopicLinkSegment) ls))),
+            Triple.of("snode_up", "String", sls -> serviceNodeIdMapper.apply(sls.getUpstreamServiceNode())),
+            Triple.of("snode_down", "String", sls -> serviceNodeIdMapper.apply(sls.getDownstreamServiceNode())),
 
             /* geometry taken from parent link */
             Triple.of(DEFAULT_GEOMETRY_ATTRIBUTE_KEY, "LineString",
@@ -51,11 +60,16 @@ public class PlanitServiceLegSegmentFeatureTypeContext extends PlanitEntityFeatu
    *
    * @param serviceNetworkIdMapper to apply
    * @param networkIdMapper to apply to parent PLANit entities
+   * @param mappedIdCache to cache mapped ids in
+   * @param listEncoder to encode list valued attributes with
    * @return feature mapping
    */
   private static List<Triple<String,String, Function<ServiceLegSegment, ? extends Object>>> createFeatureDescription(
-      final ServiceNetworkIdMapper serviceNetworkIdMapper, final NetworkIdMapper networkIdMapper){
-    return createFixedFeatureDescription(serviceNetworkIdMapper, networkIdMapper);
+      final ServiceNetworkIdMapper serviceNetworkIdMapper,
+      final NetworkIdMapper networkIdMapper,
+      final GeoIoMappedIdCache mappedIdCache,
+      final ListAttributeEncoder listEncoder){
+    return createFixedFeatureDescription(serviceNetworkIdMapper, networkIdMapper, mappedIdCache, listEncoder);
   }
 
   /**
@@ -63,10 +77,16 @@ public class PlanitServiceLegSegmentFeatureTypeContext extends PlanitEntityFeatu
    *
    * @param serviceNetworkIdMapper id mapper to apply
    * @param networkIdMapper id mapper to apply
+   * @param mappedIdCache to cache mapped ids in
+   * @param listEncoder to encode list valued attributes with
    */
   protected PlanitServiceLegSegmentFeatureTypeContext(
-      final ServiceNetworkIdMapper serviceNetworkIdMapper, final NetworkIdMapper networkIdMapper){
-    super(ServiceLegSegment.class, createFeatureDescription(serviceNetworkIdMapper, networkIdMapper));
+      final ServiceNetworkIdMapper serviceNetworkIdMapper,
+      final NetworkIdMapper networkIdMapper,
+      final GeoIoMappedIdCache mappedIdCache,
+      final ListAttributeEncoder listEncoder){
+    super(ServiceLegSegment.class,
+        createFeatureDescription(serviceNetworkIdMapper, networkIdMapper, mappedIdCache, listEncoder), listEncoder);
   }
 
   /**
@@ -74,11 +94,12 @@ public class PlanitServiceLegSegmentFeatureTypeContext extends PlanitEntityFeatu
    *
    * @param serviceNetworkIdMapper to apply for creating each ids when persisting
    * @param networkIdMapper to apply for creating parent ids when persisting
+   * @param mappedIdCache to cache mapped ids in
    * @return created instance
    */
   public static PlanitServiceLegSegmentFeatureTypeContext create(
-      final ServiceNetworkIdMapper serviceNetworkIdMapper, final NetworkIdMapper networkIdMapper){
-    return new PlanitServiceLegSegmentFeatureTypeContext(serviceNetworkIdMapper, networkIdMapper);
+      final ServiceNetworkIdMapper serviceNetworkIdMapper, final NetworkIdMapper networkIdMapper, final GeoIoMappedIdCache mappedIdCache){
+    return new PlanitServiceLegSegmentFeatureTypeContext(serviceNetworkIdMapper, networkIdMapper, mappedIdCache, new ListAttributeEncoder());
   }
 
 }
@@ -1,5 +1,6 @@
 package org.goplanit.geoio.converter.service.featurecontext;
 
+import org.goplanit.geoio.util.ListAttributeEncoder;
 import org.goplanit.geoio.util.PlanitEntityFeatureTypeContext;
 import org.goplanit.utils.graph.Vertex;
 import org.goplanit.utils.misc.Triple;
@@ -9,7 +10,6 @@ import org.locationtech.jts.geom.Point;
 
 import java.util.List;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * Track contextual relevant information for PLANit service node type that is persisted
@@ -24,17 +24,18 @@ public class PlanitServiceNodeFeatureTypeContext extends PlanitEntityFeatureType
    *
    * @param serviceNodeIdMapper to apply
    * @param parentNodeIdMapper to apply
+   * @param listEncoder to encode list valued attributes with
    * @return feature mapping
    */
   private static List<Triple<String,String, Function<ServiceNode, ? extends Object>>> createFeatureDescription(
-      Function<ServiceNode, String> serviceNodeIdMapper, Function<Node, String> parentNodeIdMapper){
+      Function<ServiceNode, String> serviceNodeIdMapper, Function<Node, String> parentNodeIdMapper, ListAttributeEncoder listEncoder){
     return List.of(
             Triple.of("mapped_id", "String", serviceNodeIdMapper),
             Triple.of("id", "java.lang.Long", ServiceNode::getId),
             Triple.of("xml_id", "String", ServiceNode::getXmlId),
             Triple.of("ext_id", "String", ServiceNode::getExternalId),
             Triple.of("parent", "String",
-                (Function<ServiceNode, String>) sn -> sn.getPhysicalParentNodes().stream().map(n -> parentNodeIdMapper.apply(n)).collect(Collectors.joining(","))),
+                (Function<ServiceNode, String>) sn -> listEncoder.encode(sn.getId(), "parent", sn.getPhysicalParentNodes(), parentNodeIdMapper)),
             Triple.of(DEFAULT_GEOMETRY_ATTRIBUTE_KEY, "Point", (Function<ServiceNode, Point>) ServiceNode::getPosition));
   }
 
@@ -43,10 +44,11 @@ public class PlanitServiceNodeFeatureTypeContext extends PlanitEntityFeatureType
    *
    * @param serviceNodeIdMapper id mapper to apply
    * @param parentNodeIdMapper parent node id mapper to apply
+   * @param listEncoder to encode list valued attributes with
    */
   protected PlanitServiceNodeFeatureTypeContext(
-      Function<ServiceNode, String> serviceNodeIdMapper, Function<Node, String> parentNodeIdMapper){
-    super(ServiceNode.class, createFeatureDescription(serviceNodeIdMapper, parentNodeIdMapper));
+      Function<ServiceNode, String> serviceNodeIdMapper, Function<Node, String> parentNodeIdMapper, ListAttributeEncoder listEncoder){
+    super(ServiceNode.class, createFeatureDescription(serviceNodeIdMapper, parentNodeIdMapper, listEncoder), listEncoder);
   }
 
   /**
@@ -59,7 +61,8 @@ public class PlanitServiceNodeFeatureTypeContext extends PlanitEntityFeatureType
   public static PlanitServiceNodeFeatureTypeContext create(Function<Vertex, String> serviceNodeIdMapper, Function<Vertex, String> parentNodeIdMapper){
     return new PlanitServiceNodeFeatureTypeContext(
         serviceNodeIdMapper::apply /* convert to node as type */,
-        parentNodeIdMapper::apply);
+        parentNodeIdMapper::apply,
+        new ListAttributeEncoder());
   }
 
 }
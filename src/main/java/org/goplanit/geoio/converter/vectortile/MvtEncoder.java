@@ -0,0 +1,438 @@
+package org.goplanit.geoio.converter.vectortile;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Lineal;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.Polygonal;
+import org.locationtech.jts.geom.Puntal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encoder of a single layer of a Mapbox vector tile (specification version 2). Features are added with their geometry in tile
+ * coordinates, i.e., relative to the top left of the tile with the y-axis pointing down, which are rounded to integers upon
+ * encoding. Attribute keys and values are deduplicated across the features of the layer.
+ *
+ * @author markr
+ */
+public class MvtEncoder {
+
+  /** vector tile specification version */
+  private static final int VERSION = 2;
+
+  /* Tile message fields */
+  private static final int TILE_LAYERS = 3;
+
+  /* Layer message fields */
+  private static final int LAYER_NAME = 1;
+  private static final int LAYER_FEATURES = 2;
+  private static final int LAYER_KEYS = 3;
+  private static final int LAYER_VALUES = 4;
+  private static final int LAYER_EXTENT = 5;
+  private static final int LAYER_VERSION = 15;
+
+  /* Feature message fields */
+  private static final int FEATURE_ID = 1;
+  private static final int FEATURE_TAGS = 2;
+  private static final int FEATURE_TYPE = 3;
+  private static final int FEATURE_GEOMETRY = 4;
+
+  /* Value message fields */
+  private static final int VALUE_STRING = 1;
+  private static final int VALUE_FLOAT = 2;
+  private static final int VALUE_DOUBLE = 3;
+  private static final int VALUE_SINT = 6;
+  private static final int VALUE_BOOL = 7;
+
+  /* geometry types */
+  private static final int GEOM_TYPE_POINT = 1;
+  private static final int GEOM_TYPE_LINESTRING = 2;
+  private static final int GEOM_TYPE_POLYGON = 3;
+
+  /* geometry commands */
+  private static final int COMMAND_MOVE_TO = 1;
+  private static final int COMMAND_LINE_TO = 2;
+  private static final int COMMAND_CLOSE_PATH = 7;
+
+  /** name of the layer */
+  private final String layerName;
+
+  /** extent of the tile in tile coordinates */
+  private final int extent;
+
+  /** attribute names, by value index */
+  private final String[] attributeNames;
+
+  /** index of the geometry value which is not an attribute, -1 if absent */
+  private final int geometryIndex;
+
+  /** key table index by attribute (value) index, -1 when not yet in the key table */
+  private final int[] keyIndices;
+
+  /** key table */
+  private final List<String> keys = new ArrayList<>();
+
+  /** value table index by value */
+  private final Map<Object, Integer> valueIndices = new HashMap<>();
+
+  /** value table */
+  private final List<Object> values = new ArrayList<>();
+
+  /** encoded features */
+  private final List<byte[]> features = new ArrayList<>();
+
+  /**
+   * Geometry command/parameter buffer of the feature being encoded, including the cursor position
+   */
+  private static final class GeometryBuffer {
+
+    /** commands and parameters */
+    private int[] data = new int[64];
+
+    /** used length */
+    private int length = 0;
+
+    /** cursor x */
+    private int cursorX = 0;
+
+    /** cursor y */
+    private int cursorY = 0;
+
+    /**
+     * Append a value
+     *
+     * @param value to append
+     */
+    private void add(int value){
+      if(length == data.length){
+        var grown = new int[data.length * 2];
+        System.arraycopy(data, 0, grown, 0, length);
+        data = grown;
+      }
+      data[length++] = value;
+    }
+
+    /**
+     * Append a command
+     *
+     * @param command id
+     * @param count number of times the command is repeated
+     */
+    private void command(int command, int count){
+      add((command & 0x7) | (count << 3));
+    }
+
+    /**
+     * Append a position as parameters relative to the cursor and move the cursor
+     *
+     * @param x position
+     * @param y position
+     */
+    private void position(int x, int y){
+      add(ProtobufOutput.zigZag(x - cursorX));
+      add(ProtobufOutput.zigZag(y - cursorY));
+      cursorX = x;
+      cursorY = y;
+    }
+  }
+
+  /**
+   * Round coordinates to tile positions removing consecutive duplicates
+   *
+   * @param coordinates to round
+   * @param dropLast when true, the last coordinate is ignored (closing coordinate of a ring)
+   * @return rounded positions as x,y pairs, followed by the number of positions at the end
+   */
+  private static int[] roundPositions(Coordinate[] coordinates, boolean dropLast){
+    int count = dropLast ? coordinates.length - 1 : coordinates.length;
+    var positions = new int[2 * Math.max(count, 0) + 1];
+    int numPositions = 0;
+    for(int index = 0; index < count; ++index){
+      int x = (int) Math.round(coordinates[index].x);
+      int y = (int) Math.round(coordinates[index].y);
+      if(numPositions > 0 && positions[2 * numPositions - 2] == x && positions[2 * numPositions - 1] == y){
+        continue;
+      }
+      positions[2 * numPositions] = x;
+      positions[2 * numPositions + 1] = y;
+      ++numPositions;
+    }
+    if(dropLast && numPositions > 1 && positions[0] == positions[2 * numPositions - 2] && positions[1] == positions[2 * numPositions - 1]){
+      --numPositions;
+    }
+    positions[positions.length - 1] = numPositions;
+    return positions;
+  }
+
+  /**
+   * Encode a line string
+   *
+   * @param line to encode
+   * @param geometryBuffer to encode to
+   * @return true when encoded, false when degenerate after rounding
+   */
+  private static boolean encodeLine(LineString line, GeometryBuffer geometryBuffer){
+    var positions = roundPositions(line.getCoordinates(), false);
+    int numPositions = positions[positions.length - 1];
+    if(numPositions < 2){
+      return false;
+    }
+    geometryBuffer.command(COMMAND_MOVE_TO, 1);
+    geometryBuffer.position(positions[0], positions[1]);
+    geometryBuffer.command(COMMAND_LINE_TO, numPositions - 1);
+    for(int index = 1; index < numPositions; ++index){
+      geometryBuffer.position(positions[2 * index], positions[2 * index + 1]);
+    }
+    return true;
+  }
+
+  /**
+   * Encode a polygon ring with the given orientation. In tile coordinates (y-axis down), exterior rings are to have a positive
+   * area and interior rings a negative area
+   *
+   * @param ring to encode
+   * @param exterior true when exterior ring, false otherwise
+   * @param geometryBuffer to encode to
+   * @return true when encoded, false when degenerate after rounding
+   */
+  private static boolean encodeRing(LineString ring, boolean exterior, GeometryBuffer geometryBuffer){
+    var positions = roundPositions(ring.getCoordinates(), true);
+    int numPositions = positions[positions.length - 1];
+    if(numPositions < 3){
+      return false;
+    }
+
+    /* surveyor's formula, positive for clockwise rings on screen (y-axis down) */
+    long doubleArea = 0;
+    for(int index = 0; index < numPositions; ++index){
+      int next = (index + 1) % numPositions;
+      doubleArea += (long) positions[2 * index] * positions[2 * next + 1] - (long) positions[2 * next] * positions[2 * index + 1];
+    }
+    if(doubleArea == 0){
+      return false;
+    }
+    boolean reverse = exterior ? doubleArea < 0 : doubleArea > 0;
+
+    geometryBuffer.command(COMMAND_MOVE_TO, 1);
+    int first = reverse ? numPositions - 1 : 0;
+    geometryBuffer.position(positions[2 * first], positions[2 * first + 1]);
+    geometryBuffer.command(COMMAND_LINE_TO, numPositions - 1);
+    for(int step = 1; step < numPositions; ++step){
+      int index = reverse ? numPositions - 1 - step : step;
+      geometryBuffer.position(positions[2 * index], positions[2 * index + 1]);
+    }
+    geometryBuffer.command(COMMAND_CLOSE_PATH, 1);
+    return true;
+  }
+
+  /**
+   * Encode geometry components of the given type, flattening collections
+   *
+   * @param geometry to encode
+   * @param geometryType of the feature, components of other types are ignored
+   * @param geometryBuffer to encode to
+   * @param points collects rounded points when encoding point features
+   * @return number of components encoded
+   */
+  private static int encodeComponents(Geometry geometry, int geometryType, GeometryBuffer geometryBuffer, List<int[]> points){
+    int encoded = 0;
+    for(int index = 0; index < geometry.getNumGeometries(); ++index){
+      var component = geometry.getGeometryN(index);
+      if(component != geometry){
+        encoded += encodeComponents(component, geometryType, geometryBuffer, points);
+        continue;
+      }
+      if(geometryType == GEOM_TYPE_POINT && component instanceof Point && !component.isEmpty()){
+        var coordinate = component.getCoordinate();
+        points.add(new int[]{(int) Math.round(coordinate.x), (int) Math.round(coordinate.y)});
+        ++encoded;
+      }else if(geometryType == GEOM_TYPE_LINESTRING && component instanceof LineString){
+        encoded += encodeLine((LineString) component, geometryBuffer) ? 1 : 0;
+      }else if(geometryType == GEOM_TYPE_POLYGON && component instanceof Polygon){
+        var polygon = (Polygon) component;
+        if(encodeRing(polygon.getExteriorRing(), true, geometryBuffer)){
+          for(int ringIndex = 0; ringIndex < polygon.getNumInteriorRing(); ++ringIndex){
+            encodeRing(polygon.getInteriorRingN(ringIndex), false, geometryBuffer);
+          }
+          ++encoded;
+        }
+      }
+    }
+    return encoded;
+  }
+
+  /**
+   * Determine the vector tile geometry type of a geometry
+   *
+   * @param geometry to determine type for
+   * @return geometry type, -1 when not supported
+   */
+  private static int getGeometryType(Geometry geometry){
+    if(geometry instanceof Puntal){
+      return GEOM_TYPE_POINT;
+    }
+    if(geometry instanceof Lineal){
+      return GEOM_TYPE_LINESTRING;
+    }
+    if(geometry instanceof Polygonal){
+      return GEOM_TYPE_POLYGON;
+    }
+    /* collections, e.g., as a result of clipping, take the highest dimension present */
+    int dimension = geometry.getDimension();
+    return dimension == 0 ? GEOM_TYPE_POINT : (dimension == 1 ? GEOM_TYPE_LINESTRING : (dimension == 2 ? GEOM_TYPE_POLYGON : -1));
+  }
+
+  /**
+   * Collect the value table index of a value, adding it when not yet present
+   *
+   * @param value to collect index for
+   * @return index
+   */
+  private int getOrAddValueIndex(Object value){
+    var normalised = (value instanceof Number || value instanceof Boolean || value instanceof String) ? value : value.toString();
+    return valueIndices.computeIfAbsent(normalised, v -> {
+      values.add(v);
+      return values.size() - 1;
+    });
+  }
+
+  /**
+   * Encode a value message
+   *
+   * @param value to encode
+   * @return encoded value
+   */
+  private static byte[] encodeValue(Object value){
+    var output = new ProtobufOutput(16);
+    if(value instanceof String){
+      output.writeStringField(VALUE_STRING, (String) value);
+    }else if(value instanceof Boolean){
+      output.writeVarintField(VALUE_BOOL, ((Boolean) value) ? 1 : 0);
+    }else if(value instanceof Float){
+      output.writeFloatField(VALUE_FLOAT, (Float) value);
+    }else if(value instanceof Double){
+      output.writeDoubleField(VALUE_DOUBLE, (Double) value);
+    }else if(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte){
+      output.writeVarintField(VALUE_SINT, ProtobufOutput.zigZag(((Number) value).longValue()));
+    }else if(value instanceof Number){
+      output.writeDoubleField(VALUE_DOUBLE, ((Number) value).doubleValue());
+    }else{
+      output.writeStringField(VALUE_STRING, value.toString());
+    }
+    return output.toByteArray();
+  }
+
+  /**
+   * Constructor
+   *
+   * @param layerName name of the layer
+   * @param extent of the tile in tile coordinates
+   * @param attributeNames attribute names by value index
+   * @param geometryIndex index of the geometry value which is not encoded as attribute, -1 if absent
+   */
+  public MvtEncoder(String layerName, int extent, String[] attributeNames, int geometryIndex){
+    this.layerName = layerName;
+    this.extent = extent;
+    this.attributeNames = attributeNames;
+    this.geometryIndex = geometryIndex;
+    this.keyIndices = new int[attributeNames.length];
+    Arrays.fill(keyIndices, -1);
+  }
+
+  /**
+   * Add a feature to the layer
+   *
+   * @param id of the feature, encoded as unsigned integer so expected to be non-negative
+   * @param attributeValues by value index, null values are omitted
+   * @param tileGeometry geometry in tile coordinates
+   * @return true when added, false when the geometry is empty or degenerate in tile coordinates
+   */
+  public boolean addFeature(long id, Object[] attributeValues, Geometry tileGeometry){
+    if(tileGeometry == null || tileGeometry.isEmpty()){
+      return false;
+    }
+    int geometryType = getGeometryType(tileGeometry);
+    if(geometryType < 0){
+      return false;
+    }
+
+    var geometryBuffer = new GeometryBuffer();
+    var points = new ArrayList<int[]>(geometryType == GEOM_TYPE_POINT ? 4 : 0);
+    int encoded = encodeComponents(tileGeometry, geometryType, geometryBuffer, points);
+    if(encoded == 0){
+      return false;
+    }
+    if(geometryType == GEOM_TYPE_POINT){
+      geometryBuffer.command(COMMAND_MOVE_TO, points.size());
+      for(var point : points){
+        geometryBuffer.position(point[0], point[1]);
+      }
+    }
+
+    var tags = new int[2 * attributeValues.length];
+    int numTags = 0;
+    for(int index = 0; index < attributeValues.length; ++index){
+      if(index == geometryIndex || attributeValues[index] == null){
+        continue;
+      }
+      if(keyIndices[index] < 0){
+        keys.add(attributeNames[index]);
+        keyIndices[index] = keys.size() - 1;
+      }
+      tags[numTags++] = keyIndices[index];
+      tags[numTags++] = getOrAddValueIndex(attributeValues[index]);
+    }
+
+    var feature = new ProtobufOutput(16 + 4 * (numTags + geometryBuffer.length));
+    feature.writeVarintField(FEATURE_ID, id);
+    if(numTags > 0) {
+      feature.writePackedUInt32Field(FEATURE_TAGS, tags, numTags);
+    }
+    feature.writeVarintField(FEATURE_TYPE, geometryType);
+    feature.writePackedUInt32Field(FEATURE_GEOMETRY, geometryBuffer.data, geometryBuffer.length);
+    features.add(feature.toByteArray());
+    return true;
+  }
+
+  /**
+   * Check if any features have been added
+   *
+   * @return true when no features are present, false otherwise
+   */
+  public boolean isEmpty(){
+    return features.isEmpty();
+  }
+
+  /**
+   * Encode the tile holding this layer
+   *
+   * @return encoded tile
+   */
+  public byte[] encode(){
+    var layer = new ProtobufOutput(1024);
+    layer.writeVarintField(LAYER_VERSION, VERSION);
+    layer.writeStringField(LAYER_NAME, layerName);
+    for(var feature : features){
+      layer.writeBytesField(LAYER_FEATURES, feature);
+    }
+    for(var key : keys){
+      layer.writeStringField(LAYER_KEYS, key);
+    }
+    for(var value : values){
+      layer.writeBytesField(LAYER_VALUES, encodeValue(value));
+    }
+    layer.writeVarintField(LAYER_EXTENT, extent);
+
+    var tile = new ProtobufOutput(1024);
+    tile.writeBytesField(TILE_LAYERS, layer.toByteArray());
+    return tile.toByteArray();
+  }
+
+}
@@ -0,0 +1,165 @@
+package org.goplanit.geoio.converter.vectortile;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal protocol buffers writer covering the wire types used by the Mapbox vector tile specification
+ *
+ * @author markr
+ */
+final class ProtobufOutput {
+
+  /** wire type of varint encoded values */
+  static final int WIRE_TYPE_VARINT = 0;
+
+  /** wire type of 64 bit values */
+  static final int WIRE_TYPE_FIXED64 = 1;
+
+  /** wire type of length delimited values */
+  static final int WIRE_TYPE_LENGTH_DELIMITED = 2;
+
+  /** wire type of 32 bit values */
+  static final int WIRE_TYPE_FIXED32 = 5;
+
+  /** output buffer */
+  private final ByteArrayOutputStream buffer;
+
+  /**
+   * Constructor
+   *
+   * @param initialCapacity of the buffer
+   */
+  ProtobufOutput(int initialCapacity){
+    this.buffer = new ByteArrayOutputStream(initialCapacity);
+  }
+
+  /**
+   * Zig-zag encode a signed value so small magnitudes result in small varints
+   *
+   * @param value to encode
+   * @return encoded value
+   */
+  static int zigZag(int value){
+    return (value << 1) ^ (value >> 31);
+  }
+
+  /**
+   * Zig-zag encode a signed value so small magnitudes result in small varints
+   *
+   * @param value to encode
+   * @return encoded value
+   */
+  static long zigZag(long value){
+    return (value << 1) ^ (value >> 63);
+  }
+
+  /**
+   * Write a varint
+   *
+   * @param value to write, interpreted as unsigned
+   */
+  void writeVarint(long value){
+    while((value & ~0x7FL) != 0){
+      buffer.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.write((int) value);
+  }
+
+  /**
+   * Write a field tag
+   *
+   * @param fieldNumber of the field
+   * @param wireType of the field
+   */
+  void writeTag(int fieldNumber, int wireType){
+    writeVarint(((long) fieldNumber << 3) | wireType);
+  }
+
+  /**
+   * Write a varint field
+   *
+   * @param fieldNumber of the field
+   * @param value to write
+   */
+  void writeVarintField(int fieldNumber, long value){
+    writeTag(fieldNumber, WIRE_TYPE_VARINT);
+    writeVarint(value);
+  }
+
+  /**
+   * Write a length delimited field
+   *
+   * @param fieldNumber of the field
+   * @param bytes to write
+   */
+  void writeBytesField(int fieldNumber, byte[] bytes){
+    writeTag(fieldNumber, WIRE_TYPE_LENGTH_DELIMITED);
+    writeVarint(bytes.length);
+    buffer.write(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Write a string field
+   *
+   * @param fieldNumber of the field
+   * @param value to write
+   */
+  void writeStringField(int fieldNumber, String value){
+    writeBytesField(fieldNumber, value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Write a float field
+   *
+   * @param fieldNumber of the field
+   * @param value to write
+   */
+  void writeFloatField(int fieldNumber, float value){
+    writeTag(fieldNumber, WIRE_TYPE_FIXED32);
+    int bits = Float.floatToIntBits(value);
+    for(int shift = 0; shift < 32; shift += 8){
+      buffer.write((bits >>> shift) & 0xFF);
+    }
+  }
+
+  /**
+   * Write a double field
+   *
+   * @param fieldNumber of the field
+   * @param value to write
+   */
+  void writeDoubleField(int fieldNumber, double value){
+    writeTag(fieldNumber, WIRE_TYPE_FIXED64);
+    long bits = Double.doubleToLongBits(value);
+    for(int shift = 0; shift < 64; shift += 8){
+      buffer.write((int) ((bits >>> shift) & 0xFF));
+    }
+  }
+
+  /**
+   * Write a packed repeated unsigned 32 bit field
+   *
+   * @param fieldNumber of the field
+   * @param values to write
+   * @param length number of values to write
+   */
+  void writePackedUInt32Field(int fieldNumber, int[] values, int length){
+    var packed = new ProtobufOutput(length * 2);
+    for(int index = 0; index < length; ++index){
+      packed.writeVarint(values[index] & 0xFFFFFFFFL);
+    }
+    writeBytesField(fieldNumber, packed.toByteArray());
+  }
+
+  /**
+   * Written bytes
+   *
+   * @return bytes
+   */
+  byte[] toByteArray(){
+    return buffer.toByteArray();
+  }
+
+}
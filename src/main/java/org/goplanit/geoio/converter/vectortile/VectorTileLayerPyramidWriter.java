@@ -0,0 +1,571 @@
+package org.goplanit.geoio.converter.vectortile;
+
+import org.geotools.geometry.jts.JTS;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygonal;
+import org.locationtech.jts.geom.Puntal;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
+import org.locationtech.jts.simplify.DouglasPeuckerSimplifier;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.MathTransform;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * Builds a Mapbox vector tile pyramid (web mercator, z/x/y directory layout) for a single layer directly from the attribute
+ * values extracted from the PLANit entities of the layer, so no intermediate files need to be read. Geometries are transformed
+ * to web mercator when added and only retained as such, in packed coordinate sequences, together with the non geometry
+ * attribute values, so the added rows and their source geometries are not retained. Once all features are added the pyramid
+ * is built one zoom level at a time: features are simplified to the resolution of the zoom level, assigned to the tiles their
+ * (buffered) envelope intersects, clipped and encoded, with features and tiles processed in parallel.
+ * <p>
+ *   Tiles are written as '&lt;directory&gt;/&lt;z&gt;/&lt;x&gt;/&lt;y&gt;.pbf' (uncompressed) together with a
+ *   'metadata.json' holding the zoom range, bounds and attribute fields of the layer.
+ * </p>
+ * <p>
+ *   Features are identified by the mapped id of their entity (attribute '{@value #MAPPED_ID_ATTRIBUTE}') when it is a
+ *   non-negative integer for all features of the layer, so clients can correlate features across tiles and with the other
+ *   output of the layer. Otherwise, e.g., for non-numeric XML ids, features are identified by their index within the layer.
+ * </p>
+ *
+ * @author markr
+ */
+public class VectorTileLayerPyramidWriter implements AutoCloseable {
+
+  /** the logger to use */
+  private static final Logger LOGGER = Logger.getLogger(VectorTileLayerPyramidWriter.class.getCanonicalName());
+
+  /** directory (relative to the output directory) vector tile pyramids are written to, one sub directory per layer */
+  public static final String VECTOR_TILES_DIRECTORY = "vector_tiles";
+
+  /** file extension of the tiles */
+  public static final String TILE_EXTENSION = ".pbf";
+
+  /** name of the metadata file of the pyramid */
+  public static final String METADATA_FILE_NAME = "metadata.json";
+
+  /** extent of a tile in tile coordinates */
+  public static final int EXTENT = 4096;
+
+  /** buffer around each tile in tile coordinates, features are clipped to the buffered tile */
+  public static final int BUFFER = 64;
+
+  /** attribute holding the mapped id of the entity of each feature */
+  public static final String MAPPED_ID_ATTRIBUTE = "mapped_id";
+
+  /** tile size in pixels the simplification tolerance is based on */
+  private static final int TILE_PIXELS = 256;
+
+  /** earth radius used by web mercator */
+  private static final double EARTH_RADIUS = 6378137.0;
+
+  /** half the width (and height) of the web mercator world */
+  private static final double HALF_WORLD = Math.PI * EARTH_RADIUS;
+
+  /** maximum latitude of web mercator */
+  private static final double MAX_LATITUDE = 85.0511287798066;
+
+  /** geometry factory for tile envelopes */
+  private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+  /** geometry factory of the retained web mercator geometries, storing coordinates as packed doubles */
+  private static final GeometryFactory PACKED_GEOMETRY_FACTORY = new GeometryFactory(PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+
+  /**
+   * Feature assigned to a tile
+   */
+  private static final class TileFeature {
+
+    /** index of the feature within the layer */
+    private final int featureIndex;
+
+    /** geometry in tile coordinates */
+    private final Geometry tileGeometry;
+
+    /**
+     * Constructor
+     *
+     * @param featureIndex index of the feature within the layer
+     * @param tileGeometry geometry in tile coordinates
+     */
+    private TileFeature(int featureIndex, Geometry tileGeometry){
+      this.featureIndex = featureIndex;
+      this.tileGeometry = tileGeometry;
+    }
+  }
+
+  /** directory of the pyramid */
+  private final Path pyramidDirectory;
+
+  /** name of the layer */
+  private final String layerName;
+
+  /** feature type of the layer, used for metadata */
+  private final SimpleFeatureType featureType;
+
+  /** attribute names by value index */
+  private final String[] attributeNames;
+
+  /** index of the geometry value */
+  private final int geometryIndex;
+
+  /** index of the mapped id value, -1 if absent */
+  private final int mappedIdIndex;
+
+  /** flag indicating the mapped ids of all features added so far are numeric, so they are used as feature ids */
+  private boolean numericMappedIds;
+
+  /** minimum zoom level */
+  private final int minZoom;
+
+  /** maximum zoom level */
+  private final int maxZoom;
+
+  /** transform from the source CRS to WGS84, null when the source is WGS84 */
+  private final MathTransform toWgs84;
+
+  /** attribute values of the added features as used by the encoder, i.e., without geometry */
+  private final List<Object[]> featureValues = new ArrayList<>();
+
+  /** web mercator geometries of the added features, null when absent or not transformable */
+  private final List<Geometry> mercatorGeometries = new ArrayList<>();
+
+  /** web mercator bounds of all features */
+  private final Envelope bounds = new Envelope();
+
+  /** number of features whose geometry could not be transformed */
+  private final AtomicLong untransformable = new AtomicLong();
+
+  /**
+   * Project WGS84 (longitude, latitude) coordinates to web mercator in place
+   */
+  private static final class WebMercatorFilter implements CoordinateSequenceFilter {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void filter(CoordinateSequence sequence, int index) {
+      double longitude = sequence.getOrdinate(index, CoordinateSequence.X);
+      double latitude = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, sequence.getOrdinate(index, CoordinateSequence.Y)));
+      sequence.setOrdinate(index, CoordinateSequence.X, EARTH_RADIUS * Math.toRadians(longitude));
+      sequence.setOrdinate(index, CoordinateSequence.Y,
+          EARTH_RADIUS * Math.log(Math.tan(Math.PI / 4 + Math.toRadians(latitude) / 2)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDone() {
+      return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isGeometryChanged() {
+      return true;
+    }
+  }
+
+  /**
+   * Transform a geometry of the source CRS to web mercator
+   *
+   * @param geometry to transform
+   * @return transformed geometry with packed coordinate sequences, independent of the source geometry, null when not
+   * transformable
+   */
+  private Geometry toWebMercator(Geometry geometry){
+    try {
+      var mercator = PACKED_GEOMETRY_FACTORY.createGeometry(toWgs84 == null ? geometry : JTS.transform(geometry, toWgs84));
+      mercator.apply(new WebMercatorFilter());
+      return mercator;
+    }catch (Exception e){
+      untransformable.incrementAndGet();
+      return null;
+    }
+  }
+
+  /**
+   * Simplify a geometry to the given tolerance, points are left as is
+   *
+   * @param geometry to simplify
+   * @param tolerance to apply
+   * @return simplified geometry
+   */
+  private static Geometry simplify(Geometry geometry, double tolerance){
+    if(geometry instanceof Puntal){
+      return geometry;
+    }
+    if(geometry instanceof Polygonal){
+      return TopologyPreservingSimplifier.simplify(geometry, tolerance);
+    }
+    return DouglasPeuckerSimplifier.simplify(geometry, tolerance);
+  }
+
+  /**
+   * Clip a geometry to the buffered tile envelope
+   *
+   * @param geometry to clip
+   * @param bufferedTile envelope to clip to
+   * @return clipped geometry, possibly empty
+   */
+  private static Geometry clip(Geometry geometry, Envelope bufferedTile){
+    if(bufferedTile.contains(geometry.getEnvelopeInternal())){
+      return geometry;
+    }
+    try {
+      return geometry.intersection(GEOMETRY_FACTORY.toGeometry(bufferedTile));
+    }catch (Exception e){
+      /* invalid geometries may fail to clip, the renderer clips to the tile anyway */
+      return geometry;
+    }
+  }
+
+  /**
+   * Convert a web mercator geometry to tile coordinates of the tile with the given top left corner
+   *
+   * @param geometry to convert
+   * @param tileMinX left of the tile
+   * @param tileMaxY top of the tile
+   * @param tileSpan width and height of the tile
+   * @return geometry in tile coordinates
+   */
+  private static Geometry toTileCoordinates(Geometry geometry, double tileMinX, double tileMaxY, double tileSpan){
+    var tileGeometry = geometry.copy();
+    final double scale = EXTENT / tileSpan;
+    tileGeometry.apply(new CoordinateSequenceFilter() {
+      @Override
+      public void filter(CoordinateSequence sequence, int index) {
+        sequence.setOrdinate(index, CoordinateSequence.X, (sequence.getOrdinate(index, CoordinateSequence.X) - tileMinX) * scale);
+        sequence.setOrdinate(index, CoordinateSequence.Y, (tileMaxY - sequence.getOrdinate(index, CoordinateSequence.Y)) * scale);
+      }
+
+      @Override
+      public boolean isDone() {
+        return false;
+      }
+
+      @Override
+      public boolean isGeometryChanged() {
+        return true;
+      }
+    });
+    return tileGeometry;
+  }
+
+  /**
+   * Numeric value of a mapped id, as used for the feature id
+   *
+   * @param mappedId to convert, may be null
+   * @return value, -1 when absent or not a non-negative integer within the range of a long
+   */
+  private static long toNumericId(Object mappedId){
+    if(mappedId instanceof Long || mappedId instanceof Integer){
+      return Math.max(-1, ((Number) mappedId).longValue());
+    }
+    if(!(mappedId instanceof String) || ((String) mappedId).isEmpty()){
+      return -1;
+    }
+    var mappedIdString = (String) mappedId;
+    long value = 0;
+    for(int index = 0; index < mappedIdString.length(); ++index){
+      char digit = mappedIdString.charAt(index);
+      if(digit < '0' || digit > '9' || value > (Long.MAX_VALUE - (digit - '0')) / 10){
+        return -1;
+      }
+      value = value * 10 + (digit - '0');
+    }
+    return value;
+  }
+
+  /**
+   * Id of a feature in the tiles, its numeric mapped id when available for all features of the layer, otherwise its index
+   *
+   * @param featureIndex index of the feature within the layer
+   * @return feature id
+   */
+  private long getFeatureId(int featureIndex){
+    return numericMappedIds ? toNumericId(featureValues.get(featureIndex)[mappedIdIndex]) : featureIndex;
+  }
+
+  /**
+   * Tile index of a web mercator x coordinate, clamped to the tiles of the zoom level
+   *
+   * @param x coordinate
+   * @param tileSpan of the zoom level
+   * @param numTiles along each axis of the zoom level
+   * @return tile column
+   */
+  private static int toTileColumn(double x, double tileSpan, int numTiles){
+    return (int) Math.max(0, Math.min(numTiles - 1, Math.floor((x + HALF_WORLD) / tileSpan)));
+  }
+
+  /**
+   * Tile index of a web mercator y coordinate, clamped to the tiles of the zoom level (rows increase southwards)
+   *
+   * @param y coordinate
+   * @param tileSpan of the zoom level
+   * @param numTiles along each axis of the zoom level
+   * @return tile row
+   */
+  private static int toTileRow(double y, double tileSpan, int numTiles){
+    return (int) Math.max(0, Math.min(numTiles - 1, Math.floor((HALF_WORLD - y) / tileSpan)));
+  }
+
+  /**
+   * Assign the features to the tiles of a zoom level, simplified and clipped, in parallel
+   *
+   * @param zoom level
+   * @return features by tile (column in the high, row in the low 32 bits)
+   */
+  private Map<Long, List<TileFeature>> assignToTiles(int zoom){
+    final int numTiles = 1 << zoom;
+    final double tileSpan = (2 * HALF_WORLD) / numTiles;
+    final double tolerance = tileSpan / TILE_PIXELS;
+    final double bufferSpan = tileSpan * BUFFER / EXTENT;
+
+    var tiles = new ConcurrentHashMap<Long, List<TileFeature>>();
+    IntStream.range(0, mercatorGeometries.size()).parallel().forEach(featureIndex -> {
+      var geometry = mercatorGeometries.get(featureIndex);
+      if(geometry == null){
+        return;
+      }
+      var simplified = simplify(geometry, tolerance);
+      if(simplified.isEmpty()){
+        return;
+      }
+
+      var envelope = simplified.getEnvelopeInternal();
+      int minCol = toTileColumn(envelope.getMinX() - bufferSpan, tileSpan, numTiles);
+      int maxCol = toTileColumn(envelope.getMaxX() + bufferSpan, tileSpan, numTiles);
+      int minRow = toTileRow(envelope.getMaxY() + bufferSpan, tileSpan, numTiles);
+      int maxRow = toTileRow(envelope.getMinY() - bufferSpan, tileSpan, numTiles);
+      for(int col = minCol; col <= maxCol; ++col){
+        for(int row = minRow; row <= maxRow; ++row){
+          double tileMinX = col * tileSpan - HALF_WORLD;
+          double tileMaxY = HALF_WORLD - row * tileSpan;
+          var bufferedTile = new Envelope(
+              tileMinX - bufferSpan, tileMinX + tileSpan + bufferSpan, tileMaxY - tileSpan - bufferSpan, tileMaxY + bufferSpan);
+          if(!bufferedTile.intersects(envelope)){
+            continue;
+          }
+          var clipped = clip(simplified, bufferedTile);
+          if(clipped.isEmpty()){
+            continue;
+          }
+          var tileFeature = new TileFeature(featureIndex, toTileCoordinates(clipped, tileMinX, tileMaxY, tileSpan));
+          tiles.computeIfAbsent(((long) col << 32) | row, key -> Collections.synchronizedList(new ArrayList<>())).add(tileFeature);
+        }
+      }
+    });
+    return tiles;
+  }
+
+  /**
+   * Encode and write the tiles of a zoom level in parallel
+   *
+   * @param zoom level
+   * @param tiles features by tile
+   * @return number of tiles written
+   */
+  private long writeTiles(int zoom, Map<Long, List<TileFeature>> tiles){
+    return tiles.entrySet().parallelStream().filter(entry -> {
+      int col = (int) (entry.getKey() >>> 32);
+      int row = (int) (entry.getKey() & 0xFFFFFFFFL);
+      var features = entry.getValue();
+      features.sort(Comparator.comparingInt(f -> f.featureIndex));
+
+      var encoder = new MvtEncoder(layerName, EXTENT, attributeNames, geometryIndex);
+      for(var feature : features){
+        encoder.addFeature(getFeatureId(feature.featureIndex), featureValues.get(feature.featureIndex), feature.tileGeometry);
+      }
+      if(encoder.isEmpty()){
+        return false;
+      }
+
+      var tilePath = pyramidDirectory.resolve(Path.of(String.valueOf(zoom), String.valueOf(col), row + TILE_EXTENSION));
+      try {
+        Files.createDirectories(tilePath.getParent());
+        Files.write(tilePath, encoder.encode());
+      }catch (IOException e){
+        LOGGER.severe(e.getMessage());
+        throw new PlanItRunTimeException("Unable to write vector tile %s", tilePath.toString());
+      }
+      return true;
+    }).count();
+  }
+
+  /**
+   * Escape a string for use in JSON
+   *
+   * @param value to escape
+   * @return escaped value, including quotes
+   */
+  private static String toJsonString(String value){
+    return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+  }
+
+  /**
+   * Write the metadata of the pyramid
+   */
+  private void writeMetadata(){
+    var metadataPath = pyramidDirectory.resolve(METADATA_FILE_NAME);
+    var fields = new ArrayList<String>();
+    for(int index = 0; index < attributeNames.length; ++index){
+      if(index == geometryIndex){
+        continue;
+      }
+      var binding = featureType.getDescriptor(index).getType().getBinding();
+      String fieldType = Number.class.isAssignableFrom(binding) ? "Number" : (Boolean.class.equals(binding) ? "Boolean" : "String");
+      fields.add(toJsonString(attributeNames[index]) + ":" + toJsonString(fieldType));
+    }
+
+    /* inverse web mercator for the bounds in longitude, latitude */
+    String boundsJson = "";
+    if(!bounds.isNull()){
+      double west = Math.toDegrees(bounds.getMinX() / EARTH_RADIUS);
+      double east = Math.toDegrees(bounds.getMaxX() / EARTH_RADIUS);
+      double south = Math.toDegrees(2 * Math.atan(Math.exp(bounds.getMinY() / EARTH_RADIUS)) - Math.PI / 2);
+      double north = Math.toDegrees(2 * Math.atan(Math.exp(bounds.getMaxY() / EARTH_RADIUS)) - Math.PI / 2);
+      boundsJson = String.format(",\"bounds\":[%s,%s,%s,%s]", west, south, east, north);
+    }
+
+    try(BufferedWriter writer = Files.newBufferedWriter(metadataPath, StandardCharsets.UTF_8)){
+      writer.write("{\"name\":" + toJsonString(layerName) +
+          ",\"format\":\"pbf\"" +
+          ",\"minzoom\":" + minZoom +
+          ",\"maxzoom\":" + maxZoom +
+          boundsJson +
+          ",\"vector_layers\":[{\"id\":" + toJsonString(layerName) + ",\"fields\":{" + String.join(",", fields) + "}}]}");
+      writer.newLine();
+    }catch (IOException e){
+      LOGGER.severe(e.getMessage());
+      throw new PlanItRunTimeException("Unable to write vector tile metadata %s", metadataPath.toString());
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param pyramidDirectory directory to write the pyramid to
+   * @param layerName name of the layer within the tiles
+   * @param featureType of the layer
+   * @param attributeNames attribute names by value index
+   * @param sourceCrs CRS of the geometries added, null is interpreted as WGS84
+   * @param minZoom minimum zoom level
+   * @param maxZoom maximum zoom level
+   */
+  public VectorTileLayerPyramidWriter(
+      Path pyramidDirectory,
+      String layerName,
+      SimpleFeatureType featureType,
+      String[] attributeNames,
+      CoordinateReferenceSystem sourceCrs,
+      int minZoom,
+      int maxZoom){
+    this.pyramidDirectory = pyramidDirectory;
+    this.layerName = layerName;
+    this.featureType = featureType;
+    this.attributeNames = attributeNames;
+    this.minZoom = minZoom;
+    this.maxZoom = maxZoom;
+
+    int geometryValueIndex = -1;
+    for(int index = 0; index < featureType.getAttributeCount(); ++index){
+      if(featureType.getDescriptor(index) instanceof GeometryDescriptor){
+        geometryValueIndex = index;
+      }
+    }
+    if(geometryValueIndex < 0){
+      throw new PlanItRunTimeException("Unable to create vector tiles for layer %s without geometry", layerName);
+    }
+    this.geometryIndex = geometryValueIndex;
+    this.mappedIdIndex = Arrays.asList(attributeNames).indexOf(MAPPED_ID_ATTRIBUTE);
+    this.numericMappedIds = mappedIdIndex >= 0;
+
+    try {
+      this.toWgs84 = (sourceCrs == null || CRS.equalsIgnoreMetadata(sourceCrs, DefaultGeographicCRS.WGS84)) ?
+          null : CRS.findMathTransform(sourceCrs, DefaultGeographicCRS.WGS84, true);
+    }catch (Exception e){
+      LOGGER.severe(e.getMessage());
+      throw new PlanItRunTimeException("Unable to transform %s to WGS84 for vector tiles of layer %s", sourceCrs.getName(), layerName);
+    }
+  }
+
+  /**
+   * Add a chunk of features, their geometries are transformed to web mercator in parallel. The chunk itself is not retained
+   *
+   * @param chunkValues attribute values per feature, ordered as the attribute names
+   */
+  public void add(Object[][] chunkValues){
+    var transformed = new Geometry[chunkValues.length];
+    IntStream.range(0, chunkValues.length).parallel().forEach(index -> {
+      var geometry = (Geometry) chunkValues[index][geometryIndex];
+      transformed[index] = (geometry == null || geometry.isEmpty()) ? null : toWebMercator(geometry);
+    });
+    for(int index = 0; index < chunkValues.length; ++index){
+      var attributeValues = Arrays.copyOf(chunkValues[index], chunkValues[index].length);
+      attributeValues[geometryIndex] = null;
+      featureValues.add(attributeValues);
+      if(numericMappedIds && toNumericId(attributeValues[mappedIdIndex]) < 0){
+        numericMappedIds = false;
+      }
+      mercatorGeometries.add(transformed[index]);
+      if(transformed[index] != null){
+        bounds.expandToInclude(transformed[index].getEnvelopeInternal());
+      }
+    }
+  }
+
+  /**
+   * Build and write the pyramid, one zoom level at a time
+   */
+  @Override
+  public void close() {
+    if(untransformable.get() > 0){
+      LOGGER.warning(String.format("IGNORE %d features of %s that could not be transformed to web mercator", untransformable.get(), layerName));
+    }
+    try {
+      Files.createDirectories(pyramidDirectory);
+    }catch (IOException e){
+      LOGGER.severe(e.getMessage());
+      throw new PlanItRunTimeException("Unable to create vector tile directory %s", pyramidDirectory.toString());
+    }
+
+    long totalTiles = 0;
+    for(int zoom = minZoom; zoom <= maxZoom; ++zoom){
+      totalTiles += writeTiles(zoom, assignToTiles(zoom));
+    }
+    writeMetadata();
+    LOGGER.info(String.format("Vector tiles of %s (zoom %d-%d): %d tiles written to %s",
+        layerName, minZoom, maxZoom, totalTiles, pyramidDirectory.toAbsolutePath()));
+  }
+
+}
@@ -0,0 +1,604 @@
+package org.goplanit.geoio.converter.zoning;
+
+import org.goplanit.converter.zoning.ZoningReader;
+import org.goplanit.geoio.converter.GeometryIoWriter;
+import org.goplanit.geoio.converter.GeometryLayerReader;
+import org.goplanit.geoio.util.ListAttributeEncoder;
+import org.goplanit.geoio.util.ModeShortNameConverter;
+import org.goplanit.network.MacroscopicNetwork;
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+import org.goplanit.utils.id.IdGroupingToken;
+import org.goplanit.utils.misc.StringUtils;
+import org.goplanit.utils.mode.Mode;
+import org.goplanit.utils.network.layer.macroscopic.MacroscopicLinkSegment;
+import org.goplanit.utils.network.layer.physical.Node;
+import org.goplanit.utils.zoning.Connectoid;
+import org.goplanit.utils.zoning.Zone;
+import org.goplanit.zoning.Zoning;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.index.strtree.ItemBoundable;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.opengis.feature.simple.SimpleFeature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Reader to rebuild a PLANit zoning from the zone and connectoid layers persisted by a {@link GeometryZoningWriter}, on top
+ * of an already available physical network (e.g. read by a {@link org.goplanit.geoio.converter.network.GeometryNetworkReader}).
+ * <p>
+ *   Connectoids are relinked to the physical network by the persisted id of their access node ('phys_node') and, for
+ *   transfer connectoids, access link segment ('phys_segm'). When these cannot be found, the physical node nearest to the
+ *   connectoid's location is used instead, found through a spatial index (STRtree) of all nodes. Lookups are independent
+ *   per connectoid and are performed in parallel, so relinking scales with n log(n) rather than quadratically in the number
+ *   of connectoids. Zones and connectoids are registered on the zoning sequentially afterwards.
+ * </p>
+ * <p>
+ *   The virtual network (connectoid edges and segments) is not read, PLANit derives it from the zones and connectoids when
+ *   the transport model network is created.
+ * </p>
+ *
+ * @author markr
+ *
+ */
+public class GeometryZoningReader implements ZoningReader {
+
+  /** the logger to use */
+  private static final Logger LOGGER = Logger.getLogger(GeometryZoningReader.class.getCanonicalName());
+
+  /** value of 'segm2node' indicating the access node is downstream of the access link segment */
+  private static final String NODE_ACCESS_DOWNSTREAM = "PHYS_NODE_DOWNSTREAM";
+
+  /** mode entry indicating all modes are allowed for an access zone */
+  private static final String ALL_MODES = "ALL";
+
+  /** settings to use */
+  private final GeometryZoningReaderSettings settings;
+
+  /** id token to create zoning with */
+  private final IdGroupingToken idToken;
+
+  /** physical network connectoids are linked to */
+  private final MacroscopicNetwork network;
+
+  /** lookup of physical nodes by their persisted id, may return null */
+  private final Function<String, Node> nodeLookup;
+
+  /** lookup of physical link segments by their persisted id, may return null */
+  private final Function<String, MacroscopicLinkSegment> linkSegmentLookup;
+
+  /**
+   * Decoded zone
+   */
+  private static final class ZoneRecord {
+    private String mappedId;
+    private String xmlId;
+    private String externalId;
+    private String name;
+    private Geometry geometry;
+  }
+
+  /**
+   * Decoded connectoid
+   */
+  private static final class ConnectoidRecord {
+    private String mappedId;
+    private String xmlId;
+    private String externalId;
+    private String name;
+    private String physicalNode;
+    private String physicalSegment;
+    private boolean nodeAccessDownstream;
+    private List<String> zones;
+    private Map<String, List<String>> modesByZone;
+    private Map<String, Double> lengthsKmByZone;
+    private Point position;
+  }
+
+  /**
+   * Spatial index of all physical nodes for nearest node lookups, safe for concurrent queries once built
+   */
+  private static final class NearestNodeIndex {
+
+    /** the index */
+    private final STRtree tree = new STRtree();
+
+    /**
+     * Position of an indexed node or query point
+     *
+     * @param item to get position for
+     * @return position
+     */
+    private static Point positionOf(Object item){
+      return item instanceof Node ? ((Node) item).getPosition() : (Point) item;
+    }
+
+    /**
+     * Constructor, indexes all nodes with a position
+     *
+     * @param network to index nodes of
+     */
+    private NearestNodeIndex(MacroscopicNetwork network){
+      for(var layer : network.getTransportLayers()){
+        for(var node : layer.getNodes()){
+          if(node.getPosition() != null){
+            tree.insert(node.getPosition().getEnvelopeInternal(), node);
+          }
+        }
+      }
+      tree.build();
+    }
+
+    /**
+     * Find the node nearest to the given point
+     *
+     * @param point to find nearest node for
+     * @param maxDistance maximum distance allowed, unlimited when negative
+     * @return nearest node, null if none within the maximum distance
+     */
+    private Node nearest(Point point, double maxDistance){
+      if(point == null || tree.isEmpty()){
+        return null;
+      }
+      var node = (Node) tree.nearestNeighbour(point.getEnvelopeInternal(), point,
+          (ItemBoundable first, ItemBoundable second) -> positionOf(first.getItem()).distance(positionOf(second.getItem())));
+      if(node == null || (maxDistance >= 0 && node.getPosition().distance(point) > maxDistance)){
+        return null;
+      }
+      return node;
+    }
+  }
+
+  /**
+   * Convert a zone geometry read from file to the geometry type of the file it was written to
+   *
+   * @param geometry to convert
+   * @param geometryTypeName geometry type postfix of the file
+   * @return converted geometry
+   */
+  private static Geometry toZoneGeometry(Geometry geometry, String geometryTypeName){
+    switch (geometryTypeName){
+      case "point":
+        return GeometryLayerReader.asPoint(geometry);
+      case "linestring":
+        return GeometryLayerReader.asLineString(geometry);
+      case "polygon":
+        return (geometry instanceof MultiPolygon && geometry.getNumGeometries() == 1) ? geometry.getGeometryN(0) : geometry;
+      default:
+        return geometry;
+    }
+  }
+
+  /**
+   * Decode a zone feature
+   *
+   * @param feature to decode
+   * @param geometryTypeName geometry type postfix of the file
+   * @return decoded zone
+   */
+  private static ZoneRecord decodeZone(SimpleFeature feature, String geometryTypeName){
+    var record = new ZoneRecord();
+    record.mappedId = GeometryLayerReader.getString(feature, "mapped_id");
+    record.xmlId = GeometryLayerReader.getString(feature, "xml_id");
+    record.externalId = GeometryLayerReader.getString(feature, "ext_id");
+    record.name = GeometryLayerReader.getString(feature, "name");
+    record.geometry = toZoneGeometry((Geometry) feature.getDefaultGeometry(), geometryTypeName);
+    return record;
+  }
+
+  /**
+   * Collect a list valued attribute, resolving values spilled to the side table
+   *
+   * @param feature to collect from
+   * @param attributeName to collect
+   * @param spilledValues side table values by entity id and attribute name
+   * @return entries of the list, empty when absent
+   */
+  private static List<String> getListAttribute(SimpleFeature feature, String attributeName, Map<Long, Map<String, String>> spilledValues){
+    var value = GeometryLayerReader.getString(feature, attributeName);
+    if(ListAttributeEncoder.OVERFLOW_MARKER.equals(value)){
+      var id = GeometryLayerReader.getDouble(feature, "id");
+      Map<String, String> spilledOfEntity = id == null ? null : spilledValues.get(id.longValue());
+      value = spilledOfEntity == null ? null : spilledOfEntity.get(attributeName);
+    }
+    if(StringUtils.isNullOrBlank(value)){
+      return List.of();
+    }
+    return List.of(value.split(String.valueOf(ListAttributeEncoder.DELIMITER)));
+  }
+
+  /**
+   * Decode a connectoid feature
+   *
+   * @param feature to decode
+   * @param spilledValues side table values by entity id and attribute name
+   * @return decoded connectoid
+   */
+  private static ConnectoidRecord decodeConnectoid(SimpleFeature feature, Map<Long, Map<String, String>> spilledValues){
+    var record = new ConnectoidRecord();
+    record.mappedId = GeometryLayerReader.getString(feature, "mapped_id");
+    record.xmlId = GeometryLayerReader.getString(feature, "xml_id");
+    record.externalId = GeometryLayerReader.getString(feature, "ext_id");
+    record.name = GeometryLayerReader.getString(feature, "name");
+    record.physicalNode = GeometryLayerReader.getString(feature, "phys_node");
+    record.physicalSegment = GeometryLayerReader.getString(feature, "phys_segm");
+    record.nodeAccessDownstream = NODE_ACCESS_DOWNSTREAM.equals(GeometryLayerReader.getString(feature, "segm2node"));
+    record.zones = getListAttribute(feature, "zones", spilledValues);
+    record.position = GeometryLayerReader.asPoint((Geometry) feature.getDefaultGeometry());
+
+    /* 'zone:mode' entries, 'zone:ALL' when all modes are allowed */
+    record.modesByZone = new HashMap<>();
+    for(var entry : getListAttribute(feature, "modes", spilledValues)){
+      int separator = entry.lastIndexOf(':');
+      if(separator > 0){
+        var modes = record.modesByZone.computeIfAbsent(entry.substring(0, separator), zone -> new ArrayList<>());
+        var mode = entry.substring(separator + 1);
+        if(!ALL_MODES.equals(mode)){
+          modes.add(mode);
+        }
+      }
+    }
+
+    /* 'zone:length' entries */
+    record.lengthsKmByZone = new HashMap<>();
+    for(var entry : getListAttribute(feature, "lengths_km", spilledValues)){
+      int separator = entry.lastIndexOf(':');
+      if(separator > 0){
+        try {
+          record.lengthsKmByZone.put(entry.substring(0, separator), Double.parseDouble(entry.substring(separator + 1)));
+        }catch (NumberFormatException e){
+          /* unknown length */
+        }
+      }
+    }
+    return record;
+  }
+
+  /**
+   * Find the zone layers written for the given base file name, one per geometry type
+   *
+   * @param zonesFileName base file name of the zones
+   * @return schema names by geometry type postfix
+   */
+  private Map<String, String> findZoneSchemaNames(String zonesFileName){
+    var zoneFilePattern = Pattern.compile(Pattern.quote(zonesFileName + "_") + "([a-z]+)" + Pattern.quote(settings.getFileExtension()));
+    try (var files = Files.list(Path.of(settings.getInputDirectory()))){
+      var schemaNamesByGeometryType = new LinkedHashMap<String, String>();
+      files.map(file -> zoneFilePattern.matcher(file.getFileName().toString())).filter(matcher -> matcher.matches()).sorted(
+          (first, second) -> first.group(1).compareTo(second.group(1))).forEach(
+              matcher -> schemaNamesByGeometryType.put(matcher.group(1), zonesFileName + "_" + matcher.group(1)));
+      return schemaNamesByGeometryType;
+    }catch (IOException e){
+      LOGGER.severe(e.getMessage());
+      throw new PlanItRunTimeException("Unable to list input directory %s", settings.getInputDirectory());
+    }
+  }
+
+  /**
+   * Read all zone layers for the given base file name in parallel
+   *
+   * @param zonesFileName base file name of the zones
+   * @param executor to read on
+   * @return decoded zones
+   */
+  private List<ZoneRecord> readZones(String zonesFileName, ExecutorService executor){
+    var inputDirectory = Path.of(settings.getInputDirectory());
+    var zoneFutures = new ArrayList<CompletableFuture<List<ZoneRecord>>>();
+    for(var entry : findZoneSchemaNames(zonesFileName).entrySet()){
+      final var geometryTypeName = entry.getKey();
+      zoneFutures.add(GeometryLayerReader.readLayerAsync(inputDirectory, entry.getValue(), settings.getFileExtension(),
+          settings.isMemoryMapped(), feature -> decodeZone(feature, geometryTypeName), executor));
+    }
+    var zoneRecords = new ArrayList<ZoneRecord>();
+    zoneFutures.forEach(future -> zoneRecords.addAll(GeometryLayerReader.join(future)));
+    return zoneRecords;
+  }
+
+  /**
+   * Start reading the connectoid layer with the given name, if present
+   *
+   * @param connectoidsFileName file name of the connectoids
+   * @param executor to read on
+   * @return future of decoded connectoids, empty when the layer is not present
+   */
+  private CompletableFuture<List<ConnectoidRecord>> readConnectoidsAsync(String connectoidsFileName, ExecutorService executor){
+    var inputDirectory = Path.of(settings.getInputDirectory());
+    if(!Files.exists(inputDirectory.resolve(connectoidsFileName + settings.getFileExtension()))){
+      return CompletableFuture.completedFuture(List.of());
+    }
+    var spilledValues = ListAttributeEncoder.readOverflowTable(
+        inputDirectory.resolve(connectoidsFileName + GeometryIoWriter.OVERFLOW_TABLE_SUFFIX));
+    return GeometryLayerReader.readLayerAsync(inputDirectory, connectoidsFileName, settings.getFileExtension(),
+        settings.isMemoryMapped(), feature -> decodeConnectoid(feature, spilledValues), executor);
+  }
+
+  /**
+   * Register the zones on the zoning
+   *
+   * @param zoneRecords to register
+   * @param zoneFactory to register each zone with
+   * @param zonesByMappedId to add the registered zones to
+   */
+  private void registerZones(List<ZoneRecord> zoneRecords, Supplier<? extends Zone> zoneFactory, Map<String, Zone> zonesByMappedId){
+    for(var record : zoneRecords){
+      var zone = zoneFactory.get();
+      zone.setXmlId(StringUtils.isNullOrBlank(record.xmlId) ? record.mappedId : record.xmlId);
+      zone.setExternalId(record.externalId);
+      zone.setName(record.name);
+      zone.setGeometry(record.geometry);
+      if(zone.getCentroid() != null && record.geometry != null){
+        zone.getCentroid().setPosition(record.geometry.getCentroid());
+      }
+      zonesByMappedId.put(record.mappedId, zone);
+    }
+  }
+
+  /**
+   * Modes of the network by each of the ids they may have been persisted with (xml id, predefined type, GeoIO short name)
+   *
+   * @return modes by persisted id
+   */
+  private Map<String, Mode> createModeLookup(){
+    var modesById = new HashMap<String, Mode>();
+    for(var mode : network.getModes()){
+      modesById.put(ModeShortNameConverter.asShortName(mode.getPredefinedModeType()), mode);
+      modesById.put(mode.getPredefinedModeType().value(), mode);
+      modesById.put(String.valueOf(mode.getId()), mode);
+      if(mode.getXmlId() != null) {
+        modesById.put(mode.getXmlId(), mode);
+      }
+    }
+    return modesById;
+  }
+
+  /**
+   * Resolve the access node of each connectoid in parallel, by persisted id first and the nearest node otherwise
+   *
+   * @param records to resolve access nodes for
+   * @param nearestNodeIndex to use when the persisted id is not found
+   * @return access node per record, null when not found
+   */
+  private Node[] resolveAccessNodes(List<ConnectoidRecord> records, NearestNodeIndex nearestNodeIndex){
+    var accessNodes = new Node[records.size()];
+    IntStream.range(0, records.size()).parallel().forEach(index -> {
+      var record = records.get(index);
+      Node node = record.physicalNode == null ? null : nodeLookup.apply(record.physicalNode);
+      accessNodes[index] = node != null ? node : nearestNodeIndex.nearest(record.position, settings.getMaxNearestNodeDistance());
+    });
+    return accessNodes;
+  }
+
+  /**
+   * Resolve the access link segment of a directed connectoid, by persisted id first and an adjacent link segment of the access
+   * node otherwise
+   *
+   * @param record to resolve for
+   * @param accessNode resolved for the record
+   * @return access link segment, null when not found
+   */
+  private MacroscopicLinkSegment resolveAccessLinkSegment(ConnectoidRecord record, Node accessNode){
+    MacroscopicLinkSegment linkSegment = record.physicalSegment == null ? null : linkSegmentLookup.apply(record.physicalSegment);
+    if(linkSegment != null || accessNode == null){
+      return linkSegment;
+    }
+    var candidates = record.nodeAccessDownstream ? accessNode.getEntryLinkSegments() : accessNode.getExitLinkSegments();
+    for(var candidate : candidates){
+      if(candidate instanceof MacroscopicLinkSegment){
+        return (MacroscopicLinkSegment) candidate;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Complete a registered connectoid with its access zones, lengths and allowed modes
+   *
+   * @param connectoid to complete
+   * @param record of the connectoid
+   * @param accessZones of the connectoid, the first being already registered
+   * @param modesById lookup of modes
+   */
+  private static void completeConnectoid(Connectoid connectoid, ConnectoidRecord record, List<Zone> accessZones, Map<String, Mode> modesById){
+    connectoid.setXmlId(StringUtils.isNullOrBlank(record.xmlId) ? record.mappedId : record.xmlId);
+    connectoid.setExternalId(record.externalId);
+    connectoid.setName(record.name);
+    for(int index = 0; index < accessZones.size(); ++index){
+      var zone = accessZones.get(index);
+      var zoneId = record.zones.get(index);
+      if(index > 0) {
+        connectoid.addAccessZone(zone);
+        var length = record.lengthsKmByZone.get(zoneId);
+        if(length != null && !length.isNaN()){
+          connectoid.setLengthKm(zone, length);
+        }
+      }
+      for(var modeId : record.modesByZone.getOrDefault(zoneId, List.of())){
+        var mode = modesById.get(modeId);
+        if(mode == null){
+          LOGGER.warning(String.format("IGNORE: Unknown mode %s for connectoid %s", modeId, record.mappedId));
+          continue;
+        }
+        connectoid.addAllowedMode(zone, mode);
+      }
+    }
+  }
+
+  /**
+   * Collect the access zones of a connectoid
+   *
+   * @param record of the connectoid
+   * @param zonesByMappedId registered zones
+   * @return access zones, null when any is not found
+   */
+  private static List<Zone> collectAccessZones(ConnectoidRecord record, Map<String, Zone> zonesByMappedId){
+    var accessZones = new ArrayList<Zone>(record.zones.size());
+    for(var zoneId : record.zones){
+      var zone = zonesByMappedId.get(zoneId);
+      if(zone == null){
+        return null;
+      }
+      accessZones.add(zone);
+    }
+    return accessZones.isEmpty() ? null : accessZones;
+  }
+
+  /**
+   * Length of the first access zone, zero when unknown
+   *
+   * @param record of the connectoid
+   * @return length
+   */
+  private static double getFirstAccessZoneLengthKm(ConnectoidRecord record){
+    var length = record.lengthsKmByZone.get(record.zones.get(0));
+    return (length == null || length.isNaN()) ? 0 : length;
+  }
+
+  /**
+   * Register the OD connectoids on the zoning
+   *
+   * @param zoning to register on
+   * @param records decoded connectoids
+   * @param nearestNodeIndex to relink by location
+   * @param zonesByMappedId registered zones
+   * @param modesById lookup of modes
+   */
+  private void registerOdConnectoids(
+      Zoning zoning, List<ConnectoidRecord> records, NearestNodeIndex nearestNodeIndex, Map<String, Zone> zonesByMappedId, Map<String, Mode> modesById){
+    var accessNodes = resolveAccessNodes(records, nearestNodeIndex);
+    long skipped = 0;
+    for(int index = 0; index < records.size(); ++index){
+      var record = records.get(index);
+      var accessZones = collectAccessZones(record, zonesByMappedId);
+      if(accessNodes[index] == null || accessZones == null){
+        ++skipped;
+        continue;
+      }
+      var connectoid = zoning.getOdConnectoids().getFactory().registerNew(
+          accessNodes[index], accessZones.get(0), getFirstAccessZoneLengthKm(record));
+      completeConnectoid(connectoid, record, accessZones, modesById);
+    }
+    if(skipped > 0){
+      LOGGER.warning(String.format("IGNORE: %d OD connectoids without access node or access zones", skipped));
+    }
+  }
+
+  /**
+   * Register the transfer connectoids on the zoning
+   *
+   * @param zoning to register on
+   * @param records decoded connectoids
+   * @param nearestNodeIndex to relink by location
+   * @param zonesByMappedId registered zones
+   * @param modesById lookup of modes
+   */
+  private void registerTransferConnectoids(
+      Zoning zoning, List<ConnectoidRecord> records, NearestNodeIndex nearestNodeIndex, Map<String, Zone> zonesByMappedId, Map<String, Mode> modesById){
+    var accessNodes = resolveAccessNodes(records, nearestNodeIndex);
+    var accessLinkSegments = new MacroscopicLinkSegment[records.size()];
+    IntStream.range(0, records.size()).parallel().forEach(
+        index -> accessLinkSegments[index] = resolveAccessLinkSegment(records.get(index), accessNodes[index]));
+
+    long skipped = 0;
+    for(int index = 0; index < records.size(); ++index){
+      var record = records.get(index);
+      var accessZones = collectAccessZones(record, zonesByMappedId);
+      if(accessLinkSegments[index] == null || accessZones == null){
+        ++skipped;
+        continue;
+      }
+      var connectoid = zoning.getTransferConnectoids().getFactory().registerNew(
+          accessLinkSegments[index], accessZones.get(0), record.nodeAccessDownstream, getFirstAccessZoneLengthKm(record));
+      completeConnectoid(connectoid, record, accessZones, modesById);
+    }
+    if(skipped > 0){
+      LOGGER.warning(String.format("IGNORE: %d transfer connectoids without access link segment or access zones", skipped));
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param idToken to use for the zoning
+   * @param settings to use
+   * @param network physical network to link connectoids to
+   * @param nodeLookup of physical nodes by their persisted id, may return null
+   * @param linkSegmentLookup of physical link segments by their persisted id, may return null
+   */
+  protected GeometryZoningReader(
+      IdGroupingToken idToken,
+      GeometryZoningReaderSettings settings,
+      MacroscopicNetwork network,
+      Function<String, Node> nodeLookup,
+      Function<String, MacroscopicLinkSegment> linkSegmentLookup){
+    this.idToken = idToken;
+    this.settings = settings;
+    this.network = network;
+    this.nodeLookup = nodeLookup;
+    this.linkSegmentLookup = linkSegmentLookup;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Zoning read() {
+    PlanItRunTimeException.throwIfNull(settings.getInputDirectory(), "Input directory not set");
+    PlanItRunTimeException.throwIfNull(network, "Physical network not set");
+    settings.logSettings();
+
+    var zoning = new Zoning(idToken, network.getNetworkGroupingTokenId());
+    var executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    try {
+      /* connectoids are decoded while zones are read and the spatial index is built */
+      var odConnectoidsFuture = readConnectoidsAsync(settings.getOdConnectoidsFileName(), executor);
+      var transferConnectoidsFuture = readConnectoidsAsync(settings.getTransferConnectoidsFileName(), executor);
+      var nearestNodeIndexFuture = CompletableFuture.supplyAsync(() -> new NearestNodeIndex(network), executor);
+
+      var zonesByMappedId = new HashMap<String, Zone>();
+      registerZones(readZones(settings.getOdZonesFileName(), executor), () -> zoning.getOdZones().getFactory().registerNew(), zonesByMappedId);
+      registerZones(readZones(settings.getTransferZonesFileName(), executor), () -> zoning.getTransferZones().getFactory().registerNew(), zonesByMappedId);
+
+      var nearestNodeIndex = nearestNodeIndexFuture.join();
+      var modesById = createModeLookup();
+      registerOdConnectoids(zoning, GeometryLayerReader.join(odConnectoidsFuture), nearestNodeIndex, zonesByMappedId, modesById);
+      registerTransferConnectoids(zoning, GeometryLayerReader.join(transferConnectoidsFuture), nearestNodeIndex, zonesByMappedId, modesById);
+    }finally {
+      executor.shutdown();
+    }
+
+    LOGGER.info(String.format("OD zones: %d, transfer zones: %d, OD connectoids: %d, transfer connectoids: %d",
+        zoning.getOdZones().size(), zoning.getTransferZones().size(), zoning.getOdConnectoids().size(), zoning.getTransferConnectoids().size()));
+    return zoning;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public GeometryZoningReaderSettings getSettings() {
+    return settings;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void reset() {
+  }
+}
@@ -0,0 +1,50 @@
+package org.goplanit.geoio.converter.zoning;
+
+import org.goplanit.geoio.converter.network.GeometryNetworkReader;
+import org.goplanit.network.MacroscopicNetwork;
+import org.goplanit.utils.id.IdGroupingToken;
+import org.goplanit.utils.network.layer.macroscopic.MacroscopicLinkSegment;
+import org.goplanit.utils.network.layer.physical.Node;
+
+import java.util.HashMap;
+
+/**
+ * Factory for creating GeometryZoningReaders
+ * @author markr
+ *
+ */
+public class GeometryZoningReaderFactory {
+
+  /** Create a GeometryZoningReader for a zoning persisted alongside a network read by the given network reader, connectoids
+   * are relinked by the ids the network was persisted with
+   *
+   * @param zoningSettings to use
+   * @param networkReader that read the network
+   * @param network that was read
+   * @return created GeometryZoningReader
+   */
+  public static GeometryZoningReader create(
+      GeometryZoningReaderSettings zoningSettings, GeometryNetworkReader networkReader, MacroscopicNetwork network) {
+    return new GeometryZoningReader(IdGroupingToken.collectGlobalToken(), zoningSettings, network,
+        networkReader::getNodeByPersistedId, networkReader::getLinkSegmentByPersistedId);
+  }
+
+  /** Create a GeometryZoningReader for a zoning persisted with XML ids, connectoids are relinked by the XML ids of the
+   * network's nodes and link segments
+   *
+   * @param zoningSettings to use
+   * @param network to link connectoids to
+   * @return created GeometryZoningReader
+   */
+  public static GeometryZoningReader create(GeometryZoningReaderSettings zoningSettings, MacroscopicNetwork network) {
+    var nodesByXmlId = new HashMap<String, Node>();
+    var linkSegmentsByXmlId = new HashMap<String, MacroscopicLinkSegment>();
+    for(var layer : network.getTransportLayers()){
+      layer.getNodes().forEach(node -> nodesByXmlId.put(node.getXmlId(), node));
+      layer.getLinkSegments().forEach(linkSegment -> linkSegmentsByXmlId.put(linkSegment.getXmlId(), linkSegment));
+    }
+    return new GeometryZoningReader(IdGroupingToken.collectGlobalToken(), zoningSettings, network,
+        nodesByXmlId::get, linkSegmentsByXmlId::get);
+  }
+
+}
@@ -0,0 +1,156 @@
+package org.goplanit.geoio.converter.zoning;
+
+import org.goplanit.converter.ConverterReaderSettings;
+import org.goplanit.geoio.util.GeoIoWriterSettings;
+
+import java.util.logging.Logger;
+
+/**
+ * Settings relevant for reading a PLANit zoning persisted in Geo IO format, see {@link GeometryZoningWriter}. File names
+ * default to those of the writer
+ *
+ * @author markr
+ *
+ */
+public class GeometryZoningReaderSettings implements ConverterReaderSettings {
+
+  /** logger to use */
+  private static final Logger LOGGER = Logger.getLogger(GeometryZoningReaderSettings.class.getCanonicalName());
+
+  /** directory to read from */
+  private String inputDirectory;
+
+  /** od zones file name (without geometry type postfix) to use */
+  private String odZonesFileName = GeometryZoningWriterSettings.DEFAULT_OD_ZONES_FILE_NAME;
+
+  /** od connectoids file name to use */
+  private String odConnectoidsFileName = GeometryZoningWriterSettings.DEFAULT_OD_CONNECTOIDS_FILE_NAME;
+
+  /** transfer zones file name (without geometry type postfix) to use */
+  private String transferZonesFileName = GeometryZoningWriterSettings.DEFAULT_TRANSFER_ZONES_FILE_NAME;
+
+  /** transfer connectoids file name to use */
+  private String transferConnectoidsFileName = GeometryZoningWriterSettings.DEFAULT_TRANSFER_CONNECTOIDS_FILE_NAME;
+
+  /** extension of the files to read */
+  private String fileExtension = GeoIoWriterSettings.DEFAULT_EXTENSION;
+
+  /** flag indicating if files are memory-mapped when read */
+  private boolean memoryMapped = DEFAULT_MEMORY_MAPPED;
+
+  /** maximum distance (in CRS units) between a connectoid and a physical node when relinking by location, unlimited when negative */
+  private double maxNearestNodeDistance = DEFAULT_MAX_NEAREST_NODE_DISTANCE;
+
+  /** by default files are memory-mapped */
+  public static final boolean DEFAULT_MEMORY_MAPPED = true;
+
+  /** by default the distance when relinking connectoids to the nearest physical node is not limited */
+  public static final double DEFAULT_MAX_NEAREST_NODE_DISTANCE = -1;
+
+  /**
+   * Default constructor
+   */
+  public GeometryZoningReaderSettings() {
+    this(".");
+  }
+
+  /**
+   * Constructor
+   *
+   * @param inputDirectory to use
+   */
+  public GeometryZoningReaderSettings(final String inputDirectory) {
+    this.inputDirectory = inputDirectory;
+  }
+
+  /**
+   * Convenience method to log all the current settings
+   */
+  public void logSettings() {
+    LOGGER.info(String.format("Input directory: %s", inputDirectory));
+    LOGGER.info(String.format("Files: %s, %s, %s, %s (%s)",
+        odZonesFileName, odConnectoidsFileName, transferZonesFileName, transferConnectoidsFileName, fileExtension));
+    LOGGER.info(String.format("Memory-mapped: %s", memoryMapped));
+    if(maxNearestNodeDistance >= 0) {
+      LOGGER.info(String.format("Maximum distance relinking connectoids to nearest node: %s", maxNearestNodeDistance));
+    }
+  }
+
+  /**
+   * Reset content
+   */
+  @Override
+  public void reset() {
+    odZonesFileName = GeometryZoningWriterSettings.DEFAULT_OD_ZONES_FILE_NAME;
+    odConnectoidsFileName = GeometryZoningWriterSettings.DEFAULT_OD_CONNECTOIDS_FILE_NAME;
+    transferZonesFileName = GeometryZoningWriterSettings.DEFAULT_TRANSFER_ZONES_FILE_NAME;
+    transferConnectoidsFileName = GeometryZoningWriterSettings.DEFAULT_TRANSFER_CONNECTOIDS_FILE_NAME;
+    fileExtension = GeoIoWriterSettings.DEFAULT_EXTENSION;
+    memoryMapped = DEFAULT_MEMORY_MAPPED;
+    maxNearestNodeDistance = DEFAULT_MAX_NEAREST_NODE_DISTANCE;
+  }
+
+  public String getInputDirectory() {
+    return inputDirectory;
+  }
+
+  public void setInputDirectory(String inputDirectory) {
+    this.inputDirectory = inputDirectory;
+  }
+
+  public String getOdZonesFileName() {
+    return odZonesFileName;
+  }
+
+  public void setOdZonesFileName(String odZonesFileName) {
+    this.odZonesFileName = odZonesFileName;
+  }
+
+  public String getOdConnectoidsFileName() {
+    return odConnectoidsFileName;
+  }
+
+  public void setOdConnectoidsFileName(String odConnectoidsFileName) {
+    this.odConnectoidsFileName = odConnectoidsFileName;
+  }
+
+  public String getTransferZonesFileName() {
+    return transferZonesFileName;
+  }
+
+  public void setTransferZonesFileName(String transferZonesFileName) {
+    this.transferZonesFileName = transferZonesFileName;
+  }
+
+  public String getTransferConnectoidsFileName() {
+    return transferConnectoidsFileName;
+  }
+
+  public void setTransferConnectoidsFileName(String transferConnectoidsFileName) {
+    this.transferConnectoidsFileName = transferConnectoidsFileName;
+  }
+
+  public String getFileExtension() {
+    return fileExtension;
+  }
+
+  public void setFileExtension(String fileExtension) {
+    this.fileExtension = fileExtension;
+  }
+
+  public boolean isMemoryMapped() {
+    return memoryMapped;
+  }
+
+  public void setMemoryMapped(boolean memoryMapped) {
+    this.memoryMapped = memoryMapped;
+  }
+
+  public double getMaxNearestNodeDistance() {
+    return maxNearestNodeDistance;
+  }
+
+  public void setMaxNearestNodeDistance(double maxNearestNodeDistance) {
+    this.maxNearestNodeDistance = maxNearestNodeDistance;
+  }
+}
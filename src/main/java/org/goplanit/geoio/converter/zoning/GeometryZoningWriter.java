@@ -3,8 +3,11 @@ package org.goplanit.geoio.converter.zoning;
 import org.geotools.data.DataStore;
 import org.goplanit.converter.idmapping.ZoningIdMapper;
 import org.goplanit.converter.zoning.ZoningWriter;
+import org.goplanit.geoio.converter.GeoIoExportResult;
+import org.goplanit.geoio.converter.GeoIoExportSnapshot;
 import org.goplanit.geoio.converter.GeometryIoWriter;
 import org.goplanit.geoio.converter.service.GeometryServiceNetworkWriterSettings;
+import org.goplanit.geoio.converter.zoning.derived.DerivedVirtualNetwork;
 import org.goplanit.geoio.converter.zoning.featurecontext.*;
 import org.goplanit.geoio.util.GeoIODataStoreManager;
 import org.goplanit.geoio.util.GeoIoFeatureTypeBuilder;
@@ -25,6 +28,8 @@ import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 
 import static java.util.Map.entry;
@@ -147,7 +152,8 @@ public class GeometryZoningWriter extends GeometryIoWriter<Zoning> implements Zo
    * @param zoning to writer
    */
   private void initialiseWrite(Zoning zoning) {
-    getComponentIdMappers().populateMissingIdMappers(getIdMapperType());
+    resolveIdMappers();
+    prepareMappedIdCache();
     prepareCoordinateReferenceSystem(zoning.getCoordinateReferenceSystem(), getSettings().getDestinationCoordinateReferenceSystem(), getSettings().getCountry());
   }
 
@@ -232,6 +238,7 @@ public class GeometryZoningWriter extends GeometryIoWriter<Zoning> implements Zo
 
     /* Ensure all geo features are available and configured for the correct CRS once we start using them */
     for (var entry : partitionedZones.entrySet()) {
+      checkCancelled(zoneClazz.getSimpleName());
       var geometryType = entry.getKey();
       var zonesOfGeometryType = entry.getValue();
 
@@ -241,7 +248,7 @@ public class GeometryZoningWriter extends GeometryIoWriter<Zoning> implements Zo
       /* zoning feature context is created per combination of zone and geometry type since shape files are only support one
        * type of geometry per file */
       var featureContext =
-          GeoIoFeatureTypeBuilder.createZoningZoneFeatureContext(getPrimaryIdMapper(), zoneClazz, geometryType);
+          GeoIoFeatureTypeBuilder.createZoningZoneFeatureContext(getPrimaryIdMapper(), zoneClazz, geometryType, getMappedIdCache());
 
       /* feature type */
       var zoneSimpleFeature =
@@ -300,6 +307,7 @@ public class GeometryZoningWriter extends GeometryIoWriter<Zoning> implements Zo
     writeGeometryLayerForEntity(
         featureType,
         featureDescription,
+        "",
         connectoidEdgesDataStore,
         getSettings().getConnectoidEdgesFileName(), /* schema name = file name */
         virtualNetwork.getConnectoidEdges());
@@ -317,7 +325,7 @@ public class GeometryZoningWriter extends GeometryIoWriter<Zoning> implements Zo
       throw new PlanItRunTimeException(
           "No Feature type description available for PLANit virtual network connectoid segments (%s), this shouldn't happen", featureDescription.getPlanitEntityClass().getSimpleName());
     }
-    LOGGER.info(String.format("Connectoid segments: %d", virtualNetwork.getConnectoidEdges().size()));
+    LOGGER.info(String.format("Connectoid segments: %d", virtualNetwork.getConnectoidSegments().size()));
 
     /* data store, e.g., underlying shape file(s) */
     DataStore connectoidSegmentsDataStore = findDataStore(featureDescription,  createFullPathFromFileName(getSettings().getConnectoidSegmentsFileName()));
@@ -326,6 +334,7 @@ public class GeometryZoningWriter extends GeometryIoWriter<Zoning> implements Zo
     writeGeometryLayerForEntity(
         featureType,
         featureDescription,
+        "",
         connectoidSegmentsDataStore,
         getSettings().getConnectoidSegmentsFileName(), /* schema name = file name */
         virtualNetwork.getConnectoidSegments());
@@ -360,13 +369,61 @@ public class GeometryZoningWriter extends GeometryIoWriter<Zoning> implements Zo
           createFullPathFromFileName(getSettings().getConnectoidSegmentsFileName()).toAbsolutePath()));
       var featureInfo = findFeaturePairForPlanitEntity(ConnectoidSegment.class, geoFeatureTypesByPlanitEntity);
 
-      /* make sure that basic geometry is present (segment geometry is sourced from parent edge), since for modelling purposes there is no need to keep track of geometry when vertices are defined */
-      virtualNetwork.getConnectoidEdges().stream().forEach( ce -> ce.populateBasicGeometry(false));
-
       writeConnectoidSegments(virtualNetwork, featureInfo.first(), (PlanitConnectoidSegmentFeatureTypeContext)featureInfo.second());
     }
   }
 
+  /**
+   * Persist the connectoid edges and segments of the virtual network without requiring the virtual network to be present on
+   * the zoning. Instead, they are derived from the zoning's connectoids on the fly, so no integrated transport network needs
+   * to be constructed and the zoning remains untouched. Layers are persisted under the same file names as a regular virtual
+   * network.
+   *
+   * @param zoning to derive virtual network from
+   */
+  protected void writeDerivedVirtualNetwork(Zoning zoning) {
+    var derivedVirtualNetwork = new DerivedVirtualNetwork(zoning);
+    if(!derivedVirtualNetwork.hasConnectoidEdges()){
+      LOGGER.info("IGNORE: Virtual network is empty and no connectoids with access zones available to derive it from");
+      return;
+    }
+    var virtualNetworkIdMapper = getComponentIdMappers().getVirtualNetworkIdMapper();
+
+    /* edges */
+    {
+      var edgesFileName = getSettings().getConnectoidEdgesFileName();
+      LOGGER.info(String.format("Persisting derived connectoid edges to: %s",
+          createFullPathFromFileName(edgesFileName).toAbsolutePath()));
+      var featureContext = PlanitDerivedConnectoidEdgeFeatureTypeContext.create(virtualNetworkIdMapper);
+      var featureType = GeoIoFeatureTypeBuilder.createSimpleZoningFeatureType(
+          featureContext, getDestinationCoordinateReferenceSystem(), edgesFileName);
+      writeGeometryLayerForEntity(
+          featureType,
+          featureContext,
+          "",
+          findDataStore(featureContext, createFullPathFromFileName(edgesFileName)),
+          edgesFileName, /* schema name = file name */
+          derivedVirtualNetwork.getConnectoidEdges());
+    }
+
+    /* segments */
+    {
+      var segmentsFileName = getSettings().getConnectoidSegmentsFileName();
+      LOGGER.info(String.format("Persisting derived connectoid segments to: %s",
+          createFullPathFromFileName(segmentsFileName).toAbsolutePath()));
+      var featureContext = PlanitDerivedConnectoidSegmentFeatureTypeContext.create(virtualNetworkIdMapper);
+      var featureType = GeoIoFeatureTypeBuilder.createSimpleZoningFeatureType(
+          featureContext, getDestinationCoordinateReferenceSystem(), segmentsFileName);
+      writeGeometryLayerForEntity(
+          featureType,
+          featureContext,
+          "",
+          findDataStore(featureContext, createFullPathFromFileName(segmentsFileName)),
+          segmentsFileName, /* schema name = file name */
+          derivedVirtualNetwork.getConnectoidSegments());
+    }
+  }
+
   /**
    * Write the Zoning entities eligible for persistence
    *
@@ -389,7 +446,7 @@ public class GeometryZoningWriter extends GeometryIoWriter<Zoning> implements Zo
     {
       var supportedFeatures =
           GeoIoFeatureTypeBuilder.createZoningFeatureContexts(
-              getPrimaryIdMapper(), getComponentIdMappers().getNetworkIdMappers());
+              getPrimaryIdMapper(), getComponentIdMappers().getNetworkIdMappers(), getMappedIdCache());
 
       /* feature types per layer */
       var geoFeatureTypesByPlanitEntity =
@@ -415,8 +472,8 @@ public class GeometryZoningWriter extends GeometryIoWriter<Zoning> implements Zo
 
     /* virtual network */
     if(getSettings().isPersistVirtualNetwork()){
-      if(zoning.getVirtualNetwork().isEmpty()){
-        LOGGER.info("IGNORE: Virtual network is empty, consider constructing integrated PLANit TransportModeNetwork before persisting, so virtual network is not empty");
+      if(zoning.getVirtualNetwork() == null || zoning.getVirtualNetwork().isEmpty()){
+        writeDerivedVirtualNetwork(zoning);
       }else{
         writeVirtualNetwork(zoning.getVirtualNetwork());
       }
@@ -463,6 +520,18 @@ public class GeometryZoningWriter extends GeometryIoWriter<Zoning> implements Zo
    */
 //  @Override
   public void write(Zoning zoning) {
+    exportZoning(zoning);
+  }
+
+  /**
+   * Write the zoning, see {@link #write(Zoning)}
+   *
+   * @param zoning to persist
+   * @return export result of the write, null when capturing a snapshot rather than writing
+   */
+  private GeoIoExportResult exportZoning(Zoning zoning) {
+
+    var writerEvent = beginWrite();
 
     validate(zoning);
 
@@ -472,11 +541,47 @@ public class GeometryZoningWriter extends GeometryIoWriter<Zoning> implements Zo
     /* logging */
     getSettings().logSettings();
 
-    /* perform actual persistence */
-    writeEntities(zoning);
+    try {
+      /* perform actual persistence */
+      runCancellable(() -> writeEntities(zoning));
+    }finally {
+      /* disposes of any registered data stores */
+      disposeDataStores();
+    }
+
+    return completeWrite(writerEvent, Zoning.class);
+  }
+
+  /**
+   * Write the zoning asynchronously on the default executor, see {@link #getDefaultAsyncExecutor()}
+   *
+   * @param zoning to persist
+   * @return future of the export result
+   */
+  public CompletableFuture<GeoIoExportResult> writeAsync(Zoning zoning) {
+    return writeAsync(zoning, getDefaultAsyncExecutor());
+  }
+
+  /**
+   * Write the zoning asynchronously, the writer should not be used for another write until the returned future completes
+   *
+   * @param zoning to persist
+   * @param executor to write on
+   * @return future of the export result, completed exceptionally when the write fails or is cancelled
+   */
+  public CompletableFuture<GeoIoExportResult> writeAsync(Zoning zoning, Executor executor) {
+    return supplyExportAsync(() -> exportZoning(zoning), executor);
+  }
 
-    /* disposes of any registered data stores */
-    GeoIODataStoreManager.reset();
+  /**
+   * Capture a snapshot of the zoning's layers, to be written afterwards while the zoning may change again, see
+   * {@link GeoIoExportSnapshot}
+   *
+   * @param zoning to capture
+   * @return captured snapshot
+   */
+  public GeoIoExportSnapshot captureSnapshot(Zoning zoning) {
+    return captureWriteSnapshot(() -> write(zoning));
   }
 
   /**
@@ -484,7 +589,7 @@ public class GeometryZoningWriter extends GeometryIoWriter<Zoning> implements Zo
    */
   @Override
   public void reset() {
-    GeoIODataStoreManager.reset();
+    disposeDataStores();
   }
   
   // GETTERS/SETTERS
@@ -0,0 +1,83 @@
+package org.goplanit.geoio.converter.zoning.derived;
+
+import org.goplanit.utils.graph.Vertex;
+import org.goplanit.utils.zoning.Connectoid;
+import org.goplanit.utils.zoning.Zone;
+
+/**
+ * Lightweight connectoid edge between a zone's centroid and the access vertex of one of its connectoids. Derived on the fly
+ * from the zoning for persistence purposes only, as an alternative to the connectoid edges of a virtual network that requires
+ * the integration of network and zoning.
+ *
+ * @author markr
+ */
+public class DerivedConnectoidEdge {
+
+  /** id of the edge */
+  private final long id;
+
+  /** connectoid the edge is derived from */
+  private final Connectoid connectoid;
+
+  /** access zone of the connectoid the edge is derived for */
+  private final Zone accessZone;
+
+  /**
+   * Constructor
+   *
+   * @param id of the edge
+   * @param connectoid the edge is derived from
+   * @param accessZone of the connectoid the edge is derived for
+   */
+  DerivedConnectoidEdge(long id, Connectoid connectoid, Zone accessZone){
+    this.id = id;
+    this.connectoid = connectoid;
+    this.accessZone = accessZone;
+  }
+
+  /**
+   * Id of the edge, unique across all derived edges of a zoning
+   *
+   * @return id
+   */
+  public long getId(){
+    return id;
+  }
+
+  /**
+   * Xml id of the edge, the id in string form
+   *
+   * @return xml id
+   */
+  public String getXmlId(){
+    return String.valueOf(id);
+  }
+
+  /**
+   * Vertex A, the centroid of the access zone
+   *
+   * @return vertex A
+   */
+  public Vertex getVertexA(){
+    return accessZone.getCentroid();
+  }
+
+  /**
+   * Vertex B, the access vertex of the connectoid
+   *
+   * @return vertex B
+   */
+  public Vertex getVertexB(){
+    return connectoid.getAccessVertex();
+  }
+
+  /**
+   * Length of the edge as defined on the connectoid for the access zone
+   *
+   * @return length in km, null if not defined
+   */
+  public Double getLengthKm(){
+    return connectoid.getLengthKm(accessZone).orElse(null);
+  }
+
+}
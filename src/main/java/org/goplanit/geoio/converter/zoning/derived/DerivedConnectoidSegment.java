@@ -0,0 +1,84 @@
+package org.goplanit.geoio.converter.zoning.derived;
+
+import org.goplanit.utils.graph.Vertex;
+
+/**
+ * Lightweight directional connectoid segment of a {@link DerivedConnectoidEdge}, derived on the fly for persistence
+ * purposes only
+ *
+ * @author markr
+ */
+public class DerivedConnectoidSegment {
+
+  /** parent edge */
+  private final DerivedConnectoidEdge parent;
+
+  /** direction of the segment relative to its parent */
+  private final boolean directionAb;
+
+  /**
+   * Constructor
+   *
+   * @param parent edge
+   * @param directionAb true when running from vertex A to B of the parent edge, false otherwise
+   */
+  DerivedConnectoidSegment(DerivedConnectoidEdge parent, boolean directionAb){
+    this.parent = parent;
+    this.directionAb = directionAb;
+  }
+
+  /**
+   * Id of the segment, unique across all derived segments of a zoning
+   *
+   * @return id
+   */
+  public long getId(){
+    return 2 * parent.getId() + (directionAb ? 0 : 1);
+  }
+
+  /**
+   * Xml id of the segment, the id in string form
+   *
+   * @return xml id
+   */
+  public String getXmlId(){
+    return String.valueOf(getId());
+  }
+
+  /**
+   * Parent edge of the segment
+   *
+   * @return parent edge
+   */
+  public DerivedConnectoidEdge getParent(){
+    return parent;
+  }
+
+  /**
+   * Direction of the segment
+   *
+   * @return true when running from vertex A to B of the parent edge, false otherwise
+   */
+  public boolean isDirectionAb(){
+    return directionAb;
+  }
+
+  /**
+   * Upstream vertex of the segment
+   *
+   * @return upstream vertex
+   */
+  public Vertex getUpstreamVertex(){
+    return directionAb ? parent.getVertexA() : parent.getVertexB();
+  }
+
+  /**
+   * Downstream vertex of the segment
+   *
+   * @return downstream vertex
+   */
+  public Vertex getDownstreamVertex(){
+    return directionAb ? parent.getVertexB() : parent.getVertexA();
+  }
+
+}
@@ -0,0 +1,157 @@
+package org.goplanit.geoio.converter.zoning.derived;
+
+import org.goplanit.utils.zoning.Connectoid;
+import org.goplanit.zoning.Zoning;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Derive the connectoid edges and segments of a zoning's virtual network directly from its connectoids, i.e., one edge per
+ * connectoid and access zone combination (connecting the zone's centroid to the connectoid's access vertex) with a segment in
+ * each direction. Edges and segments are generated on the fly each time they are iterated over and are not stored, nor is the
+ * zoning (or its virtual network) modified. This provides the information required to persist the virtual network without
+ * having to construct an integrated transport model network.
+ * <p>
+ *   Edges are generated for OD connectoids first, followed by transfer connectoids, so ids are consistent across iterations.
+ * </p>
+ *
+ * @author markr
+ */
+public class DerivedVirtualNetwork {
+
+  /** zoning to derive from */
+  private final Zoning zoning;
+
+  /**
+   * Iterator over all derived edges
+   */
+  private class EdgeIterator implements Iterator<DerivedConnectoidEdge> {
+
+    /** iterator over OD connectoids, followed by transfer connectoids */
+    private Iterator<? extends Connectoid> connectoidIter = zoning.getOdConnectoids().iterator();
+
+    /** flag indicating transfer connectoids are being iterated over */
+    private boolean transferConnectoids = false;
+
+    /** current connectoid */
+    private Connectoid connectoid = null;
+
+    /** iterator over access zones of current connectoid */
+    private Iterator<? extends org.goplanit.utils.zoning.Zone> accessZoneIter = null;
+
+    /** id of the next edge */
+    private long nextId = 0;
+
+    /**
+     * Advance to the next connectoid with remaining access zones if needed
+     *
+     * @return true when an access zone remains, false otherwise
+     */
+    private boolean advance(){
+      while(accessZoneIter == null || !accessZoneIter.hasNext()){
+        if(!connectoidIter.hasNext()){
+          if(transferConnectoids){
+            return false;
+          }
+          connectoidIter = zoning.getTransferConnectoids().iterator();
+          transferConnectoids = true;
+          continue;
+        }
+        connectoid = connectoidIter.next();
+        accessZoneIter = connectoid.iterator();
+      }
+      return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() {
+      return advance();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DerivedConnectoidEdge next() {
+      if(!advance()){
+        throw new NoSuchElementException();
+      }
+      return new DerivedConnectoidEdge(nextId++, connectoid, accessZoneIter.next());
+    }
+  }
+
+  /**
+   * Iterator over all derived segments, two per edge
+   */
+  private class SegmentIterator implements Iterator<DerivedConnectoidSegment> {
+
+    /** edges to derive segments for */
+    private final EdgeIterator edgeIter = new EdgeIterator();
+
+    /** edge for which the opposite direction segment is still to be provided, null otherwise */
+    private DerivedConnectoidEdge pendingEdge = null;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() {
+      return pendingEdge != null || edgeIter.hasNext();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DerivedConnectoidSegment next() {
+      if(pendingEdge != null){
+        var segment = new DerivedConnectoidSegment(pendingEdge, false);
+        pendingEdge = null;
+        return segment;
+      }
+      pendingEdge = edgeIter.next();
+      return new DerivedConnectoidSegment(pendingEdge, true);
+    }
+  }
+
+  /**
+   * Constructor
+   *
+   * @param zoning to derive virtual network from
+   */
+  public DerivedVirtualNetwork(Zoning zoning){
+    this.zoning = zoning;
+  }
+
+  /**
+   * Check if any edges can be derived
+   *
+   * @return true when at least one edge exists, false otherwise
+   */
+  public boolean hasConnectoidEdges(){
+    return getConnectoidEdges().iterator().hasNext();
+  }
+
+  /**
+   * Derived connectoid edges, generated upon iteration
+   *
+   * @return iterable over edges
+   */
+  public Iterable<DerivedConnectoidEdge> getConnectoidEdges(){
+    return EdgeIterator::new;
+  }
+
+  /**
+   * Derived connectoid segments, generated upon iteration
+   *
+   * @return iterable over segments
+   */
+  public Iterable<DerivedConnectoidSegment> getConnectoidSegments(){
+    return SegmentIterator::new;
+  }
+
+}
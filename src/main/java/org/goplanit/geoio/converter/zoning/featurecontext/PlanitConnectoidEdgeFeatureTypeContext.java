@@ -1,13 +1,13 @@
 package org.goplanit.geoio.converter.zoning.featurecontext;
 
+import org.geotools.geometry.jts.JTSFactoryFinder;
 import org.goplanit.converter.idmapping.VirtualNetworkIdMapper;
 import org.goplanit.geoio.util.PlanitEntityFeatureTypeContext;
 import org.goplanit.utils.graph.Vertex;
 import org.goplanit.utils.misc.Triple;
-import org.goplanit.utils.network.layer.macroscopic.MacroscopicLink;
-import org.goplanit.utils.network.layer.physical.Link;
-import org.goplanit.utils.network.layer.physical.Node;
 import org.goplanit.utils.network.virtual.ConnectoidEdge;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
 
 import java.util.List;
@@ -20,6 +20,38 @@ import java.util.function.Function;
  */
 public class PlanitConnectoidEdgeFeatureTypeContext extends PlanitEntityFeatureTypeContext<ConnectoidEdge> {
 
+  /** factory used to generate connectoid edge geometries */
+  private static final GeometryFactory GEOMETRY_FACTORY = JTSFactoryFinder.getGeometryFactory();
+
+  /**
+   * Create a straight line geometry between two vertices
+   *
+   * @param vertexA start of the line
+   * @param vertexB end of the line
+   * @return geometry, null when it cannot be generated due to missing vertex positions
+   */
+  public static LineString createStraightLine(Vertex vertexA, Vertex vertexB){
+    var positionA = vertexA.getPosition();
+    var positionB = vertexB.getPosition();
+    if(positionA == null || positionB == null){
+      return null;
+    }
+    return GEOMETRY_FACTORY.createLineString(new Coordinate[]{positionA.getCoordinate(), positionB.getCoordinate()});
+  }
+
+  /**
+   * Provide the geometry of a connectoid edge without modifying the edge. When the edge has no explicit geometry, a straight
+   * line from vertex A to vertex B is generated on the fly (and not stored on the edge)
+   *
+   * @param connectoidEdge to provide geometry for
+   * @return geometry, null when it cannot be generated due to missing vertex positions
+   */
+  public static LineString getOrGenerateGeometry(ConnectoidEdge connectoidEdge){
+    if(connectoidEdge.hasGeometry()){
+      return connectoidEdge.getGeometry();
+    }
+    return createStraightLine(connectoidEdge.getVertexA(), connectoidEdge.getVertexB());
+  }
 
   /**
    * The mapping from PLANIT connectoid edge instance to GIS attributes
@@ -39,7 +71,8 @@ public class PlanitConnectoidEdgeFeatureTypeContext extends PlanitEntityFeatureT
             Triple.of("length_km", "java.lang.Double", ConnectoidEdge::getLengthKm),
             Triple.of("node_a", "String", l -> virtualNetworkIdMapper.getVertexIdMapper().apply(l.getVertexA())),
             Triple.of("node_b", "String", l -> virtualNetworkIdMapper.getVertexIdMapper().apply(l.getVertexB())),
-            Triple.of(DEFAULT_GEOMETRY_ATTRIBUTE_KEY, "LineString", (Function<ConnectoidEdge, LineString>) ConnectoidEdge::getGeometry));
+            Triple.of(DEFAULT_GEOMETRY_ATTRIBUTE_KEY, "LineString",
+                (Function<ConnectoidEdge, LineString>) PlanitConnectoidEdgeFeatureTypeContext::getOrGenerateGeometry));
   }
 
   /**
@@ -2,19 +2,15 @@ package org.goplanit.geoio.converter.zoning.featurecontext;
 
 import org.goplanit.converter.idmapping.NetworkIdMapper;
 import org.goplanit.converter.idmapping.ZoningIdMapper;
+import org.goplanit.geoio.util.GeoIoMappedIdCache;
+import org.goplanit.geoio.util.ListAttributeEncoder;
 import org.goplanit.geoio.util.PlanitEntityFeatureTypeContext;
-import org.goplanit.utils.misc.IterableUtils;
 import org.goplanit.utils.misc.Triple;
 import org.goplanit.utils.mode.Mode;
 import org.goplanit.utils.zoning.Connectoid;
-import org.goplanit.utils.zoning.UndirectedConnectoid;
-import org.goplanit.utils.zoning.Zone;
 
-import java.util.Collection;
 import java.util.List;
-import java.util.function.BiFunction;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * Track contextual relevant information for PLANit connectoids that are persisted
@@ -30,19 +26,43 @@ public class PlanitConnectoidFeatureTypeContext<C extends Connectoid> extends Pl
    * @param <CC> Connectoid type
    * @param zoningIdMapper to apply
    * @param networkIdMapper to apply
+   * @param mappedIdCache to cache mapped ids in
+   * @param listEncoder to encode list valued attributes with
    * @return feature mapping
    */
   protected static <CC extends Connectoid> List<Triple<String,String, Function<CC, ? extends Object>>> createBaseFeatureDescription(
-      final ZoningIdMapper zoningIdMapper, final NetworkIdMapper networkIdMapper){
+      final ZoningIdMapper zoningIdMapper,
+      final NetworkIdMapper networkIdMapper,
+      final GeoIoMappedIdCache mappedIdCache,
+      final ListAttributeEncoder listEncoder){
 
-    /** take access zone and its access modes and convert it to a string of comma separated 'zone:mode' entries for persistence */
-    final BiFunction<Zone, Collection<Mode>, String> accessModesForZone2String = (accessZone, accessModes) ->
-        accessModes.stream().map(
-            m -> String.join(":", zoningIdMapper.getZoneIdMapper().apply(accessZone),networkIdMapper.getModeIdMapper().apply(m))).collect(Collectors.joining(","));
+    final var zoneIdMapper = mappedIdCache.cached(GeoIoMappedIdCache.ZONE, zoningIdMapper.getZoneIdMapper());
+    final var vertexIdMapper = mappedIdCache.cached(GeoIoMappedIdCache.VERTEX, networkIdMapper.getVertexIdMapper());
+    final Function<Mode, String> modeIdMapper = networkIdMapper.getModeIdMapper();
 
-    /** take access zone and its connectoid combination and convert it to 'zone:length' entry for persistence */
-    final BiFunction<Zone, Connectoid, String> accessZoneLengthString = (accessZone, connectoid) ->
-        String.join(":", zoningIdMapper.getZoneIdMapper().apply(accessZone), String.format("%.1f",connectoid.getLengthKm(accessZone).orElse(Double.NaN)));
+    /** take access zone and its access modes and append them as comma separated 'zone:mode' entries, or 'zone:ALL' for
+     * implicit modes. Note not ideal because we do not yet define anywhere what ALL means */
+    final Function<CC, String> accessModes2String = c -> listEncoder.encodeWith(c.getId(), "modes", c, (accessZone, buffer) -> {
+      final String zoneId = zoneIdMapper.apply(accessZone);
+      if(!c.hasExplicitlyAllowedModes(accessZone)){
+        buffer.append(zoneId).append(":ALL");
+        return;
+      }
+      boolean first = true;
+      for(var mode : c.getExplicitlyAllowedModes(accessZone)){
+        if(!first){
+          buffer.append(ListAttributeEncoder.DELIMITER);
+        }
+        buffer.append(zoneId).append(':').append(modeIdMapper.apply(mode));
+        first = false;
+      }
+    });
+
+    /** take access zones and their lengths and append them as comma separated 'zone:length' entries */
+    final Function<CC, String> accessZoneLengths2String = c -> listEncoder.encodeWith(c.getId(), "lengths_km", c, (accessZone, buffer) -> {
+      buffer.append(zoneIdMapper.apply(accessZone)).append(':');
+      ListAttributeEncoder.appendRounded(buffer, c.getLengthKm(accessZone).orElse(Double.NaN), 1);
+    });
 
     return List.of(
         Triple.of("mapped_id", "String", c -> zoningIdMapper.getConnectoidIdMapper().apply(c)),
@@ -50,15 +70,10 @@ public class PlanitConnectoidFeatureTypeContext<C extends Connectoid> extends Pl
         Triple.of("xml_id", "String", CC::getXmlId),
         Triple.of("ext_id", "String", CC::getExternalId),
         Triple.of("name", "String", CC::getName),
-        Triple.of("phys_node", "String", c -> networkIdMapper.getVertexIdMapper().apply(c.getAccessVertex())),
-        Triple.of("zones", "String", c -> c.getAccessZones().stream().map(z -> zoningIdMapper.getZoneIdMapper().apply(z)).collect(Collectors.joining(","))),
-        Triple.of("modes", "String",
-            c -> IterableUtils.asStream(c).map(accessZone -> c.hasExplicitlyAllowedModes(accessZone) ?
-                accessModesForZone2String.apply(accessZone, c.getExplicitlyAllowedModes(accessZone)) :
-                /* for implicit modes, all modes are allowed. Note not ideal because we do not yet define anywhere what ALL means */
-                String.join(":", zoningIdMapper.getZoneIdMapper().apply(accessZone), "ALL")).collect(Collectors.joining(","))),
-        Triple.of("lengths_km", "String",c -> IterableUtils.asStream(c).map(accessZone ->
-            accessZoneLengthString.apply(accessZone, c)).collect(Collectors.joining(",")))
+        Triple.of("phys_node", "String", c -> vertexIdMapper.apply(c.getAccessVertex())),
+        Triple.of("zones", "String", c -> listEncoder.encode(c.getId(), "zones", c.getAccessZones(), zoneIdMapper)),
+        Triple.of("modes", "String", accessModes2String),
+        Triple.of("lengths_km", "String", accessZoneLengths2String)
         );
   }
 
@@ -77,10 +92,29 @@ public class PlanitConnectoidFeatureTypeContext<C extends Connectoid> extends Pl
    * @param connectoidClass this context represents
    * @param zoningIdMapper id mapper to apply
    * @param networkIdMapper id mapper of parent physical network to apply
+   * @param mappedIdCache to cache mapped ids in
+   * @param listEncoder to encode list valued attributes with
+   */
+  private PlanitConnectoidFeatureTypeContext(
+      Class<C> connectoidClass,
+      final ZoningIdMapper zoningIdMapper,
+      final NetworkIdMapper networkIdMapper,
+      final GeoIoMappedIdCache mappedIdCache,
+      final ListAttributeEncoder listEncoder){
+    super(connectoidClass, createBaseFeatureDescription(zoningIdMapper, networkIdMapper, mappedIdCache, listEncoder), listEncoder);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param connectoidClass this context represents
+   * @param zoningIdMapper id mapper to apply
+   * @param networkIdMapper id mapper of parent physical network to apply
+   * @param mappedIdCache to cache mapped ids in
    */
   protected PlanitConnectoidFeatureTypeContext(
-      Class<C> connectoidClass, final ZoningIdMapper zoningIdMapper, final NetworkIdMapper networkIdMapper){
-    super(connectoidClass, createBaseFeatureDescription(zoningIdMapper, networkIdMapper));
+      Class<C> connectoidClass, final ZoningIdMapper zoningIdMapper, final NetworkIdMapper networkIdMapper, final GeoIoMappedIdCache mappedIdCache){
+    this(connectoidClass, zoningIdMapper, networkIdMapper, mappedIdCache, new ListAttributeEncoder());
   }
 
 
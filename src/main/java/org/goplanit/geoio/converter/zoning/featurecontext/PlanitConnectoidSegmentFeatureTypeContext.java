@@ -38,13 +38,15 @@ public class PlanitConnectoidSegmentFeatureTypeContext extends PlanitEntityFeatu
             Triple.of("ext_id", "String", ConnectoidSegment::getExternalId),
             Triple.of("parent_id", "String", cs -> virtualNetworkIdMapper.getConnectoidEdgeIdMapper().apply((ConnectoidEdge) cs.getParent())),
             Triple.of("cap_pcuh", "Float", ConnectoidSegment::getCapacityOrDefaultPcuH),    /* max flow in pcu per hour across all lanes */
-            Triple.of("geom_opp", "Boolean", cs -> !cs.isParentGeometryInSegmentDirection(true)),     /* does geometry run in opposite direction to travel direction */
+            Triple.of("geom_opp", "Boolean", cs -> cs.getParent().hasGeometry() ?   /* does geometry run in opposite direction to travel direction */
+                !cs.isParentGeometryInSegmentDirection(true) : !cs.isDirectionAb()),  /* generated geometry runs from A to B */
             Triple.of("vertx_up", "String", cs -> virtualNetworkIdMapper.getVertexIdMapper().apply(cs.getUpstreamVertex())),
             Triple.of("vertx_down", "String", cs -> virtualNetworkIdMapper.getVertexIdMapper().apply(cs.getDownstreamVertex())),
 
-            /* geometry taken from parent link */
+            /* geometry taken from parent edge, generated when absent */
             Triple.of(DEFAULT_GEOMETRY_ATTRIBUTE_KEY, "LineString",
-                    (Function<ConnectoidSegment, LineString>) cs -> cs.getParent().getGeometry()));
+                    (Function<ConnectoidSegment, LineString>) cs ->
+                        PlanitConnectoidEdgeFeatureTypeContext.getOrGenerateGeometry((ConnectoidEdge) cs.getParent())));
   }
 
   /**
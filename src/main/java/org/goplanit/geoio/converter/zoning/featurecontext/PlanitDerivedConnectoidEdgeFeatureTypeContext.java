@@ -0,0 +1,63 @@
+package org.goplanit.geoio.converter.zoning.featurecontext;
+
+import org.goplanit.converter.idmapping.VirtualNetworkIdMapper;
+import org.goplanit.geoio.converter.zoning.derived.DerivedConnectoidEdge;
+import org.goplanit.geoio.util.PlanitEntityFeatureTypeContext;
+import org.goplanit.utils.misc.Triple;
+import org.locationtech.jts.geom.LineString;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Track contextual relevant information for derived connectoid edges that are persisted in absence of a virtual network on the
+ * zoning. Attributes are identical to {@link PlanitConnectoidEdgeFeatureTypeContext}, so the resulting layer is interchangeable.
+ * Derived edges only exist during persistence, hence their mapped id is always their (generated) XML id.
+ *
+ * @author markr
+ */
+public class PlanitDerivedConnectoidEdgeFeatureTypeContext extends PlanitEntityFeatureTypeContext<DerivedConnectoidEdge> {
+
+  /**
+   * The mapping from derived connectoid edge instance to GIS attributes
+   *
+   * @param virtualNetworkIdMapper to apply to vertices
+   * @return feature mapping
+   */
+  private static List<Triple<String,String, Function<DerivedConnectoidEdge, ? extends Object>>> createFeatureDescription(
+      VirtualNetworkIdMapper virtualNetworkIdMapper){
+    return List.of(
+            Triple.of("mapped_id", "java.lang.String", DerivedConnectoidEdge::getXmlId),
+            Triple.of("id", "java.lang.Long", DerivedConnectoidEdge::getId),
+            Triple.of("link_id", "java.lang.Long", DerivedConnectoidEdge::getId),
+            Triple.of("xml_id", "String", DerivedConnectoidEdge::getXmlId),
+            Triple.of("ext_id", "String", e -> null),
+            Triple.of("name", "String", e -> null),
+            Triple.of("length_km", "java.lang.Double", DerivedConnectoidEdge::getLengthKm),
+            Triple.of("node_a", "String", e -> virtualNetworkIdMapper.getVertexIdMapper().apply(e.getVertexA())),
+            Triple.of("node_b", "String", e -> virtualNetworkIdMapper.getVertexIdMapper().apply(e.getVertexB())),
+            Triple.of(DEFAULT_GEOMETRY_ATTRIBUTE_KEY, "LineString",
+                (Function<DerivedConnectoidEdge, LineString>) e ->
+                    PlanitConnectoidEdgeFeatureTypeContext.createStraightLine(e.getVertexA(), e.getVertexB())));
+  }
+
+  /**
+   * Constructor
+   *
+   * @param virtualNetworkIdMapper id mapper to apply
+   */
+  protected PlanitDerivedConnectoidEdgeFeatureTypeContext(VirtualNetworkIdMapper virtualNetworkIdMapper){
+    super(DerivedConnectoidEdge.class, createFeatureDescription(virtualNetworkIdMapper));
+  }
+
+  /**
+   * Factory method
+   *
+   * @param virtualNetworkIdMapper to apply to referenced vertices when persisting
+   * @return created instance
+   */
+  public static PlanitDerivedConnectoidEdgeFeatureTypeContext create(VirtualNetworkIdMapper virtualNetworkIdMapper){
+    return new PlanitDerivedConnectoidEdgeFeatureTypeContext(virtualNetworkIdMapper);
+  }
+
+}
@@ -0,0 +1,66 @@
+package org.goplanit.geoio.converter.zoning.featurecontext;
+
+import org.goplanit.converter.idmapping.VirtualNetworkIdMapper;
+import org.goplanit.geoio.converter.zoning.derived.DerivedConnectoidSegment;
+import org.goplanit.geoio.util.PlanitEntityFeatureTypeContext;
+import org.goplanit.utils.misc.Triple;
+import org.locationtech.jts.geom.LineString;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Track contextual relevant information for derived connectoid segments that are persisted in absence of a virtual network on
+ * the zoning. Attributes are identical to {@link PlanitConnectoidSegmentFeatureTypeContext}, so the resulting layer is
+ * interchangeable. Derived segments have no capacity of their own, so their capacity is left empty.
+ *
+ * @author markr
+ */
+public class PlanitDerivedConnectoidSegmentFeatureTypeContext extends PlanitEntityFeatureTypeContext<DerivedConnectoidSegment> {
+
+  /**
+   * The mapping from derived connectoid segment instance to GIS attributes
+   *
+   * @param virtualNetworkIdMapper to apply to vertices
+   * @return feature mapping
+   */
+  private static List<Triple<String,String, Function<DerivedConnectoidSegment, ? extends Object>>> createFeatureDescription(
+      final VirtualNetworkIdMapper virtualNetworkIdMapper){
+    return List.of(
+            Triple.of("mapped_id", "java.lang.String", DerivedConnectoidSegment::getXmlId),
+            Triple.of("id", "java.lang.Long", DerivedConnectoidSegment::getId),
+            Triple.of("segment_id", "java.lang.Long", DerivedConnectoidSegment::getId),
+            Triple.of("xml_id", "String", DerivedConnectoidSegment::getXmlId),
+            Triple.of("ext_id", "String", cs -> null),
+            Triple.of("parent_id", "String", cs -> cs.getParent().getXmlId()),
+            Triple.of("cap_pcuh", "Float", cs -> null),
+            Triple.of("geom_opp", "Boolean", cs -> !cs.isDirectionAb()),  /* generated geometry runs from A to B */
+            Triple.of("vertx_up", "String", cs -> virtualNetworkIdMapper.getVertexIdMapper().apply(cs.getUpstreamVertex())),
+            Triple.of("vertx_down", "String", cs -> virtualNetworkIdMapper.getVertexIdMapper().apply(cs.getDownstreamVertex())),
+
+            /* geometry generated from parent edge */
+            Triple.of(DEFAULT_GEOMETRY_ATTRIBUTE_KEY, "LineString",
+                    (Function<DerivedConnectoidSegment, LineString>) cs -> PlanitConnectoidEdgeFeatureTypeContext.createStraightLine(
+                        cs.getParent().getVertexA(), cs.getParent().getVertexB())));
+  }
+
+  /**
+   * Constructor
+   *
+   * @param virtualNetworkIdMapper id mapper to apply
+   */
+  protected PlanitDerivedConnectoidSegmentFeatureTypeContext(final VirtualNetworkIdMapper virtualNetworkIdMapper){
+    super(DerivedConnectoidSegment.class, createFeatureDescription(virtualNetworkIdMapper));
+  }
+
+  /**
+   * Factory method
+   *
+   * @param virtualNetworkIdMapper to apply to referenced vertices when persisting
+   * @return created instance
+   */
+  public static PlanitDerivedConnectoidSegmentFeatureTypeContext create(final VirtualNetworkIdMapper virtualNetworkIdMapper){
+    return new PlanitDerivedConnectoidSegmentFeatureTypeContext(virtualNetworkIdMapper);
+  }
+
+}
@@ -2,6 +2,7 @@ package org.goplanit.geoio.converter.zoning.featurecontext;
 
 import org.goplanit.converter.idmapping.NetworkIdMapper;
 import org.goplanit.converter.idmapping.ZoningIdMapper;
+import org.goplanit.geoio.util.GeoIoMappedIdCache;
 import org.goplanit.utils.misc.Triple;
 import org.goplanit.utils.network.layer.macroscopic.MacroscopicLinkSegment;
 import org.goplanit.utils.network.layer.macroscopic.MacroscopicLinkSegmentType;
@@ -19,11 +20,13 @@ public class PlanitDirectedConnectoidFeatureTypeContext extends PlanitConnectoid
    * Add any additional features unique to directed connectoids (and not available in base description) to feature description
    *
    * @param networkIdMapper to use
+   * @param mappedIdCache to cache mapped ids in
    */
-  protected void appendDirectedConnectoidFeatureDescription(final NetworkIdMapper networkIdMapper){
+  protected void appendDirectedConnectoidFeatureDescription(final NetworkIdMapper networkIdMapper, final GeoIoMappedIdCache mappedIdCache){
+    final var linkSegmentIdMapper = mappedIdCache.cached(GeoIoMappedIdCache.LINK_SEGMENT, networkIdMapper.getLinkSegmentIdMapper());
     this.appendToFeatureTypeDescription(
         Triple.of("phys_segm", "String",
-          c -> networkIdMapper.getLinkSegmentIdMapper().apply((MacroscopicLinkSegment) c.getAccessLinkSegment())),
+          c -> linkSegmentIdMapper.apply((MacroscopicLinkSegment) c.getAccessLinkSegment())),
         Triple.of("segm2node", "String",
           c -> c.isNodeAccessDownstream() ? "PHYS_NODE_DOWNSTREAM" : "PHYS_NODE_UPSTREAM"));
   }
@@ -33,12 +36,14 @@ public class PlanitDirectedConnectoidFeatureTypeContext extends PlanitConnectoid
    *
    * @param zoningIdMapper id mapper to apply
    * @param networkIdMapper id mapper of parent physical network to apply
+   * @param mappedIdCache to cache mapped ids in
    */
-  protected PlanitDirectedConnectoidFeatureTypeContext(final ZoningIdMapper zoningIdMapper, final NetworkIdMapper networkIdMapper){
-    super(DirectedConnectoid.class, zoningIdMapper, networkIdMapper);
+  protected PlanitDirectedConnectoidFeatureTypeContext(
+      final ZoningIdMapper zoningIdMapper, final NetworkIdMapper networkIdMapper, final GeoIoMappedIdCache mappedIdCache){
+    super(DirectedConnectoid.class, zoningIdMapper, networkIdMapper, mappedIdCache);
 
     /* add od zone specific attributes */
-    appendDirectedConnectoidFeatureDescription(networkIdMapper);
+    appendDirectedConnectoidFeatureDescription(networkIdMapper, mappedIdCache);
 
     /* finish with geometry */
     appendToFeatureTypeDescription(createGeometryFeatureDescription());
@@ -49,11 +54,12 @@ public class PlanitDirectedConnectoidFeatureTypeContext extends PlanitConnectoid
    *
    * @param zoningIdMapper id mapper to apply
    * @param networkIdMapper id mapper of parent physical network to apply
+   * @param mappedIdCache to cache mapped ids in
    * @return created instance
    */
   public static PlanitDirectedConnectoidFeatureTypeContext create(
-      final ZoningIdMapper zoningIdMapper, final NetworkIdMapper networkIdMapper){
-    return new PlanitDirectedConnectoidFeatureTypeContext(zoningIdMapper, networkIdMapper);
+      final ZoningIdMapper zoningIdMapper, final NetworkIdMapper networkIdMapper, final GeoIoMappedIdCache mappedIdCache){
+    return new PlanitDirectedConnectoidFeatureTypeContext(zoningIdMapper, networkIdMapper, mappedIdCache);
   }
 
 }
@@ -2,6 +2,7 @@ package org.goplanit.geoio.converter.zoning.featurecontext;
 
 import org.goplanit.converter.idmapping.NetworkIdMapper;
 import org.goplanit.converter.idmapping.ZoningIdMapper;
+import org.goplanit.geoio.util.GeoIoMappedIdCache;
 import org.goplanit.utils.zoning.UndirectedConnectoid;
 
 /**
@@ -23,9 +24,11 @@ public class PlanitUndirectedConnectoidFeatureTypeContext extends PlanitConnecto
    *
    * @param zoningIdMapper id mapper to apply
    * @param networkIdMapper id mapper of parent physical network to apply
+   * @param mappedIdCache to cache mapped ids in
    */
-  protected PlanitUndirectedConnectoidFeatureTypeContext(final ZoningIdMapper zoningIdMapper, final NetworkIdMapper networkIdMapper){
-    super(UndirectedConnectoid.class, zoningIdMapper, networkIdMapper);
+  protected PlanitUndirectedConnectoidFeatureTypeContext(
+      final ZoningIdMapper zoningIdMapper, final NetworkIdMapper networkIdMapper, final GeoIoMappedIdCache mappedIdCache){
+    super(UndirectedConnectoid.class, zoningIdMapper, networkIdMapper, mappedIdCache);
 
     /* add od zone specific attributes */
     appendUndirectedConnectoidFeatureDescription();
@@ -39,11 +42,12 @@ public class PlanitUndirectedConnectoidFeatureTypeContext extends PlanitConnecto
    *
    * @param zoningIdMapper id mapper to apply
    * @param networkIdMapper id mapper of parent physical network to apply
+   * @param mappedIdCache to cache mapped ids in
    * @return created instance
    */
   public static PlanitUndirectedConnectoidFeatureTypeContext create(
-      final ZoningIdMapper zoningIdMapper, final NetworkIdMapper networkIdMapper){
-    return new PlanitUndirectedConnectoidFeatureTypeContext(zoningIdMapper, networkIdMapper);
+      final ZoningIdMapper zoningIdMapper, final NetworkIdMapper networkIdMapper, final GeoIoMappedIdCache mappedIdCache){
+    return new PlanitUndirectedConnectoidFeatureTypeContext(zoningIdMapper, networkIdMapper, mappedIdCache);
   }
 
 }
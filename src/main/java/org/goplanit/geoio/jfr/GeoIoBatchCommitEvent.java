@@ -0,0 +1,17 @@
+package org.goplanit.geoio.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Duration of writing a batch of features to a layer file, i.e., a chunk of extracted entities handed to the feature writer
+ * of a layer, shard or tile. The byte count is the estimated size of the batch's records
+ *
+ * @author markr
+ */
+@Name("org.goplanit.geoio.BatchCommit")
+@Label("GeoIO Batch Commit")
+@Description("Write of a batch of features to a layer file")
+public class GeoIoBatchCommitEvent extends GeoIoEvent {
+}
@@ -0,0 +1,43 @@
+package org.goplanit.geoio.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Duration of creating or disposing of a data store
+ *
+ * @author markr
+ */
+@Name("org.goplanit.geoio.DataStore")
+@Label("GeoIO Data Store")
+@Description("Creation or disposal of a data store")
+public class GeoIoDataStoreEvent extends GeoIoEvent {
+
+  /** action value for creation */
+  public static final String CREATE = "create";
+
+  /** action value for disposal */
+  public static final String DISPOSE = "dispose";
+
+  /** the action, create or dispose */
+  @Label("Action")
+  protected String action;
+
+  /** location of the data store */
+  @Label("Location")
+  protected String location;
+
+  /**
+   * Set the action and location
+   *
+   * @param action {@link #CREATE} or {@link #DISPOSE}
+   * @param location of the data store, may be null
+   * @return this event
+   */
+  public GeoIoDataStoreEvent setAction(String action, Object location){
+    this.action = action;
+    this.location = location == null ? null : location.toString();
+    return this;
+  }
+}
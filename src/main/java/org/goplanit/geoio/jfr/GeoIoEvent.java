@@ -0,0 +1,87 @@
+package org.goplanit.geoio.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base of the Java Flight Recorder events emitted by GeoIO, so exports can be correlated with GC, I/O and CPU activity in the
+ * same recording. Events are only populated and committed when enabled in a running recording, e.g.,
+ * {@code -XX:StartFlightRecording:settings=profile}. Otherwise, their cost is limited to a (scalar replaced) allocation and
+ * a check.
+ * <p>
+ *   Fields that are not known for a particular event remain unset.
+ * </p>
+ *
+ * @author markr
+ */
+@Category({"PLANit", "GeoIO"})
+@StackTrace(false)
+public abstract class GeoIoEvent extends Event {
+
+  /** PLANit entity (or container) class persisted */
+  @Label("Entity Class")
+  @Description("PLANit entity class, or container class for writer events")
+  protected String entityClass;
+
+  /** layer (schema name) concerned */
+  @Label("Layer")
+  @Description("Schema name of the layer")
+  protected String layerId;
+
+  /** number of features */
+  @Label("Features")
+  protected long featureCount;
+
+  /** number of bytes */
+  @Label("Bytes")
+  @DataAmount
+  protected long byteCount;
+
+  /**
+   * Set the entity class
+   *
+   * @param entityClass to set, may be null
+   * @return this event
+   */
+  public GeoIoEvent setEntityClass(Class<?> entityClass){
+    this.entityClass = entityClass == null ? null : entityClass.getName();
+    return this;
+  }
+
+  /**
+   * Set the layer
+   *
+   * @param layerId to set
+   * @return this event
+   */
+  public GeoIoEvent setLayerId(String layerId){
+    this.layerId = layerId;
+    return this;
+  }
+
+  /**
+   * Set the number of features
+   *
+   * @param featureCount to set
+   * @return this event
+   */
+  public GeoIoEvent setFeatureCount(long featureCount){
+    this.featureCount = featureCount;
+    return this;
+  }
+
+  /**
+   * Set the number of bytes
+   *
+   * @param byteCount to set
+   * @return this event
+   */
+  public GeoIoEvent setByteCount(long byteCount){
+    this.byteCount = byteCount;
+    return this;
+  }
+}
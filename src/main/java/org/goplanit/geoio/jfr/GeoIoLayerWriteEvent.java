@@ -0,0 +1,16 @@
+package org.goplanit.geoio.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Duration of writing a single layer, from extracting the first entity until all of its files are finalised
+ *
+ * @author markr
+ */
+@Name("org.goplanit.geoio.LayerWrite")
+@Label("GeoIO Layer Write")
+@Description("Write of the features of a single GeoIO layer")
+public class GeoIoLayerWriteEvent extends GeoIoEvent {
+}
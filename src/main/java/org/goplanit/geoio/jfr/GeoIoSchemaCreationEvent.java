@@ -0,0 +1,31 @@
+package org.goplanit.geoio.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Duration of registering a feature type schema on a data store
+ *
+ * @author markr
+ */
+@Name("org.goplanit.geoio.SchemaCreation")
+@Label("GeoIO Schema Creation")
+@Description("Creation of a feature type schema on a data store")
+public class GeoIoSchemaCreationEvent extends GeoIoEvent {
+
+  /** number of attributes of the schema */
+  @Label("Attributes")
+  protected int attributeCount;
+
+  /**
+   * Set the number of attributes
+   *
+   * @param attributeCount to set
+   * @return this event
+   */
+  public GeoIoSchemaCreationEvent setAttributeCount(int attributeCount){
+    this.attributeCount = attributeCount;
+    return this;
+  }
+}
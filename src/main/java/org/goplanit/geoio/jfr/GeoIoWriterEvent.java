@@ -0,0 +1,38 @@
+package org.goplanit.geoio.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Duration of a GeoIO writer persisting a PLANit container (network, zoning, service network, routed services), from start
+ * to end of the write, with the total number of features and bytes of the layers written
+ *
+ * @author markr
+ */
+@Name("org.goplanit.geoio.Writer")
+@Label("GeoIO Writer")
+@Description("Write of a PLANit container by a GeoIO writer")
+public class GeoIoWriterEvent extends GeoIoEvent {
+
+  /** writer class */
+  @Label("Writer")
+  protected String writer;
+
+  /** output directory */
+  @Label("Output Directory")
+  protected String outputDirectory;
+
+  /**
+   * Set the writer
+   *
+   * @param writer class to set
+   * @param outputDirectory of the writer
+   * @return this event
+   */
+  public GeoIoWriterEvent setWriter(Class<?> writer, String outputDirectory){
+    this.writer = writer.getName();
+    this.outputDirectory = outputDirectory;
+    return this;
+  }
+}
@@ -3,22 +3,37 @@ package org.goplanit.geoio.util;
 import org.apache.commons.io.FilenameUtils;
 import org.geotools.data.DataStore;
 import org.geotools.data.FileDataStoreFinder;
+import org.goplanit.geoio.jfr.GeoIoDataStoreEvent;
+import org.goplanit.geoio.jfr.GeoIoSchemaCreationEvent;
 import org.goplanit.utils.exceptions.PlanItRunTimeException;
 import org.goplanit.utils.misc.Pair;
 import org.goplanit.utils.misc.UrlUtils;
 import org.goplanit.utils.mode.Mode;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Lineal;
+import org.locationtech.jts.geom.Polygonal;
+import org.locationtech.jts.geom.Puntal;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
 import org.opengis.feature.simple.SimpleFeatureType;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 /**
- * Utility class that manages data store connections and related functionality
+ * Utility class that manages data store connections and related functionality. Data stores are registered per PLANit entity
+ * class, so different writers (each persisting their own entity classes) may use the manager concurrently
  */
 public final class GeoIODataStoreManager {
 
@@ -26,21 +41,41 @@ public final class GeoIODataStoreManager {
   private static final Logger LOGGER = Logger.getLogger(GeoIODataStoreManager.class.getCanonicalName());
 
   /** Track datastores per type of PLANit entity that we might persist by their most specific class signature */
-  private static final Map<Class<?>, DataStore> dataStoreMap = new HashMap<>();
+  private static final Map<Class<?>, DataStore> dataStoreMap = new ConcurrentHashMap<>();
 
   /** Track datastores per type of PLANit entity (for which we have multiple entries differentiated by geometry type) that we might persist by their most specific class signature */
-  private static final Map<Pair<Class<?>,Class<? extends Geometry>>, DataStore> dataStoreMapGeoType = new HashMap<>();
+  private static final Map<Pair<Class<?>,Class<? extends Geometry>>, DataStore> dataStoreMapGeoType = new ConcurrentHashMap<>();
 
   /** Track datastores per type of PLANit entity (for which we have multiple entries differentiated by mode) that we might persist by their most specific class signature */
-  private static final Map<Pair<Class<?>, Mode>, DataStore> dataStoreMapMode = new HashMap<>();
+  private static final Map<Pair<Class<?>, Mode>, DataStore> dataStoreMapMode = new ConcurrentHashMap<>();
 
   /**
-   * Create a datastore for the given file location
+   * Remove all data stores of the given map whose key matches the predicate
+   *
+   * @param <K> key type
+   * @param dataStores to remove matching entries of
+   * @param keyFilter to apply
+   * @param onRemoval applied to each removed data store, e.g., to dispose of it
+   */
+  private static <K> void removeDataStores(Map<K, DataStore> dataStores, Predicate<K> keyFilter, Consumer<DataStore> onRemoval){
+    var entryIter = dataStores.entrySet().iterator();
+    while(entryIter.hasNext()){
+      var entry = entryIter.next();
+      if(keyFilter.test(entry.getKey())){
+        onRemoval.accept(entry.getValue());
+        entryIter.remove();
+      }
+    }
+  }
+
+  /**
+   * Create a datastore for the given file location without registering it on the manager, the caller is responsible for
+   * disposing of it
    *
    * @param outputFileNameWithPath to use
    * @return data store created, null if not possible
    */
-  protected static DataStore createDataStore(Path outputFileNameWithPath){
+  public static DataStore createDataStore(Path outputFileNameWithPath){
     /* factory based on extension, implicit file type choice */
     String fileType = FilenameUtils.getExtension(outputFileNameWithPath.toAbsolutePath().toString());
     var factory = FileDataStoreFinder.getDataStoreFactory(fileType);
@@ -49,11 +84,34 @@ public final class GeoIODataStoreManager {
     }
     Map map = Collections.singletonMap( "url", UrlUtils.createFromLocalPath(outputFileNameWithPath));
 
+    var event = new GeoIoDataStoreEvent();
+    event.begin();
     try {
       return factory.createNewDataStore(map);
     }catch (Exception e){
       LOGGER.severe("Cause: "+ (e.getMessage()));
       return null;
+    }finally {
+      if(event.shouldCommit()){
+        event.setAction(GeoIoDataStoreEvent.CREATE, outputFileNameWithPath.toAbsolutePath());
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * Dispose of a data store
+   *
+   * @param dataStore to dispose of
+   */
+  public static void dispose(DataStore dataStore){
+    var event = new GeoIoDataStoreEvent();
+    event.begin();
+    dataStore.dispose();
+    if(event.shouldCommit()){
+      var info = dataStore.getInfo();
+      event.setAction(GeoIoDataStoreEvent.DISPOSE, info == null ? null : info.getSource());
+      event.commit();
     }
   }
 
@@ -176,41 +234,272 @@ public final class GeoIODataStoreManager {
    * Reset the manager and remove any registered data stores
    */
   public static void reset(){
-    dataStoreMap.values().forEach(ds -> ds.dispose());
-    dataStoreMap.clear();
-    dataStoreMapGeoType.values().forEach(ds -> ds.dispose());
-    dataStoreMapGeoType.clear();
-    dataStoreMapMode.values().forEach(ds -> ds.dispose());
-    dataStoreMapMode.clear();
+    removeDataStores(dataStoreMap, k -> true, GeoIODataStoreManager::dispose);
+    removeDataStores(dataStoreMapGeoType, k -> true, GeoIODataStoreManager::dispose);
+    removeDataStores(dataStoreMapMode, k -> true, GeoIODataStoreManager::dispose);
+  }
+
+  /**
+   * Remove (and dispose) only the registered data stores of the given PLANit entity classes, leaving data stores of other
+   * classes, possibly in use by other writers, untouched
+   *
+   * @param dataStoreReferenceClasses the reference classes to remove data stores for
+   */
+  public static void reset(Collection<Class<?>> dataStoreReferenceClasses){
+    removeDataStores(dataStoreMap, dataStoreReferenceClasses::contains, GeoIODataStoreManager::dispose);
+    removeDataStores(dataStoreMapGeoType, k -> dataStoreReferenceClasses.contains(k.first()), GeoIODataStoreManager::dispose);
+    removeDataStores(dataStoreMapMode, k -> dataStoreReferenceClasses.contains(k.first()), GeoIODataStoreManager::dispose);
+  }
+
+  /**
+   * Remove the registered data stores of the given PLANit entity classes without disposing of them, so they remain usable
+   * while new data stores can be registered for the same classes. The caller becomes responsible for disposing of them
+   *
+   * @param dataStoreReferenceClasses the reference classes to detach data stores for
+   * @return detached data stores
+   */
+  public static List<DataStore> detach(Collection<Class<?>> dataStoreReferenceClasses){
+    var detached = new ArrayList<DataStore>();
+    removeDataStores(dataStoreMap, dataStoreReferenceClasses::contains, detached::add);
+    removeDataStores(dataStoreMapGeoType, k -> dataStoreReferenceClasses.contains(k.first()), detached::add);
+    removeDataStores(dataStoreMapMode, k -> dataStoreReferenceClasses.contains(k.first()), detached::add);
+    return detached;
+  }
+
+  /**
+   * Files of a layer in the given directory, i.e., its shape file components, row and column parts and side tables, all of
+   * which start with the schema name followed by either a '.' or '_'
+   *
+   * @param directory to search
+   * @param schemaName of the layer
+   * @return files found, empty when the directory does not exist
+   */
+  public static List<Path> findLayerFiles(Path directory, String schemaName){
+    if(!Files.isDirectory(directory)){
+      return List.of();
+    }
+    try(var files = Files.list(directory)){
+      return files.filter(file -> {
+        var fileName = file.getFileName().toString();
+        return fileName.startsWith(schemaName + ".") || fileName.startsWith(schemaName + "_");
+      }).collect(Collectors.toList());
+    }catch (IOException e){
+      var exception = new PlanItRunTimeException("Unable to list files of layer %s in %s", schemaName, directory.toString());
+      exception.initCause(e);
+      throw exception;
+    }
+  }
+
+  /**
+   * Delete the files of a layer in the given directory, see {@link #findLayerFiles(Path, String)}. Data stores on the layer
+   * should be disposed of first
+   *
+   * @param directory to delete from
+   * @param schemaName of the layer
+   * @return number of files deleted
+   */
+  public static int deleteLayerFiles(Path directory, String schemaName){
+    int deleted = 0;
+    for(var file : findLayerFiles(directory, schemaName)){
+      try {
+        if(Files.deleteIfExists(file)){
+          ++deleted;
+        }
+      }catch (IOException e){
+        LOGGER.warning(String.format("Unable to delete %s: %s", file.toAbsolutePath(), e.getMessage()));
+      }
+    }
+    return deleted;
+  }
+
+  /**
+   * Find the schema registered on the data store under the given name
+   *
+   * @param dataStore to search
+   * @param typeName of the schema
+   * @return schema, null if not present
+   */
+  private static SimpleFeatureType findSchema(DataStore dataStore, String typeName){
+    try{
+      return dataStore.getSchema(typeName);
+    }catch (Exception e){
+      /* thrown when not present */
+      return null;
+    }
+  }
+
+  /**
+   * Dimension of a geometry binding irrespective of it being a single or multi geometry, since file formats may store
+   * single geometries as their multi variant, e.g., line strings as multi line strings in shape files
+   *
+   * @param geometryBinding to determine dimension for
+   * @return 0 for points, 1 for lines, 2 for polygons, -1 otherwise
+   */
+  private static int getGeometryDimension(Class<?> geometryBinding){
+    if(Puntal.class.isAssignableFrom(geometryBinding)){
+      return 0;
+    }
+    if(Lineal.class.isAssignableFrom(geometryBinding)){
+      return 1;
+    }
+    if(Polygonal.class.isAssignableFrom(geometryBinding)){
+      return 2;
+    }
+    return -1;
+  }
+
+  /**
+   * Check if an attribute of an existing schema is able to hold the values of the requested attribute. Bindings are compatible
+   * when equal or when both are numeric, since formats may widen or narrow numeric types. Attribute names are compatible when
+   * equal or when the existing name is the requested name truncated by the format.
+   *
+   * @param existing attribute
+   * @param requested attribute
+   * @return true when compatible, false otherwise
+   */
+  private static boolean isCompatible(AttributeDescriptor existing, AttributeDescriptor requested){
+    var existingBinding = existing.getType().getBinding();
+    var requestedBinding = requested.getType().getBinding();
+    if(existing instanceof GeometryDescriptor || requested instanceof GeometryDescriptor){
+      return existing instanceof GeometryDescriptor && requested instanceof GeometryDescriptor &&
+          (existingBinding.isAssignableFrom(requestedBinding) ||
+              getGeometryDimension(existingBinding) == getGeometryDimension(requestedBinding));
+    }
+
+    var existingName = existing.getLocalName();
+    var requestedName = requested.getLocalName();
+    if(!existingName.equals(requestedName) && !requestedName.startsWith(existingName)){
+      return false;
+    }
+    return existingBinding.equals(requestedBinding) ||
+        (Number.class.isAssignableFrom(existingBinding) && Number.class.isAssignableFrom(requestedBinding));
+  }
+
+  /**
+   * Collect the non-geometry attributes of a schema in order. Formats do not necessarily retain the position of the geometry,
+   * e.g., shape files always store it first, so only the relative order of the other attributes is meaningful
+   *
+   * @param schema to collect from
+   * @return non-geometry attributes in schema order
+   */
+  private static List<AttributeDescriptor> getNonGeometryDescriptors(SimpleFeatureType schema){
+    return schema.getAttributeDescriptors().stream().filter(descriptor -> !(descriptor instanceof GeometryDescriptor)).collect(Collectors.toList());
+  }
+
+  /**
+   * Validate that the existing schema can be appended to with features of the requested schema, i.e., compatible geometries
+   * and the same number of non-geometry attributes in the same order with compatible names and types. The position of the
+   * geometry attribute is ignored
+   *
+   * @param existing schema on data store
+   * @param requested schema to append with
+   */
+  private static void validateSchemaCompatibility(SimpleFeatureType existing, SimpleFeatureType requested){
+    var existingGeometry = existing.getGeometryDescriptor();
+    var requestedGeometry = requested.getGeometryDescriptor();
+    if((existingGeometry == null) != (requestedGeometry == null) ||
+        (existingGeometry != null && !isCompatible(existingGeometry, requestedGeometry))){
+      throw new PlanItRunTimeException("Unable to append to %s, existing geometry %s incompatible with requested geometry %s",
+          existing.getTypeName(),
+          existingGeometry == null ? "none" : existingGeometry.getType().getBinding().getSimpleName(),
+          requestedGeometry == null ? "none" : requestedGeometry.getType().getBinding().getSimpleName());
+    }
+
+    var existingAttributes = getNonGeometryDescriptors(existing);
+    var requestedAttributes = getNonGeometryDescriptors(requested);
+    if(existingAttributes.size() != requestedAttributes.size()){
+      throw new PlanItRunTimeException("Unable to append to %s, existing schema has %d non-geometry attributes, requested schema %d",
+          existing.getTypeName(), existingAttributes.size(), requestedAttributes.size());
+    }
+    for(int index = 0; index < existingAttributes.size(); ++index){
+      var existingAttribute = existingAttributes.get(index);
+      var requestedAttribute = requestedAttributes.get(index);
+      if(!isCompatible(existingAttribute, requestedAttribute)){
+        throw new PlanItRunTimeException("Unable to append to %s, existing attribute %s (%s) incompatible with requested attribute %s (%s)",
+            existing.getTypeName(),
+            existingAttribute.getLocalName(), existingAttribute.getType().getBinding().getSimpleName(),
+            requestedAttribute.getLocalName(), requestedAttribute.getType().getBinding().getSimpleName());
+      }
+    }
   }
 
   /**
-   * Given a feature, register it on the datastore if not already available
+   * Map the attribute names of a requested schema onto the names used by a compatible existing schema on the data store,
+   * see {@link #registerFeatureOnDataStore(DataStore, SimpleFeatureType, boolean)}. Formats may truncate names or move
+   * the geometry, so values of the requested attributes are to be set under the returned names when appending
+   *
+   * @param dataStore holding the existing schema
+   * @param requested schema that is appended with
+   * @return existing attribute names aligned with the attribute order of the requested schema
+   */
+  public static String[] getAppendAttributeNames(DataStore dataStore, SimpleFeatureType requested){
+    var existing = findSchema(dataStore, requested.getTypeName());
+    PlanItRunTimeException.throwIfNull(existing, String.format("No existing schema %s to append to on datastore", requested.getTypeName()));
+    validateSchemaCompatibility(existing, requested);
+
+    var existingAttributes = getNonGeometryDescriptors(existing).iterator();
+    var attributeNames = new String[requested.getAttributeCount()];
+    for(int index = 0; index < attributeNames.length; ++index){
+      attributeNames[index] = requested.getDescriptor(index) instanceof GeometryDescriptor ?
+          existing.getGeometryDescriptor().getLocalName() : existingAttributes.next().getLocalName();
+    }
+    return attributeNames;
+  }
+
+  /**
+   * Given a feature, register it on the datastore if not already available, otherwise overwrite the existing one
    *
    * @param dataStore to register on
    * @param feature feature to register
    */
   public static void registerFeatureOnDataStore(DataStore dataStore, SimpleFeatureType feature) {
+    registerFeatureOnDataStore(dataStore, feature, false);
+  }
+
+  /**
+   * Given a feature, register it on the datastore if not already available. When already available, either overwrite it or,
+   * when appending, validate that the existing schema is compatible with the feature so features can be appended to it
+   *
+   * @param dataStore to register on
+   * @param feature feature to register
+   * @param append when true retain a compatible existing schema, otherwise overwrite it
+   * @return true when an existing schema is retained to append to, false when the schema is new or overwritten
+   */
+  public static boolean registerFeatureOnDataStore(DataStore dataStore, SimpleFeatureType feature, boolean append) {
     PlanItRunTimeException.throwIfNull(feature, "Feature type null, unable to register on datastore, this shouldn't happen");
     PlanItRunTimeException.throwIfNull(dataStore, "Data store null, unable to register feature on datastore, this shouldn't happen");
 
-    try{
-      /* trigger exception when not available to register schema once */
-      var alreadyAvailable = dataStore.getSchema(feature.getName());
-      if(alreadyAvailable != null){
-        LOGGER.info(String.format("OVERWRITE datastore for feature %s already present, overwriting", feature.getTypeName()));
-        dataStore.removeSchema(feature.getTypeName());
-        dataStore.getSchema(feature.getTypeName());
-        return;
+    var alreadyAvailable = findSchema(dataStore, feature.getTypeName());
+    if(alreadyAvailable != null){
+      if(append){
+        validateSchemaCompatibility(alreadyAvailable, feature);
+        LOGGER.info(String.format("APPEND to existing datastore for feature %s", feature.getTypeName()));
+        return true;
       }
-    }catch (Exception e){
-      /* configure the datastore for the chosen feature type schema, so it can be populated */
+
+      LOGGER.info(String.format("OVERWRITE datastore for feature %s already present, overwriting", feature.getTypeName()));
       try {
-        dataStore.createSchema(feature);
-      } catch (IOException ex) {
-        LOGGER.severe(ex.getMessage());
-        throw new PlanItRunTimeException("Unable to register schema on datastore");
+        dataStore.removeSchema(feature.getTypeName());
+        dataStore.getSchema(feature.getTypeName());
+        return false;
+      }catch (Exception e){
+        /* removed, so register anew below */
       }
     }
+
+    /* configure the datastore for the chosen feature type schema, so it can be populated */
+    var event = new GeoIoSchemaCreationEvent();
+    event.begin();
+    try {
+      dataStore.createSchema(feature);
+    } catch (IOException ex) {
+      LOGGER.severe(ex.getMessage());
+      throw new PlanItRunTimeException("Unable to register schema on datastore");
+    }
+    if(event.shouldCommit()){
+      event.setAttributeCount(feature.getAttributeCount()).setLayerId(feature.getTypeName());
+      event.commit();
+    }
+    return false;
   }
 }
@@ -0,0 +1,298 @@
+package org.goplanit.geoio.util;
+
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Custom attribute added to the layers of a PLANit entity type on top of the attributes GeoIO persists by default, e.g., a
+ * volume/capacity ratio on link segments. Registered on the writer settings, see
+ * {@link GeoIoWriterSettings#addAttributeExtension(GeoIoAttributeExtension)}, and applied to all layers of the entity class
+ * it is registered for, including layers of its subtypes.
+ * <p>
+ *   Attribute values are either computed per entity, see {@link #create(Class, String, String, Function)}, or per chunk of
+ *   entities filling a primitive column in a single call, see {@link #createDoubleColumn(Class, String, DoubleColumnFunction)},
+ *   {@link #createLongColumn(Class, String, LongColumnFunction)} and {@link #createIntColumn(Class, String, IntColumnFunction)}.
+ *   The latter avoid the per entity overhead and, with parallel attribute extraction, are invoked in parallel on slices of
+ *   each chunk. So, column functions must be thread safe and only fill the column positions of the entities they are given.
+ * </p>
+ *
+ * @param <T> type of PLANit entity
+ * @author markr
+ */
+public final class GeoIoAttributeExtension<T> {
+
+  /**
+   * Computes a double column for a chunk of entities, NaN values are persisted as null
+   *
+   * @param <T> type of PLANit entity
+   */
+  @FunctionalInterface
+  public interface DoubleColumnFunction<T> {
+
+    /**
+     * Fill the column, position i holding the value of the i-th entity
+     *
+     * @param entities to compute values for
+     * @param column to fill, of the same size as entities
+     */
+    void fill(List<? extends T> entities, double[] column);
+  }
+
+  /**
+   * Computes a long column for a chunk of entities
+   *
+   * @param <T> type of PLANit entity
+   */
+  @FunctionalInterface
+  public interface LongColumnFunction<T> {
+
+    /**
+     * Fill the column, position i holding the value of the i-th entity
+     *
+     * @param entities to compute values for
+     * @param column to fill, of the same size as entities
+     */
+    void fill(List<? extends T> entities, long[] column);
+  }
+
+  /**
+   * Computes an int column for a chunk of entities
+   *
+   * @param <T> type of PLANit entity
+   */
+  @FunctionalInterface
+  public interface IntColumnFunction<T> {
+
+    /**
+     * Fill the column, position i holding the value of the i-th entity
+     *
+     * @param entities to compute values for
+     * @param column to fill, of the same size as entities
+     */
+    void fill(List<? extends T> entities, int[] column);
+  }
+
+  /**
+   * Computes the values of a chunk of entities and places them in the attribute values of the chunk
+   *
+   * @param <T> type of PLANit entity
+   */
+  @FunctionalInterface
+  private interface ColumnExtractor<T> {
+
+    /**
+     * Extract the values
+     *
+     * @param entities to compute values for
+     * @param values attribute values per entity of the chunk
+     * @param firstRow row of the values of the first entity
+     * @param attributeIndex to place values at
+     */
+    void extract(List<? extends T> entities, Object[][] values, int firstRow, int attributeIndex);
+  }
+
+  /** PLANit entity class the attribute applies to */
+  private final Class<T> entityClass;
+
+  /** attribute name */
+  private final String name;
+
+  /** attribute type as used in feature descriptions, e.g., "Double" */
+  private final String type;
+
+  /** value function per entity, null for column extensions */
+  private final Function<? super T, ?> valueFunction;
+
+  /** column extractor, null for per entity extensions */
+  private final ColumnExtractor<T> columnExtractor;
+
+  /**
+   * Constructor
+   *
+   * @param entityClass the attribute applies to
+   * @param name of the attribute
+   * @param type of the attribute
+   * @param valueFunction per entity, null for column extensions
+   * @param columnExtractor per chunk, null for per entity extensions
+   */
+  private GeoIoAttributeExtension(
+      Class<T> entityClass, String name, String type, Function<? super T, ?> valueFunction, ColumnExtractor<T> columnExtractor){
+    if(entityClass == null || name == null || name.isBlank()){
+      throw new PlanItRunTimeException("Attribute extension requires an entity class and a name");
+    }
+    this.entityClass = entityClass;
+    this.name = name;
+    this.type = type;
+    this.valueFunction = valueFunction;
+    this.columnExtractor = columnExtractor;
+  }
+
+  /**
+   * Create an attribute computed per entity
+   *
+   * @param <T> type of PLANit entity
+   * @param entityClass the attribute applies to
+   * @param name of the attribute
+   * @param type of the attribute as used in feature descriptions, e.g., "Double", "Integer", "String" or "java.lang.Long"
+   * @param valueFunction to compute the value of an entity
+   * @return created extension
+   */
+  public static <T> GeoIoAttributeExtension<T> create(
+      Class<T> entityClass, String name, String type, Function<? super T, ?> valueFunction){
+    if(valueFunction == null){
+      throw new PlanItRunTimeException("Attribute extension %s requires a value function", name);
+    }
+    return new GeoIoAttributeExtension<>(entityClass, name, type, valueFunction, null);
+  }
+
+  /**
+   * Create a double attribute computed per chunk of entities
+   *
+   * @param <T> type of PLANit entity
+   * @param entityClass the attribute applies to
+   * @param name of the attribute
+   * @param columnFunction to compute the values of a chunk
+   * @return created extension
+   */
+  public static <T> GeoIoAttributeExtension<T> createDoubleColumn(
+      Class<T> entityClass, String name, DoubleColumnFunction<T> columnFunction){
+    return new GeoIoAttributeExtension<>(entityClass, name, "Double", null, (entities, values, firstRow, attributeIndex) -> {
+      var column = new double[entities.size()];
+      columnFunction.fill(entities, column);
+      for(int index = 0; index < column.length; ++index){
+        values[firstRow + index][attributeIndex] = Double.isNaN(column[index]) ? null : column[index];
+      }
+    });
+  }
+
+  /**
+   * Create a long attribute computed per chunk of entities
+   *
+   * @param <T> type of PLANit entity
+   * @param entityClass the attribute applies to
+   * @param name of the attribute
+   * @param columnFunction to compute the values of a chunk
+   * @return created extension
+   */
+  public static <T> GeoIoAttributeExtension<T> createLongColumn(
+      Class<T> entityClass, String name, LongColumnFunction<T> columnFunction){
+    return new GeoIoAttributeExtension<>(entityClass, name, "Long", null, (entities, values, firstRow, attributeIndex) -> {
+      var column = new long[entities.size()];
+      columnFunction.fill(entities, column);
+      for(int index = 0; index < column.length; ++index){
+        values[firstRow + index][attributeIndex] = column[index];
+      }
+    });
+  }
+
+  /**
+   * Create an int attribute computed per chunk of entities
+   *
+   * @param <T> type of PLANit entity
+   * @param entityClass the attribute applies to
+   * @param name of the attribute
+   * @param columnFunction to compute the values of a chunk
+   * @return created extension
+   */
+  public static <T> GeoIoAttributeExtension<T> createIntColumn(
+      Class<T> entityClass, String name, IntColumnFunction<T> columnFunction){
+    return new GeoIoAttributeExtension<>(entityClass, name, "Integer", null, (entities, values, firstRow, attributeIndex) -> {
+      var column = new int[entities.size()];
+      columnFunction.fill(entities, column);
+      for(int index = 0; index < column.length; ++index){
+        values[firstRow + index][attributeIndex] = column[index];
+      }
+    });
+  }
+
+  /**
+   * PLANit entity class the attribute applies to
+   *
+   * @return entity class
+   */
+  public Class<T> getEntityClass() {
+    return entityClass;
+  }
+
+  /**
+   * Check if the attribute applies to layers of the given PLANit entity class, i.e., the class is the extension's entity class
+   * or a subtype thereof
+   *
+   * @param planitEntityClass to check
+   * @return true when applicable, false otherwise
+   */
+  public boolean isApplicableTo(Class<?> planitEntityClass){
+    return entityClass.isAssignableFrom(planitEntityClass);
+  }
+
+  /**
+   * Attribute name
+   *
+   * @return name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Attribute type as used in feature descriptions
+   *
+   * @return type
+   */
+  public String getType() {
+    return type;
+  }
+
+  /**
+   * Check if values are computed per chunk rather than per entity
+   *
+   * @return true when computed per chunk, false otherwise
+   */
+  public boolean isColumn(){
+    return columnExtractor != null;
+  }
+
+  /**
+   * Compute the value of a single entity. Column extensions compute a column of one entity, so prefer
+   * {@link #extractColumn(List, Object[][], int, int)} for those
+   *
+   * @param entity to compute value for
+   * @return value
+   */
+  public Object getValue(T entity){
+    if(valueFunction != null){
+      return valueFunction.apply(entity);
+    }
+    var values = new Object[1][1];
+    columnExtractor.extract(List.of(entity), values, 0, 0);
+    return values[0][0];
+  }
+
+  /**
+   * Compute the values of a (slice of a) chunk of entities and place them in the attribute values of the chunk
+   *
+   * @param entities to compute values for
+   * @param values attribute values per entity of the chunk
+   * @param firstRow row of the values of the first entity
+   * @param attributeIndex to place values at
+   */
+  public void extractColumn(List<? extends T> entities, Object[][] values, int firstRow, int attributeIndex){
+    if(columnExtractor != null){
+      columnExtractor.extract(entities, values, firstRow, attributeIndex);
+      return;
+    }
+    for(int index = 0; index < entities.size(); ++index){
+      values[firstRow + index][attributeIndex] = valueFunction.apply(entities.get(index));
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return String.format("%s.%s (%s)", entityClass.getSimpleName(), name, type);
+  }
+}
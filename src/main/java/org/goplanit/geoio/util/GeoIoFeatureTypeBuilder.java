@@ -1,9 +1,12 @@
 package org.goplanit.geoio.util;
 
-import org.geotools.data.DataUtilities;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.goplanit.converter.idmapping.*;
 import org.goplanit.geoio.converter.network.featurecontext.*;
+import org.goplanit.geoio.converter.service.RoutedServiceGeometryCache;
 import org.goplanit.geoio.converter.service.featurecontext.PlanitRoutedServiceFeatureTypeContext;
+import org.goplanit.geoio.converter.service.featurecontext.PlanitRoutedTripFrequencyFeatureTypeContext;
+import org.goplanit.geoio.converter.service.featurecontext.PlanitRoutedTripScheduleFeatureTypeContext;
 import org.goplanit.geoio.converter.service.featurecontext.PlanitServiceLegFeatureTypeContext;
 import org.goplanit.geoio.converter.service.featurecontext.PlanitServiceLegSegmentFeatureTypeContext;
 import org.goplanit.geoio.converter.service.featurecontext.PlanitServiceNodeFeatureTypeContext;
@@ -17,18 +20,26 @@ import org.goplanit.utils.network.layer.MacroscopicNetworkLayer;
 import org.goplanit.utils.network.layer.ServiceNetworkLayer;
 import org.goplanit.utils.network.layer.UntypedDirectedGraphLayer;
 import org.goplanit.utils.service.routed.RoutedServicesLayer;
+import org.goplanit.utils.service.routed.RoutedTrip;
 import org.goplanit.utils.zoning.OdZone;
 import org.goplanit.utils.zoning.TransferZone;
 import org.goplanit.utils.zoning.Zone;
-import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.*;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
+import static java.util.Map.entry;
+
 /**
  * Utility class that builds feature types for supported PLANit entities per layer and chosen destination CRS that
  * the GeoIO writer supports
@@ -50,50 +61,212 @@ public final class GeoIoFeatureTypeBuilder {
   public static final String GEOTOOLS_GEOMETRY_ATTRIBUTE = "the_geom";
 
 
+  /** prefix used in attribute keys to mark the default geometry attribute */
+  private static final String DEFAULT_GEOMETRY_MARKER = "*";
+
+  /**
+   * type names used in feature descriptions mapped to their binding, covering the type names accepted by GeoTools type specs,
+   * fully qualified class names are resolved on first use
+   */
+  private static final Map<String, Class<?>> ATTRIBUTE_TYPE_BINDINGS = new ConcurrentHashMap<>(Map.ofEntries(
+      entry("String", String.class),
+      entry("string", String.class),
+      entry("Integer", Integer.class),
+      entry("Int", Integer.class),
+      entry("int", Integer.class),
+      entry("Long", Long.class),
+      entry("long", Long.class),
+      entry("Short", Short.class),
+      entry("short", Short.class),
+      entry("Byte", Byte.class),
+      entry("byte", Byte.class),
+      entry("Float", Float.class),
+      entry("float", Float.class),
+      entry("Double", Double.class),
+      entry("double", Double.class),
+      entry("Boolean", Boolean.class),
+      entry("boolean", Boolean.class),
+      entry("BigInteger", BigInteger.class),
+      entry("BigDecimal", BigDecimal.class),
+      entry("UUID", UUID.class),
+      entry("Date", Date.class),
+      entry("Time", Time.class),
+      entry("Timestamp", Timestamp.class),
+      entry("Geometry", Geometry.class),
+      entry("GeometryCollection", GeometryCollection.class),
+      entry("Point", Point.class),
+      entry("MultiPoint", MultiPoint.class),
+      entry("LineString", LineString.class),
+      entry("MultiLineString", MultiLineString.class),
+      entry("Polygon", Polygon.class),
+      entry("MultiPolygon", MultiPolygon.class)));
+
+  /** maximum number of feature types cached, least recently used types are evicted beyond that */
+  private static final int MAX_CACHED_FEATURE_TYPES = 256;
+
+  /** feature types created so far, reused whenever the same attributes, schema name and CRS are requested again */
+  private static final Map<FeatureTypeKey, SimpleFeatureType> FEATURE_TYPE_CACHE = Collections.synchronizedMap(
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<FeatureTypeKey, SimpleFeatureType> eldest) {
+          return size() > MAX_CACHED_FEATURE_TYPES;
+        }
+      });
+
+  /**
+   * Key of a created feature type, i.e., the attribute signature of its context, its schema name and its CRS
+   */
+  private static final class FeatureTypeKey {
+
+    /** attribute names and types in order */
+    private final String attributeSignature;
+
+    /** schema name of the type */
+    private final String schemaName;
+
+    /** CRS of the default geometry, may be null */
+    private final CoordinateReferenceSystem crs;
+
+    /** precomputed hash code */
+    private final int hashCode;
+
+    /**
+     * Constructor
+     *
+     * @param attributeSignature to use
+     * @param schemaName to use
+     * @param crs to use
+     */
+    private FeatureTypeKey(String attributeSignature, String schemaName, CoordinateReferenceSystem crs){
+      this.attributeSignature = attributeSignature;
+      this.schemaName = schemaName;
+      this.crs = crs;
+      this.hashCode = Objects.hash(attributeSignature, schemaName, crs);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof FeatureTypeKey)) {
+        return false;
+      }
+      var other = (FeatureTypeKey) o;
+      return hashCode == other.hashCode &&
+          attributeSignature.equals(other.attributeSignature) &&
+          Objects.equals(schemaName, other.schemaName) &&
+          Objects.equals(crs, other.crs);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
   /**
-   * Create the addendum to each geometry entry to signify its srid based on the chosen destination CRS
+   * Construct the attribute signature of a context, i.e., its attribute names and types in order
    *
-   * @param destinationCoordinateReferenceSystem destination CRS to use
-   * @return Srid addencum string, e.g., srid=_code_ if found, otherwise empty string
+   * @param featureTypeContext to extract signature from
+   * @return signature
    */
-  protected static String createFeatureGeometrySridAddendum(CoordinateReferenceSystem destinationCoordinateReferenceSystem){
-    String sridCodeAddendum = "";
-    if(destinationCoordinateReferenceSystem == null){
-      LOGGER.warning("Destination CRS null, ignoring attaching it to PLANit feature types");
-      return sridCodeAddendum;
+  private static String createAttributeSignature(PlanitEntityFeatureTypeContext<?> featureTypeContext){
+    StringBuilder sb = new StringBuilder();
+    for(var attribute : featureTypeContext.getAttributeDescription()){
+      sb.append(attribute.first()).append(FEATURE_KEY_VALUE_DELIMITER).append(attribute.second()).append(FEATURE_DELIMITER);
     }
+    return sb.toString();
+  }
 
-    var identifiers = destinationCoordinateReferenceSystem.getIdentifiers();
-    if(identifiers == null || identifiers.isEmpty()){
-      LOGGER.warning(String.format("No identifiers to extract EPSG/SRID from Destination CRS %s, ignoring attaching it to PLANit feature types", destinationCoordinateReferenceSystem.getName()));
-    }else{
-      sridCodeAddendum = ":srid="+identifiers.stream().findFirst().get().getCode();
+  /**
+   * Resolve the binding of an attribute type as used in the feature descriptions, e.g., "String", "LineString" or
+   * "java.lang.Long"
+   *
+   * @param attributeType to resolve
+   * @return binding class
+   */
+  private static Class<?> resolveAttributeBinding(String attributeType){
+    var binding = ATTRIBUTE_TYPE_BINDINGS.get(attributeType);
+    if(binding != null){
+      return binding;
     }
-    return sridCodeAddendum;
+    try {
+      binding = Class.forName(attributeType);
+    } catch (ClassNotFoundException e) {
+      throw new PlanItRunTimeException("Unsupported attribute type %s in PLANit feature description", attributeType);
+    }
+    ATTRIBUTE_TYPE_BINDINGS.putIfAbsent(attributeType, binding);
+    return binding;
   }
 
   /**
-   * Construct  feature type string based on the provided context information
+   * Construct feature type directly from the provided context information without the use of an intermediate type string
    *
    * @param featureTypeContext to extract feature type information from
-   * @param destinationCoordinateReferenceSystem destination CRS
-   * @return created feature type string representative for this PLANit entity
+   * @param destinationCoordinateReferenceSystem destination CRS, may be null
+   * @param schemaName of the type
+   * @return created feature type
    */
-  private static String createFeatureTypeStringFromContext(
-          PlanitEntityFeatureTypeContext<?> featureTypeContext,
-          CoordinateReferenceSystem destinationCoordinateReferenceSystem) {
+  private static SimpleFeatureType buildFeatureType(
+      PlanitEntityFeatureTypeContext<?> featureTypeContext,
+      CoordinateReferenceSystem destinationCoordinateReferenceSystem,
+      String schemaName) {
+    if(destinationCoordinateReferenceSystem == null){
+      LOGGER.warning("Destination CRS null, ignoring attaching it to PLANit feature types");
+    }
 
-    String sridAddendum = createFeatureGeometrySridAddendum(destinationCoordinateReferenceSystem);
+    var typeBuilder = new SimpleFeatureTypeBuilder();
+    typeBuilder.setName(schemaName);
+    for(var attribute : featureTypeContext.getAttributeDescription()){
+      var binding = resolveAttributeBinding(attribute.second());
+      var attributeName = attribute.first();
+      if(Geometry.class.isAssignableFrom(binding)){
+        boolean defaultGeometry = attributeName.startsWith(DEFAULT_GEOMETRY_MARKER);
+        if(defaultGeometry){
+          attributeName = attributeName.substring(DEFAULT_GEOMETRY_MARKER.length());
+        }
+        typeBuilder.crs(destinationCoordinateReferenceSystem).add(attributeName, binding);
+        if(defaultGeometry){
+          typeBuilder.setDefaultGeometry(attributeName);
+        }
+      }else{
+        typeBuilder.add(attributeName, binding);
+      }
+    }
+    return typeBuilder.buildFeatureType();
+  }
 
-    StringBuilder sb = new StringBuilder();
-    featureTypeContext.getAttributeDescription().forEach(e -> {
-      sb.append(String.join(FEATURE_KEY_VALUE_DELIMITER, e.first(), e.second()));
-      sb.append(FEATURE_DELIMITER);
-    });
-    /* now append the SRID addendum, assuming the feature ends with the geometry */
-    sb.deleteCharAt(sb.length()-1);
-    sb.append(sridAddendum);
-    return sb.toString();
+  /**
+   * Provide the feature type for the given context, schema name and CRS. Feature types are immutable, so a type created
+   * earlier for the same attribute signature, schema name and CRS is reused rather than created anew. The cache is bounded,
+   * so long-lived processes exporting many distinct schemas do not accumulate types
+   *
+   * @param featureTypeContext to provide feature type for
+   * @param destinationCoordinateReferenceSystem destination CRS, may be null
+   * @param schemaName of the type
+   * @return feature type
+   */
+  private static SimpleFeatureType getOrCreateFeatureType(
+      PlanitEntityFeatureTypeContext<?> featureTypeContext,
+      CoordinateReferenceSystem destinationCoordinateReferenceSystem,
+      String schemaName) {
+    var key = new FeatureTypeKey(createAttributeSignature(featureTypeContext), schemaName, destinationCoordinateReferenceSystem);
+    return FEATURE_TYPE_CACHE.computeIfAbsent(
+        key, k -> buildFeatureType(featureTypeContext, destinationCoordinateReferenceSystem, schemaName));
+  }
+
+  /**
+   * Remove all cached feature types, the cache is bounded so this is only needed to release its memory early
+   */
+  public static void clearFeatureTypeCache(){
+    FEATURE_TYPE_CACHE.clear();
   }
 
   /**
@@ -102,17 +275,19 @@ public final class GeoIoFeatureTypeBuilder {
    *
    * @param primaryIdMapper to use for id conversion when persisting
    * @param layer used for these features
+   * @param mappedIdCache to cache mapped ids in
    * @return available network entity feature context information
    */
   public static Set<PlanitEntityFeatureTypeContext<? extends ManagedId>> createNetworkLayerFeatureContexts(
-          NetworkIdMapper primaryIdMapper, MacroscopicNetworkLayer layer){
+          NetworkIdMapper primaryIdMapper, MacroscopicNetworkLayer layer, GeoIoMappedIdCache mappedIdCache){
+    final var vertexIdMapper = mappedIdCache.cached(GeoIoMappedIdCache.VERTEX, primaryIdMapper.getVertexIdMapper());
     return Set.of(
             /* nodes */
-            PlanitNodeFeatureTypeContext.create(primaryIdMapper.getVertexIdMapper()),
+            PlanitNodeFeatureTypeContext.create(vertexIdMapper),
             /* links */
-            PlanitLinkFeatureTypeContext.create(primaryIdMapper.getLinkIdMapper(), primaryIdMapper.getVertexIdMapper()),
+            PlanitLinkFeatureTypeContext.create(mappedIdCache.cached(GeoIoMappedIdCache.LINK, primaryIdMapper.getLinkIdMapper()), vertexIdMapper),
             /* link segments */
-            PlanitLinkSegmentFeatureTypeContext.create(primaryIdMapper, layer.getSupportedModes()));
+            PlanitLinkSegmentFeatureTypeContext.create(primaryIdMapper, layer.getSupportedModes(), mappedIdCache));
   }
 
   /**
@@ -122,17 +297,21 @@ public final class GeoIoFeatureTypeBuilder {
    * @param primaryIdMapper  to use for id conversion when persisting
    * @param layer            used for these features
    * @param networkIdMappers used for parent ids related to the physical network
+   * @param mappedIdCache to cache mapped ids in
    * @return available service network entity feature context information
    */
   public static Set<PlanitEntityFeatureTypeContext<? extends ManagedId>> createServiceNetworkLayerFeatureContexts(
-      ServiceNetworkIdMapper primaryIdMapper, ServiceNetworkLayer layer, NetworkIdMapper networkIdMappers) {
+      ServiceNetworkIdMapper primaryIdMapper, ServiceNetworkLayer layer, NetworkIdMapper networkIdMappers, GeoIoMappedIdCache mappedIdCache) {
+    final var serviceNodeIdMapper = mappedIdCache.cached(GeoIoMappedIdCache.SERVICE_NODE, primaryIdMapper.getServiceNodeIdMapper());
     return Set.of(
         /* service nodes */
-        PlanitServiceNodeFeatureTypeContext.create(primaryIdMapper.getServiceNodeIdMapper(), networkIdMappers.getVertexIdMapper()),
+        PlanitServiceNodeFeatureTypeContext.create(
+            serviceNodeIdMapper, mappedIdCache.cached(GeoIoMappedIdCache.VERTEX, networkIdMappers.getVertexIdMapper())),
         /* legs */
-        PlanitServiceLegFeatureTypeContext.create(primaryIdMapper.getServiceLegIdMapper(),primaryIdMapper.getServiceNodeIdMapper()),
+        PlanitServiceLegFeatureTypeContext.create(
+            mappedIdCache.cached(GeoIoMappedIdCache.SERVICE_LEG, primaryIdMapper.getServiceLegIdMapper()), serviceNodeIdMapper),
         /* leg segments */
-        PlanitServiceLegSegmentFeatureTypeContext.create(primaryIdMapper, networkIdMappers));
+        PlanitServiceLegSegmentFeatureTypeContext.create(primaryIdMapper, networkIdMappers, mappedIdCache));
   }
 
   /**
@@ -143,17 +322,19 @@ public final class GeoIoFeatureTypeBuilder {
    * @param primaryIdMapper  to use for id conversion when persisting
    * @param zoneClazz class signature of the zone
    * @param geometryType to apply
+   * @param mappedIdCache to cache mapped ids in
    * @return available service network entity feature context information
    */
   public static <Z extends Zone, T extends Geometry> PlanitZoneFeatureTypeContext<Z, T> createZoningZoneFeatureContext(
-      ZoningIdMapper primaryIdMapper, Class<Z> zoneClazz, Class<T> geometryType) {
+      ZoningIdMapper primaryIdMapper, Class<Z> zoneClazz, Class<T> geometryType, GeoIoMappedIdCache mappedIdCache) {
+    final var zoneIdMapper = mappedIdCache.cached(GeoIoMappedIdCache.ZONE, primaryIdMapper.getZoneIdMapper());
     if (zoneClazz.equals(OdZone.class)) {
       return (PlanitZoneFeatureTypeContext<Z, T>)
-          PlanitOdZoneFeatureTypeContext.create(primaryIdMapper.getZoneIdMapper(), geometryType);
+          PlanitOdZoneFeatureTypeContext.create(zoneIdMapper, geometryType);
     }
     if (zoneClazz.equals(TransferZone.class)) {
       return (PlanitZoneFeatureTypeContext<Z, T>)
-          PlanitTransferZoneFeatureTypeContext.create(primaryIdMapper.getZoneIdMapper(), geometryType);
+          PlanitTransferZoneFeatureTypeContext.create(zoneIdMapper, geometryType);
     }
     PlanItRunTimeException.throwNew("Zone type %s not yet added as supported Zone type, please add, aborting", zoneClazz.getCanonicalName());
     return null;
@@ -161,20 +342,21 @@ public final class GeoIoFeatureTypeBuilder {
 
   /**
    * Construct GIS feature contexts containing the information required for persistence of all Zoning entities
-   * (except the zone's which are serviced via {@link #createZoningZoneFeatureContext(ZoningIdMapper, Class, Class)} because they
-   * have geometry dependent contexts.
+   * (except the zone's which are serviced via {@link #createZoningZoneFeatureContext(ZoningIdMapper, Class, Class, GeoIoMappedIdCache)}
+   * because they have geometry dependent contexts.
    *
    * @param primaryIdMapper  to use for id conversion when persisting
    * @param networkIdMappers used for parent ids related to the physical network
+   * @param mappedIdCache to cache mapped ids in
    * @return available zoning entity feature context information
    */
   public static Set<PlanitEntityFeatureTypeContext<? extends ManagedId>> createZoningFeatureContexts(
-      ZoningIdMapper primaryIdMapper, NetworkIdMapper networkIdMappers) {
+      ZoningIdMapper primaryIdMapper, NetworkIdMapper networkIdMappers, GeoIoMappedIdCache mappedIdCache) {
     return Set.of(
         /* undirected connectoids */
-        PlanitUndirectedConnectoidFeatureTypeContext.create(primaryIdMapper, networkIdMappers),
+        PlanitUndirectedConnectoidFeatureTypeContext.create(primaryIdMapper, networkIdMappers, mappedIdCache),
         /* directed connectoids */
-        PlanitDirectedConnectoidFeatureTypeContext.create(primaryIdMapper,networkIdMappers));
+        PlanitDirectedConnectoidFeatureTypeContext.create(primaryIdMapper,networkIdMappers, mappedIdCache));
   }
 
   /**
@@ -199,14 +381,27 @@ public final class GeoIoFeatureTypeBuilder {
    * @param primaryIdMapper  to use for id conversion when persisting
    * @param layerMode mode of the routed services with this mode to persist
    * @param serviceNetworkIdMapper used for parent ids related to the service network
+   * @param tripServiceIdMapper provides the mapped id of the service each trip belongs to
+   * @param mappedIdCache to cache mapped ids in
+   * @param geometryCache to obtain (cached) service geometries from
    * @return available routed services entity feature context information
    */
   public static Set<PlanitEntityFeatureTypeContext<? extends ManagedId>> createRoutedServicesLayerFeatureContexts(
-      RoutedServicesIdMapper primaryIdMapper, Mode layerMode, ServiceNetworkIdMapper serviceNetworkIdMapper) {
+      RoutedServicesIdMapper primaryIdMapper,
+      Mode layerMode,
+      ServiceNetworkIdMapper serviceNetworkIdMapper,
+      Function<RoutedTrip, String> tripServiceIdMapper,
+      GeoIoMappedIdCache mappedIdCache,
+      RoutedServiceGeometryCache geometryCache) {
     return Set.of(
-        /* connectoid edge */
-        PlanitRoutedServiceFeatureTypeContext.create(primaryIdMapper));
-        // todo trip (schedule and frequency)
+        /* routed services */
+        PlanitRoutedServiceFeatureTypeContext.create(primaryIdMapper, geometryCache),
+        /* trips schedule based */
+        PlanitRoutedTripScheduleFeatureTypeContext.create(
+            primaryIdMapper, serviceNetworkIdMapper, tripServiceIdMapper, mappedIdCache, geometryCache),
+        /* trips frequency based */
+        PlanitRoutedTripFrequencyFeatureTypeContext.create(
+            primaryIdMapper, serviceNetworkIdMapper, tripServiceIdMapper, mappedIdCache, geometryCache));
   }
 
   /**
@@ -235,15 +430,12 @@ public final class GeoIoFeatureTypeBuilder {
     try {
       for (var featureContext : layerFeatures){
 
-        /* take description  and convert to single string */
-        String simpleFeatureTypeString = createFeatureTypeStringFromContext(featureContext, destinationCoordinateReferenceSystem);
-
         /* create layer aware feature type schema name corresponding to the file name */
         String layerPrefixedSchemaName = createFeatureTypeSchemaName(
                 layer, layerPrefixProducer, planitEntityBaseFileNames.get(featureContext.getPlanitEntityClass()));
 
-        /* execute creation of the type */
-        var featureType = DataUtilities.createType(layerPrefixedSchemaName, simpleFeatureTypeString);
+        /* obtain the type, reused when already created for this schema */
+        var featureType = getOrCreateFeatureType(featureContext, destinationCoordinateReferenceSystem, layerPrefixedSchemaName);
         simpleFeatureTypes.add(Pair.of(featureType, featureContext));
       }
 
@@ -276,14 +468,11 @@ public final class GeoIoFeatureTypeBuilder {
     try {
       for (var featureContext : features){
 
-        /* take description  and convert to single string */
-        String simpleFeatureTypeString = createFeatureTypeStringFromContext(featureContext, destinationCoordinateReferenceSystem);
-
         /* create feature type schema name corresponding to the file name */
         String schemaName = planitEntitySchemaNames.get(featureContext.getPlanitEntityClass());
 
-        /* execute creation of the type */
-        var featureType = DataUtilities.createType(schemaName, simpleFeatureTypeString);
+        /* obtain the type, reused when already created for this schema */
+        var featureType = getOrCreateFeatureType(featureContext, destinationCoordinateReferenceSystem, schemaName);
         simpleFeatureTypes.add(Pair.of(featureType, featureContext));
       }
 
@@ -297,24 +486,21 @@ public final class GeoIoFeatureTypeBuilder {
   }
 
   /**
-   * Create a simple feature for feature context provided
+   * Create a simple feature for feature context provided, for any PLANit entity class
    *
    * @param featureContext                        create feature for the given context
    * @param destinationCoordinateReferenceSystem  to use
-   * @param planitEntityFileName                  the file name to use for the feature
+   * @param schemaName                            the schema name to use for the feature
    * @return the feature type that has been created
    */
-  public static SimpleFeatureType createSimpleZoningFeatureType(
+  public static SimpleFeatureType createSimpleFeatureType(
       PlanitEntityFeatureTypeContext<?> featureContext,
       CoordinateReferenceSystem destinationCoordinateReferenceSystem,
-      String planitEntityFileName){
+      String schemaName){
 
     try {
-        /* take description  and convert to single string */
-        String simpleFeatureTypeString = createFeatureTypeStringFromContext(featureContext, destinationCoordinateReferenceSystem);
-
-        /* execute creation of the type */
-        return DataUtilities.createType(planitEntityFileName, simpleFeatureTypeString);
+        /* obtain the type, reused when already created for this schema */
+        return getOrCreateFeatureType(featureContext, destinationCoordinateReferenceSystem, schemaName);
 
     }catch(Exception e){
       LOGGER.severe(e.getMessage());
@@ -322,6 +508,21 @@ public final class GeoIoFeatureTypeBuilder {
     }
   }
 
+  /**
+   * Create a simple feature for feature context provided, see {@link #createSimpleFeatureType(PlanitEntityFeatureTypeContext, CoordinateReferenceSystem, String)}
+   *
+   * @param featureContext                        create feature for the given context
+   * @param destinationCoordinateReferenceSystem  to use
+   * @param planitEntityFileName                  the file name to use for the feature
+   * @return the feature type that has been created
+   */
+  public static SimpleFeatureType createSimpleZoningFeatureType(
+      PlanitEntityFeatureTypeContext<?> featureContext,
+      CoordinateReferenceSystem destinationCoordinateReferenceSystem,
+      String planitEntityFileName){
+    return createSimpleFeatureType(featureContext, destinationCoordinateReferenceSystem, planitEntityFileName);
+  }
+
   /**
    * Construct consistent file path (with file name) based on desired output file name and settings configuration, taking the
    * current layer into account
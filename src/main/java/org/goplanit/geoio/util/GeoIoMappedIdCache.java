@@ -0,0 +1,151 @@
+package org.goplanit.geoio.util;
+
+import org.goplanit.utils.id.IdAble;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Cache of mapped (persisted) ids of PLANit entities, so that id mapping functions that are applied to the same entity many
+ * times during an export (as its own id and as a reference from other entities) only construct the mapped id once.
+ * <p>
+ *   Mapped ids are stored in dense arrays indexed by each entity's internal id, one array per id mapper (identified by a key)
+ *   and concrete entity class, since internal ids are only unique within an entity class. Arrays grow with the number of
+ *   entities cached, ids far beyond that are cached in a map instead. An instance is meant to live for the
+ *   duration of a single export and can be shared between writers that use the same (parent) id mappers, e.g., the network writer
+ *   hands its cache to the zoning and service writers alongside its id mappers.
+ * </p>
+ *
+ * @author markr
+ */
+public class GeoIoMappedIdCache {
+
+  /** key for physical network vertex id mapper */
+  public static final String VERTEX = "vertex";
+
+  /** key for physical network link id mapper */
+  public static final String LINK = "link";
+
+  /** key for physical network link segment id mapper */
+  public static final String LINK_SEGMENT = "link_segment";
+
+  /** key for zone id mapper */
+  public static final String ZONE = "zone";
+
+  /** key for service node id mapper */
+  public static final String SERVICE_NODE = "service_node";
+
+  /** key for service leg id mapper */
+  public static final String SERVICE_LEG = "service_leg";
+
+  /** key for service leg segment id mapper */
+  public static final String SERVICE_LEG_SEGMENT = "service_leg_segment";
+
+  /** initial capacity of each dense array */
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /** dense arrays hold at most this many slots per cached entity, ids beyond that are cached in a map instead */
+  private static final int MAX_SLOTS_PER_ENTITY = 4;
+
+  /**
+   * Mapped ids for entities of a single class indexed by their internal id. Ids are held in a dense array sized in proportion
+   * to the number of entities cached, so a few entities with large ids do not cause huge allocations, those are held in a map
+   * instead
+   */
+  private static final class DenseMappedIds {
+
+    /** the mapped ids, replaced (not modified) when growing so readers never need to lock */
+    private volatile String[] mappedIds = new String[INITIAL_CAPACITY];
+
+    /** mapped ids of entities with ids beyond the dense array */
+    private final Map<Long, String> sparseMappedIds = new ConcurrentHashMap<>();
+
+    /** number of entities cached */
+    private int numberOfEntities = 0;
+
+    /**
+     * Store mapped id for the given id, growing the dense array when the id fits its size limit, otherwise storing it in the map
+     *
+     * @param id to store at
+     * @param mappedId to store
+     */
+    private synchronized void store(long id, String mappedId){
+      var current = mappedIds;
+      if(id >= current.length){
+        long denseLimit = Math.max(INITIAL_CAPACITY, (long) MAX_SLOTS_PER_ENTITY * (numberOfEntities + 1));
+        if(id >= denseLimit){
+          if(sparseMappedIds.put(id, mappedId) == null){
+            ++numberOfEntities;
+          }
+          return;
+        }
+        current = Arrays.copyOf(current, (int) Math.min(denseLimit, Math.max(id + 1, 2L * current.length)));
+      }
+      int index = (int) id;
+      if(current[index] == null){
+        ++numberOfEntities;
+      }
+      current[index] = mappedId;
+      mappedIds = current;
+    }
+
+    /**
+     * Collect the mapped id, compute and store it when not yet available
+     *
+     * @param <T> type of entity
+     * @param entity to collect mapped id for
+     * @param idMapper to apply when not yet present
+     * @return mapped id
+     */
+    private <T extends IdAble> String get(T entity, Function<T, String> idMapper){
+      long id = entity.getId();
+      if(id < 0){
+        return idMapper.apply(entity);
+      }
+
+      var current = mappedIds;
+      String mappedId = id < current.length ? current[(int) id] : sparseMappedIds.get(id);
+      if(mappedId != null){
+        return mappedId;
+      }
+
+      mappedId = idMapper.apply(entity);
+      if(mappedId != null){
+        store(id, mappedId);
+      }
+      return mappedId;
+    }
+  }
+
+  /** dense arrays per id mapper key and concrete entity class */
+  private final Map<String, Map<Class<?>, DenseMappedIds>> denseMappedIds = new ConcurrentHashMap<>();
+
+  /**
+   * Provide a caching version of the given id mapper. All id mappers registered under the same key share their cached values,
+   * so the key should uniquely identify the meaning of the id mapper within the export, see the constants on this class.
+   *
+   * @param <T> type of entity the mapper applies to
+   * @param idMapperKey key identifying the id mapper
+   * @param idMapper the id mapper to cache results for
+   * @return caching id mapper
+   */
+  public <T extends IdAble> Function<T, String> cached(String idMapperKey, Function<T, String> idMapper){
+    final var mappedIdsByClass = denseMappedIds.computeIfAbsent(idMapperKey, k -> new ConcurrentHashMap<>());
+    return entity -> {
+      if(entity == null){
+        return idMapper.apply(null);
+      }
+      return mappedIdsByClass.computeIfAbsent(entity.getClass(), c -> new DenseMappedIds()).get(entity, idMapper);
+    };
+  }
+
+  /**
+   * Remove all cached mapped ids
+   */
+  public void clear(){
+    denseMappedIds.clear();
+  }
+
+}
@@ -3,12 +3,16 @@ package org.goplanit.geoio.util;
 import org.goplanit.converter.ConverterWriterSettings;
 import org.goplanit.converter.FileBasedConverterWriterSettings;
 import org.goplanit.utils.locale.CountryNames;
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
 import org.goplanit.utils.math.Precision;
 import org.goplanit.utils.misc.CharacterUtils;
 import org.goplanit.utils.misc.StringUtils;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
 import java.util.logging.Logger;
 
 /**
@@ -27,6 +31,114 @@ public class GeoIoWriterSettings extends FileBasedConverterWriterSettings implem
 
   public static final String DEFAULT_EXTENSION = ".shp";
 
+  /** policy for list valued attributes exceeding the maximum attribute length */
+  private ListAttributeOverflowPolicy listAttributeOverflowPolicy = DEFAULT_LIST_ATTRIBUTE_OVERFLOW_POLICY;
+
+  /** by default list valued attributes that are too long are spilled to a side table */
+  public static final ListAttributeOverflowPolicy DEFAULT_LIST_ATTRIBUTE_OVERFLOW_POLICY = ListAttributeOverflowPolicy.SPILL;
+
+  /** flag indicating if attribute values of entities are extracted in parallel before being written */
+  private boolean parallelAttributeExtraction = DEFAULT_PARALLEL_ATTRIBUTE_EXTRACTION;
+
+  /** number of entities for which attribute values are extracted before being written */
+  private int attributeExtractionChunkSize = DEFAULT_ATTRIBUTE_EXTRACTION_CHUNK_SIZE;
+
+  /** flag indicating if features are appended to existing compatible layers rather than replacing them */
+  private boolean appendToExistingLayers = DEFAULT_APPEND_TO_EXISTING_LAYERS;
+
+  /** maximum number of features per layer file before the layer is split into further part files */
+  private long maxFeaturesPerShard = DEFAULT_MAX_FEATURES_PER_SHARD;
+
+  /** maximum (estimated) size in bytes of each file of a layer part before the layer is split into further part files */
+  private long maxBytesPerShard = DEFAULT_MAX_BYTES_PER_SHARD;
+
+  /** maximum number of (non-geometry) attributes per layer file before attributes are split across part files */
+  private int maxFieldsPerShard = DEFAULT_MAX_FIELDS_PER_SHARD;
+
+  /** size of the tiles (in destination CRS units) layers are split into, not tiled when zero */
+  private double tileSize = DEFAULT_TILE_SIZE;
+
+  /** maximum number of tiles of a layer holding an open writer, others are closed and reopened for appending when needed */
+  private int maxOpenTileWriters = DEFAULT_MAX_OPEN_TILE_WRITERS;
+
+  /** flag indicating if a vector tile pyramid is generated for each layer alongside the regular output */
+  private boolean vectorTileOutput = DEFAULT_VECTOR_TILE_OUTPUT;
+
+  /** minimum zoom level of generated vector tile pyramids */
+  private int vectorTileMinZoom = DEFAULT_VECTOR_TILE_MIN_ZOOM;
+
+  /** maximum zoom level of generated vector tile pyramids */
+  private int vectorTileMaxZoom = DEFAULT_VECTOR_TILE_MAX_ZOOM;
+
+  /** flag indicating if coordinates of each chunk of extracted geometries are staged off-heap before being written */
+  private boolean offHeapCoordinateStaging = DEFAULT_OFF_HEAP_COORDINATE_STAGING;
+
+  /** grid size (in destination CRS units) staged coordinates are snapped to, not quantised when zero */
+  private double coordinateQuantisationGrid = DEFAULT_COORDINATE_QUANTISATION_GRID;
+
+  /** maximum (estimated) heap used by export buffers in bytes, not bounded when zero */
+  private long exportMemoryBudget = DEFAULT_EXPORT_MEMORY_BUDGET;
+
+  /** flag indicating if completed layers are recorded in a checkpoint manifest */
+  private boolean checkpointing = DEFAULT_CHECKPOINTING;
+
+  /** flag indicating if layers completed and intact according to the checkpoint manifest are skipped */
+  private boolean resumeFromCheckpoint = DEFAULT_RESUME_FROM_CHECKPOINT;
+
+  /** custom attributes added to the layers of the entity classes they apply to, in order of registration */
+  private final List<GeoIoAttributeExtension<?>> attributeExtensions = new ArrayList<>();
+
+  /** by default attribute values are extracted sequentially */
+  public static final boolean DEFAULT_PARALLEL_ATTRIBUTE_EXTRACTION = false;
+
+  /** default number of entities for which attribute values are extracted before being written */
+  public static final int DEFAULT_ATTRIBUTE_EXTRACTION_CHUNK_SIZE = 4096;
+
+  /** by default the number of features per layer file is not limited */
+  public static final long DEFAULT_MAX_FEATURES_PER_SHARD = Long.MAX_VALUE;
+
+  /** by default layer files are kept below the 2GB limit of shape files (and their DBF files) */
+  public static final long DEFAULT_MAX_BYTES_PER_SHARD = 2_000_000_000L;
+
+  /** by default attributes are limited to the 255 fields supported by DBF files */
+  public static final int DEFAULT_MAX_FIELDS_PER_SHARD = 255;
+
+  /** by default layers are not tiled */
+  public static final double DEFAULT_TILE_SIZE = 0;
+
+  /** by default at most 64 tiles per layer hold an open writer, each keeping its layer files open */
+  public static final int DEFAULT_MAX_OPEN_TILE_WRITERS = 64;
+
+  /** by default no vector tiles are generated */
+  public static final boolean DEFAULT_VECTOR_TILE_OUTPUT = false;
+
+  /** default minimum zoom level of vector tile pyramids */
+  public static final int DEFAULT_VECTOR_TILE_MIN_ZOOM = 0;
+
+  /** default maximum zoom level of vector tile pyramids */
+  public static final int DEFAULT_VECTOR_TILE_MAX_ZOOM = 14;
+
+  /** highest supported zoom level of vector tile pyramids */
+  public static final int MAX_VECTOR_TILE_ZOOM = 24;
+
+  /** by default existing layers are replaced */
+  public static final boolean DEFAULT_APPEND_TO_EXISTING_LAYERS = false;
+
+  /** by default geometries are written as extracted */
+  public static final boolean DEFAULT_OFF_HEAP_COORDINATE_STAGING = false;
+
+  /** by default staged coordinates are not quantised */
+  public static final double DEFAULT_COORDINATE_QUANTISATION_GRID = 0;
+
+  /** by default export buffers are only bounded by the chunk size and the number of writes in flight */
+  public static final long DEFAULT_EXPORT_MEMORY_BUDGET = 0;
+
+  /** by default no checkpoint manifest is recorded */
+  public static final boolean DEFAULT_CHECKPOINTING = false;
+
+  /** by default all layers are written */
+  public static final boolean DEFAULT_RESUME_FROM_CHECKPOINT = false;
+
   /**
    * Default constructor
    */
@@ -58,6 +170,34 @@ public class GeoIoWriterSettings extends FileBasedConverterWriterSettings implem
    */
   public void logSettings() {
     super.logSettings();
+    LOGGER.info(String.format("List attribute overflow policy: %s", listAttributeOverflowPolicy));
+    LOGGER.info(String.format("Parallel attribute extraction: %s (chunk size: %d)", parallelAttributeExtraction, attributeExtractionChunkSize));
+    LOGGER.info(String.format("Append to existing layers: %s", appendToExistingLayers));
+    LOGGER.info(String.format("Layer shard limits: %s features, %d bytes, %d fields",
+        maxFeaturesPerShard == Long.MAX_VALUE ? "unlimited" : String.valueOf(maxFeaturesPerShard), maxBytesPerShard, maxFieldsPerShard));
+    if(isTiledOutput()) {
+      LOGGER.info(String.format("Tiled output, tile size: %s (destination CRS units), open tile writers: %d", tileSize, maxOpenTileWriters));
+    }
+    if(vectorTileOutput) {
+      LOGGER.info(String.format("Vector tile output, zoom levels: %d-%d", vectorTileMinZoom, vectorTileMaxZoom));
+    }
+    if(offHeapCoordinateStaging) {
+      LOGGER.info(String.format("Off-heap coordinate staging, quantisation grid: %s",
+          coordinateQuantisationGrid > 0 ? String.valueOf(coordinateQuantisationGrid) : "none"));
+    }
+    if(isMemoryBoundedExport()) {
+      LOGGER.info(String.format("Export memory budget: %d MB", exportMemoryBudget / (1024 * 1024)));
+    }
+    if(isCheckpointing()) {
+      LOGGER.info(String.format("Checkpointing completed layers, resume from checkpoint: %s", resumeFromCheckpoint));
+      if(resumeFromCheckpoint && appendToExistingLayers){
+        LOGGER.warning("Resuming appends skips completed layers only, layers partially appended to before are not rolled back");
+      }
+    }
+    if(!attributeExtensions.isEmpty()) {
+      LOGGER.info(String.format("Attribute extensions: %s",
+          attributeExtensions.stream().map(GeoIoAttributeExtension::toString).collect(Collectors.joining(", "))));
+    }
   }  
 
   /**
@@ -65,6 +205,24 @@ public class GeoIoWriterSettings extends FileBasedConverterWriterSettings implem
    */
   public void reset() {
     super.reset();
+    listAttributeOverflowPolicy = DEFAULT_LIST_ATTRIBUTE_OVERFLOW_POLICY;
+    parallelAttributeExtraction = DEFAULT_PARALLEL_ATTRIBUTE_EXTRACTION;
+    attributeExtractionChunkSize = DEFAULT_ATTRIBUTE_EXTRACTION_CHUNK_SIZE;
+    appendToExistingLayers = DEFAULT_APPEND_TO_EXISTING_LAYERS;
+    maxFeaturesPerShard = DEFAULT_MAX_FEATURES_PER_SHARD;
+    maxBytesPerShard = DEFAULT_MAX_BYTES_PER_SHARD;
+    maxFieldsPerShard = DEFAULT_MAX_FIELDS_PER_SHARD;
+    tileSize = DEFAULT_TILE_SIZE;
+    maxOpenTileWriters = DEFAULT_MAX_OPEN_TILE_WRITERS;
+    vectorTileOutput = DEFAULT_VECTOR_TILE_OUTPUT;
+    vectorTileMinZoom = DEFAULT_VECTOR_TILE_MIN_ZOOM;
+    vectorTileMaxZoom = DEFAULT_VECTOR_TILE_MAX_ZOOM;
+    offHeapCoordinateStaging = DEFAULT_OFF_HEAP_COORDINATE_STAGING;
+    coordinateQuantisationGrid = DEFAULT_COORDINATE_QUANTISATION_GRID;
+    exportMemoryBudget = DEFAULT_EXPORT_MEMORY_BUDGET;
+    checkpointing = DEFAULT_CHECKPOINTING;
+    resumeFromCheckpoint = DEFAULT_RESUME_FROM_CHECKPOINT;
+    attributeExtensions.clear();
   }
 
   /**
@@ -75,5 +233,434 @@ public class GeoIoWriterSettings extends FileBasedConverterWriterSettings implem
   public String getFileExtension() {
     return fileExtension;
   }
-    
+
+  /**
+   * Policy applied to list valued attributes (e.g., the physical link segments of a service leg segment) whose value exceeds
+   * the maximum attribute length of the output format
+   *
+   * @return list attribute overflow policy
+   */
+  public ListAttributeOverflowPolicy getListAttributeOverflowPolicy() {
+    return listAttributeOverflowPolicy;
+  }
+
+  /**
+   * Policy applied to list valued attributes whose value exceeds the maximum attribute length of the output format
+   *
+   * @param listAttributeOverflowPolicy to use
+   */
+  public void setListAttributeOverflowPolicy(ListAttributeOverflowPolicy listAttributeOverflowPolicy) {
+    this.listAttributeOverflowPolicy = listAttributeOverflowPolicy;
+  }
+
+  /**
+   * Check if attribute values (and derived geometries) of each chunk of entities are extracted in parallel before being
+   * written. Layers whose values are expensive to derive, e.g., generated virtual network geometries, always do so
+   *
+   * @return true when extracted in parallel, false otherwise
+   */
+  public boolean isParallelAttributeExtraction() {
+    return parallelAttributeExtraction;
+  }
+
+  /**
+   * Set if attribute values of each chunk of entities are extracted in parallel before being written
+   *
+   * @param parallelAttributeExtraction flag to set
+   */
+  public void setParallelAttributeExtraction(boolean parallelAttributeExtraction) {
+    this.parallelAttributeExtraction = parallelAttributeExtraction;
+  }
+
+  /**
+   * Number of entities for which attribute values are extracted before being written
+   *
+   * @return chunk size
+   */
+  public int getAttributeExtractionChunkSize() {
+    return attributeExtractionChunkSize;
+  }
+
+  /**
+   * Number of entities for which attribute values are extracted before being written
+   *
+   * @param attributeExtractionChunkSize to use, must be positive
+   */
+  public void setAttributeExtractionChunkSize(int attributeExtractionChunkSize) {
+    if(attributeExtractionChunkSize <= 0){
+      throw new PlanItRunTimeException("Attribute extraction chunk size must be positive, found %d", attributeExtractionChunkSize);
+    }
+    this.attributeExtractionChunkSize = attributeExtractionChunkSize;
+  }
+
+  /**
+   * Check if features are appended to existing layers with a compatible schema rather than replacing these layers. This allows
+   * a layer to be written in several parts, e.g., per chunk of a streaming source, or to be extended later on
+   *
+   * @return true when appending, false otherwise
+   */
+  public boolean isAppendToExistingLayers() {
+    return appendToExistingLayers;
+  }
+
+  /**
+   * Set if features are appended to existing layers with a compatible schema rather than replacing these layers. An existing
+   * layer with an incompatible schema results in an exception when appending
+   *
+   * @param appendToExistingLayers flag to set
+   */
+  public void setAppendToExistingLayers(boolean appendToExistingLayers) {
+    this.appendToExistingLayers = appendToExistingLayers;
+  }
+
+  /**
+   * Maximum number of features per layer file, when reached the remaining features are written to further part files
+   *
+   * @return maximum number of features per shard
+   */
+  public long getMaxFeaturesPerShard() {
+    return maxFeaturesPerShard;
+  }
+
+  /**
+   * Maximum number of features per layer file, when reached the remaining features are written to further part files
+   *
+   * @param maxFeaturesPerShard to use, must be positive
+   */
+  public void setMaxFeaturesPerShard(long maxFeaturesPerShard) {
+    if(maxFeaturesPerShard <= 0){
+      throw new PlanItRunTimeException("Maximum number of features per shard must be positive, found %d", maxFeaturesPerShard);
+    }
+    this.maxFeaturesPerShard = maxFeaturesPerShard;
+  }
+
+  /**
+   * Maximum (estimated) size in bytes of each file of a layer part, when reached the remaining features are written to
+   * further part files
+   *
+   * @return maximum number of bytes per shard
+   */
+  public long getMaxBytesPerShard() {
+    return maxBytesPerShard;
+  }
+
+  /**
+   * Maximum (estimated) size in bytes of each file of a layer part, when reached the remaining features are written to
+   * further part files
+   *
+   * @param maxBytesPerShard to use, must be positive
+   */
+  public void setMaxBytesPerShard(long maxBytesPerShard) {
+    if(maxBytesPerShard <= 0){
+      throw new PlanItRunTimeException("Maximum number of bytes per shard must be positive, found %d", maxBytesPerShard);
+    }
+    this.maxBytesPerShard = maxBytesPerShard;
+  }
+
+  /**
+   * Maximum number of (non-geometry) attributes per layer file, when exceeded attributes are split across part files that
+   * each repeat the first (id) attribute and the geometry
+   *
+   * @return maximum number of fields per shard
+   */
+  public int getMaxFieldsPerShard() {
+    return maxFieldsPerShard;
+  }
+
+  /**
+   * Maximum number of (non-geometry) attributes per layer file, when exceeded attributes are split across part files that
+   * each repeat the first (id) attribute and the geometry
+   *
+   * @param maxFieldsPerShard to use, must be at least 2
+   */
+  public void setMaxFieldsPerShard(int maxFieldsPerShard) {
+    if(maxFieldsPerShard < 2){
+      throw new PlanItRunTimeException("Maximum number of fields per shard must be at least 2, found %d", maxFieldsPerShard);
+    }
+    this.maxFieldsPerShard = maxFieldsPerShard;
+  }
+
+  /**
+   * Size of the square tiles layers are written as, in units of the destination CRS (e.g. metres), zero when layers are
+   * written as a whole rather than as tiles
+   *
+   * @return tile size
+   */
+  public double getTileSize() {
+    return tileSize;
+  }
+
+  /**
+   * Size of the square tiles layers are written as, in units of the destination CRS (e.g. metres). Use zero to write layers
+   * as a whole rather than as tiles
+   *
+   * @param tileSize to use, must not be negative
+   */
+  public void setTileSize(double tileSize) {
+    if(tileSize < 0){
+      throw new PlanItRunTimeException("Tile size must not be negative, found %f", tileSize);
+    }
+    this.tileSize = tileSize;
+  }
+
+  /**
+   * Check if layers are written as tiles
+   *
+   * @return true when tiled, false otherwise
+   */
+  public boolean isTiledOutput() {
+    return tileSize > 0;
+  }
+
+  /**
+   * Maximum number of tiles of a tiled layer holding an open writer at any time. When exceeded, the writer of the least
+   * recently written tile is closed, and reopened to append to the tile when it receives further features
+   *
+   * @return maximum number of open tile writers
+   */
+  public int getMaxOpenTileWriters() {
+    return maxOpenTileWriters;
+  }
+
+  /**
+   * Maximum number of tiles of a tiled layer holding an open writer at any time, see {@link #getMaxOpenTileWriters()}. Lower
+   * it when the number of open files is limited, raise it when many tiles receive features throughout the layer
+   *
+   * @param maxOpenTileWriters to use, must be at least 1
+   */
+  public void setMaxOpenTileWriters(int maxOpenTileWriters) {
+    if(maxOpenTileWriters < 1){
+      throw new PlanItRunTimeException("Maximum number of open tile writers must be at least 1, found %d", maxOpenTileWriters);
+    }
+    this.maxOpenTileWriters = maxOpenTileWriters;
+  }
+
+  /**
+   * Check if a Mapbox vector tile pyramid is generated for each layer alongside the regular output
+   *
+   * @return true when generated, false otherwise
+   */
+  public boolean isVectorTileOutput() {
+    return vectorTileOutput;
+  }
+
+  /**
+   * Set whether a Mapbox vector tile pyramid is generated for each layer alongside the regular output, written to
+   * '&lt;output dir&gt;/vector_tiles/&lt;layer&gt;'
+   *
+   * @param vectorTileOutput flag to set
+   */
+  public void setVectorTileOutput(boolean vectorTileOutput) {
+    this.vectorTileOutput = vectorTileOutput;
+  }
+
+  /**
+   * Minimum zoom level of generated vector tile pyramids
+   *
+   * @return minimum zoom level
+   */
+  public int getVectorTileMinZoom() {
+    return vectorTileMinZoom;
+  }
+
+  /**
+   * Maximum zoom level of generated vector tile pyramids
+   *
+   * @return maximum zoom level
+   */
+  public int getVectorTileMaxZoom() {
+    return vectorTileMaxZoom;
+  }
+
+  /**
+   * Zoom levels of generated vector tile pyramids
+   *
+   * @param vectorTileMinZoom minimum zoom level, at least zero
+   * @param vectorTileMaxZoom maximum zoom level, at least the minimum and at most {@link #MAX_VECTOR_TILE_ZOOM}
+   */
+  public void setVectorTileZoomLevels(int vectorTileMinZoom, int vectorTileMaxZoom) {
+    if(vectorTileMinZoom < 0 || vectorTileMaxZoom < vectorTileMinZoom || vectorTileMaxZoom > MAX_VECTOR_TILE_ZOOM){
+      throw new PlanItRunTimeException("Invalid vector tile zoom levels %d-%d, must be within 0-%d",
+          vectorTileMinZoom, vectorTileMaxZoom, MAX_VECTOR_TILE_ZOOM);
+    }
+    this.vectorTileMinZoom = vectorTileMinZoom;
+    this.vectorTileMaxZoom = vectorTileMaxZoom;
+  }
+
+  /**
+   * Check if the coordinates of each chunk of extracted geometries are staged off-heap before being written
+   *
+   * @return true when staged, false otherwise
+   */
+  public boolean isOffHeapCoordinateStaging() {
+    return offHeapCoordinateStaging;
+  }
+
+  /**
+   * Set whether the coordinates of each extracted geometry are copied into off-heap buffers shared by its chunk as soon as it
+   * is extracted, so the per coordinate objects of the extracted geometries are not retained while the chunk is written.
+   * Reduces garbage collection pressure when writing layers with millions of (derived) geometries
+   *
+   * @param offHeapCoordinateStaging flag to set
+   */
+  public void setOffHeapCoordinateStaging(boolean offHeapCoordinateStaging) {
+    this.offHeapCoordinateStaging = offHeapCoordinateStaging;
+  }
+
+  /**
+   * Grid size (in destination CRS units) staged coordinates are snapped to, zero when not quantised
+   *
+   * @return quantisation grid size
+   */
+  public double getCoordinateQuantisationGrid() {
+    return coordinateQuantisationGrid;
+  }
+
+  /**
+   * Grid size (in destination CRS units) staged coordinates are snapped to, e.g. 0.01 to persist centimetre precision in a
+   * metric CRS. Use zero to persist coordinates as is. Only applied when off-heap coordinate staging is active
+   *
+   * @param coordinateQuantisationGrid to use, must not be negative
+   */
+  public void setCoordinateQuantisationGrid(double coordinateQuantisationGrid) {
+    if(coordinateQuantisationGrid < 0){
+      throw new PlanItRunTimeException("Coordinate quantisation grid must not be negative, found %f", coordinateQuantisationGrid);
+    }
+    this.coordinateQuantisationGrid = coordinateQuantisationGrid;
+  }
+
+  /**
+   * Maximum (estimated) heap used by export buffers in bytes, zero when not bounded
+   *
+   * @return export memory budget in bytes
+   */
+  public long getExportMemoryBudget() {
+    return exportMemoryBudget;
+  }
+
+  /**
+   * Bound the heap used by the buffers of the export, i.e., the attribute values of the chunks being extracted, and of
+   * chunks handed to the shard, tile or file writers but not yet written. Chunks are reduced in size when their rows are
+   * large and extraction waits for the file writers when the budget is used up. Sizes are estimated from the extracted
+   * values, so the budget is approximate. One budget is shared by all layers of an export, and by all components of an
+   * intermodal export, see {@link org.goplanit.geoio.converter.intermodal.GeometryIntermodalWriterSettings#setExportMemoryBudget(long)}.
+   * Vector tile pyramids retain all features of a layer until built, so they cannot be bounded and an export combining
+   * vector tile output with a budget is rejected
+   *
+   * @param exportMemoryBudget in bytes, zero to not bound export buffers
+   */
+  public void setExportMemoryBudget(long exportMemoryBudget) {
+    if(exportMemoryBudget < 0){
+      throw new PlanItRunTimeException("Export memory budget must not be negative, found %d", exportMemoryBudget);
+    }
+    this.exportMemoryBudget = exportMemoryBudget;
+  }
+
+  /**
+   * Bound the heap used by the buffers of the export, see {@link #setExportMemoryBudget(long)}
+   *
+   * @param exportMemoryBudgetMb in megabytes, zero to not bound export buffers
+   */
+  public void setExportMemoryBudgetMb(int exportMemoryBudgetMb) {
+    setExportMemoryBudget(exportMemoryBudgetMb * 1024L * 1024L);
+  }
+
+  /**
+   * Check if the export buffers are bounded by a memory budget
+   *
+   * @return true when bounded, false otherwise
+   */
+  public boolean isMemoryBoundedExport() {
+    return exportMemoryBudget > 0;
+  }
+
+  /**
+   * Check if completed layers are recorded in a checkpoint manifest, always the case when resuming from a checkpoint
+   *
+   * @return true when checkpointing, false otherwise
+   */
+  public boolean isCheckpointing() {
+    return checkpointing || resumeFromCheckpoint;
+  }
+
+  /**
+   * Record each layer in a checkpoint manifest of the writer as it completes, replacing the manifest of an earlier export, so
+   * the export can be resumed when it fails, see {@link #setResumeFromCheckpoint(boolean)}
+   *
+   * @param checkpointing flag to set
+   */
+  public void setCheckpointing(boolean checkpointing) {
+    this.checkpointing = checkpointing;
+  }
+
+  /**
+   * Check if layers recorded as completed in the checkpoint manifest, and still intact, are skipped
+   *
+   * @return true when resuming, false otherwise
+   */
+  public boolean isResumeFromCheckpoint() {
+    return resumeFromCheckpoint;
+  }
+
+  /**
+   * Resume an earlier (checkpointed) export: layers recorded as completed in the checkpoint manifest are skipped when all
+   * their files are unchanged and the number of entities to persist is the same, all other layers are written and added to
+   * the manifest. Without a manifest all layers are written. Implies checkpointing
+   *
+   * @param resumeFromCheckpoint flag to set
+   */
+  public void setResumeFromCheckpoint(boolean resumeFromCheckpoint) {
+    this.resumeFromCheckpoint = resumeFromCheckpoint;
+  }
+
+  /**
+   * Register a custom attribute, added to all layers of the extension's entity class (and its subtypes) after the attributes
+   * persisted by default
+   *
+   * @param attributeExtension to add
+   */
+  public void addAttributeExtension(GeoIoAttributeExtension<?> attributeExtension) {
+    for(var existing : attributeExtensions){
+      if(existing.getName().equals(attributeExtension.getName()) &&
+          (existing.isApplicableTo(attributeExtension.getEntityClass()) || attributeExtension.isApplicableTo(existing.getEntityClass()))){
+        throw new PlanItRunTimeException("Attribute extension %s already registered as %s", attributeExtension, existing);
+      }
+    }
+    attributeExtensions.add(attributeExtension);
+  }
+
+  /**
+   * Remove all registered attribute extensions
+   */
+  public void clearAttributeExtensions() {
+    attributeExtensions.clear();
+  }
+
+  /**
+   * All registered attribute extensions
+   *
+   * @return attribute extensions, in order of registration
+   */
+  public List<GeoIoAttributeExtension<?>> getAttributeExtensions() {
+    return List.copyOf(attributeExtensions);
+  }
+
+  /**
+   * Attribute extensions applicable to layers of the given PLANit entity class
+   *
+   * @param <T> type of PLANit entity
+   * @param planitEntityClass to collect extensions for
+   * @return applicable attribute extensions, in order of registration
+   */
+  @SuppressWarnings("unchecked")
+  public <T> List<GeoIoAttributeExtension<? super T>> getAttributeExtensions(Class<T> planitEntityClass) {
+    var applicable = new ArrayList<GeoIoAttributeExtension<? super T>>();
+    for(var extension : attributeExtensions){
+      if(extension.isApplicableTo(planitEntityClass)){
+        applicable.add((GeoIoAttributeExtension<? super T>) extension);
+      }
+    }
+    return applicable;
+  }
+
 }
@@ -0,0 +1,119 @@
+package org.goplanit.geoio.util;
+
+import org.geotools.util.Converters;
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Small table of attribute values that depend only on a shared key of a PLANit entity (for example its link segment type)
+ * rather than on the entity itself. The values for all registered attributes are computed once per key, upon first
+ * request, encoded to the binding of the attribute they are persisted as, and reused for every subsequent entity that shares
+ * the same key.
+ * <p>
+ *   All attributes must be registered before the table is sealed, see {@link #seal()}, lookups are thread safe.
+ * </p>
+ *
+ * @param <T> type of PLANit entity
+ * @param <K> type of the key the attribute values depend on
+ * @author markr
+ */
+public class KeyedAttributeValueTable<T, K> {
+
+  /** extract the key from the PLANit entity */
+  private final Function<T, K> keyExtractor;
+
+  /** the registered attribute value functions, position corresponds to position in the value rows */
+  private final List<Function<K, ?>> valueFunctions;
+
+  /** the bindings the registered attribute values are encoded to, position corresponds to position in the value rows */
+  private final List<Class<?>> bindings;
+
+  /** computed attribute values (one row per key) */
+  private final Map<K, Object[]> valuesByKey;
+
+  /** flag indicating the table is sealed, after which no more attributes can be registered */
+  private boolean sealed;
+
+  /**
+   * Compute all registered attribute values for the given key, encoded to their bindings
+   *
+   * @param key to compute values for
+   * @return computed values row
+   */
+  private Object[] computeRow(K key){
+    var row = new Object[valueFunctions.size()];
+    for(int index = 0; index < row.length; ++index){
+      var value = valueFunctions.get(index).apply(key);
+      row[index] = value == null ? null : Converters.convert(value, bindings.get(index));
+    }
+    return row;
+  }
+
+  /**
+   * Collect the value of the attribute at the given index for the entity
+   *
+   * @param entity to collect value for
+   * @param index of the registered attribute
+   * @return value, null if entity has no key
+   */
+  private Object getValue(T entity, int index){
+    K key = keyExtractor.apply(entity);
+    if(key == null){
+      return null;
+    }
+    return valuesByKey.computeIfAbsent(key, this::computeRow)[index];
+  }
+
+  /**
+   * Constructor
+   *
+   * @param keyExtractor to extract the key from each PLANit entity
+   */
+  public KeyedAttributeValueTable(Function<T, K> keyExtractor){
+    this.keyExtractor = keyExtractor;
+    this.valueFunctions = new ArrayList<>();
+    this.bindings = new ArrayList<>();
+    this.valuesByKey = new ConcurrentHashMap<>();
+    this.sealed = false;
+  }
+
+  /**
+   * Register an attribute whose value depends only on the key, providing an entity based function that
+   * looks up the memoised value
+   *
+   * @param binding the attribute is persisted as, memoised values are encoded to this binding, e.g., String
+   * @param valueFunction computing the attribute value for a given key
+   * @return function to apply to PLANit entity that provides the memoised value
+   */
+  public Function<T, Object> register(Class<?> binding, Function<K, ?> valueFunction){
+    if(sealed){
+      throw new PlanItRunTimeException("Unable to register additional attribute on keyed attribute value table after it has been sealed");
+    }
+    final int index = valueFunctions.size();
+    valueFunctions.add(valueFunction);
+    bindings.add(binding);
+    return entity -> getValue(entity, index);
+  }
+
+  /**
+   * Seal the table once all attributes are registered, i.e., when the feature description using it is complete
+   */
+  public void seal(){
+    sealed = true;
+  }
+
+  /**
+   * Number of distinct keys for which values have been computed so far
+   *
+   * @return number of keys
+   */
+  public int size(){
+    return valuesByKey.size();
+  }
+
+}
@@ -0,0 +1,334 @@
+package org.goplanit.geoio.util;
+
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Encode list valued attributes (e.g. the ids of all physical link segments of a service leg segment) as a single delimited
+ * string attribute. Entries are appended to a reusable per-thread buffer, so no stream pipelines or intermediate strings
+ * are created per row. Encoded values that exceed the maximum attribute length of the output format are dealt with
+ * according to the chosen {@link ListAttributeOverflowPolicy}, by default they are spilled to a side table that
+ * can be persisted alongside the layer.
+ * <p>
+ *   Entry appenders must not themselves use an encoder, since the buffer is shared per thread.
+ * </p>
+ *
+ * @author markr
+ */
+public class ListAttributeEncoder {
+
+  /** logger to use */
+  private static final Logger LOGGER = Logger.getLogger(ListAttributeEncoder.class.getCanonicalName());
+
+  /** maximum number of characters of a DBF attribute value */
+  public static final int DBF_MAX_ATTRIBUTE_LENGTH = 254;
+
+  /** delimiter between list entries */
+  public static final char DELIMITER = ',';
+
+  /** value written in place of a list that has been spilled to the side table */
+  public static final String OVERFLOW_MARKER = "#overflow";
+
+  /** header of the side table */
+  private static final String OVERFLOW_TABLE_HEADER = "id,attribute,value";
+
+  /** reusable buffer per thread */
+  private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(DBF_MAX_ATTRIBUTE_LENGTH));
+
+  /**
+   * Append a single list entry to the buffer
+   *
+   * @param <E> type of list entry
+   */
+  @FunctionalInterface
+  public interface EntryAppender<E> {
+
+    /**
+     * Append the encoded entry
+     *
+     * @param entry to append
+     * @param buffer to append to
+     */
+    void append(E entry, StringBuilder buffer);
+  }
+
+  /**
+   * Spilled list attribute value
+   */
+  private static final class OverflowEntry {
+
+    /** id of the entity the value belongs to */
+    private final long id;
+
+    /** name of the attribute */
+    private final String attributeName;
+
+    /** full encoded value */
+    private final String value;
+
+    /**
+     * Constructor
+     *
+     * @param id of the entity
+     * @param attributeName of the value
+     * @param value full encoded value
+     */
+    private OverflowEntry(long id, String attributeName, String value) {
+      this.id = id;
+      this.attributeName = attributeName;
+      this.value = value;
+    }
+  }
+
+  /** policy to apply */
+  private ListAttributeOverflowPolicy overflowPolicy;
+
+  /** maximum length before the overflow policy is applied */
+  private final int maxAttributeLength;
+
+  /** spilled values, may be populated from multiple threads */
+  private final Queue<OverflowEntry> overflowEntries;
+
+  /**
+   * Finish the encoded value in the buffer by applying the overflow policy
+   *
+   * @param id of the entity
+   * @param attributeName of the attribute being encoded
+   * @param buffer containing the full value
+   * @return attribute value to persist
+   */
+  private String finish(long id, String attributeName, StringBuilder buffer){
+    if(buffer.length() == 0){
+      return "";
+    }
+    if(buffer.length() > maxAttributeLength && overflowPolicy == ListAttributeOverflowPolicy.SPILL){
+      overflowEntries.add(new OverflowEntry(id, attributeName, buffer.toString()));
+      return OVERFLOW_MARKER;
+    }
+    return buffer.toString();
+  }
+
+  /**
+   * Quote value for CSV persistence
+   *
+   * @param value to quote
+   * @return quoted value
+   */
+  private static String quote(String value){
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+
+  /**
+   * Constructor using the DBF attribute length limit
+   */
+  public ListAttributeEncoder(){
+    this(DBF_MAX_ATTRIBUTE_LENGTH);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param maxAttributeLength maximum length of encoded value before overflow policy is applied
+   */
+  public ListAttributeEncoder(int maxAttributeLength){
+    this.maxAttributeLength = maxAttributeLength;
+    this.overflowPolicy = ListAttributeOverflowPolicy.SPILL;
+    this.overflowEntries = new ConcurrentLinkedQueue<>();
+  }
+
+  /**
+   * Encode the entries by appending their mapped ids
+   *
+   * @param <E> type of entry
+   * @param id of the entity the attribute belongs to (used as reference in side table)
+   * @param attributeName name of the attribute
+   * @param entries to encode
+   * @param idMapper to apply to each entry
+   * @return encoded value
+   */
+  public <E> String encode(long id, String attributeName, Iterable<? extends E> entries, Function<? super E, String> idMapper){
+    return encodeWith(id, attributeName, entries, (entry, buffer) -> buffer.append(idMapper.apply(entry)));
+  }
+
+  /**
+   * Encode the entries by means of the provided appender
+   *
+   * @param <E> type of entry
+   * @param id of the entity the attribute belongs to (used as reference in side table)
+   * @param attributeName name of the attribute
+   * @param entries to encode
+   * @param entryAppender to append each entry to the buffer
+   * @return encoded value
+   */
+  public <E> String encodeWith(long id, String attributeName, Iterable<? extends E> entries, EntryAppender<? super E> entryAppender){
+    var buffer = BUFFER.get();
+    buffer.setLength(0);
+
+    boolean first = true;
+    for(var entry : entries){
+      if(!first){
+        buffer.append(DELIMITER);
+      }
+      entryAppender.append(entry, buffer);
+      first = false;
+    }
+    return finish(id, attributeName, buffer);
+  }
+
+  /**
+   * Append a number rounded to the given number of decimals without creating intermediate strings (always using '.' as
+   * decimal separator)
+   *
+   * @param buffer to append to
+   * @param value to append
+   * @param decimals number of decimals to use
+   */
+  public static void appendRounded(StringBuilder buffer, double value, int decimals){
+    if(Double.isNaN(value) || Double.isInfinite(value)){
+      buffer.append(value);
+      return;
+    }
+    long scale = 1;
+    for(int index = 0; index < decimals; ++index){
+      scale *= 10;
+    }
+    long scaled = Math.round(Math.abs(value) * scale);
+    if(value < 0 && scaled != 0){
+      buffer.append('-');
+    }
+    buffer.append(scaled / scale);
+    if(decimals > 0){
+      buffer.append('.');
+      long remainder = scaled % scale;
+      for(long divisor = scale / 10; divisor > 0; divisor /= 10){
+        buffer.append((char) ('0' + (remainder / divisor) % 10));
+      }
+    }
+  }
+
+  /**
+   * Reset the encoder for a new layer, removing any spilled values
+   *
+   * @param overflowPolicy to apply from now on
+   */
+  public void reset(ListAttributeOverflowPolicy overflowPolicy){
+    this.overflowPolicy = overflowPolicy;
+    this.overflowEntries.clear();
+  }
+
+  /**
+   * Move the spilled values to a new encoder, so they can be persisted later while this encoder is reset for another layer
+   *
+   * @return encoder holding the spilled values, with the same policy and attribute length limit
+   */
+  public ListAttributeEncoder detachOverflow(){
+    var detached = new ListAttributeEncoder(maxAttributeLength);
+    detached.overflowPolicy = overflowPolicy;
+    OverflowEntry entry;
+    while((entry = overflowEntries.poll()) != null){
+      detached.overflowEntries.add(entry);
+    }
+    return detached;
+  }
+
+  /**
+   * Verify if any values have been spilled
+   *
+   * @return true when spilled values exist, false otherwise
+   */
+  public boolean hasOverflow(){
+    return !overflowEntries.isEmpty();
+  }
+
+  /**
+   * Persist the spilled values as a CSV side table with columns id, attribute, value (sorted by id)
+   *
+   * @param sideTablePath to persist to
+   */
+  public void writeOverflowTable(Path sideTablePath){
+    writeOverflowTable(sideTablePath, false);
+  }
+
+  /**
+   * Persist the spilled values as a CSV side table with columns id, attribute, value (sorted by id within this call)
+   *
+   * @param sideTablePath to persist to
+   * @param append when true and the side table exists, rows are appended to it, otherwise it is replaced
+   */
+  public void writeOverflowTable(Path sideTablePath, boolean append){
+    var sortedEntries = new ArrayList<>(overflowEntries);
+    sortedEntries.sort(Comparator.comparingLong((OverflowEntry e) -> e.id).thenComparing(e -> e.attributeName));
+
+    LOGGER.info(String.format("Persisting %d list attribute values exceeding %d characters to: %s",
+        sortedEntries.size(), maxAttributeLength, sideTablePath.toAbsolutePath()));
+    boolean appendRows = append && Files.exists(sideTablePath);
+    var openOptions = appendRows ?
+        new OpenOption[]{StandardOpenOption.WRITE, StandardOpenOption.APPEND} : new OpenOption[0];
+    try(BufferedWriter writer = Files.newBufferedWriter(sideTablePath, StandardCharsets.UTF_8, openOptions)){
+      if(!appendRows) {
+        writer.write(OVERFLOW_TABLE_HEADER);
+        writer.newLine();
+      }
+      for(var entry : sortedEntries){
+        writer.write(Long.toString(entry.id));
+        writer.write(DELIMITER);
+        writer.write(entry.attributeName);
+        writer.write(DELIMITER);
+        writer.write(quote(entry.value));
+        writer.newLine();
+      }
+    }catch (IOException e){
+      LOGGER.severe(e.getMessage());
+      throw new PlanItRunTimeException("Unable to persist list attribute side table %s", sideTablePath.toString());
+    }
+  }
+
+  /**
+   * Read a side table persisted by {@link #writeOverflowTable(Path, boolean)}, inverse of the writing
+   *
+   * @param sideTablePath to read
+   * @return spilled values by entity id and attribute name, empty when the side table does not exist
+   */
+  public static Map<Long, Map<String, String>> readOverflowTable(Path sideTablePath){
+    var valuesById = new HashMap<Long, Map<String, String>>();
+    if(!Files.exists(sideTablePath)){
+      return valuesById;
+    }
+    try(var reader = Files.newBufferedReader(sideTablePath, StandardCharsets.UTF_8)){
+      reader.readLine(); // header
+      String line;
+      while((line = reader.readLine()) != null){
+        int idEnd = line.indexOf(DELIMITER);
+        int attributeEnd = idEnd < 0 ? -1 : line.indexOf(DELIMITER, idEnd + 1);
+        if(attributeEnd < 0){
+          continue;
+        }
+        var quotedValue = line.substring(attributeEnd + 1);
+        var value = quotedValue.length() >= 2 && quotedValue.startsWith("\"") && quotedValue.endsWith("\"") ?
+            quotedValue.substring(1, quotedValue.length() - 1).replace("\"\"", "\"") : quotedValue;
+        valuesById.computeIfAbsent(Long.parseLong(line.substring(0, idEnd)), id -> new HashMap<>())
+            .put(line.substring(idEnd + 1, attributeEnd), value);
+      }
+    }catch (IOException | NumberFormatException e){
+      LOGGER.severe(e.getMessage());
+      throw new PlanItRunTimeException("Unable to read list attribute side table %s", sideTablePath.toString());
+    }
+    return valuesById;
+  }
+
+}
@@ -0,0 +1,17 @@
+package org.goplanit.geoio.util;
+
+/**
+ * Policy on how to deal with list valued attributes whose encoded value exceeds the maximum attribute length of the
+ * output format, e.g., the 254 character limit of DBF files that accompany shape files
+ *
+ * @author markr
+ */
+public enum ListAttributeOverflowPolicy {
+
+  /** write a marker in the attribute and spill the full value to a side table persisted next to the layer */
+  SPILL,
+
+  /** write the full value regardless, for output formats that do not limit attribute length */
+  IGNORE;
+
+}
@@ -2,6 +2,7 @@ package org.goplanit.geoio.util;
 
 import org.goplanit.utils.exceptions.PlanItRunTimeException;
 import org.goplanit.utils.mode.Mode;
+import org.goplanit.utils.mode.PredefinedModeType;
 
 import java.util.function.Function;
 
@@ -20,7 +21,26 @@ public class ModeShortNameConverter {
    * @return short name used
    */
   public static String asShortName(Mode mode, Function<Mode, String> modeIdMapper){
-    switch (mode.getPredefinedModeType()){
+    if(mode.getPredefinedModeType() != PredefinedModeType.CUSTOM){
+      return asShortName(mode.getPredefinedModeType());
+    }
+    if(mode.getName().length()<6){
+      return mode.getName();
+    }else if(modeIdMapper.apply(mode).length()<5){
+      return "m" + modeIdMapper.apply(mode);
+    }else{
+      throw new PlanItRunTimeException("Unable to create short name for mode %s, likely exceeds 5 characters", mode.toString());
+    }
+  }
+
+  /**
+   * As short name with 5 characters or less for a predefined mode type
+   *
+   * @param modeType to get short name for
+   * @return short name used, empty for custom modes
+   */
+  public static String asShortName(PredefinedModeType modeType){
+    switch (modeType){
       case CAR:
       case BUS:
       case TRAIN:
@@ -29,7 +49,7 @@ public class ModeShortNameConverter {
       case GOODS_VEHICLE:
       case HEAVY_GOODS_VEHICLE:
       case LARGE_HEAVY_GOODS_VEHICLE:
-        return mode.getPredefinedModeType().value();
+        return modeType.value();
       case BICYCLE:
         return "cycle";
       case CAR_SHARE:
@@ -44,15 +64,23 @@ public class ModeShortNameConverter {
         return "sbway";
       case LIGHTRAIL:
         return "lrail";
-      case CUSTOM:
-        if(mode.getName().length()<6){
-          return mode.getName();
-        }else if(modeIdMapper.apply(mode).length()<5){
-          return "m" + modeIdMapper.apply(mode);
-        }else{
-          throw new PlanItRunTimeException("Unable to create short name for mode %s, likely exceeds 5 characters", mode.toString());
-        }
+      default:
+        return "";
+    }
+  }
+
+  /**
+   * Inverse of {@link #asShortName(PredefinedModeType)}, custom modes cannot be identified by their short name
+   *
+   * @param shortName to find predefined mode type for
+   * @return predefined mode type, CUSTOM when the short name is not of a predefined mode type
+   */
+  public static PredefinedModeType asPredefinedModeType(String shortName){
+    for(var modeType : PredefinedModeType.values()){
+      if(modeType != PredefinedModeType.CUSTOM && asShortName(modeType).equals(shortName)){
+        return modeType;
+      }
     }
-    return "";
+    return PredefinedModeType.CUSTOM;
   }
 }
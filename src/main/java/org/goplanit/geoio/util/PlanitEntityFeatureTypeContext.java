@@ -30,6 +30,15 @@ public class PlanitEntityFeatureTypeContext<T> {
   /** feature description in attribute value function mapping combinations */
   private ArrayList<Triple<String,String, Function<T,? extends Object>>> geoFeatureDescription;
 
+  /** encoder used by list valued attributes of this context */
+  private final ListAttributeEncoder listAttributeEncoder;
+
+  /** custom attributes appended to the description */
+  private List<GeoIoAttributeExtension<? super T>> attributeExtensions = List.of();
+
+  /** description including the attribute extensions, null when to be (re)constructed */
+  private List<Triple<String,String, Function<T,? extends Object>>> extendedFeatureDescription;
+
   /** append one or more additional entries to the description
    *
    * @param featureDescriptionEntries to append
@@ -39,6 +48,7 @@ public class PlanitEntityFeatureTypeContext<T> {
     for(var entry : featureDescriptionEntries){
       geoFeatureDescription.add(entry);
     }
+    extendedFeatureDescription = null;
   }
 
   /**
@@ -50,8 +60,23 @@ public class PlanitEntityFeatureTypeContext<T> {
   protected PlanitEntityFeatureTypeContext(
           final Class<T> clazz,
           Collection<Triple<String,String, Function<T, ? extends Object>>> geoFeatureDescription){
+    this(clazz, geoFeatureDescription, new ListAttributeEncoder());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param clazz to use
+   * @param geoFeatureDescription to use
+   * @param listAttributeEncoder used by the list valued attributes in the feature description
+   */
+  protected PlanitEntityFeatureTypeContext(
+          final Class<T> clazz,
+          Collection<Triple<String,String, Function<T, ? extends Object>>> geoFeatureDescription,
+          ListAttributeEncoder listAttributeEncoder){
     this.planitEntityClass = clazz;
     this.geoFeatureDescription = new ArrayList<>(geoFeatureDescription);
+    this.listAttributeEncoder = listAttributeEncoder;
   }
 
   /** geotools attribute key for default geometry attribute as used here across entities */
@@ -61,8 +86,58 @@ public class PlanitEntityFeatureTypeContext<T> {
     return planitEntityClass;
   }
 
+  /**
+   * Attribute description, i.e., attribute name, type and value function per attribute, followed by the attributes of the
+   * extensions, if any, in order of the extensions
+   *
+   * @return attribute description
+   */
   public List<Triple<String,String, Function<T, ? extends Object>>> getAttributeDescription() {
-    return geoFeatureDescription;
+    if(attributeExtensions.isEmpty()){
+      return geoFeatureDescription;
+    }
+    if(extendedFeatureDescription == null){
+      var description = new ArrayList<>(geoFeatureDescription);
+      for(var extension : attributeExtensions){
+        description.add(Triple.of(extension.getName(), extension.getType(), extension::getValue));
+      }
+      extendedFeatureDescription = description;
+    }
+    return extendedFeatureDescription;
+  }
+
+  /**
+   * Custom attributes appended to the description of this context
+   *
+   * @return attribute extensions
+   */
+  public List<GeoIoAttributeExtension<? super T>> getAttributeExtensions() {
+    return attributeExtensions;
+  }
+
+  /**
+   * Set the custom attributes to append to the description of this context, replacing any set before
+   *
+   * @param attributeExtensions to append
+   */
+  public void setAttributeExtensions(List<GeoIoAttributeExtension<? super T>> attributeExtensions) {
+    for(var extension : attributeExtensions){
+      if(geoFeatureDescription.stream().anyMatch(attribute -> attribute.first().equals(extension.getName()))){
+        throw new PlanItRunTimeException("Attribute extension %s clashes with attribute of %s",
+            extension.getName(), planitEntityClass.getSimpleName());
+      }
+    }
+    this.attributeExtensions = List.copyOf(attributeExtensions);
+    this.extendedFeatureDescription = null;
+  }
+
+  /**
+   * Encoder used by list valued attributes, holds any values that did not fit the output format's attribute length
+   *
+   * @return list attribute encoder
+   */
+  public ListAttributeEncoder getListAttributeEncoder(){
+    return listAttributeEncoder;
   }
 
   /**
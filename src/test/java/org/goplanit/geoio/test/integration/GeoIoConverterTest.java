@@ -5,6 +5,7 @@ import org.goplanit.converter.intermodal.IntermodalConverterFactory;
 import org.goplanit.converter.network.NetworkConverterFactory;
 import org.goplanit.converter.service.ServiceNetworkConverterFactory;
 import org.goplanit.converter.zoning.ZoningConverterFactory;
+import org.goplanit.geoio.converter.GeoIoExportResult;
 import org.goplanit.geoio.converter.intermodal.GeometryIntermodalWriterFactory;
 import org.goplanit.geoio.converter.network.GeometryNetworkWriter;
 import org.goplanit.geoio.converter.network.GeometryNetworkWriterFactory;
@@ -28,14 +29,19 @@ import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.logging.Logger;
 
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 /**
- * JUnit test cases for the converters provided in the PlanitGeoIO format. This is currently not so much a test but more
- * of an example on how to setup a simple GIS exporter for a PLANit saved network with or without services.
+ * JUnit test cases for the converters provided in the PlanitGeoIO format. These mainly serve as an example on how to setup a
+ * simple GIS exporter for a PLANit saved network with or without services, verifying only that the export produced output.
  * <p>
  *   Change the input or output path to persist either the Sydney or Melbourne network, respectively
  * </p>
@@ -56,6 +62,34 @@ public class GeoIoConverterTest {
   private static final String MELBOURNE_INPUT_PATH = Path.of(PROJECT_PATH, "input", "melbourne").toString();
   private static final String MELBOURNE_OUTPUT_PATH = Path.of(PROJECT_PATH, "outputs","melbourne").toString();
 
+  /**
+   * Verify an export wrote features, with all its files present
+   *
+   * @param exportResult of the export
+   */
+  private static void assertExported(GeoIoExportResult exportResult){
+    assertNotNull(exportResult, "no export result");
+    assertFalse(exportResult.getLayers().isEmpty(), "no layers exported");
+    assertTrue(exportResult.getFeatureCount() > 0, "no features exported");
+    for(var file : exportResult.getFiles()){
+      assertTrue(Files.exists(file), file + " missing");
+    }
+  }
+
+  /**
+   * Verify shape files were written to a directory since a given time
+   *
+   * @param directory to check
+   * @param startMillis time files should be written after
+   * @throws IOException when unable to list the directory
+   */
+  private static void assertShapeFilesWrittenSince(Path directory, long startMillis) throws IOException {
+    try(var files = Files.list(directory)){
+      assertTrue(files.filter(file -> file.toString().endsWith(".shp")).anyMatch(file -> file.toFile().lastModified() >= startMillis - 1000),
+          "no shape files written to " + directory);
+    }
+  }
+
   @BeforeAll
   public static void setUp() throws Exception {
     if (LOGGER == null) {
@@ -89,7 +123,7 @@ public class GeoIoConverterTest {
       /* id mapping based on XML, easier to read (and knowing XML ids are unique in this case*/
       geometryWriter.setIdMapperType(IdMapperType.XML);
 
-      //todo used as an example rather than test
+      assertExported(geometryWriter.getLastExportResult());
 
     } catch (Exception e) {
       LOGGER.severe(e.getMessage());
@@ -118,7 +152,7 @@ public class GeoIoConverterTest {
       /* convert */
       ServiceNetworkConverterFactory.create(planitReader, geometryWriter).convert();
 
-      //todo used as an example rather than test
+      assertExported(geometryWriter.getLastExportResult());
 
     } catch (Exception e) {
       LOGGER.severe(e.getMessage());
@@ -151,7 +185,7 @@ public class GeoIoConverterTest {
       /* convert */
       ZoningConverterFactory.create(reader, geometryWriter).convert();
 
-      //todo used as an example rather than test
+      assertExported(geometryWriter.getLastExportResult());
 
     } catch (Exception e) {
       LOGGER.severe(e.getMessage());
@@ -177,7 +211,7 @@ public class GeoIoConverterTest {
       /* persist */
       geometryWriter.write(result.fourth());
 
-      //todo add assertions...
+      assertExported(geometryWriter.getLastExportResult());
 
     } catch (Exception e) {
       LOGGER.severe(e.getMessage());
@@ -207,9 +241,10 @@ public class GeoIoConverterTest {
       geometryWriter.setIdMapperType(IdMapperType.XML);
 
       /* convert */
+      final long startMillis = System.currentTimeMillis();
       IntermodalConverterFactory.create(planitReader, geometryWriter).convertWithServices();
 
-      //todo add assertions...
+      assertShapeFilesWrittenSince(Path.of(MELBOURNE_OUTPUT_PATH), startMillis);
 
     } catch (Exception e) {
       LOGGER.severe(e.getMessage());
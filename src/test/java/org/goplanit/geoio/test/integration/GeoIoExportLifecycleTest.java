@@ -0,0 +1,370 @@
+package org.goplanit.geoio.test.integration;
+
+import org.apache.commons.io.FileUtils;
+import org.goplanit.converter.idmapping.IdMapperType;
+import org.goplanit.geoio.converter.GeoIoCancellationToken;
+import org.goplanit.geoio.converter.GeoIoExportCancelledException;
+import org.goplanit.geoio.converter.GeoIoExportResult;
+import org.goplanit.geoio.converter.GeoIoProgressListener;
+import org.goplanit.geoio.converter.network.GeometryNetworkWriter;
+import org.goplanit.geoio.converter.network.GeometryNetworkWriterFactory;
+import org.goplanit.geoio.converter.network.GeometryNetworkWriterSettings;
+import org.goplanit.geoio.converter.scan.GeoIoLayerScanner;
+import org.goplanit.geoio.converter.service.GeometryRoutedServicesWriterFactory;
+import org.goplanit.geoio.converter.service.RoutedTripScheduleTableWriter;
+import org.goplanit.io.converter.intermodal.PlanitIntermodalReaderFactory;
+import org.goplanit.io.converter.network.PlanitNetworkReaderFactory;
+import org.goplanit.logging.Logging;
+import org.goplanit.network.MacroscopicNetwork;
+import org.goplanit.utils.id.IdGenerator;
+import org.goplanit.utils.locale.CountryNames;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Behavioural tests of the lifecycle of a GeoIO export beyond a single uninterrupted write, e.g., cancelling an export
+ * midway, resuming from a checkpoint or writing a snapshot captured earlier.
+ *
+ * @author markr
+ */
+public class GeoIoExportLifecycleTest {
+
+  /** the logger */
+  private static Logger LOGGER = null;
+
+  private static final Path TEST_CASE_PATH = Path.of("src","test","resources");
+
+  private static final String PROJECT_PATH = Path.of(TEST_CASE_PATH.toString(),"converter_test").toString();
+
+  private static final String SYDNEY_INPUT_PATH = Path.of(PROJECT_PATH, "input", "sydney").toString();
+  private static final Path LIFECYCLE_OUTPUT_PATH = Path.of(PROJECT_PATH, "outputs","lifecycle");
+
+  /**
+   * Prepare a clean output directory for a test
+   *
+   * @param name of the sub directory
+   * @return directory
+   * @throws IOException when unable to clean
+   */
+  private static Path prepareOutputDirectory(String name) throws IOException {
+    var outputDirectory = LIFECYCLE_OUTPUT_PATH.resolve(name);
+    FileUtils.deleteDirectory(outputDirectory.toFile());
+    Files.createDirectories(outputDirectory);
+    return outputDirectory;
+  }
+
+  /**
+   * Read the network used by the tests
+   *
+   * @return network
+   */
+  private static MacroscopicNetwork readNetwork(){
+    return PlanitNetworkReaderFactory.create(SYDNEY_INPUT_PATH).read();
+  }
+
+  /**
+   * Create a network writer with XML id mapping
+   *
+   * @param outputDirectory to write to
+   * @return network writer
+   */
+  private static GeometryNetworkWriter createNetworkWriter(Path outputDirectory){
+    var writer = GeometryNetworkWriterFactory.create(outputDirectory.toString(), CountryNames.GLOBAL);
+    writer.setIdMapperType(IdMapperType.XML);
+    return writer;
+  }
+
+  /**
+   * Schema name of a network layer's file
+   *
+   * @param layerXmlId of the network layer
+   * @param fileName of the entity type, e.g. {@link GeometryNetworkWriterSettings#DEFAULT_LINKSEGMENTS_FILE_NAME}
+   * @return schema name
+   */
+  private static String schemaName(String layerXmlId, String fileName){
+    return String.join("_", GeometryNetworkWriterSettings.DEFAULT_LAYER_PREFIX, layerXmlId, fileName);
+  }
+
+  /**
+   * Files of network layers in a directory (not recursively)
+   *
+   * @param directory to list
+   * @return file names
+   * @throws IOException when unable to list
+   */
+  private static List<String> listLayerFiles(Path directory) throws IOException {
+    try(var files = Files.list(directory)){
+      return files.map(p -> p.getFileName().toString())
+          .filter(name -> name.startsWith(GeometryNetworkWriterSettings.DEFAULT_LAYER_PREFIX + "_")).sorted().collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Count the rows of a layer
+   *
+   * @param directory of the layer
+   * @param schemaName of the layer
+   * @return number of rows
+   */
+  private static long countRows(Path directory, String schemaName){
+    try(var scanner = GeoIoLayerScanner.create(directory, schemaName)){
+      return scanner.forEachRow(row -> {});
+    }
+  }
+
+  /**
+   * Read the timetable tables of routed services written to a directory
+   *
+   * @param directory to read from
+   * @return lines of each table by file name
+   * @throws IOException when unable to read
+   */
+  private static Map<String, List<String>> readTripTables(Path directory) throws IOException {
+    var tables = new HashMap<String, List<String>>();
+    try(var files = Files.list(directory)){
+      for(var file : files.collect(Collectors.toList())){
+        var fileName = file.getFileName().toString();
+        if(fileName.endsWith(RoutedTripScheduleTableWriter.DEPARTURES_TABLE_SUFFIX) ||
+            fileName.endsWith(RoutedTripScheduleTableWriter.LEG_TIMINGS_TABLE_SUFFIX)){
+          tables.put(fileName, Files.readAllLines(file));
+        }
+      }
+    }
+    return tables;
+  }
+
+  @BeforeAll
+  public static void setUp() throws Exception {
+    if (LOGGER == null) {
+      LOGGER = Logging.createLogger(GeoIoExportLifecycleTest.class);
+    }
+  }
+
+  @AfterAll
+  public static void tearDown() {
+    Logging.closeLogger(LOGGER);
+    IdGenerator.reset();
+  }
+
+  /**
+   * Cancelling the export midway through the last layer should throw and remove the files of all layers written or started
+   * by the export, without reporting a completed export
+   */
+  @Test
+  public void testCancellationRemovesStartedLayers() throws IOException {
+    var outputDirectory = prepareOutputDirectory("cancel");
+    var network = readNetwork();
+    var cancelledLayer = schemaName(network.getTransportLayers().iterator().next().getXmlId(),
+        GeometryNetworkWriterSettings.DEFAULT_LINKSEGMENTS_FILE_NAME);
+
+    var writer = createNetworkWriter(outputDirectory);
+    writer.getSettings().setAttributeExtractionChunkSize(100);
+    var cancellationToken = GeoIoCancellationToken.create();
+    writer.setCancellationToken(cancellationToken);
+    writer.setProgressListener(new GeoIoProgressListener() {
+      @Override
+      public void onProgress(String layerName, long layerFeaturesDone, long totalFeaturesDone) {
+        if(layerName.equals(cancelledLayer)){
+          cancellationToken.cancel();
+        }
+      }
+    });
+
+    assertThrows(GeoIoExportCancelledException.class, () -> writer.write(network));
+    assertTrue(cancellationToken.isCancelled(), "layer " + cancelledLayer + " never reached");
+    assertNull(writer.getLastExportResult(), "export result of cancelled export");
+    assertEquals(List.of(), listLayerFiles(outputDirectory), "files remaining after cancellation");
+  }
+
+  /**
+   * An export cancelled before it starts should throw without writing anything
+   */
+  @Test
+  public void testCancellationBeforeStart() throws IOException {
+    var outputDirectory = prepareOutputDirectory("cancelbeforestart");
+    var network = readNetwork();
+
+    var writer = createNetworkWriter(outputDirectory);
+    var cancellationToken = GeoIoCancellationToken.create();
+    cancellationToken.cancel();
+    writer.setCancellationToken(cancellationToken);
+
+    assertThrows(GeoIoExportCancelledException.class, () -> writer.write(network));
+    assertEquals(List.of(), listLayerFiles(outputDirectory), "files written by cancelled export");
+  }
+
+  /**
+   * An asynchronous write should complete with the result of its own export, counting the features of each layer written,
+   * while a failing asynchronous write should complete exceptionally rather than with a result
+   */
+  @Test
+  public void testWriteAsync() throws IOException {
+    var outputDirectory = prepareOutputDirectory("async");
+    var network = readNetwork();
+
+    var writer = createNetworkWriter(outputDirectory);
+    var exportResult = writer.writeAsync(network).join();
+    assertTrue(exportResult != null, "no export result");
+    assertEquals(3 * network.getTransportLayers().size(), exportResult.getLayers().size(), "layers written");
+    long expectedFeatureCount = 0;
+    for(var layer : network.getTransportLayers()){
+      var expectedCounts = Map.of(
+          GeometryNetworkWriterSettings.DEFAULT_NODES_FILE_NAME, (long) layer.getNodes().size(),
+          GeometryNetworkWriterSettings.DEFAULT_LINKS_FILE_NAME, (long) layer.getLinks().size(),
+          GeometryNetworkWriterSettings.DEFAULT_LINKSEGMENTS_FILE_NAME, (long) layer.getLinkSegments().size());
+      for(var entry : expectedCounts.entrySet()){
+        var layerName = schemaName(layer.getXmlId(), entry.getKey());
+        var layerResult = exportResult.getLayer(layerName);
+        assertTrue(layerResult != null, "layer " + layerName + " missing from export result");
+        assertEquals(entry.getValue(), layerResult.getFeatureCount(), "features of " + layerName);
+        assertEquals(entry.getValue(), countRows(outputDirectory, layerName), "rows of " + layerName);
+        expectedFeatureCount += entry.getValue();
+      }
+    }
+    assertEquals(expectedFeatureCount, exportResult.getFeatureCount(), "features written");
+
+    var failingDirectory = prepareOutputDirectory("asyncfailed");
+    var failingWriter = createNetworkWriter(failingDirectory);
+    var cancellationToken = GeoIoCancellationToken.create();
+    cancellationToken.cancel();
+    failingWriter.setCancellationToken(cancellationToken);
+    var failedFuture = failingWriter.writeAsync(network);
+    var failure = assertThrows(CompletionException.class, failedFuture::join);
+    assertTrue(failedFuture.isCompletedExceptionally(), "failed write completed normally");
+    assertTrue(failure.getCause() instanceof GeoIoExportCancelledException, "cause of failed write: " + failure.getCause());
+    assertEquals(List.of(), listLayerFiles(failingDirectory), "files written by failed write");
+  }
+
+  /**
+   * Checkpointing should record every completed layer in the manifest. Resuming should then skip all intact layers without
+   * touching their files, and only rewrite a layer whose files were removed since
+   */
+  @Test
+  public void testResumeFromCheckpoint() throws IOException {
+    var outputDirectory = prepareOutputDirectory("checkpoint");
+    var network = readNetwork();
+    var removedLayer = schemaName(network.getTransportLayers().iterator().next().getXmlId(),
+        GeometryNetworkWriterSettings.DEFAULT_LINKSEGMENTS_FILE_NAME);
+
+    var writer = createNetworkWriter(outputDirectory);
+    writer.getSettings().setCheckpointing(true);
+    writer.write(network);
+    var exportResult = writer.getLastExportResult();
+
+    var manifestPath = writer.getCheckpointManifestPath();
+    assertTrue(Files.exists(manifestPath), "checkpoint manifest missing");
+    var lines = Files.readAllLines(manifestPath);
+    var checkpointedLayers = lines.subList(1, lines.size()).stream().map(line -> line.split(",")[0]).collect(Collectors.toSet());
+    var writtenLayers = exportResult.getLayers().stream().map(GeoIoExportResult.Layer::getName).collect(Collectors.toSet());
+    assertTrue(writtenLayers.contains(removedLayer), "layer " + removedLayer + " not written");
+    assertEquals(writtenLayers, checkpointedLayers, "layers in checkpoint manifest");
+
+    /* resuming an intact export skips all layers */
+    var lastModified = new HashMap<Path, Long>();
+    for(var file : exportResult.getFiles()){
+      lastModified.put(file, file.toFile().lastModified());
+    }
+    var resumingWriter = createNetworkWriter(outputDirectory);
+    resumingWriter.getSettings().setResumeFromCheckpoint(true);
+    resumingWriter.write(network);
+    for(var layer : resumingWriter.getLastExportResult().getLayers()){
+      assertEquals(Duration.ZERO, layer.getDuration(), "layer " + layer.getName() + " written again");
+      assertEquals(exportResult.getLayer(layer.getName()).getFeatureCount(), layer.getFeatureCount(), "features of " + layer.getName());
+    }
+    for(var entry : lastModified.entrySet()){
+      assertEquals(entry.getValue(), entry.getKey().toFile().lastModified(), entry.getKey() + " modified by resumed export");
+    }
+
+    /* a layer whose files were removed is written again, the others are still skipped */
+    for(var file : exportResult.getLayer(removedLayer).getFiles()){
+      Files.delete(file);
+    }
+    resumingWriter.write(network);
+    for(var layer : resumingWriter.getLastExportResult().getLayers()){
+      assertEquals(layer.getName().equals(removedLayer), !Duration.ZERO.equals(layer.getDuration()),
+          "layer " + layer.getName() + " written again");
+    }
+    assertEquals(exportResult.getLayer(removedLayer).getFeatureCount(), countRows(outputDirectory, removedLayer),
+        "features of rewritten layer " + removedLayer);
+  }
+
+  /**
+   * The timetable tables of routed services should be captured with the snapshot, so changing the trips after capturing does
+   * not affect them. Nothing is written until the snapshot is, and nothing at all when it is discarded
+   */
+  @Test
+  public void testSnapshotCapturesTripTables() throws IOException {
+    var routedServices = PlanitIntermodalReaderFactory.create(SYDNEY_INPUT_PATH).readWithServices().fourth();
+
+    var referenceDirectory = prepareOutputDirectory("snapshotreference");
+    GeometryRoutedServicesWriterFactory.create(referenceDirectory.toString(), CountryNames.GLOBAL).write(routedServices);
+    var expectedTables = readTripTables(referenceDirectory);
+    assertTrue(expectedTables.keySet().stream().anyMatch(name -> name.endsWith(RoutedTripScheduleTableWriter.DEPARTURES_TABLE_SUFFIX)),
+        "no departures table written");
+    assertTrue(expectedTables.values().stream().anyMatch(lines -> lines.size() > 1), "trip tables without rows");
+
+    var discardedDirectory = prepareOutputDirectory("snapshotdiscarded");
+    GeometryRoutedServicesWriterFactory.create(discardedDirectory.toString(), CountryNames.GLOBAL).captureSnapshot(routedServices).discard();
+    assertEquals(Map.of(), readTripTables(discardedDirectory), "trip tables written by discarded snapshot");
+
+    var outputDirectory = prepareOutputDirectory("snapshot");
+    var snapshot = GeometryRoutedServicesWriterFactory.create(outputDirectory.toString(), CountryNames.GLOBAL).captureSnapshot(routedServices);
+    assertEquals(Map.of(), readTripTables(outputDirectory), "trip tables written while capturing");
+
+    /* remove all departures after capturing, the snapshot should still hold them */
+    for(var layer : routedServices.getLayers()){
+      for(var mode : layer.getSupportedModes()){
+        for(var service : layer.getServicesByMode(mode)){
+          service.getTripInfo().getScheduleBasedTrips().forEach(trip -> trip.getDepartures().clear());
+        }
+      }
+    }
+    snapshot.write();
+    assertEquals(expectedTables, readTripTables(outputDirectory), "trip tables of snapshot");
+  }
+
+  /**
+   * Appending to existing layers should extend the trip tables of a previous write, retaining its rows and header, rather than
+   * replacing them
+   */
+  @Test
+  public void testAppendExtendsTripTables() throws IOException {
+    var routedServices = PlanitIntermodalReaderFactory.create(SYDNEY_INPUT_PATH).readWithServices().fourth();
+
+    var outputDirectory = prepareOutputDirectory("appendtables");
+    GeometryRoutedServicesWriterFactory.create(outputDirectory.toString(), CountryNames.GLOBAL).write(routedServices);
+    var writtenTables = readTripTables(outputDirectory);
+    assertTrue(writtenTables.values().stream().anyMatch(lines -> lines.size() > 1), "trip tables without rows");
+
+    var appendingWriter = GeometryRoutedServicesWriterFactory.create(outputDirectory.toString(), CountryNames.GLOBAL);
+    appendingWriter.getSettings().setAppendToExistingLayers(true);
+    appendingWriter.write(routedServices);
+
+    var appendedTables = readTripTables(outputDirectory);
+    assertEquals(writtenTables.keySet(), appendedTables.keySet(), "trip tables after append");
+    for(var entry : writtenTables.entrySet()){
+      var writtenLines = entry.getValue();
+      var expectedLines = new ArrayList<>(writtenLines);
+      expectedLines.addAll(writtenLines.subList(1, writtenLines.size()));
+      assertEquals(expectedLines, appendedTables.get(entry.getKey()), entry.getKey() + " after append");
+    }
+  }
+}
@@ -0,0 +1,787 @@
+package org.goplanit.geoio.test.integration;
+
+import org.apache.commons.io.FileUtils;
+import org.goplanit.converter.idmapping.IdMapperType;
+import org.goplanit.geoio.converter.GeometryIoWriter;
+import org.goplanit.geoio.converter.GeometryLayerShardWriter;
+import org.goplanit.geoio.converter.GeometryLayerTileWriter;
+import org.goplanit.geoio.converter.network.GeometryNetworkWriter;
+import org.goplanit.geoio.converter.network.GeometryNetworkWriterFactory;
+import org.goplanit.geoio.converter.network.GeometryNetworkWriterSettings;
+import org.goplanit.geoio.converter.scan.DbfColumn;
+import org.goplanit.geoio.converter.scan.GeoIoLayerScanner;
+import org.goplanit.geoio.converter.vectortile.VectorTileLayerPyramidWriter;
+import org.goplanit.geoio.converter.zoning.GeometryZoningWriterFactory;
+import org.goplanit.geoio.converter.zoning.GeometryZoningWriterSettings;
+import org.goplanit.geoio.util.GeoIODataStoreManager;
+import org.goplanit.geoio.util.GeoIoAttributeExtension;
+import org.goplanit.geoio.util.ListAttributeEncoder;
+import org.goplanit.io.converter.network.PlanitNetworkReaderFactory;
+import org.goplanit.io.converter.zoning.PlanitZoningReaderFactory;
+import org.goplanit.io.converter.zoning.PlanitZoningReaderSettings;
+import org.goplanit.logging.Logging;
+import org.goplanit.network.MacroscopicNetwork;
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+import org.goplanit.utils.id.IdGenerator;
+import org.goplanit.utils.locale.CountryNames;
+import org.goplanit.utils.network.layer.macroscopic.MacroscopicLinkSegment;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Behavioural tests of the export modes of the GeoIO writers that go beyond writing each layer to a single shape file, e.g.,
+ * appending to existing layers, splitting layers into shards, writing them as tiles or as a vector tile pyramid. The persisted layers are verified by scanning them directly.
+ *
+ * @author markr
+ */
+public class GeoIoExportModesTest {
+
+  /** the logger */
+  private static Logger LOGGER = null;
+
+  private static final Path TEST_CASE_PATH = Path.of("src","test","resources");
+
+  private static final String PROJECT_PATH = Path.of(TEST_CASE_PATH.toString(),"converter_test").toString();
+
+  private static final String SYDNEY_INPUT_PATH = Path.of(PROJECT_PATH, "input", "sydney").toString();
+  private static final Path EXPORT_MODES_OUTPUT_PATH = Path.of(PROJECT_PATH, "outputs","exportmodes");
+
+  /**
+   * Prepare a clean output directory for a test
+   *
+   * @param name of the sub directory
+   * @return directory
+   * @throws IOException when unable to clean
+   */
+  private static Path prepareOutputDirectory(String name) throws IOException {
+    var outputDirectory = EXPORT_MODES_OUTPUT_PATH.resolve(name);
+    FileUtils.deleteDirectory(outputDirectory.toFile());
+    Files.createDirectories(outputDirectory);
+    return outputDirectory;
+  }
+
+  /**
+   * Read the network used by the tests
+   *
+   * @return network
+   */
+  private static MacroscopicNetwork readNetwork(){
+    return PlanitNetworkReaderFactory.create(SYDNEY_INPUT_PATH).read();
+  }
+
+  /**
+   * Create a network writer with XML id mapping, so persisted ids can be compared with the source directly
+   *
+   * @param outputDirectory to write to
+   * @return network writer
+   */
+  private static GeometryNetworkWriter createNetworkWriter(Path outputDirectory){
+    var writer = GeometryNetworkWriterFactory.create(outputDirectory.toString(), CountryNames.GLOBAL);
+    writer.setIdMapperType(IdMapperType.XML);
+    return writer;
+  }
+
+  /**
+   * Schema name of the link segments layer of a network layer
+   *
+   * @param layerXmlId of the network layer
+   * @return schema name
+   */
+  private static String linkSegmentsSchemaName(String layerXmlId){
+    return String.join("_",
+        GeometryNetworkWriterSettings.DEFAULT_LAYER_PREFIX, layerXmlId, GeometryNetworkWriterSettings.DEFAULT_LINKSEGMENTS_FILE_NAME);
+  }
+
+  /**
+   * Count the occurrences of each XML id in a layer, including all its row parts
+   *
+   * @param directory of the layer
+   * @param schemaName of the layer
+   * @return number of rows by XML id
+   */
+  private static Map<String, Integer> countXmlIds(Path directory, String schemaName){
+    var xmlIdCounts = new HashMap<String, Integer>();
+    try(var scanner = GeoIoLayerScanner.create(directory, schemaName).select("xml_id")){
+      scanner.forEachRow(row -> xmlIdCounts.merge(row.getString(0), 1, Integer::sum));
+    }
+    return xmlIdCounts;
+  }
+
+  /**
+   * Read the rows of a CSV file without quoted fields, excluding its header
+   *
+   * @param csvFile to read
+   * @return fields per row
+   * @throws IOException when unable to read
+   */
+  private static List<String[]> readCsvRows(Path csvFile) throws IOException {
+    assertTrue(Files.exists(csvFile), csvFile + " missing");
+    var rows = new ArrayList<String[]>();
+    var lines = Files.readAllLines(csvFile);
+    for(var line : lines.subList(1, lines.size())){
+      rows.add(line.split(",", -1));
+    }
+    return rows;
+  }
+
+  /**
+   * Count the rows of a single shape file
+   *
+   * @param shapeFile to count rows of
+   * @return number of rows
+   */
+  private static long countRows(Path shapeFile){
+    try(var scanner = GeoIoLayerScanner.create(shapeFile)){
+      return scanner.forEachRow(row -> {});
+    }
+  }
+
+  @BeforeAll
+  public static void setUp() throws Exception {
+    if (LOGGER == null) {
+      LOGGER = Logging.createLogger(GeoIoExportModesTest.class);
+    }
+  }
+
+  @AfterAll
+  public static void tearDown() {
+    Logging.closeLogger(LOGGER);
+    IdGenerator.reset();
+  }
+
+  /**
+   * Writing the network twice, the second time appending to the existing layers, should extend each layer with a second
+   * copy of every feature rather than replacing it
+   */
+  @Test
+  public void testAppendToExistingLayers() throws IOException {
+    var outputDirectory = prepareOutputDirectory("append");
+    var network = readNetwork();
+    assertTrue(network.getTransportLayers().size() > 0, "network without layers");
+
+    createNetworkWriter(outputDirectory).write(network);
+
+    var appendingWriter = createNetworkWriter(outputDirectory);
+    appendingWriter.getSettings().setAppendToExistingLayers(true);
+    appendingWriter.write(network);
+
+    for(var layer : network.getTransportLayers()){
+      var schemaName = linkSegmentsSchemaName(layer.getXmlId());
+      assertEquals(layer.getLinkSegments().size(), appendingWriter.getLastExportResult().getLayer(schemaName).getFeatureCount(),
+          schemaName + " features appended");
+
+      var xmlIdCounts = countXmlIds(outputDirectory, schemaName);
+      assertEquals(layer.getLinkSegments().size(), xmlIdCounts.size(), schemaName + " distinct link segments");
+      for(var linkSegment : layer.getLinkSegments()){
+        assertEquals(2, xmlIdCounts.getOrDefault(linkSegment.getXmlId(), 0),
+            schemaName + " rows of link segment " + linkSegment.getXmlId());
+      }
+    }
+  }
+
+  /**
+   * Appending to layers persisted by a previous run should be possible, even though the file format stores the geometry
+   * first and possibly truncates attribute names, with the appended geometries identical to the ones persisted before
+   */
+  @Test
+  public void testAppendToLayersOfPreviousRun() throws IOException {
+    var previousRunDirectory = prepareOutputDirectory("appendpreviousrun_source");
+    var outputDirectory = prepareOutputDirectory("appendpreviousrun");
+    var network = readNetwork();
+
+    /* previous run, no data stores survive it, only the files on disk */
+    createNetworkWriter(previousRunDirectory).write(network);
+    GeoIODataStoreManager.reset();
+    FileUtils.copyDirectory(previousRunDirectory.toFile(), outputDirectory.toFile());
+
+    var appendingWriter = createNetworkWriter(outputDirectory);
+    appendingWriter.getSettings().setAppendToExistingLayers(true);
+    appendingWriter.write(network);
+
+    for(var layer : network.getTransportLayers()){
+      var schemaName = linkSegmentsSchemaName(layer.getXmlId());
+      assertEquals(layer.getLinkSegments().size(), appendingWriter.getLastExportResult().getLayer(schemaName).getFeatureCount(),
+          schemaName + " features appended");
+
+      var geometriesByXmlId = new HashMap<String, List<Geometry>>();
+      try(var scanner = GeoIoLayerScanner.create(outputDirectory, schemaName).select("xml_id").withGeometry(true)){
+        scanner.forEachRow(row -> geometriesByXmlId.computeIfAbsent(row.getString(0), k -> new ArrayList<>()).add(row.getGeometry()));
+      }
+      assertEquals(layer.getLinkSegments().size(), geometriesByXmlId.size(), schemaName + " distinct link segments");
+      for(var geometries : geometriesByXmlId.values()){
+        assertEquals(2, geometries.size(), schemaName + " rows per link segment");
+        assertNotNull(geometries.get(1), schemaName + " appended geometry");
+        assertTrue(geometries.get(0).equalsExact(geometries.get(1)), schemaName + " appended geometry differs from previous run");
+      }
+    }
+  }
+
+  /**
+   * Collect the geometry of each row of a layer by its XML id
+   *
+   * @param directory of the layer
+   * @param schemaName of the layer
+   * @return geometry by XML id
+   */
+  private static Map<String, Geometry> collectGeometries(Path directory, String schemaName){
+    var geometriesByXmlId = new HashMap<String, Geometry>();
+    try(var scanner = GeoIoLayerScanner.create(directory, schemaName).select("xml_id").withGeometry(true)){
+      scanner.forEachRow(row -> geometriesByXmlId.put(row.getString(0), row.getGeometry()));
+    }
+    return geometriesByXmlId;
+  }
+
+  /**
+   * Staging the coordinates of extracted geometries off-heap, without quantisation, should persist geometries identical to the
+   * ones persisted without staging, for point as well as line layers
+   */
+  @Test
+  public void testOffHeapCoordinateStaging() throws IOException {
+    var network = readNetwork();
+
+    var referenceDirectory = prepareOutputDirectory("notstaged");
+    createNetworkWriter(referenceDirectory).write(network);
+
+    var outputDirectory = prepareOutputDirectory("staged");
+    var writer = createNetworkWriter(outputDirectory);
+    writer.getSettings().setOffHeapCoordinateStaging(true);
+    writer.getSettings().setAttributeExtractionChunkSize(100);
+    writer.write(network);
+
+    for(var layer : network.getTransportLayers()){
+      for(var fileName : List.of(GeometryNetworkWriterSettings.DEFAULT_NODES_FILE_NAME,
+          GeometryNetworkWriterSettings.DEFAULT_LINKS_FILE_NAME, GeometryNetworkWriterSettings.DEFAULT_LINKSEGMENTS_FILE_NAME)){
+        var schemaName = String.join("_", GeometryNetworkWriterSettings.DEFAULT_LAYER_PREFIX, layer.getXmlId(), fileName);
+        var expectedGeometries = collectGeometries(referenceDirectory, schemaName);
+        var stagedGeometries = collectGeometries(outputDirectory, schemaName);
+        assertTrue(expectedGeometries.size() > 0, schemaName + " without features");
+        assertEquals(expectedGeometries.keySet(), stagedGeometries.keySet(), schemaName + " features");
+        for(var entry : expectedGeometries.entrySet()){
+          assertTrue(entry.getValue().equalsExact(stagedGeometries.get(entry.getKey())),
+              schemaName + " staged geometry of " + entry.getKey() + " differs");
+        }
+      }
+    }
+  }
+
+  /**
+   * Limiting the number of features per shard should split the layer into row parts, each within the limit, together holding
+   * every feature once and listed in the shard index
+   */
+  @Test
+  public void testShardingByRows() throws IOException {
+    final long maxFeaturesPerShard = 500;
+    var outputDirectory = prepareOutputDirectory("shardrows");
+    var network = readNetwork();
+
+    var writer = createNetworkWriter(outputDirectory);
+    writer.getSettings().setMaxFeaturesPerShard(maxFeaturesPerShard);
+    writer.write(network);
+
+    for(var layer : network.getTransportLayers()){
+      var schemaName = linkSegmentsSchemaName(layer.getXmlId());
+      long numberOfLinkSegments = layer.getLinkSegments().size();
+      assertTrue(numberOfLinkSegments > maxFeaturesPerShard, "too few link segments to split " + schemaName);
+
+      var shards = readCsvRows(outputDirectory.resolve(schemaName + GeometryLayerShardWriter.SHARD_INDEX_SUFFIX));
+      assertEquals((numberOfLinkSegments + maxFeaturesPerShard - 1) / maxFeaturesPerShard, shards.size(), schemaName + " number of shards");
+      long indexedFeatures = 0;
+      for(var shard : shards){
+        long features = Long.parseLong(shard[3]);
+        assertTrue(features <= maxFeaturesPerShard, shard[0] + " exceeds feature limit");
+        assertEquals("0", shard[2], shard[0] + " column part");
+        assertEquals(features, countRows(outputDirectory.resolve(shard[0] + GeometryNetworkWriterSettings.DEFAULT_EXTENSION)),
+            shard[0] + " rows");
+        indexedFeatures += features;
+      }
+      assertEquals(numberOfLinkSegments, indexedFeatures, schemaName + " features in shard index");
+
+      var xmlIdCounts = countXmlIds(outputDirectory, schemaName);
+      assertEquals(numberOfLinkSegments, xmlIdCounts.size(), schemaName + " distinct link segments");
+      assertTrue(xmlIdCounts.values().stream().allMatch(count -> count == 1), schemaName + " link segments persisted more than once");
+    }
+  }
+
+  /**
+   * Limiting the number of fields per shard should split the attributes of the layer across column parts, each holding every
+   * feature and listed in the shard index
+   */
+  @Test
+  public void testShardingByColumns() throws IOException {
+    final int maxFieldsPerShard = 4;
+    var outputDirectory = prepareOutputDirectory("shardcolumns");
+    var network = readNetwork();
+
+    var writer = createNetworkWriter(outputDirectory);
+    writer.getSettings().setMaxFieldsPerShard(maxFieldsPerShard);
+    writer.write(network);
+
+    for(var layer : network.getTransportLayers()){
+      var schemaName = linkSegmentsSchemaName(layer.getXmlId());
+      long numberOfLinkSegments = layer.getLinkSegments().size();
+
+      var shards = readCsvRows(outputDirectory.resolve(schemaName + GeometryLayerShardWriter.SHARD_INDEX_SUFFIX));
+      assertTrue(shards.size() > 1, schemaName + " not split into column parts");
+      for(var shard : shards){
+        assertEquals("0", shard[1], shard[0] + " row part");
+        assertEquals(numberOfLinkSegments, Long.parseLong(shard[3]), shard[0] + " features");
+
+        try(var scanner = GeoIoLayerScanner.create(outputDirectory.resolve(shard[0] + GeometryNetworkWriterSettings.DEFAULT_EXTENSION))){
+          assertTrue(scanner.getAvailableColumns().size() <= maxFieldsPerShard, shard[0] + " exceeds field limit");
+          assertEquals(numberOfLinkSegments, scanner.forEachRow(row -> {}), shard[0] + " rows");
+        }
+      }
+    }
+  }
+
+  /**
+   * Size tiles such that the link segments of each layer span several of them, based on their extent in the destination crs
+   *
+   * @param network written
+   * @param untiledOutputDirectory the network is written to without tiling
+   * @return tile size
+   */
+  private static double computeTileSize(MacroscopicNetwork network, Path untiledOutputDirectory){
+    var extentByLayer = new HashMap<String, Envelope>();
+    for(var layer : network.getTransportLayers()){
+      var extent = new Envelope();
+      try(var scanner = GeoIoLayerScanner.create(untiledOutputDirectory, linkSegmentsSchemaName(layer.getXmlId())).withGeometry(true)){
+        scanner.forEachRow(row -> extent.expandToInclude(row.getGeometry().getEnvelopeInternal()));
+      }
+      extentByLayer.put(layer.getXmlId(), extent);
+    }
+    return extentByLayer.values().stream().mapToDouble(e -> Math.max(e.getWidth(), e.getHeight())).max().orElseThrow() / 4;
+  }
+
+  /**
+   * Writing the network as tiles should assign each feature to every tile its envelope touches, including features crossing
+   * tile boundaries, with each tile and its feature count listed in the manifest
+   */
+  @Test
+  public void testTiledOutput() throws IOException {
+    var network = readNetwork();
+    var untiledOutputDirectory = prepareOutputDirectory("untiled");
+    createNetworkWriter(untiledOutputDirectory).write(network);
+    final double tileSize = computeTileSize(network, untiledOutputDirectory);
+
+    var outputDirectory = prepareOutputDirectory("tiled");
+    var writer = createNetworkWriter(outputDirectory);
+    writer.getSettings().setTileSize(tileSize);
+    writer.write(network);
+
+    var tilesDirectory = outputDirectory.resolve(GeometryLayerTileWriter.TILES_DIRECTORY);
+    for(var layer : network.getTransportLayers()){
+      var schemaName = linkSegmentsSchemaName(layer.getXmlId());
+      var tiles = readCsvRows(tilesDirectory.resolve(schemaName + GeometryLayerTileWriter.TILE_MANIFEST_SUFFIX));
+      assertTrue(tiles.size() > 1, schemaName + " not split into tiles");
+
+      /* per tile: features as listed in the manifest, each intersecting the tile's extent */
+      var tilesByXmlId = new HashMap<String, Set<String>>();
+      for(var tile : tiles){
+        var tileName = tile[0];
+        var tileExtent = new Envelope(
+            Double.parseDouble(tile[3]), Double.parseDouble(tile[5]), Double.parseDouble(tile[4]), Double.parseDouble(tile[6]));
+        try(var scanner = GeoIoLayerScanner.create(tilesDirectory.resolve(tileName), schemaName).select("xml_id").withGeometry(true)){
+          long rows = scanner.forEachRow(row -> {
+            assertTrue(tileExtent.intersects(row.getGeometry().getEnvelopeInternal()),
+                "link segment " + row.getString(0) + " outside tile " + tileName);
+            tilesByXmlId.computeIfAbsent(row.getString(0), id -> new TreeSet<>()).add(tileName);
+          });
+          assertEquals(Long.parseLong(tile[7]), rows, schemaName + " features of tile " + tileName);
+        }
+      }
+      assertEquals(layer.getLinkSegments().size(), tilesByXmlId.size(), schemaName + " distinct link segments");
+
+      /* every link segment in each tile its envelope touches, so those crossing a boundary are in several tiles */
+      long crossingBoundary = 0;
+      try(var scanner = GeoIoLayerScanner.create(untiledOutputDirectory, schemaName).select("xml_id").withGeometry(true)){
+        for(var row : scanner){
+          var envelope = row.getGeometry().getEnvelopeInternal();
+          var expectedTiles = new TreeSet<String>();
+          for(long col = (long) Math.floor(envelope.getMinX() / tileSize); col <= (long) Math.floor(envelope.getMaxX() / tileSize); ++col){
+            for(long gridRow = (long) Math.floor(envelope.getMinY() / tileSize); gridRow <= (long) Math.floor(envelope.getMaxY() / tileSize); ++gridRow){
+              expectedTiles.add(col + "_" + gridRow);
+            }
+          }
+          assertEquals(expectedTiles, tilesByXmlId.get(row.getString(0)), "tiles of link segment " + row.getString(0));
+          crossingBoundary += expectedTiles.size() > 1 ? 1 : 0;
+        }
+      }
+      assertTrue(crossingBoundary > 0, schemaName + " without link segments crossing a tile boundary");
+    }
+  }
+
+  /**
+   * Limiting the number of open tile writers to a single one, with small chunks so tiles are flushed repeatedly, should close
+   * and reopen tile writers for appending throughout the layer, yet produce the same tiles and features as without a limit
+   */
+  @Test
+  public void testTiledOutputWithEvictedTileWriters() throws IOException {
+    var network = readNetwork();
+    var untiledOutputDirectory = prepareOutputDirectory("untiledevicted");
+    createNetworkWriter(untiledOutputDirectory).write(network);
+    final double tileSize = computeTileSize(network, untiledOutputDirectory);
+
+    var outputDirectory = prepareOutputDirectory("tiledunlimited");
+    var writer = createNetworkWriter(outputDirectory);
+    writer.getSettings().setTileSize(tileSize);
+    writer.getSettings().setAttributeExtractionChunkSize(16);
+    writer.write(network);
+
+    var evictedOutputDirectory = prepareOutputDirectory("tiledevicted");
+    var evictingWriter = createNetworkWriter(evictedOutputDirectory);
+    evictingWriter.getSettings().setTileSize(tileSize);
+    evictingWriter.getSettings().setAttributeExtractionChunkSize(16);
+    evictingWriter.getSettings().setMaxOpenTileWriters(1);
+    evictingWriter.write(network);
+
+    var tilesDirectory = outputDirectory.resolve(GeometryLayerTileWriter.TILES_DIRECTORY);
+    var evictedTilesDirectory = evictedOutputDirectory.resolve(GeometryLayerTileWriter.TILES_DIRECTORY);
+    for(var layer : network.getTransportLayers()){
+      var schemaName = linkSegmentsSchemaName(layer.getXmlId());
+      var manifestFile = schemaName + GeometryLayerTileWriter.TILE_MANIFEST_SUFFIX;
+      var tiles = readCsvRows(tilesDirectory.resolve(manifestFile));
+      assertTrue(tiles.size() > 1, schemaName + " not split into tiles");
+      assertEquals(Files.readAllLines(tilesDirectory.resolve(manifestFile)), Files.readAllLines(evictedTilesDirectory.resolve(manifestFile)),
+          "tile manifest of " + schemaName);
+      for(var tile : tiles){
+        assertEquals(countXmlIds(tilesDirectory.resolve(tile[0]), schemaName), countXmlIds(evictedTilesDirectory.resolve(tile[0]), schemaName),
+            schemaName + " features of tile " + tile[0]);
+      }
+    }
+  }
+
+  /**
+   * Read a varint from a protobuf message
+   *
+   * @param buffer positioned on the varint
+   * @return value
+   */
+  private static long readVarint(ByteBuffer buffer){
+    long value = 0;
+    for(int shift = 0; ; shift += 7){
+      byte next = buffer.get();
+      value |= (long) (next & 0x7F) << shift;
+      if(next >= 0){
+        return value;
+      }
+    }
+  }
+
+  /**
+   * Read the fields of a protobuf message, varint fields as long and length delimited fields as buffer, others are skipped
+   *
+   * @param message to read
+   * @return field values by field number
+   */
+  private static Map<Integer, List<Object>> readProtobufFields(ByteBuffer message){
+    var fields = new HashMap<Integer, List<Object>>();
+    while(message.hasRemaining()){
+      long key = readVarint(message);
+      int wireType = (int) (key & 0x7);
+      Object value;
+      if(wireType == 0){
+        value = readVarint(message);
+      }else if(wireType == 2){
+        int length = (int) readVarint(message);
+        value = message.slice().limit(length);
+        message.position(message.position() + length);
+      }else{
+        message.position(message.position() + (wireType == 1 ? 8 : 4));
+        continue;
+      }
+      fields.computeIfAbsent((int) (key >>> 3), field -> new ArrayList<>()).add(value);
+    }
+    return fields;
+  }
+
+  /**
+   * Collect the feature ids of all (uncompressed) vector tiles of a zoom level of a pyramid
+   *
+   * @param pyramidDirectory of the layer
+   * @param zoom level
+   * @return feature ids
+   * @throws IOException when unable to read
+   */
+  private static Set<Long> readVectorTileFeatureIds(Path pyramidDirectory, int zoom) throws IOException {
+    var featureIds = new HashSet<Long>();
+    List<Path> tiles;
+    try(var files = Files.walk(pyramidDirectory.resolve(String.valueOf(zoom)))){
+      tiles = files.filter(p -> p.toString().endsWith(VectorTileLayerPyramidWriter.TILE_EXTENSION)).collect(Collectors.toList());
+    }
+    for(var tile : tiles){
+      /* tile layers (field 3) hold features (field 2) with their id (field 1) */
+      for(var layer : readProtobufFields(ByteBuffer.wrap(Files.readAllBytes(tile))).getOrDefault(3, List.of())){
+        for(var feature : readProtobufFields((ByteBuffer) layer).getOrDefault(2, List.of())){
+          featureIds.add((Long) readProtobufFields((ByteBuffer) feature).get(1).get(0));
+        }
+      }
+    }
+    return featureIds;
+  }
+
+  /**
+   * Vector tile features should be identified by the mapped id of their entity when numeric for all features of the layer,
+   * and by their index within the layer otherwise
+   */
+  @Test
+  public void testVectorTileFeatureIds() throws IOException {
+    final int zoom = 12;
+    final long offset = 1_000_000_000L;
+    var network = readNetwork();
+    for(var layer : network.getTransportLayers()){
+      layer.getLinkSegments().forEach(linkSegment -> linkSegment.setXmlId(String.valueOf(offset + linkSegment.getId())));
+    }
+
+    var outputDirectory = prepareOutputDirectory("vectortileids");
+    var writer = createNetworkWriter(outputDirectory);
+    writer.getSettings().setVectorTileOutput(true);
+    writer.getSettings().setVectorTileZoomLevels(zoom, zoom);
+    writer.write(network);
+
+    for(var layer : network.getTransportLayers()){
+      var schemaName = linkSegmentsSchemaName(layer.getXmlId());
+      var expectedIds = layer.getLinkSegments().stream().map(linkSegment -> offset + linkSegment.getId()).collect(Collectors.toSet());
+      var featureIds = readVectorTileFeatureIds(
+          outputDirectory.resolve(VectorTileLayerPyramidWriter.VECTOR_TILES_DIRECTORY).resolve(schemaName), zoom);
+      assertTrue(featureIds.size() > 0, schemaName + " without features");
+      assertTrue(expectedIds.containsAll(featureIds), schemaName + " feature ids not mapped ids");
+    }
+
+    /* a single non-numeric mapped id falls back to identifying all features of the layer by their index */
+    for(var layer : network.getTransportLayers()){
+      layer.getLinkSegments().iterator().next().setXmlId("not_numeric");
+    }
+    var fallbackOutputDirectory = prepareOutputDirectory("vectortileidsfallback");
+    var fallbackWriter = createNetworkWriter(fallbackOutputDirectory);
+    fallbackWriter.getSettings().setVectorTileOutput(true);
+    fallbackWriter.getSettings().setVectorTileZoomLevels(zoom, zoom);
+    fallbackWriter.write(network);
+
+    for(var layer : network.getTransportLayers()){
+      var schemaName = linkSegmentsSchemaName(layer.getXmlId());
+      var featureIds = readVectorTileFeatureIds(
+          fallbackOutputDirectory.resolve(VectorTileLayerPyramidWriter.VECTOR_TILES_DIRECTORY).resolve(schemaName), zoom);
+      assertTrue(featureIds.size() > 0, schemaName + " without features");
+      assertTrue(featureIds.stream().allMatch(id -> id >= 0 && id < layer.getLinkSegments().size()),
+          schemaName + " feature ids not feature indices");
+    }
+  }
+
+  /**
+   * Vector tile output should produce a pyramid with tiles at each configured zoom level, each holding the layer, alongside
+   * the regular layer, whose features are unaffected
+   */
+  @Test
+  public void testVectorTileOutput() throws IOException {
+    final int minZoom = 10;
+    final int maxZoom = 12;
+    var outputDirectory = prepareOutputDirectory("vectortiles");
+    var network = readNetwork();
+
+    var writer = createNetworkWriter(outputDirectory);
+    writer.getSettings().setVectorTileOutput(true);
+    writer.getSettings().setVectorTileZoomLevels(minZoom, maxZoom);
+    writer.write(network);
+
+    for(var layer : network.getTransportLayers()){
+      var schemaName = linkSegmentsSchemaName(layer.getXmlId());
+      var pyramidDirectory = outputDirectory.resolve(VectorTileLayerPyramidWriter.VECTOR_TILES_DIRECTORY).resolve(schemaName);
+
+      var metadata = Files.readString(pyramidDirectory.resolve(VectorTileLayerPyramidWriter.METADATA_FILE_NAME));
+      assertTrue(metadata.contains("\"minzoom\":" + minZoom), schemaName + " metadata min zoom");
+      assertTrue(metadata.contains("\"maxzoom\":" + maxZoom), schemaName + " metadata max zoom");
+      assertTrue(metadata.contains("\"xml_id\""), schemaName + " metadata fields");
+
+      var layerName = schemaName.getBytes(StandardCharsets.UTF_8);
+      for(int zoom = minZoom; zoom <= maxZoom; ++zoom){
+        List<Path> tiles;
+        try(var files = Files.walk(pyramidDirectory.resolve(String.valueOf(zoom)))){
+          tiles = files.filter(p -> p.toString().endsWith(VectorTileLayerPyramidWriter.TILE_EXTENSION)).collect(Collectors.toList());
+        }
+        assertTrue(tiles.size() > 0, schemaName + " without tiles at zoom " + zoom);
+        for(var tile : tiles){
+          var bytes = Files.readAllBytes(tile);
+          /* a single layer message (field 3, length delimited) holding the layer name */
+          assertTrue(bytes.length > layerName.length && bytes[0] == 0x1A, tile + " not a vector tile layer");
+          assertTrue(new String(bytes, StandardCharsets.ISO_8859_1).contains(schemaName), tile + " without layer name");
+        }
+      }
+      assertEquals(layer.getLinkSegments().size(), countXmlIds(outputDirectory, schemaName).size(), schemaName + " link segments");
+    }
+  }
+
+  /**
+   * A small export memory budget should throttle the export rather than change its output, with the layer split into row
+   * and column parts written asynchronously still holding every feature once
+   */
+  @Test
+  public void testMemoryBoundedExport() throws IOException {
+    final long maxFeaturesPerShard = 500;
+    var outputDirectory = prepareOutputDirectory("memorybounded");
+    var network = readNetwork();
+
+    var writer = createNetworkWriter(outputDirectory);
+    writer.getSettings().setExportMemoryBudget(32 * 1024);
+    writer.getSettings().setMaxFeaturesPerShard(maxFeaturesPerShard);
+    writer.getSettings().setMaxFieldsPerShard(4);
+    writer.write(network);
+
+    for(var layer : network.getTransportLayers()){
+      var schemaName = linkSegmentsSchemaName(layer.getXmlId());
+      long numberOfLinkSegments = layer.getLinkSegments().size();
+
+      var shards = readCsvRows(outputDirectory.resolve(schemaName + GeometryLayerShardWriter.SHARD_INDEX_SUFFIX));
+      assertTrue(shards.stream().anyMatch(shard -> !shard[1].equals("0")), schemaName + " not split into row parts");
+      assertTrue(shards.stream().anyMatch(shard -> !shard[2].equals("0")), schemaName + " not split into column parts");
+      for(var shard : shards){
+        assertEquals(Long.parseLong(shard[3]), countRows(outputDirectory.resolve(shard[0] + GeometryNetworkWriterSettings.DEFAULT_EXTENSION)),
+            shard[0] + " rows");
+      }
+
+      var xmlIdCounts = countXmlIds(outputDirectory, schemaName);
+      assertEquals(numberOfLinkSegments, xmlIdCounts.size(), schemaName + " distinct link segments");
+      assertTrue(xmlIdCounts.values().stream().allMatch(count -> count == 1), schemaName + " link segments persisted more than once");
+    }
+  }
+
+  /**
+   * Vector tile pyramids cannot be bounded by the export memory budget, so combining them should be rejected before any
+   * layer is written
+   */
+  @Test
+  public void testVectorTileOutputRejectedWithMemoryBudget() throws IOException {
+    var outputDirectory = prepareOutputDirectory("vectortilesbounded");
+    var network = readNetwork();
+
+    var writer = createNetworkWriter(outputDirectory);
+    writer.getSettings().setVectorTileOutput(true);
+    writer.getSettings().setExportMemoryBudgetMb(16);
+    assertThrows(PlanItRunTimeException.class, () -> writer.write(network));
+
+    try(var files = Files.list(outputDirectory)){
+      assertEquals(List.of(), files.collect(Collectors.toList()), "files written by rejected export");
+    }
+  }
+
+  /**
+   * Attribute extensions registered for link segments should add their columns, computed per entity and per chunk, to the
+   * link segments layer only, alongside the default attributes
+   */
+  @Test
+  public void testAttributeExtensions() throws IOException {
+    var outputDirectory = prepareOutputDirectory("extensions");
+    var network = readNetwork();
+
+    var writer = createNetworkWriter(outputDirectory);
+    writer.getSettings().setAttributeExtractionChunkSize(100);
+    writer.getSettings().addAttributeExtension(GeoIoAttributeExtension.create(
+        MacroscopicLinkSegment.class, "lanes_x2", "Integer", linkSegment -> 2 * linkSegment.getNumberOfLanes()));
+    writer.getSettings().addAttributeExtension(GeoIoAttributeExtension.createDoubleColumn(
+        MacroscopicLinkSegment.class, "length_m", (linkSegments, column) -> {
+          for(int index = 0; index < column.length; ++index){
+            column[index] = 1000 * linkSegments.get(index).getParentLink().getLengthKm();
+          }
+        }));
+    writer.write(network);
+
+    for(var layer : network.getTransportLayers()){
+      var schemaName = linkSegmentsSchemaName(layer.getXmlId());
+      var linkSegmentsByXmlId = new HashMap<String, MacroscopicLinkSegment>();
+      layer.getLinkSegments().forEach(linkSegment -> linkSegmentsByXmlId.put(linkSegment.getXmlId(), linkSegment));
+
+      try(var scanner = GeoIoLayerScanner.create(outputDirectory, schemaName).select("xml_id", "lanes", "lanes_x2", "length_m")){
+        long rows = scanner.forEachRow(row -> {
+          var linkSegment = linkSegmentsByXmlId.get(row.getString(0));
+          assertNotNull(linkSegment, "unknown link segment " + row.getString(0));
+          assertEquals(linkSegment.getNumberOfLanes(), row.getLong(1), "lanes of " + row.getString(0));
+          assertEquals(2L * linkSegment.getNumberOfLanes(), row.getLong(2), "extension lanes_x2 of " + row.getString(0));
+          double expectedLength = 1000 * linkSegment.getParentLink().getLengthKm();
+          assertEquals(expectedLength, row.getDouble(3), Math.max(1e-3, expectedLength * 1e-5), "extension length_m of " + row.getString(0));
+        });
+        assertEquals(linkSegmentsByXmlId.size(), rows, schemaName + " rows");
+      }
+
+      var nodesSchemaName = String.join("_",
+          GeometryNetworkWriterSettings.DEFAULT_LAYER_PREFIX, layer.getXmlId(), GeometryNetworkWriterSettings.DEFAULT_NODES_FILE_NAME);
+      try(var scanner = GeoIoLayerScanner.create(outputDirectory, nodesSchemaName)){
+        var columnNames = scanner.getAvailableColumns().stream().map(DbfColumn::getName).collect(Collectors.toSet());
+        assertTrue(!columnNames.contains("lanes_x2") && !columnNames.contains("length_m"), nodesSchemaName + " with link segment extensions");
+      }
+    }
+  }
+
+  /**
+   * List attribute values exceeding the attribute length should be spilled to the overflow side table of the layer, keyed by
+   * the id of the entity and the attribute, with the full value, while the layer itself holds the overflow marker
+   */
+  @Test
+  public void testListAttributeOverflow() throws IOException {
+    var outputDirectory = prepareOutputDirectory("overflow");
+    var network = readNetwork();
+    var zoning = PlanitZoningReaderFactory.create(new PlanitZoningReaderSettings(SYDNEY_INPUT_PATH), network).read();
+
+    /* make a single connectoid accessible from all zones, so its list attributes no longer fit */
+    var overflowingConnectoid = zoning.getOdConnectoids().iterator().next();
+    var accessZones = new HashSet<>();
+    overflowingConnectoid.getAccessZones().forEach(accessZones::add);
+    for(var zone : zoning.getOdZones()){
+      if(accessZones.add(zone)){
+        overflowingConnectoid.addAccessZone(zone);
+      }
+    }
+    var expectedZones = new ArrayList<String>();
+    overflowingConnectoid.getAccessZones().forEach(zone -> expectedZones.add(zone.getXmlId()));
+    var expectedZonesValue = String.join(String.valueOf(ListAttributeEncoder.DELIMITER), expectedZones);
+    assertTrue(expectedZonesValue.length() > ListAttributeEncoder.DBF_MAX_ATTRIBUTE_LENGTH, "zones of connectoid fit the attribute");
+
+    var writer = GeometryZoningWriterFactory.create(outputDirectory.toString(), CountryNames.GLOBAL);
+    writer.setIdMapperType(IdMapperType.XML);
+    writer.write(zoning);
+
+    /* side table: only the overflowing connectoid, holding the full values */
+    var schemaName = GeometryZoningWriterSettings.DEFAULT_OD_CONNECTOIDS_FILE_NAME;
+    var sideTable = outputDirectory.resolve(schemaName + GeometryIoWriter.OVERFLOW_TABLE_SUFFIX);
+    assertTrue(Files.exists(sideTable), sideTable + " missing");
+    var spilledValues = ListAttributeEncoder.readOverflowTable(sideTable);
+    assertEquals(Set.of(overflowingConnectoid.getId()), spilledValues.keySet(), "entities with spilled values");
+    var spilledAttributes = spilledValues.get(overflowingConnectoid.getId());
+    assertEquals(expectedZonesValue, spilledAttributes.get("zones"), "spilled zones");
+    for(var spilled : spilledAttributes.entrySet()){
+      assertTrue(spilled.getValue().length() > ListAttributeEncoder.DBF_MAX_ATTRIBUTE_LENGTH, "spilled " + spilled.getKey() + " fits the attribute");
+    }
+    assertEquals(spilledAttributes.size() + 1, Files.readAllLines(sideTable).size(), "side table rows, including header");
+
+    /* layer: overflow marker for the overflowing connectoid only */
+    try(var scanner = GeoIoLayerScanner.create(outputDirectory, schemaName).select("id", "zones")){
+      long rows = scanner.forEachRow(row -> {
+        boolean overflowing = row.getLong(0) == overflowingConnectoid.getId();
+        assertEquals(overflowing, ListAttributeEncoder.OVERFLOW_MARKER.equals(row.getString(1)), "zones of connectoid " + row.getLong(0));
+      });
+      assertEquals(zoning.getOdConnectoids().size(), rows, schemaName + " rows");
+    }
+  }
+}
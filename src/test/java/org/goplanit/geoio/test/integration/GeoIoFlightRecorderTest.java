@@ -0,0 +1,129 @@
+package org.goplanit.geoio.test.integration;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.apache.commons.io.FileUtils;
+import org.goplanit.converter.idmapping.IdMapperType;
+import org.goplanit.geoio.converter.GeoIoExportResult;
+import org.goplanit.geoio.converter.network.GeometryNetworkWriterFactory;
+import org.goplanit.geoio.jfr.GeoIoLayerWriteEvent;
+import org.goplanit.geoio.jfr.GeoIoWriterEvent;
+import org.goplanit.io.converter.network.PlanitNetworkReaderFactory;
+import org.goplanit.logging.Logging;
+import org.goplanit.network.MacroscopicNetwork;
+import org.goplanit.utils.id.IdGenerator;
+import org.goplanit.utils.locale.CountryNames;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the Java Flight Recorder events emitted by GeoIO writers, recorded programmatically and read back from the
+ * recording file
+ *
+ * @author markr
+ */
+public class GeoIoFlightRecorderTest {
+
+  /** the logger */
+  private static Logger LOGGER = null;
+
+  private static final Path TEST_CASE_PATH = Path.of("src","test","resources");
+
+  private static final String PROJECT_PATH = Path.of(TEST_CASE_PATH.toString(),"converter_test").toString();
+
+  private static final String SYDNEY_INPUT_PATH = Path.of(PROJECT_PATH, "input", "sydney").toString();
+  private static final Path JFR_OUTPUT_PATH = Path.of(PROJECT_PATH, "outputs","jfr");
+
+  /** name of the layer write event */
+  private static final String LAYER_WRITE_EVENT = "org.goplanit.geoio.LayerWrite";
+
+  /** name of the writer event */
+  private static final String WRITER_EVENT = "org.goplanit.geoio.Writer";
+
+  /**
+   * Events of the given type in a recording file
+   *
+   * @param events all recorded events
+   * @param eventName name of the event type
+   * @return events of the type
+   */
+  private static List<RecordedEvent> eventsOfType(List<RecordedEvent> events, String eventName){
+    return events.stream().filter(event -> event.getEventType().getName().equals(eventName)).collect(Collectors.toList());
+  }
+
+  @BeforeAll
+  public static void setUp() throws Exception {
+    if (LOGGER == null) {
+      LOGGER = Logging.createLogger(GeoIoFlightRecorderTest.class);
+    }
+  }
+
+  @AfterAll
+  public static void tearDown() {
+    Logging.closeLogger(LOGGER);
+    IdGenerator.reset();
+  }
+
+  /**
+   * Writing a network while recording should emit a layer write event per layer and a single writer event, populated with
+   * the entity class, layer, features and bytes of the export result
+   */
+  @Test
+  public void testLayerAndWriterEvents() throws IOException {
+    var outputDirectory = JFR_OUTPUT_PATH.resolve("network");
+    FileUtils.deleteDirectory(outputDirectory.toFile());
+    Files.createDirectories(outputDirectory);
+    MacroscopicNetwork network = PlanitNetworkReaderFactory.create(SYDNEY_INPUT_PATH).read();
+
+    var writer = GeometryNetworkWriterFactory.create(outputDirectory.toString(), CountryNames.GLOBAL);
+    writer.setIdMapperType(IdMapperType.XML);
+
+    var recordingFile = JFR_OUTPUT_PATH.resolve("network.jfr");
+    try(var recording = new Recording()){
+      recording.enable(GeoIoLayerWriteEvent.class).withThreshold(Duration.ZERO);
+      recording.enable(GeoIoWriterEvent.class).withThreshold(Duration.ZERO);
+      recording.start();
+      writer.write(network);
+      recording.stop();
+      recording.dump(recordingFile);
+    }
+    var exportResult = writer.getLastExportResult();
+    var events = RecordingFile.readAllEvents(recordingFile);
+
+    /* one layer write event per layer of the export */
+    var layerEvents = eventsOfType(events, LAYER_WRITE_EVENT).stream().collect(
+        Collectors.toMap(event -> event.getString("layerId"), Function.identity()));
+    assertEquals(exportResult.getLayers().stream().map(GeoIoExportResult.Layer::getName).collect(Collectors.toSet()),
+        layerEvents.keySet(), "layers of layer write events");
+    for(var layer : exportResult.getLayers()){
+      var event = layerEvents.get(layer.getName());
+      assertEquals(layer.getEntityClass().getName(), event.getString("entityClass"), "entity class of " + layer.getName());
+      assertEquals(layer.getFeatureCount(), event.getLong("featureCount"), "features of " + layer.getName());
+      assertTrue(layer.getByteCount() > 0, "no bytes written for " + layer.getName());
+      assertEquals(layer.getByteCount(), event.getLong("byteCount"), "bytes of " + layer.getName());
+    }
+
+    /* a single writer event spanning the export */
+    var writerEvents = eventsOfType(events, WRITER_EVENT);
+    assertEquals(1, writerEvents.size(), "writer events");
+    var writerEvent = writerEvents.get(0);
+    assertEquals(MacroscopicNetwork.class.getName(), writerEvent.getString("entityClass"), "entity class of writer event");
+    assertEquals(writer.getClass().getName(), writerEvent.getString("writer"), "writer of writer event");
+    assertEquals(exportResult.getFeatureCount(), writerEvent.getLong("featureCount"), "features of writer event");
+    assertEquals(exportResult.getByteCount(), writerEvent.getLong("byteCount"), "bytes of writer event");
+  }
+}
@@ -0,0 +1,197 @@
+package org.goplanit.geoio.test.integration;
+
+import org.apache.commons.io.FileUtils;
+import org.goplanit.converter.idmapping.IdMapperType;
+import org.goplanit.geoio.converter.network.GeometryNetworkWriterFactory;
+import org.goplanit.geoio.converter.network.GeometryNetworkWriterSettings;
+import org.goplanit.geoio.converter.scan.DbfColumn;
+import org.goplanit.geoio.converter.scan.GeoIoLayerScanner;
+import org.goplanit.geoio.util.GeoIoAttributeExtension;
+import org.goplanit.io.converter.network.PlanitNetworkReaderFactory;
+import org.goplanit.logging.Logging;
+import org.goplanit.network.MacroscopicNetwork;
+import org.goplanit.utils.exceptions.PlanItRunTimeException;
+import org.goplanit.utils.id.IdGenerator;
+import org.goplanit.utils.locale.CountryNames;
+import org.goplanit.utils.network.layer.MacroscopicNetworkLayer;
+import org.goplanit.utils.network.layer.macroscopic.MacroscopicLinkSegment;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the {@link GeoIoLayerScanner}, projecting and filtering the rows of a layer written by the GeoIO network writer and
+ * comparing them against the source network.
+ *
+ * @author markr
+ */
+public class GeoIoLayerScannerTest {
+
+  /** the logger */
+  private static Logger LOGGER = null;
+
+  private static final Path TEST_CASE_PATH = Path.of("src","test","resources");
+
+  private static final String PROJECT_PATH = Path.of(TEST_CASE_PATH.toString(),"converter_test").toString();
+
+  private static final String SYDNEY_INPUT_PATH = Path.of(PROJECT_PATH, "input", "sydney").toString();
+  private static final Path SCANNER_OUTPUT_PATH = Path.of(PROJECT_PATH, "outputs","scanner");
+
+  /** relative tolerance on numeric attributes persisted as floats */
+  private static final double RELATIVE_TOLERANCE = 1e-5;
+
+  /** network written once for all tests */
+  private static MacroscopicNetwork network;
+
+  /**
+   * Schema name of the link segments layer of a network layer
+   *
+   * @param layer of the network
+   * @return schema name
+   */
+  private static String linkSegmentsSchemaName(MacroscopicNetworkLayer layer){
+    return String.join("_",
+        GeometryNetworkWriterSettings.DEFAULT_LAYER_PREFIX, layer.getXmlId(), GeometryNetworkWriterSettings.DEFAULT_LINKSEGMENTS_FILE_NAME);
+  }
+
+  @BeforeAll
+  public static void setUp() throws Exception {
+    if (LOGGER == null) {
+      LOGGER = Logging.createLogger(GeoIoLayerScannerTest.class);
+    }
+
+    FileUtils.deleteDirectory(SCANNER_OUTPUT_PATH.toFile());
+    Files.createDirectories(SCANNER_OUTPUT_PATH);
+    network = PlanitNetworkReaderFactory.create(SYDNEY_INPUT_PATH).read();
+    var writer = GeometryNetworkWriterFactory.create(SCANNER_OUTPUT_PATH.toString(), CountryNames.GLOBAL);
+    writer.setIdMapperType(IdMapperType.XML);
+    writer.write(network);
+  }
+
+  @AfterAll
+  public static void tearDown() {
+    Logging.closeLogger(LOGGER);
+    IdGenerator.reset();
+  }
+
+  /**
+   * A numeric predicate should only yield the rows matching it, with the projected columns in order of selection
+   */
+  @Test
+  public void testSelectWhereNumber() {
+    for(var layer : network.getTransportLayers()){
+      var schemaName = linkSegmentsSchemaName(layer);
+
+      var expectedSpeedsByXmlId = new HashMap<String, Double>();
+      var expectedXmlIds = new TreeSet<String>();
+      for(var linkSegment : layer.getLinkSegments()){
+        expectedSpeedsByXmlId.put(linkSegment.getXmlId(), linkSegment.getPhysicalSpeedLimitKmH());
+        if(linkSegment.getNumberOfLanes() >= 2){
+          expectedXmlIds.add(linkSegment.getXmlId());
+        }
+      }
+      assertTrue(expectedXmlIds.size() > 0 && expectedXmlIds.size() < layer.getLinkSegments().size(),
+          schemaName + " predicate does not discriminate");
+
+      var actualXmlIds = new TreeSet<String>();
+      try(var scanner = GeoIoLayerScanner.create(SCANNER_OUTPUT_PATH, schemaName)
+          .select("xml_id", "speed_kmh").whereNumber("lanes", lanes -> lanes >= 2)){
+        long rows = scanner.forEachRow(row -> {
+          assertEquals(2, row.getNumberOfColumns(), "projected columns");
+          assertEquals("speed_kmh", row.getColumnName(1), "projected column order");
+          var expectedSpeed = expectedSpeedsByXmlId.get(row.getString(0));
+          assertNotNull(expectedSpeed, "unknown link segment " + row.getString(0));
+          assertEquals(expectedSpeed, row.getDouble(1), Math.abs(expectedSpeed) * RELATIVE_TOLERANCE, "speed of " + row.getString(0));
+          actualXmlIds.add(row.getString(0));
+        });
+        assertEquals(actualXmlIds.size(), rows, schemaName + " rows scanned");
+      }
+      assertEquals(expectedXmlIds, actualXmlIds, schemaName + " link segments with at least two lanes");
+    }
+  }
+
+  /**
+   * A string predicate should select a single row, whose geometry is only available when requested
+   */
+  @Test
+  public void testWhereStringWithGeometry() {
+    for(var layer : network.getTransportLayers()){
+      var schemaName = linkSegmentsSchemaName(layer);
+      var linkSegment = layer.getLinkSegments().iterator().next();
+
+      var rows = new ArrayList<Object[]>();
+      try(var scanner = GeoIoLayerScanner.create(SCANNER_OUTPUT_PATH, schemaName)
+          .select("xml_id").whereString("xml_id", linkSegment.getXmlId()::equals).withGeometry(true)){
+        scanner.forEachRow(row -> rows.add(new Object[]{row.getString(0), row.getGeometry()}));
+      }
+      assertEquals(1, rows.size(), schemaName + " rows of link segment " + linkSegment.getXmlId());
+      assertEquals(linkSegment.getXmlId(), rows.get(0)[0], schemaName + " xml id");
+      assertNotNull(rows.get(0)[1], schemaName + " geometry of link segment " + linkSegment.getXmlId());
+
+      try(var scanner = GeoIoLayerScanner.create(SCANNER_OUTPUT_PATH, schemaName)
+          .select("xml_id").whereString("xml_id", linkSegment.getXmlId()::equals)){
+        scanner.forEachRow(row -> assertThrows(PlanItRunTimeException.class, row::getGeometry, "geometry read without being requested"));
+      }
+    }
+  }
+
+  /**
+   * The available columns should list the attributes of the layer
+   */
+  @Test
+  public void testAvailableColumns() {
+    for(var layer : network.getTransportLayers()){
+      var schemaName = linkSegmentsSchemaName(layer);
+      try(var scanner = GeoIoLayerScanner.create(SCANNER_OUTPUT_PATH, schemaName)){
+        var columnNames = scanner.getAvailableColumns().stream().map(DbfColumn::getName).collect(Collectors.toSet());
+        assertTrue(columnNames.containsAll(List.of("xml_id", "lanes", "cap_pcuh", "speed_kmh")), schemaName + " columns " + columnNames);
+      }
+    }
+  }
+
+  /**
+   * Integral values beyond the 53 bits of precision of a double should be read back exactly
+   */
+  @Test
+  public void testGetLongBeyondDoublePrecision() throws IOException {
+    final long offset = (1L << 53) + 1;
+    var outputDirectory = SCANNER_OUTPUT_PATH.resolve("longs");
+    Files.createDirectories(outputDirectory);
+    var writer = GeometryNetworkWriterFactory.create(outputDirectory.toString(), CountryNames.GLOBAL);
+    writer.setIdMapperType(IdMapperType.XML);
+    writer.getSettings().addAttributeExtension(GeoIoAttributeExtension.create(
+        MacroscopicLinkSegment.class, "large_id", "Long", linkSegment -> offset + 2 * linkSegment.getId()));
+    writer.write(network);
+
+    for(var layer : network.getTransportLayers()){
+      var schemaName = linkSegmentsSchemaName(layer);
+      var expectedByXmlId = new HashMap<String, Long>();
+      layer.getLinkSegments().forEach(linkSegment -> expectedByXmlId.put(linkSegment.getXmlId(), offset + 2 * linkSegment.getId()));
+
+      try(var scanner = GeoIoLayerScanner.create(outputDirectory, schemaName).select("xml_id", "large_id")){
+        long rows = scanner.forEachRow(row -> {
+          var expected = expectedByXmlId.get(row.getString(0));
+          assertNotNull(expected, "unknown link segment " + row.getString(0));
+          assertEquals(expected.longValue(), row.getLong(1), "large id of " + row.getString(0));
+          assertEquals(expected.longValue(), row.getLong("large_id"), "large id by name of " + row.getString(0));
+        });
+        assertEquals(expectedByXmlId.size(), rows, schemaName + " rows");
+      }
+    }
+  }
+}
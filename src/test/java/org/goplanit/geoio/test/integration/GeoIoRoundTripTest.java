@@ -0,0 +1,573 @@
+package org.goplanit.geoio.test.integration;
+
+import org.apache.commons.io.FileUtils;
+import org.goplanit.converter.idmapping.IdMapperType;
+import org.goplanit.geoio.converter.network.GeometryNetworkReader;
+import org.goplanit.geoio.converter.network.GeometryNetworkReaderFactory;
+import org.goplanit.geoio.converter.network.GeometryNetworkWriterFactory;
+import org.goplanit.geoio.converter.scan.GeoIoLayerScanner;
+import org.goplanit.geoio.converter.service.GeometryRoutedServicesWriterFactory;
+import org.goplanit.geoio.converter.service.GeometryServiceNetworkWriterFactory;
+import org.goplanit.geoio.converter.service.GeometryServiceNetworkWriterSettings;
+import org.goplanit.geoio.converter.service.RoutedTripScheduleTableWriter;
+import org.goplanit.geoio.converter.zoning.GeometryZoningReaderFactory;
+import org.goplanit.geoio.converter.zoning.GeometryZoningReaderSettings;
+import org.goplanit.geoio.converter.zoning.GeometryZoningWriterFactory;
+import org.goplanit.geoio.converter.zoning.GeometryZoningWriterSettings;
+import org.goplanit.io.converter.intermodal.PlanitIntermodalReaderFactory;
+import org.goplanit.io.converter.network.PlanitNetworkReaderFactory;
+import org.goplanit.io.converter.service.PlanitServiceNetworkReaderFactory;
+import org.goplanit.io.converter.zoning.PlanitZoningReaderFactory;
+import org.goplanit.io.converter.zoning.PlanitZoningReaderSettings;
+import org.goplanit.logging.Logging;
+import org.goplanit.network.MacroscopicNetwork;
+import org.goplanit.utils.id.ExternalIdAble;
+import org.goplanit.utils.id.IdGenerator;
+import org.goplanit.utils.locale.CountryNames;
+import org.goplanit.utils.network.layer.MacroscopicNetworkLayer;
+import org.goplanit.utils.zoning.Connectoid;
+import org.goplanit.zoning.Zoning;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round trip verification of the GeoIO writers. Each PLANit component is written through its GeoIO writer and the
+ * persisted layers are read back, either with the GeoIO readers (network, zoning), by scanning the layers directly (service
+ * network), or by reading the trip schedule tables (routed services). Entity counts, ids, attributes and geometries are compared against the source, the latter two within tolerance.
+ * <p>
+ *   Write and read throughput (entities per second) are always logged, but only checked against a budget when it is set
+ *   explicitly via the system properties {@value #WRITE_BUDGET_PROPERTY} and {@value #READ_BUDGET_PROPERTY}, so timings on
+ *   shared or loaded machines do not fail the build unless asked for.
+ * </p>
+ *
+ * @author markr
+ */
+public class GeoIoRoundTripTest {
+
+  /** the logger */
+  private static Logger LOGGER = null;
+
+  private static final Path TEST_CASE_PATH = Path.of("src","test","resources");
+
+  private static final String PROJECT_PATH = Path.of(TEST_CASE_PATH.toString(),"converter_test").toString();
+
+  private static final String MELBOURNE_INPUT_PATH = Path.of(PROJECT_PATH, "input", "melbourne").toString();
+  private static final String SYDNEY_INPUT_PATH = Path.of(PROJECT_PATH, "input", "sydney").toString();
+  private static final Path ROUND_TRIP_OUTPUT_PATH = Path.of(PROJECT_PATH, "outputs","roundtrip");
+
+  /** system property with minimum write throughput in entities per second */
+  public static final String WRITE_BUDGET_PROPERTY = "planit.geoio.roundtrip.min.write.entities.per.second";
+
+  /** system property with minimum read throughput in entities per second */
+  public static final String READ_BUDGET_PROPERTY = "planit.geoio.roundtrip.min.read.entities.per.second";
+
+  /** tolerance on coordinates, in units of the network's coordinate reference system */
+  private static final double COORDINATE_TOLERANCE = 1e-7;
+
+  /** relative tolerance on numeric attributes, several are persisted as floats */
+  private static final double RELATIVE_TOLERANCE = 1e-5;
+
+  /**
+   * Prepare a clean output directory for a component
+   *
+   * @param component name of the sub directory
+   * @return directory
+   * @throws IOException when unable to clean
+   */
+  private static Path prepareOutputDirectory(String component) throws IOException {
+    var outputDirectory = ROUND_TRIP_OUTPUT_PATH.resolve(component);
+    FileUtils.deleteDirectory(outputDirectory.toFile());
+    Files.createDirectories(outputDirectory);
+    return outputDirectory;
+  }
+
+  /**
+   * Log throughput and check it against a budget, when set
+   *
+   * @param description of what was measured
+   * @param numberOfEntities processed
+   * @param startNanos start time
+   * @param budgetProperty system property with the budget, not checked when absent
+   */
+  private static void assertThroughput(String description, long numberOfEntities, long startNanos, String budgetProperty){
+    double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+    double throughput = numberOfEntities / seconds;
+    var budgetValue = System.getProperty(budgetProperty);
+    if(budgetValue == null){
+      LOGGER.info(String.format("%s: %d entities in %.3fs, %.0f entities/s", description, numberOfEntities, seconds, throughput));
+      return;
+    }
+    double budget = Double.parseDouble(budgetValue);
+    LOGGER.info(String.format("%s: %d entities in %.3fs, %.0f entities/s (budget %.0f)", description, numberOfEntities, seconds, throughput, budget));
+    assertTrue(throughput >= budget,
+        String.format("%s throughput %.0f entities/s below budget of %.0f entities/s", description, throughput, budget));
+  }
+
+  /**
+   * Compare numeric values with relative tolerance
+   *
+   * @param description of the value
+   * @param expected value
+   * @param actual value
+   */
+  private static void assertNumber(String description, double expected, double actual){
+    assertEquals(expected, actual, Math.max(COORDINATE_TOLERANCE, Math.abs(expected) * RELATIVE_TOLERANCE), description);
+  }
+
+  /**
+   * Compare geometries within {@link #COORDINATE_TOLERANCE}
+   *
+   * @param description of the geometry
+   * @param expected geometry, may be null
+   * @param actual geometry, may be null
+   */
+  private static void assertGeometry(String description, Geometry expected, Geometry actual){
+    if(expected == null){
+      return;
+    }
+    assertNotNull(actual, description + " geometry missing");
+    assertTrue(expected.equalsExact(actual, COORDINATE_TOLERANCE),
+        String.format("%s geometry differs, expected %s, found %s", description, expected, actual));
+  }
+
+  /**
+   * Index entities by their XML id, asserting ids are unique
+   *
+   * @param entities to index
+   * @param <T> type of entity
+   * @return entities by XML id
+   */
+  private static <T extends ExternalIdAble> Map<String, T> byXmlId(Iterable<T> entities){
+    var indexed = new HashMap<String, T>();
+    for(var entity : entities){
+      assertTrue(indexed.put(entity.getXmlId(), entity) == null, "duplicate XML id " + entity.getXmlId());
+    }
+    return indexed;
+  }
+
+  /**
+   * Count entities of all layers of a network
+   *
+   * @param network to count for
+   * @return number of nodes, links, and link segments
+   */
+  private static long countEntities(MacroscopicNetwork network){
+    long count = 0;
+    for(var layer : network.getTransportLayers()){
+      count += layer.getNodes().size() + layer.getLinks().size() + layer.getLinkSegments().size();
+    }
+    return count;
+  }
+
+  /**
+   * Count entities of a zoning
+   *
+   * @param zoning to count for
+   * @return number of zones and connectoids
+   */
+  private static long countEntities(Zoning zoning){
+    return zoning.getOdZones().size() + zoning.getTransferZones().size() +
+        zoning.getOdConnectoids().size() + zoning.getTransferConnectoids().size();
+  }
+
+  /**
+   * Compare a network layer read back against its source
+   *
+   * @param expected source layer
+   * @param actual layer read back
+   */
+  private static void assertLayerEquals(MacroscopicNetworkLayer expected, MacroscopicNetworkLayer actual){
+    var layerPrefix = "layer " + expected.getXmlId() + ": ";
+
+    var actualNodes = byXmlId(actual.getNodes());
+    assertEquals(expected.getNodes().size(), actualNodes.size(), layerPrefix + "number of nodes");
+    for(var node : expected.getNodes()){
+      var actualNode = actualNodes.get(node.getXmlId());
+      assertNotNull(actualNode, layerPrefix + "node " + node.getXmlId() + " missing");
+      assertEquals(node.getExternalId(), actualNode.getExternalId(), layerPrefix + "node external id");
+      assertGeometry(layerPrefix + "node " + node.getXmlId(), node.getPosition(), actualNode.getPosition());
+    }
+
+    var actualLinks = byXmlId(actual.getLinks());
+    assertEquals(expected.getLinks().size(), actualLinks.size(), layerPrefix + "number of links");
+    for(var link : expected.getLinks()){
+      var description = layerPrefix + "link " + link.getXmlId();
+      var actualLink = actualLinks.get(link.getXmlId());
+      assertNotNull(actualLink, description + " missing");
+      assertEquals(link.getNodeA().getXmlId(), actualLink.getNodeA().getXmlId(), description + " node A");
+      assertEquals(link.getNodeB().getXmlId(), actualLink.getNodeB().getXmlId(), description + " node B");
+      assertNumber(description + " length", link.getLengthKm(), actualLink.getLengthKm());
+      assertGeometry(description, link.getGeometry(), actualLink.getGeometry());
+    }
+
+    var actualLinkSegments = byXmlId(actual.getLinkSegments());
+    assertEquals(expected.getLinkSegments().size(), actualLinkSegments.size(), layerPrefix + "number of link segments");
+    for(var linkSegment : expected.getLinkSegments()){
+      var description = layerPrefix + "link segment " + linkSegment.getXmlId();
+      var actualLinkSegment = actualLinkSegments.get(linkSegment.getXmlId());
+      assertNotNull(actualLinkSegment, description + " missing");
+      assertEquals(linkSegment.getParentLink().getXmlId(), actualLinkSegment.getParentLink().getXmlId(), description + " parent link");
+      assertEquals(linkSegment.getUpstreamNode().getXmlId(), actualLinkSegment.getUpstreamNode().getXmlId(), description + " upstream node");
+      assertEquals(linkSegment.getNumberOfLanes(), actualLinkSegment.getNumberOfLanes(), description + " lanes");
+      assertNumber(description + " capacity", linkSegment.getCapacityOrDefaultPcuH(), actualLinkSegment.getCapacityOrDefaultPcuH());
+      assertNumber(description + " speed limit", linkSegment.getPhysicalSpeedLimitKmH(), actualLinkSegment.getPhysicalSpeedLimitKmH());
+      assertEquals(linkSegment.getLinkSegmentType().getName(), actualLinkSegment.getLinkSegmentType().getName(), description + " type");
+    }
+  }
+
+  /**
+   * Count the rows of a layer, verifying the XML ids persisted match the expected ids
+   *
+   * @param directory of the layer
+   * @param schemaName of the layer
+   * @param expectedEntities whose XML ids should be present
+   * @return number of rows
+   */
+  private static long assertLayerXmlIds(Path directory, String schemaName, Iterable<? extends ExternalIdAble> expectedEntities){
+    var expectedXmlIds = new TreeSet<String>();
+    expectedEntities.forEach(e -> expectedXmlIds.add(e.getXmlId()));
+    var actualXmlIds = new TreeSet<String>();
+    try(var scanner = GeoIoLayerScanner.create(directory, schemaName).select("xml_id")){
+      scanner.forEachRow(row -> actualXmlIds.add(row.getString(0)));
+    }
+    assertEquals(expectedXmlIds, actualXmlIds, schemaName + " XML ids");
+    return actualXmlIds.size();
+  }
+
+  /**
+   * Split a row of a trip schedule table, removing the CSV quotes of its id columns
+   *
+   * @param line of the table
+   * @return fields of the row
+   */
+  private static String[] splitTableRow(String line){
+    var fields = line.split(",", -1);
+    for(int index = 0; index < fields.length; ++index){
+      var field = fields[index];
+      if(field.length() >= 2 && field.startsWith("\"") && field.endsWith("\"")){
+        fields[index] = field.substring(1, field.length() - 1).replace("\"\"", "\"");
+      }
+    }
+    return fields;
+  }
+
+  /**
+   * Read the rows of all trip schedule tables with the given suffix, grouped by the trip they belong to, excluding the trip
+   * column
+   *
+   * @param directory of the tables
+   * @param tableSuffix of the tables to read
+   * @return rows by trip XML id
+   * @throws IOException when unable to read
+   */
+  private static Map<String, List<String>> readTripTableRows(Path directory, String tableSuffix) throws IOException {
+    var rowsByTrip = new HashMap<String, List<String>>();
+    try(var files = Files.list(directory)){
+      for(var file : files.filter(f -> f.getFileName().toString().endsWith(tableSuffix)).collect(Collectors.toList())){
+        var lines = Files.readAllLines(file);
+        for(var line : lines.subList(1, lines.size())){
+          var fields = splitTableRow(line);
+          rowsByTrip.computeIfAbsent(fields[0], k -> new ArrayList<>()).add(
+              String.join(",", Arrays.asList(fields).subList(1, fields.length)));
+        }
+      }
+    }
+    rowsByTrip.values().forEach(Collections::sort);
+    return rowsByTrip;
+  }
+
+  @BeforeAll
+  public static void setUp() throws Exception {
+    if (LOGGER == null) {
+      LOGGER = Logging.createLogger(GeoIoRoundTripTest.class);
+    }
+  }
+
+  @AfterAll
+  public static void tearDown() {
+    Logging.closeLogger(LOGGER);
+    IdGenerator.reset();
+  }
+
+  /**
+   * Write a PLANit network to GeoIO and read it back with the GeoIO network reader
+   */
+  @Test
+  public void testNetworkRoundTrip() throws IOException {
+    var outputDirectory = prepareOutputDirectory("network");
+    var network = PlanitNetworkReaderFactory.create(MELBOURNE_INPUT_PATH).read();
+    long numberOfEntities = countEntities(network);
+
+    /* writer, native crs so geometries can be compared directly */
+    var writer = GeometryNetworkWriterFactory.create(outputDirectory.toString(), CountryNames.GLOBAL);
+    writer.setIdMapperType(IdMapperType.XML);
+    long start = System.nanoTime();
+    writer.write(network);
+    assertThroughput("network write", numberOfEntities, start, WRITE_BUDGET_PROPERTY);
+
+    /* reader */
+    start = System.nanoTime();
+    var readNetwork = (MacroscopicNetwork) GeometryNetworkReaderFactory.create(outputDirectory.toString()).read();
+    assertThroughput("network read", countEntities(readNetwork), start, READ_BUDGET_PROPERTY);
+
+    var readLayers = byXmlId(readNetwork.getTransportLayers());
+    assertEquals(network.getTransportLayers().size(), readLayers.size(), "number of layers");
+    for(var layer : network.getTransportLayers()){
+      var readLayer = readLayers.get(layer.getXmlId());
+      assertNotNull(readLayer, "layer " + layer.getXmlId() + " missing");
+      assertLayerEquals(layer, readLayer);
+    }
+  }
+
+  /**
+   * Write a PLANit zoning to GeoIO and read it back with the GeoIO zoning reader on top of the network read back
+   */
+  @Test
+  public void testZoningRoundTrip() throws IOException {
+    var outputDirectory = prepareOutputDirectory("zoning");
+    var network = PlanitNetworkReaderFactory.create(MELBOURNE_INPUT_PATH).read();
+    var zoning = PlanitZoningReaderFactory.create(new PlanitZoningReaderSettings(MELBOURNE_INPUT_PATH), network).read();
+    long numberOfEntities = countEntities(zoning);
+
+    var networkWriter = GeometryNetworkWriterFactory.create(outputDirectory.toString(), CountryNames.GLOBAL);
+    networkWriter.setIdMapperType(IdMapperType.XML);
+    networkWriter.write(network);
+
+    var zoningWriter = GeometryZoningWriterFactory.create(outputDirectory.toString(), CountryNames.GLOBAL);
+    zoningWriter.setIdMapperType(IdMapperType.XML);
+    long start = System.nanoTime();
+    zoningWriter.write(zoning);
+    assertThroughput("zoning write", numberOfEntities, start, WRITE_BUDGET_PROPERTY);
+
+    GeometryNetworkReader networkReader = GeometryNetworkReaderFactory.create(outputDirectory.toString());
+    var readNetwork = (MacroscopicNetwork) networkReader.read();
+    start = System.nanoTime();
+    var readZoning = GeometryZoningReaderFactory.create(
+        new GeometryZoningReaderSettings(outputDirectory.toString()), networkReader, readNetwork).read();
+    assertThroughput("zoning read", countEntities(readZoning), start, READ_BUDGET_PROPERTY);
+
+    /* zones */
+    var readOdZones = byXmlId(readZoning.getOdZones());
+    assertEquals(zoning.getOdZones().size(), readOdZones.size(), "number of od zones");
+    for(var zone : zoning.getOdZones()){
+      var readZone = readOdZones.get(zone.getXmlId());
+      assertNotNull(readZone, "od zone " + zone.getXmlId() + " missing");
+      assertEquals(zone.getExternalId(), readZone.getExternalId(), "od zone external id");
+      assertGeometry("od zone " + zone.getXmlId(), zone.getGeometry(), readZone.getGeometry());
+    }
+    var readTransferZones = byXmlId(readZoning.getTransferZones());
+    assertEquals(zoning.getTransferZones().size(), readTransferZones.size(), "number of transfer zones");
+    for(var zone : zoning.getTransferZones()){
+      var readZone = readTransferZones.get(zone.getXmlId());
+      assertNotNull(readZone, "transfer zone " + zone.getXmlId() + " missing");
+      assertGeometry("transfer zone " + zone.getXmlId(), zone.getGeometry(), readZone.getGeometry());
+    }
+
+    /* connectoids, relinked to the network read back */
+    var readOdConnectoids = byXmlId(readZoning.getOdConnectoids());
+    assertEquals(zoning.getOdConnectoids().size(), readOdConnectoids.size(), "number of od connectoids");
+    for(var connectoid : zoning.getOdConnectoids()){
+      var description = "od connectoid " + connectoid.getXmlId();
+      var readConnectoid = readOdConnectoids.get(connectoid.getXmlId());
+      assertNotNull(readConnectoid, description + " missing");
+      assertEquals(connectoid.getAccessVertex().getXmlId(), readConnectoid.getAccessVertex().getXmlId(), description + " access node");
+      var accessZones = new TreeSet<String>();
+      connectoid.getAccessZones().forEach(z -> accessZones.add(z.getXmlId()));
+      var readAccessZones = new TreeSet<String>();
+      readConnectoid.getAccessZones().forEach(z -> readAccessZones.add(z.getXmlId()));
+      assertEquals(accessZones, readAccessZones, description + " access zones");
+    }
+    var readTransferConnectoids = byXmlId(readZoning.getTransferConnectoids());
+    assertEquals(zoning.getTransferConnectoids().size(), readTransferConnectoids.size(), "number of transfer connectoids");
+    for(var connectoid : zoning.getTransferConnectoids()){
+      var description = "transfer connectoid " + connectoid.getXmlId();
+      var readConnectoid = readTransferConnectoids.get(connectoid.getXmlId());
+      assertNotNull(readConnectoid, description + " missing");
+      assertEquals(connectoid.getAccessLinkSegment().getXmlId(), readConnectoid.getAccessLinkSegment().getXmlId(), description + " access link segment");
+    }
+  }
+
+  /**
+   * Write a PLANit service network to GeoIO and verify the persisted layers by scanning them, there is no GeoIO service
+   * network reader
+   */
+  @Test
+  public void testServiceNetworkRoundTrip() throws IOException {
+    var outputDirectory = prepareOutputDirectory("service");
+    var network = PlanitNetworkReaderFactory.create(MELBOURNE_INPUT_PATH).read();
+    var serviceNetwork = PlanitServiceNetworkReaderFactory.create(MELBOURNE_INPUT_PATH, network).read();
+
+    long numberOfEntities = 0;
+    for(var layer : serviceNetwork.getTransportLayers()){
+      numberOfEntities += layer.getServiceNodes().size() + layer.getLegs().size() + layer.getLegSegments().size();
+    }
+
+    var writer = GeometryServiceNetworkWriterFactory.create(outputDirectory.toString(), CountryNames.GLOBAL);
+    writer.setIdMapperType(IdMapperType.XML);
+    long start = System.nanoTime();
+    writer.write(serviceNetwork);
+    assertThroughput("service network write", numberOfEntities, start, WRITE_BUDGET_PROPERTY);
+
+    start = System.nanoTime();
+    long numberOfRows = 0;
+    for(var layer : serviceNetwork.getTransportLayers()){
+      var layerPrefix = String.join("_", "layer", layer.getXmlId());
+      numberOfRows += assertLayerXmlIds(outputDirectory,
+          String.join("_", layerPrefix, GeometryServiceNetworkWriterSettings.DEFAULT_SERVICE_NODES_FILE_NAME), layer.getServiceNodes());
+      numberOfRows += assertLayerXmlIds(outputDirectory,
+          String.join("_", layerPrefix, GeometryServiceNetworkWriterSettings.DEFAULT_SERVICE_LEGS_FILE_NAME), layer.getLegs());
+      numberOfRows += assertLayerXmlIds(outputDirectory,
+          String.join("_", layerPrefix, GeometryServiceNetworkWriterSettings.DEFAULT_SERVICE_LEGSEGMENTS_FILE_NAME), layer.getLegSegments());
+    }
+    assertEquals(numberOfEntities, numberOfRows, "number of service network entities");
+    assertThroughput("service network scan", numberOfRows, start, READ_BUDGET_PROPERTY);
+  }
+
+  /**
+   * Write PLANit routed services to GeoIO and verify the departures and relative leg timings of every schedule based trip
+   * persisted in the trip schedule tables, there is no GeoIO routed services reader
+   */
+  @Test
+  public void testRoutedServicesRoundTrip() throws IOException {
+    var outputDirectory = prepareOutputDirectory("routedservices");
+    var routedServices = PlanitIntermodalReaderFactory.create(SYDNEY_INPUT_PATH).readWithServices().fourth();
+
+    /* expected rows, excluding the trip column, by trip */
+    var expectedDepartures = new HashMap<String, List<String>>();
+    var expectedLegTimings = new HashMap<String, List<String>>();
+    for(var layer : routedServices.getLayers()){
+      for(var mode : layer.getSupportedModes()){
+        for(var service : layer.getServicesByMode(mode)){
+          for(var trip : service.getTripInfo().getScheduleBasedTrips()){
+            var departures = expectedDepartures.computeIfAbsent(trip.getXmlId(), k -> new ArrayList<>());
+            for(var departure : trip.getDepartures()){
+              departures.add(String.join(",", Objects.toString(departure.getXmlId(), ""), String.valueOf(departure.getDepartureTime().toSecondOfDay())));
+            }
+            var legTimings = expectedLegTimings.computeIfAbsent(trip.getXmlId(), k -> new ArrayList<>());
+            for(int index = 0; index < trip.getRelativeLegTimingsSize(); ++index){
+              var legTiming = trip.getRelativeLegTiming(index);
+              legTimings.add(String.join(",", String.valueOf(index), Objects.toString(legTiming.getParentLegSegment().getXmlId(), ""),
+                  String.valueOf(legTiming.getDuration().toSecondOfDay()), String.valueOf(legTiming.getDwellTime().toSecondOfDay())));
+            }
+          }
+        }
+      }
+    }
+    expectedDepartures.values().forEach(Collections::sort);
+    expectedLegTimings.values().forEach(Collections::sort);
+    long numberOfDepartures = expectedDepartures.values().stream().mapToLong(List::size).sum();
+    assertTrue(numberOfDepartures > 0, "no departures to write");
+
+    var writer = GeometryRoutedServicesWriterFactory.create(outputDirectory.toString(), CountryNames.GLOBAL);
+    writer.setIdMapperType(IdMapperType.XML);
+    long start = System.nanoTime();
+    writer.write(routedServices);
+    assertThroughput("routed services write", numberOfDepartures, start, WRITE_BUDGET_PROPERTY);
+
+    /* trips without departures or leg timings have no rows */
+    expectedDepartures.values().removeIf(List::isEmpty);
+    expectedLegTimings.values().removeIf(List::isEmpty);
+    assertEquals(expectedDepartures,
+        readTripTableRows(outputDirectory, RoutedTripScheduleTableWriter.DEPARTURES_TABLE_SUFFIX), "departures by trip");
+    assertEquals(expectedLegTimings,
+        readTripTableRows(outputDirectory, RoutedTripScheduleTableWriter.LEG_TIMINGS_TABLE_SUFFIX), "relative leg timings by trip");
+  }
+
+  /**
+   * Compare the coordinates of a persisted line against the straight line between two positions, irrespective of the line
+   * being persisted as single or multi line string
+   *
+   * @param description of the line
+   * @param from expected first position, not verified when absent
+   * @param to expected last position, not verified when absent
+   * @param actual persisted geometry
+   */
+  private static void assertStraightLine(String description, Point from, Point to, Geometry actual){
+    if(from == null || to == null){
+      return;
+    }
+    assertNotNull(actual, description + " geometry missing");
+    var coordinates = actual.getCoordinates();
+    assertEquals(2, coordinates.length, description + " number of coordinates");
+    assertTrue(from.getCoordinate().equals2D(coordinates[0], COORDINATE_TOLERANCE), description + " first coordinate");
+    assertTrue(to.getCoordinate().equals2D(coordinates[1], COORDINATE_TOLERANCE), description + " last coordinate");
+  }
+
+  /**
+   * Write a PLANit zoning without virtual network to GeoIO with the virtual network persisted, so its connectoid edges and
+   * segments are derived from the connectoids while writing, and verify the derived layers: one edge per connectoid and access
+   * zone combination from the zone's centroid to the connectoid's access node, OD connectoids first, and a segment in each
+   * direction per edge sharing the edge's geometry
+   */
+  @Test
+  public void testDerivedVirtualNetwork() throws IOException {
+    var outputDirectory = prepareOutputDirectory("virtualnetwork");
+    var network = PlanitNetworkReaderFactory.create(SYDNEY_INPUT_PATH).read();
+    var zoning = PlanitZoningReaderFactory.create(new PlanitZoningReaderSettings(SYDNEY_INPUT_PATH), network).read();
+    assertTrue(zoning.getVirtualNetwork() == null || zoning.getVirtualNetwork().isEmpty(), "virtual network not to be derived");
+
+    /* expected edges in order of derivation, as centroid and access node positions */
+    var expectedEdges = new ArrayList<Point[]>();
+    for(var connectoids : List.<Iterable<? extends Connectoid>>of(zoning.getOdConnectoids(), zoning.getTransferConnectoids())){
+      for(var connectoid : connectoids){
+        for(var accessZone : connectoid.getAccessZones()){
+          expectedEdges.add(new Point[]{accessZone.getCentroid().getPosition(), connectoid.getAccessVertex().getPosition()});
+        }
+      }
+    }
+    assertTrue(expectedEdges.size() > 0, "no connectoid edges to derive");
+
+    var writer = GeometryZoningWriterFactory.create(outputDirectory.toString(), CountryNames.GLOBAL);
+    writer.setIdMapperType(IdMapperType.XML);
+    writer.getSettings().setPersistVirtualNetwork(true);
+    writer.write(zoning);
+
+    var edgesSchemaName = GeometryZoningWriterSettings.DEFAULT_CONNECTOID_EDGES_FILE_NAME;
+    try(var scanner = GeoIoLayerScanner.create(outputDirectory, edgesSchemaName).select("xml_id").withGeometry(true)){
+      var edgeXmlIds = new TreeSet<Integer>();
+      scanner.forEachRow(row -> {
+        int edgeIndex = Integer.parseInt(row.getString(0));
+        assertTrue(edgeXmlIds.add(edgeIndex), "duplicate connectoid edge " + edgeIndex);
+        var expectedEdge = expectedEdges.get(edgeIndex);
+        assertStraightLine("connectoid edge " + edgeIndex, expectedEdge[0], expectedEdge[1], row.getGeometry());
+      });
+      assertEquals(expectedEdges.size(), edgeXmlIds.size(), "number of connectoid edges");
+    }
+
+    var segmentsSchemaName = GeometryZoningWriterSettings.DEFAULT_CONNECTOID_SEGMENTS_FILE_NAME;
+    try(var scanner = GeoIoLayerScanner.create(outputDirectory, segmentsSchemaName).select("xml_id", "parent_id", "geom_opp").withGeometry(true)){
+      var segmentXmlIds = new TreeSet<Integer>();
+      scanner.forEachRow(row -> {
+        int segmentIndex = Integer.parseInt(row.getString(0));
+        assertTrue(segmentXmlIds.add(segmentIndex), "duplicate connectoid segment " + segmentIndex);
+        var description = "connectoid segment " + segmentIndex;
+        assertEquals(String.valueOf(segmentIndex / 2), row.getString(1), description + " parent edge");
+        assertEquals(segmentIndex % 2 == 1, row.getBoolean(2), description + " geometry opposite to direction");
+        var expectedEdge = expectedEdges.get(segmentIndex / 2);
+        assertStraightLine(description, expectedEdge[0], expectedEdge[1], row.getGeometry());
+      });
+      assertEquals(2 * expectedEdges.size(), segmentXmlIds.size(), "number of connectoid segments");
+    }
+  }
+}